@@ -2,6 +2,8 @@ package cloud.timo.TimoCloud.api;
 
 import cloud.timo.TimoCloud.api.objects.ServerObject;
 
+import java.util.function.Function;
+
 /**
  * Use {@link TimoCloudAPI#getBukkitAPI()} to get an instance of this API
  */
@@ -12,4 +14,14 @@ public interface TimoCloudBukkitAPI {
      */
     ServerObject getThisServer();
 
+    /**
+     * Registers a placeholder which can be used in sign templates, e.g. "%my_placeholder%"
+     *
+     * @param name     The name without percent signs, e.g. "my_placeholder"
+     * @param resolver Returns the value for the server a sign is showing
+     */
+    default void registerSignPlaceholder(String name, Function<ServerObject, String> resolver) {
+        throw new UnsupportedOperationException("Sign placeholders are not supported by this implementation");
+    }
+
 }
@@ -1,7 +1,10 @@
 package cloud.timo.TimoCloud.api;
 
+import cloud.timo.TimoCloud.api.objects.ProxyGroupObject;
 import cloud.timo.TimoCloud.api.objects.ProxyObject;
 
+import java.util.function.Function;
+
 /**
  * Use {@link TimoCloudAPI#getBungeeAPI()} to get an instance of this API
  */
@@ -10,4 +13,14 @@ public interface TimoCloudBungeeAPI {
      * @return The cord you are on as ProxyObject
      */
     ProxyObject getThisProxy();
+
+    /**
+     * Registers a placeholder which can be used in proxy group MOTDs, e.g. "%my_placeholder%"
+     *
+     * @param name     The name without percent signs, e.g. "my_placeholder"
+     * @param resolver Returns the value for the proxy group the MOTD belongs to
+     */
+    default void registerMotdPlaceholder(String name, Function<ProxyGroupObject, String> resolver) {
+        throw new UnsupportedOperationException("MOTD placeholders are not supported by this implementation");
+    }
 }
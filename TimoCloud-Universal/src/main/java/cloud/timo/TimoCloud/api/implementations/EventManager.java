@@ -6,15 +6,17 @@ import cloud.timo.TimoCloud.api.events.EventHandler;
 import cloud.timo.TimoCloud.api.events.Listener;
 
 import java.lang.reflect.Method;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class EventManager implements TimoCloudEventAPI {
 
     private List<Listener> listeners;
+    private volatile ListenerExecutor listenerExecutor;
 
     public EventManager() {
-        listeners = new ArrayList<>();
+        listeners = new CopyOnWriteArrayList<>();
+        listenerExecutor = ListenerExecutor.DIRECT;
     }
 
     @Override
@@ -38,19 +40,28 @@ public class EventManager implements TimoCloudEventAPI {
             Class c = listener.getClass();
             final Method[] methods = c.getDeclaredMethods();
             for (Method method : methods) {
-                try {
-                    EventHandler eventHandler = method.getAnnotation(EventHandler.class);
-                    if (eventHandler == null) continue;
-                    if (method.getParameterTypes().length != 1 || ! method.getParameterTypes()[0].equals(event.getClass())) continue;
-                    method.invoke(listener, event);
-                } catch (Exception e) {
-                    System.err.println("Uncaught exception while firing event: ");
-                    e.printStackTrace();
-                }
+                EventHandler eventHandler = method.getAnnotation(EventHandler.class);
+                if (eventHandler == null) continue;
+                if (method.getParameterTypes().length != 1 || ! method.getParameterTypes()[0].equals(event.getClass())) continue;
+                listenerExecutor.execute(listener, c.getName() + "#" + method.getName(), () -> {
+                    try {
+                        method.invoke(listener, event);
+                    } catch (Exception e) {
+                        System.err.println("Uncaught exception while firing event: ");
+                        e.printStackTrace();
+                    }
+                });
             }
         }
     }
 
+    /**
+     * Sets where listener methods are called, e.g. on a separate thread for each plugin
+     */
+    public void setListenerExecutor(ListenerExecutor listenerExecutor) {
+        this.listenerExecutor = listenerExecutor;
+    }
+
     public List<Listener> getListeners() {
         return listeners;
     }
@@ -0,0 +1,19 @@
+package cloud.timo.TimoCloud.api.implementations;
+
+/**
+ * Decides on which thread a call to an event or plugin message listener is executed
+ */
+@FunctionalInterface
+public interface ListenerExecutor {
+
+    /**
+     * Calls listeners directly on the thread which delivers the event or message
+     */
+    ListenerExecutor DIRECT = (listener, name, call) -> call.run();
+
+    /**
+     * @param listener The listener which is called
+     * @param name     Describes the call in log messages, e.g. the listener's method
+     */
+    void execute(Object listener, String name, Runnable call);
+}
@@ -0,0 +1,136 @@
+package cloud.timo.TimoCloud.api.implementations;
+
+import cloud.timo.TimoCloud.api.events.*;
+import cloud.timo.TimoCloud.api.objects.PlayerObject;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * All players online in the network, indexed by UUID, case-insensitive name, server and proxy.
+ * It is kept up to date by the player events, which are fired on the core and every client alike.
+ */
+public class PlayerDirectory implements Listener {
+
+    private final Map<UUID, PlayerObject> byUuid;
+    private final Map<String, UUID> byName;
+    private final Map<String, Set<UUID>> byServer;
+    private final Map<String, Set<UUID>> byProxy;
+
+    public PlayerDirectory() {
+        byUuid = new ConcurrentHashMap<>();
+        byName = new ConcurrentHashMap<>();
+        byServer = new ConcurrentHashMap<>();
+        byProxy = new ConcurrentHashMap<>();
+    }
+
+    public PlayerObject getPlayer(UUID uuid) {
+        return uuid == null ? null : byUuid.get(uuid);
+    }
+
+    public PlayerObject getPlayer(String name) {
+        if (name == null) return null;
+        UUID uuid = byName.get(name.toLowerCase());
+        return uuid == null ? null : byUuid.get(uuid);
+    }
+
+    public List<PlayerObject> getPlayersOnServer(String server) {
+        return resolve(byServer.get(server));
+    }
+
+    public List<PlayerObject> getPlayersOnProxy(String proxy) {
+        return resolve(byProxy.get(proxy));
+    }
+
+    public Collection<PlayerObject> getPlayers() {
+        return Collections.unmodifiableCollection(byUuid.values());
+    }
+
+    public int size() {
+        return byUuid.size();
+    }
+
+    public synchronized void put(PlayerObject player) {
+        remove(player.getUuid());
+        byUuid.put(player.getUuid(), player);
+        byName.put(player.getName().toLowerCase(), player.getUuid());
+        PlayerObjectBasicImplementation basicPlayer = (PlayerObjectBasicImplementation) player;
+        if (basicPlayer.getServerName() != null) byServer.computeIfAbsent(basicPlayer.getServerName(), key -> ConcurrentHashMap.newKeySet()).add(player.getUuid());
+        if (basicPlayer.getProxyName() != null) byProxy.computeIfAbsent(basicPlayer.getProxyName(), key -> ConcurrentHashMap.newKeySet()).add(player.getUuid());
+    }
+
+    public synchronized void remove(UUID uuid) {
+        PlayerObject player = byUuid.remove(uuid);
+        if (player == null) return;
+        byName.remove(player.getName().toLowerCase(), uuid);
+        PlayerObjectBasicImplementation basicPlayer = (PlayerObjectBasicImplementation) player;
+        removeFromIndex(byServer, basicPlayer.getServerName(), uuid);
+        removeFromIndex(byProxy, basicPlayer.getProxyName(), uuid);
+    }
+
+    /**
+     * Removes all players of a proxy which has gone away without sending their disconnects
+     */
+    public synchronized void removeProxy(String proxy) {
+        Set<UUID> uuids = byProxy.get(proxy);
+        if (uuids == null) return;
+        for (UUID uuid : new ArrayList<>(uuids)) remove(uuid);
+    }
+
+    /**
+     * Replaces all players of a proxy, e.g. with the ones it reports when it reconnects to a restarted core
+     */
+    public synchronized void setProxyPlayers(String proxy, Collection<PlayerObject> players) {
+        removeProxy(proxy);
+        for (PlayerObject player : players) put(player);
+    }
+
+    /**
+     * Replaces the whole directory, e.g. with the snapshot a client receives after connecting to the core
+     */
+    public synchronized void setPlayers(Collection<PlayerObject> players) {
+        byUuid.clear();
+        byName.clear();
+        byServer.clear();
+        byProxy.clear();
+        for (PlayerObject player : players) put(player);
+    }
+
+    @EventHandler
+    public void onPlayerConnect(PlayerConnectEvent event) {
+        put(event.getPlayer());
+    }
+
+    @EventHandler
+    public void onPlayerServerChange(PlayerServerChangeEvent event) {
+        put(event.getPlayer());
+    }
+
+    @EventHandler
+    public void onPlayerDisconnect(PlayerDisconnectEvent event) {
+        remove(event.getPlayer().getUuid());
+    }
+
+    @EventHandler
+    public void onProxyUnregister(ProxyUnregisterEvent event) {
+        removeProxy(event.getProxy().getName());
+    }
+
+    private List<PlayerObject> resolve(Set<UUID> uuids) {
+        if (uuids == null) return new ArrayList<>();
+        List<PlayerObject> players = new ArrayList<>(uuids.size());
+        for (UUID uuid : uuids) {
+            PlayerObject player = byUuid.get(uuid);
+            if (player != null) players.add(player);
+        }
+        return players;
+    }
+
+    private static void removeFromIndex(Map<String, Set<UUID>> index, String key, UUID uuid) {
+        if (key == null) return;
+        Set<UUID> uuids = index.get(key);
+        if (uuids == null) return;
+        uuids.remove(uuid);
+        if (uuids.isEmpty()) index.remove(key, uuids);
+    }
+}
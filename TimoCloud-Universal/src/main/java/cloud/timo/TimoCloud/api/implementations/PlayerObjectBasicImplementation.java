@@ -50,6 +50,10 @@ public class PlayerObjectBasicImplementation implements PlayerObject {
         return TimoCloudAPI.getUniversalAPI().getServer(server);
     }
 
+    public String getServerName() {
+        return server;
+    }
+
     public void setServer(String server) {
         this.server = server;
     }
@@ -58,6 +62,10 @@ public class PlayerObjectBasicImplementation implements PlayerObject {
         return TimoCloudAPI.getUniversalAPI().getProxy(proxy);
     }
 
+    public String getProxyName() {
+        return proxy;
+    }
+
     public void setProxy(String proxy) {
         this.proxy = proxy;
     }
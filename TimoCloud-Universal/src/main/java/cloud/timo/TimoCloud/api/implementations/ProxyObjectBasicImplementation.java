@@ -22,24 +22,28 @@ public class ProxyObjectBasicImplementation implements ProxyObject, Comparable {
     private String name;
     private String id;
     private String group;
-    private List<PlayerObject> onlinePlayers;
     private int onlinePlayerCount;
     private String base;
     private InetSocketAddress inetSocketAddress;
+    private boolean proxyProtocol;
     private MessageClientAddress messageClientAddress;
 
     public ProxyObjectBasicImplementation() {}
 
-    public ProxyObjectBasicImplementation(String name, String id, String group, List<PlayerObject> onlinePlayers, int onlinePlayerCount, String base, InetSocketAddress inetSocketAddress) {
+    public ProxyObjectBasicImplementation(String name, String id, String group, int onlinePlayerCount, String base, InetSocketAddress inetSocketAddress) {
         this.name = name;
         this.id = id;
         this.group = group;
-        this.onlinePlayers = onlinePlayers;
         this.onlinePlayerCount = onlinePlayerCount;
         this.base = base;
         this.inetSocketAddress = inetSocketAddress;
     }
 
+    public ProxyObjectBasicImplementation(String name, String id, String group, int onlinePlayerCount, String base, InetSocketAddress inetSocketAddress, boolean proxyProtocol) {
+        this(name, id, group, onlinePlayerCount, base, inetSocketAddress);
+        this.proxyProtocol = proxyProtocol;
+    }
+
     @Override
     public String getName() {
         return name;
@@ -61,7 +65,7 @@ public class ProxyObjectBasicImplementation implements ProxyObject, Comparable {
 
     @Override
     public List<PlayerObject> getOnlinePlayers() {
-        return onlinePlayers;
+        return ((TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI()).getPlayerDirectory().getPlayersOnProxy(getName());
     }
 
     @Override
@@ -89,6 +93,13 @@ public class ProxyObjectBasicImplementation implements ProxyObject, Comparable {
         return inetSocketAddress.getPort();
     }
 
+    /**
+     * @return Whether the proxy accepts a PROXY protocol header in front of connections from Cords
+     */
+    public boolean supportsProxyProtocol() {
+        return proxyProtocol;
+    }
+
     @Override
     public MessageClientAddress getMessageAddress() {
         if (messageClientAddress == null) messageClientAddress = new MessageClientAddress(getId(), MessageClientAddressType.PROXY);
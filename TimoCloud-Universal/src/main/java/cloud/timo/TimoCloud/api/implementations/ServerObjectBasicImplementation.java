@@ -26,7 +26,6 @@ public class ServerObjectBasicImplementation implements ServerObject, Comparable
     protected String extra;
     private String map;
     private String motd;
-    private List<PlayerObject> onlinePlayers;
     private int onlinePlayerCount;
     private int maxPlayerCount;
     private String base;
@@ -35,7 +34,7 @@ public class ServerObjectBasicImplementation implements ServerObject, Comparable
 
     public ServerObjectBasicImplementation() {}
 
-    public ServerObjectBasicImplementation(String name, String id, String group, String state, String extra, String map, String motd, List<PlayerObject> onlinePlayers, int onlinePlayerCount, int maxPlayerCount, String base, InetSocketAddress socketAddress) {
+    public ServerObjectBasicImplementation(String name, String id, String group, String state, String extra, String map, String motd, int onlinePlayerCount, int maxPlayerCount, String base, InetSocketAddress socketAddress) {
         this.name = name;
         this.id = id;
         this.group = group;
@@ -43,7 +42,6 @@ public class ServerObjectBasicImplementation implements ServerObject, Comparable
         this.extra = extra;
         this.map = map;
         this.motd = motd;
-        this.onlinePlayers = onlinePlayers;
         this.onlinePlayerCount = onlinePlayerCount;
         this.maxPlayerCount = maxPlayerCount;
         this.base = base;
@@ -105,7 +103,7 @@ public class ServerObjectBasicImplementation implements ServerObject, Comparable
 
     @Override
     public List<PlayerObject> getOnlinePlayers() {
-        return onlinePlayers;
+        return ((TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI()).getPlayerDirectory().getPlayersOnServer(getName());
     }
 
     @Override
@@ -11,16 +11,18 @@ import cloud.timo.TimoCloud.api.messages.objects.PluginMessage;
 import cloud.timo.TimoCloud.lib.messages.Message;
 import cloud.timo.TimoCloud.lib.utils.PluginMessageSerializer;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.stream.Collectors;
 
 public abstract class TimoCloudMessageAPIBasicImplementation implements TimoCloudMessageAPI {
 
     private List<TypeSpecificMessageListener> listeners;
+    private volatile ListenerExecutor listenerExecutor;
 
     public TimoCloudMessageAPIBasicImplementation() {
-        listeners = new ArrayList<>();
+        listeners = new CopyOnWriteArrayList<>();
+        listenerExecutor = ListenerExecutor.DIRECT;
     }
 
     @Override
@@ -71,13 +73,22 @@ public abstract class TimoCloudMessageAPIBasicImplementation implements TimoClou
 
     public void onMessage(AddressedPluginMessage message) {
         for (TypeSpecificMessageListener listener : getListeners(message.getMessage().getType())) {
-            try {
-                listener.getListener().onPluginMessage(message);
-            } catch (Exception e) {
-                System.err.println("Uncaught exception while calling method onPluginMessage: ");
-                e.printStackTrace();
-            }
+            listenerExecutor.execute(listener.getListener(), listener.getListener().getClass().getName() + "#onPluginMessage", () -> {
+                try {
+                    listener.getListener().onPluginMessage(message);
+                } catch (Exception e) {
+                    System.err.println("Uncaught exception while calling method onPluginMessage: ");
+                    e.printStackTrace();
+                }
+            });
         }
     }
 
+    /**
+     * Sets where message listeners are called, e.g. on a separate thread for each plugin
+     */
+    public void setListenerExecutor(ListenerExecutor listenerExecutor) {
+        this.listenerExecutor = listenerExecutor;
+    }
+
 }
@@ -8,17 +8,18 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.module.SimpleAbstractTypeResolver;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 public class TimoCloudUniversalAPIBasicImplementation implements TimoCloudUniversalAPI {
 
     private ArrayList<ServerGroupObject> serverGroups = new ArrayList<>();
     private ArrayList<ProxyGroupObject> proxyGroups = new ArrayList<>();
     private ArrayList<CordObject> cords = new ArrayList<>();
+    private final PlayerDirectory playerDirectory = new PlayerDirectory();
 
     private final Class<? extends ServerObject> serverObjectImplementation;
     private final Class<? extends ProxyObject> proxyObjectImplementation;
@@ -88,6 +89,29 @@ public class TimoCloudUniversalAPIBasicImplementation implements TimoCloudUniver
         this.gotAnyData = true;
     }
 
+    /**
+     * Replaces the player directory with the snapshot sent by the core, see {@link PlayerDirectory}
+     */
+    public void setPlayers(List<String> json) {
+        List<PlayerObject> players;
+        try {
+            players = readPlayers(json);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return;
+        }
+        getPlayerDirectory().setPlayers(players);
+    }
+
+    /**
+     * @param json Players serialized with {@link #getObjectMapper()}
+     */
+    public List<PlayerObject> readPlayers(List<String> json) throws IOException {
+        List<PlayerObject> players = new ArrayList<>();
+        for (String object : json) players.add(getObjectMapper().readValue(object, playerObjectImplementation));
+        return players;
+    }
+
     @Override
     public List<ServerGroupObject> getServerGroups() {
         return serverGroups == null ? new ArrayList<>() : (ArrayList) serverGroups.clone();
@@ -138,18 +162,12 @@ public class TimoCloudUniversalAPIBasicImplementation implements TimoCloudUniver
 
     @Override
     public PlayerObject getPlayer(UUID uuid) {
-        for (ProxyObject proxyObject : getProxyGroups().stream().map(ProxyGroupObject::getProxies).flatMap(List::stream).collect(Collectors.toList()))
-            for (PlayerObject playerObject : proxyObject.getOnlinePlayers())
-                if (playerObject.getUuid().equals(uuid)) return playerObject;
-        return null;
+        return getPlayerDirectory().getPlayer(uuid);
     }
 
     @Override
     public PlayerObject getPlayer(String name) {
-        for (ProxyObject proxyObject : getProxyGroups().stream().map(ProxyGroupObject::getProxies).flatMap(List::stream).collect(Collectors.toList()))
-            for (PlayerObject playerObject : proxyObject.getOnlinePlayers())
-                if (playerObject.getName().equals(name)) return playerObject;
-        return null;
+        return getPlayerDirectory().getPlayer(name);
     }
 
     @Override
@@ -166,6 +184,10 @@ public class TimoCloudUniversalAPIBasicImplementation implements TimoCloudUniver
         return null;
     }
 
+    public PlayerDirectory getPlayerDirectory() {
+        return playerDirectory;
+    }
+
     public ObjectMapper getObjectMapper() {
         return objectMapper;
     }
@@ -2,31 +2,37 @@ package cloud.timo.TimoCloud.base;
 
 import cloud.timo.TimoCloud.base.managers.BaseFileManager;
 import cloud.timo.TimoCloud.base.managers.BaseInstanceManager;
+import cloud.timo.TimoCloud.base.managers.BasePeerManager;
+import cloud.timo.TimoCloud.base.managers.BasePortManager;
+import cloud.timo.TimoCloud.base.managers.BaseProcessManager;
 import cloud.timo.TimoCloud.base.managers.BaseResourceManager;
 import cloud.timo.TimoCloud.base.managers.BaseTemplateManager;
 import cloud.timo.TimoCloud.base.sockets.BaseSocketClient;
 import cloud.timo.TimoCloud.base.sockets.BaseSocketClientHandler;
 import cloud.timo.TimoCloud.base.sockets.BaseSocketMessageManager;
 import cloud.timo.TimoCloud.base.sockets.BaseStringHandler;
-import cloud.timo.TimoCloud.lib.logging.LoggingOutputStream;
+import cloud.timo.TimoCloud.lib.logging.AsyncLogger;
+import cloud.timo.TimoCloud.lib.logging.LogEntry;
 import cloud.timo.TimoCloud.lib.messages.Message;
 import cloud.timo.TimoCloud.lib.modules.ModuleType;
 import cloud.timo.TimoCloud.lib.modules.TimoCloudModule;
+import cloud.timo.TimoCloud.lib.sockets.compression.StreamCompression;
 import cloud.timo.TimoCloud.lib.utils.options.OptionSet;
 import org.apache.commons.io.FileDeleteStrategy;
 
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.InputStreamReader;
-import java.io.PrintStream;
 import java.net.InetAddress;
 import java.net.URL;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -45,61 +51,104 @@ public class TimoCloudBase implements TimoCloudModule {
     public static final String ANSI_WHITE = "\u001B[37m";
 
     private static TimoCloudBase instance;
+    private AsyncLogger logger;
     private OptionSet options;
     private String prefix = ANSI_YELLOW + "[" + ANSI_CYAN + "Timo" + ANSI_RESET + "Cloud" + ANSI_YELLOW + "]" + ANSI_RESET;
     private BaseFileManager fileManager;
     private BaseInstanceManager instanceManager;
     private BaseTemplateManager templateManager;
+    private BasePeerManager peerManager;
     private BaseSocketClient socketClient;
     private BaseSocketClientHandler socketClientHandler;
     private BaseSocketMessageManager socketMessageManager;
     private BaseStringHandler stringHandler;
     private BaseResourceManager resourceManager;
+    private BasePortManager portManager;
+    private BaseProcessManager processManager;
     private ScheduledExecutorService scheduler;
     private boolean connected = false;
+    private String resumeToken;
 
     public static String getTime() {
         return "[" + format.format(new Date()) + "] ";
     }
 
-    private static String formatLog(String message, String color) {
-        return (getTime() + getInstance().getPrefix() + color + message + ANSI_RESET);
+    private String formatLog(long time, String message, String color) {
+        return ("[" + format.format(new Date(time)) + "] " + getPrefix() + color + message + ANSI_RESET);
     }
 
     public void info(String message) {
-        System.out.println(formatLog(message, ANSI_RESET));
+        log(Level.INFO, message, null);
     }
 
     public void warning(String message) {
-        System.err.println(formatLog(message, ANSI_YELLOW));
+        log(Level.WARNING, message, null);
     }
 
     public void severe(String message) {
-        System.err.println(formatLog(message, ANSI_RED));
+        log(Level.SEVERE, message, null);
     }
 
     public void severe(Throwable throwable) {
-        throwable.printStackTrace(new PrintStream(new LoggingOutputStream(this::severe)));
+        log(Level.SEVERE, null, throwable);
+    }
+
+    private void log(Level level, String message, Throwable throwable) {
+        if (logger == null) {
+            if (message != null) (level == Level.INFO ? System.out : System.err).println(message);
+            if (throwable != null) throwable.printStackTrace();
+            return;
+        }
+        logger.log(level, message, throwable);
+    }
+
+    /**
+     * Writes a batch of log entries to the console with a single write per stream
+     */
+    private void writeToConsole(List<LogEntry> entries) {
+        StringBuilder out = new StringBuilder();
+        StringBuilder err = new StringBuilder();
+        for (LogEntry entry : entries) {
+            StringBuilder target = entry.getLevel() == Level.INFO ? out : err;
+            String color = entry.getLevel() == Level.SEVERE ? ANSI_RED : entry.getLevel() == Level.WARNING ? ANSI_YELLOW : ANSI_RESET;
+            if (entry.getMessage() != null) target.append(formatLog(entry.getTime(), entry.getMessage(), color)).append(System.lineSeparator());
+            if (entry.getThrowable() == null) continue;
+            for (String line : AsyncLogger.getStackTraceLines(entry.getThrowable())) target.append(formatLog(entry.getTime(), line, color)).append(System.lineSeparator());
+        }
+        if (out.length() > 0) {
+            System.out.print(out);
+            System.out.flush();
+        }
+        if (err.length() > 0) {
+            System.err.print(err);
+            System.err.flush();
+        }
     }
 
     @Override
     public void load(OptionSet optionSet) {
         this.options = optionSet;
         makeInstances();
+        collectUnusedBlobs();
+        startPeerServer();
         info(ANSI_GREEN + "Base has been loaded");
         scheduleConnecting();
     }
 
     @Override
     public void unload() {
-
+        if (getPeerManager() != null) getPeerManager().stop();
     }
 
     private void makeInstances() {
         instance = this;
+        logger = new AsyncLogger("TimoCloudBase", this::writeToConsole);
         fileManager = new BaseFileManager();
+        portManager = new BasePortManager();
+        processManager = new BaseProcessManager();
         instanceManager = new BaseInstanceManager(getServerManagerDelayMillis());
-        templateManager = new BaseTemplateManager();
+        templateManager = new BaseTemplateManager(getFileManager().getBlobsDirectory());
+        peerManager = new BasePeerManager(getTemplateManager().getBlobStore(), ((Number) getFileManager().getConfig().get("peer-connections-per-peer")).intValue());
         socketClient = new BaseSocketClient();
         socketClientHandler = new BaseSocketClientHandler();
         socketMessageManager = new BaseSocketMessageManager();
@@ -108,6 +157,28 @@ public class TimoCloudBase implements TimoCloudModule {
         scheduler = Executors.newScheduledThreadPool(1);
     }
 
+    private void collectUnusedBlobs() {
+        try {
+            int deleted = getTemplateManager().getBlobStore().collectGarbage(getFileManager().getTemplatesDirectory());
+            if (deleted > 0) info("Deleted " + deleted + " template files which are not used anymore.");
+        } catch (Exception e) {
+            severe("Error while deleting unused template files: ");
+            severe(e);
+        }
+    }
+
+    private void startPeerServer() {
+        try {
+            int port = ((Number) getFileManager().getConfig().get("peer-port")).intValue();
+            getPeerManager().start(port);
+            if (port > 0 && getPeerManager().getPort() != port) warning("Port " + port + " is already in use, serving template files to other bases on port " + getPeerManager().getPort() + " instead. Please change 'peer-port' in your config.yml if other bases cannot reach it.");
+            else if (getPeerManager().getPort() >= 0) info("Serving template files to other bases on port " + getPeerManager().getPort() + ".");
+        } catch (Exception e) {
+            severe("Error while starting to serve template files to other bases: ");
+            severe(e);
+        }
+    }
+
     private void scheduleConnecting() {
         scheduler.scheduleAtFixedRate(this::connectToSocket, 0, 1, TimeUnit.SECONDS);
         alertConnecting();
@@ -149,7 +220,14 @@ public class TimoCloudBase implements TimoCloudModule {
         if (isConnected()) return;
         setConnected(true);
 
-        getSocketMessageManager().sendMessage(Message.create().setType("BASE_HANDSHAKE").set("base", getName()).set("publicAddress", getPublicIpAddress()));
+        getSocketMessageManager().sendMessage(Message.create()
+                .setType("BASE_HANDSHAKE")
+                .set("base", getName())
+                .set("publicAddress", getPublicIpAddress())
+                .set("peerPort", getPeerManager().getPort())
+                .set("compression", StreamCompression.getSupportedAlgorithms())
+                .setIfNotNull("token", resumeToken)
+                .setIfNotNull("instances", getInstanceManager().getRunningInstances()));
         info("Successfully connected to Core socket!");
     }
 
@@ -158,8 +236,18 @@ public class TimoCloudBase implements TimoCloudModule {
         setConnected(false);
     }
 
-    public void onHandshakeSuccess() {
+    /**
+     * @param resumeToken Identifies this run of the base, so the core knows after reconnecting that the base has not been
+     *                    restarted in the meantime
+     * @param peerToken   Other bases have to present it to download template files from this base
+     */
+    public void onHandshakeSuccess(String resumeToken, String peerToken) {
+        if (resumeToken != null) this.resumeToken = resumeToken;
+        getPeerManager().setToken(peerToken);
         deleteOldDirectories();
+        if (getPeerManager().getPort() >= 0) {
+            getSocketMessageManager().sendMessage(Message.create().setType("BLOBS_AVAILABLE").set("hashes", getTemplateManager().getBlobStore().getHashes()).set("replace", true));
+        }
     }
 
     private String getPublicIpAddress() {
@@ -220,6 +308,10 @@ public class TimoCloudBase implements TimoCloudModule {
         return templateManager;
     }
 
+    public BasePeerManager getPeerManager() {
+        return peerManager;
+    }
+
     public BaseSocketClient getSocketClient() {
         return socketClient;
     }
@@ -236,6 +328,14 @@ public class TimoCloudBase implements TimoCloudModule {
         return resourceManager;
     }
 
+    public BasePortManager getPortManager() {
+        return portManager;
+    }
+
+    public BaseProcessManager getProcessManager() {
+        return processManager;
+    }
+
     public BaseStringHandler getStringHandler() {
         return stringHandler;
     }
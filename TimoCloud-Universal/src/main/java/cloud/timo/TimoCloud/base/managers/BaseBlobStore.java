@@ -0,0 +1,164 @@
+package cloud.timo.TimoCloud.base.managers;
+
+import org.apache.commons.io.FileDeleteStrategy;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Stores every template file once, named after the SHA-256 hash of its content. Template directories consist of hard links
+ * to these blobs, so a file which is used by several templates only takes up disk space once and only has to be downloaded once.
+ * Template files must therefore never be modified in place, only be replaced.
+ */
+public class BaseBlobStore {
+
+    private static final Pattern HASH_PATTERN = Pattern.compile("[0-9a-f]{64}");
+    /**
+     * Marks a store in which some files had to be copied instead of linked, so link counts do not tell which blobs are used
+     */
+    private static final String COPIED_MARKER = "copied";
+
+    private final File directory;
+
+    public BaseBlobStore(File directory) {
+        this.directory = directory;
+        directory.mkdirs();
+    }
+
+    public File getBlob(String hash) {
+        if (!HASH_PATTERN.matcher(hash).matches()) throw new IllegalArgumentException("Invalid blob hash: " + hash);
+        return new File(new File(directory, hash.substring(0, 2)), hash);
+    }
+
+    public boolean contains(String hash) {
+        return HASH_PATTERN.matcher(hash).matches() && getBlob(hash).exists();
+    }
+
+    /**
+     * Adds a file whose content has the given hash. If the blob already exists, the file is replaced by a link to it.
+     */
+    public void add(String hash, File file) throws IOException {
+        File blob = getBlob(hash);
+        if (blob.exists()) {
+            if (Files.isSameFile(blob.toPath(), file.toPath())) return;
+            Files.delete(file.toPath());
+            materialize(hash, file);
+            return;
+        }
+        blob.getParentFile().mkdirs();
+        linkOrCopy(blob.toPath(), file.toPath());
+    }
+
+    /**
+     * @return A new file on the store's file system to download a blob into. Leftovers are deleted with unused blobs.
+     */
+    public File createTemporaryFile() throws IOException {
+        File incoming = new File(directory, "incoming/");
+        incoming.mkdirs();
+        return File.createTempFile("blob", ".tmp", incoming);
+    }
+
+    /**
+     * Moves a downloaded file into the store. Its content has to be verified before.
+     */
+    public void put(String hash, File file) throws IOException {
+        File blob = getBlob(hash);
+        blob.getParentFile().mkdirs();
+        if (blob.exists()) Files.delete(file.toPath());
+        else Files.move(file.toPath(), blob.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return The hashes of all blobs in the store
+     */
+    public List<String> getHashes() {
+        List<String> hashes = new ArrayList<>();
+        File[] prefixes = directory.listFiles();
+        if (prefixes == null) return hashes;
+        for (File prefix : prefixes) {
+            String[] names = prefix.list();
+            if (names == null) continue;
+            for (String name : names) if (HASH_PATTERN.matcher(name).matches()) hashes.add(name);
+        }
+        return hashes;
+    }
+
+    /**
+     * Adds all files of a directory which are not in the store yet
+     *
+     * @param hashes The directory's hashes as returned by {@link cloud.timo.TimoCloud.lib.utils.HashUtil#getHashes(File)}
+     */
+    public void addAll(File directory, Map<?, ?> hashes) throws IOException {
+        if (hashes == null) return;
+        for (Map.Entry<?, ?> entry : hashes.entrySet()) {
+            File file = new File(directory, (String) entry.getKey());
+            if (entry.getValue() instanceof Map) addAll(file, (Map<?, ?>) entry.getValue());
+            else if (!contains((String) entry.getValue())) add((String) entry.getValue(), file);
+        }
+    }
+
+    /**
+     * Creates the given file as a link to a blob, replacing whatever exists at its location
+     */
+    public void materialize(String hash, File target) throws IOException {
+        Path blob = getBlob(hash).toPath();
+        if (target.isDirectory()) FileDeleteStrategy.FORCE.delete(target);
+        else Files.deleteIfExists(target.toPath());
+        target.getParentFile().mkdirs();
+        linkOrCopy(target.toPath(), blob);
+    }
+
+    private void linkOrCopy(Path link, Path existing) throws IOException {
+        try {
+            Files.createLink(link, existing);
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            // Hard links are not supported everywhere, e.g. across file systems, so fall back to a plain copy
+            markCopied();
+            Files.copy(existing, link, StandardCopyOption.COPY_ATTRIBUTES);
+        }
+    }
+
+    void markCopied() throws IOException {
+        File marker = new File(directory, COPIED_MARKER);
+        if (!marker.exists()) Files.createFile(marker.toPath());
+    }
+
+    /**
+     * Deletes all blobs which are not used by any template anymore. Only works if all template files are hard links to the blobs,
+     * otherwise nothing is deleted.
+     *
+     * @param templatesDirectory The directory containing all templates
+     * @return The number of deleted blobs
+     */
+    public int collectGarbage(File templatesDirectory) throws IOException {
+        if (new File(directory, COPIED_MARKER).exists()) return 0;
+        if (!Files.getFileStore(directory.toPath()).equals(Files.getFileStore(templatesDirectory.toPath()))) return 0;
+        File[] prefixes = directory.listFiles();
+        if (prefixes == null) return 0;
+        int deleted = 0;
+        for (File prefix : prefixes) {
+            File[] blobs = prefix.listFiles();
+            if (blobs == null) continue;
+            for (File blob : blobs) {
+                Object links;
+                try {
+                    links = Files.getAttribute(blob.toPath(), "unix:nlink");
+                } catch (UnsupportedOperationException | IllegalArgumentException e) {
+                    return deleted;
+                }
+                if (((Number) links).intValue() > 1) continue;
+                Files.delete(blob.toPath());
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+}
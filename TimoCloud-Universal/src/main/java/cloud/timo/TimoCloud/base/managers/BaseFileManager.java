@@ -25,6 +25,7 @@ public class BaseFileManager {
         private File serverStaticDirectory;
         private File proxyStaticDirectory;
     private File cacheDirectory;
+    private File blobsDirectory;
     private File logsDirectory;
     private File configFile;
     private Map<String, Object> config;
@@ -64,6 +65,8 @@ public class BaseFileManager {
 
             cacheDirectory = new File(temporaryDirectory, "cache/");
             cacheDirectory.mkdirs();
+            blobsDirectory = new File(baseDirectory, "blobs/");
+            blobsDirectory.mkdirs();
 
             new File(serverGlobalDirectory, "plugins/").mkdirs();
             logsDirectory = new File(baseDirectory, "logs/");
@@ -154,6 +157,10 @@ public class BaseFileManager {
         return cacheDirectory;
     }
 
+    public File getBlobsDirectory() {
+        return blobsDirectory;
+    }
+
     public File getLogsDirectory() {
         return logsDirectory;
     }
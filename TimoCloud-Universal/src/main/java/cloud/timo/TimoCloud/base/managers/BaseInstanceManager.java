@@ -5,7 +5,11 @@ import cloud.timo.TimoCloud.base.exceptions.ProxyStartException;
 import cloud.timo.TimoCloud.base.exceptions.ServerStartException;
 import cloud.timo.TimoCloud.base.objects.BaseProxyObject;
 import cloud.timo.TimoCloud.base.objects.BaseServerObject;
+import cloud.timo.TimoCloud.base.objects.InstanceUsage;
+import cloud.timo.TimoCloud.base.objects.SupervisedProcess;
 import cloud.timo.TimoCloud.lib.messages.Message;
+import cloud.timo.TimoCloud.lib.profiling.Profiling;
+import cloud.timo.TimoCloud.lib.profiling.ProfilingSpan;
 import cloud.timo.TimoCloud.lib.utils.HashUtil;
 import org.apache.commons.io.FileDeleteStrategy;
 import org.apache.commons.io.FileUtils;
@@ -13,7 +17,6 @@ import org.yaml.snakeyaml.DumperOptions;
 import org.yaml.snakeyaml.Yaml;
 
 import java.io.*;
-import java.net.ServerSocket;
 import java.nio.file.Files;
 import java.util.*;
 import java.util.concurrent.Executors;
@@ -23,12 +26,14 @@ import java.util.concurrent.TimeUnit;
 public class BaseInstanceManager {
 
     private static final long STATIC_CREATE_TIME = 1482773874000L;
+    private static final long PORT_RECONCILE_SECONDS = 5;
+    private static final List<String> JVM_FLAGS = Collections.unmodifiableList(Arrays.asList(
+            "-Dfile.encoding=UTF8", "-XX:+UseG1GC", "-XX:+UnlockExperimentalVMOptions", "-XX:+AggressiveOpts", "-XX:+DoEscapeAnalysis", "-XX:+UseCompressedOops",
+            "-XX:MaxGCPauseMillis=10", "-XX:GCPauseIntervalMillis=100", "-XX:+UseAdaptiveSizePolicy", "-XX:ParallelGCThreads=2", "-XX:UseSSE=3"));
 
     private LinkedList<BaseServerObject> serverQueue;
     private LinkedList<BaseProxyObject> proxyQueue;
 
-    private Map<Integer, Integer> recentlyUsedPorts;
-
     private final ScheduledExecutorService scheduler;
 
     private boolean startingServer = false;
@@ -39,9 +44,9 @@ public class BaseInstanceManager {
     public BaseInstanceManager(long millis) {
         serverQueue = new LinkedList<>();
         proxyQueue = new LinkedList<>();
-        recentlyUsedPorts = new HashMap<>();
         scheduler = Executors.newScheduledThreadPool(1);
         scheduler.scheduleAtFixedRate(this::everySecond, millis, millis, TimeUnit.MILLISECONDS);
+        scheduler.scheduleAtFixedRate(this::reconcilePorts, PORT_RECONCILE_SECONDS, PORT_RECONCILE_SECONDS, TimeUnit.SECONDS);
     }
 
     public void updateResources() {
@@ -54,7 +59,23 @@ public class BaseInstanceManager {
                                 .set("ready", ready)
                                 .set("availableRam", freeRam)
                                 .set("maxRam", TimoCloudBase.getInstance().getFileManager().getConfig().get("ram"))
-                                .set("cpu", cpu)));
+                                .set("cpu", cpu)
+                                .set("instances", TimoCloudBase.getInstance().getResourceManager().getCompactInstanceUsages())));
+    }
+
+    /**
+     * @return Ids of all servers and proxies running on this base, or null if the base cannot tell because it neither supervises
+     * its instances nor can find their processes
+     */
+    public List<String> getRunningInstances() {
+        boolean supervised = TimoCloudBase.getInstance().getProcessManager().getProcessMode() == BaseProcessManager.ProcessMode.NATIVE;
+        if (!supervised && !TimoCloudBase.getInstance().getResourceManager().isDiscoveryAvailable()) return null;
+        Set<String> ids = new LinkedHashSet<>();
+        for (SupervisedProcess process : TimoCloudBase.getInstance().getProcessManager().getProcesses()) {
+            if (process.getProcess().isAlive()) ids.add(process.getId());
+        }
+        for (InstanceUsage usage : TimoCloudBase.getInstance().getResourceManager().getInstanceUsages()) ids.add(usage.getId());
+        return new ArrayList<>(ids);
     }
 
     public void addToServerQueue(BaseServerObject server) {
@@ -67,13 +88,20 @@ public class BaseInstanceManager {
 
     private void everySecond() {
         try {
-            countDownPorts();
             startNext();
         } catch (Exception e) {
             TimoCloudBase.getInstance().severe(e);
         }
     }
 
+    private void reconcilePorts() {
+        try {
+            TimoCloudBase.getInstance().getPortManager().reconcile();
+        } catch (Exception e) {
+            TimoCloudBase.getInstance().severe(e);
+        }
+    }
+
     public void startNext() {
         if (isDownloadingTemplate()) return;
         startNextServer();
@@ -133,6 +161,7 @@ public class BaseInstanceManager {
     private void startServer(BaseServerObject server) {
         TimoCloudBase.getInstance().info("Starting server " + server.getName() + "...");
         double millisBefore = System.currentTimeMillis();
+        ProfilingSpan stage = Profiling.instanceStartStage(server.getName(), "TEMPLATE_CHECK");
         try {
             File templateDirectory = new File((server.isStatic() ? TimoCloudBase.getInstance().getFileManager().getServerStaticDirectory() : TimoCloudBase.getInstance().getFileManager().getServerTemplatesDirectory()), server.getGroup());
             if (!templateDirectory.exists()) templateDirectory.mkdirs();
@@ -157,6 +186,18 @@ public class BaseInstanceManager {
             List<String> mapDifferences = (!server.isStatic() && server.getMapHash() != null) ? HashUtil.getDifferentFiles("", server.getMapHash(), mapHashes) : new ArrayList<>();
             List<String> globalDifferences = HashUtil.getDifferentFiles("", server.getGlobalHash(), globalHashes);
 
+            BaseTemplateManager templateManager = TimoCloudBase.getInstance().getTemplateManager();
+            if (!server.isStatic()) {
+                templateManager.getBlobStore().addAll(templateDirectory, templateHashes);
+                templateDifferences = templateManager.resolveDifferences(templateDirectory, server.getTemplateHash(), templateDifferences);
+            }
+            if (mapHashes != null) {
+                templateManager.getBlobStore().addAll(mapDirectory, mapHashes);
+                mapDifferences = templateManager.resolveDifferences(mapDirectory, server.getMapHash(), mapDifferences);
+            }
+            templateManager.getBlobStore().addAll(TimoCloudBase.getInstance().getFileManager().getServerGlobalDirectory(), globalHashes);
+            globalDifferences = templateManager.resolveDifferences(TimoCloudBase.getInstance().getFileManager().getServerGlobalDirectory(), server.getGlobalHash(), globalDifferences);
+
             if (templateDifferences.size() > 0 || mapDifferences.size() > 0 || globalDifferences.size() > 0) {
                 TimoCloudBase.getInstance().info("New server template updates found! Stopping and downloading updates...");
                 TimoCloudBase.getInstance().getSocketMessageManager().sendMessage(Message.create()
@@ -168,11 +209,16 @@ public class BaseInstanceManager {
                                 Message.create()
                                         .setIfCondition("templateDifferences", templateDifferences, templateDifferences.size() > 0)
                                         .setIfCondition("mapDifferences", mapDifferences, mapDifferences.size() > 0)
-                                        .setIfCondition("globalDifferences", globalDifferences, globalDifferences.size() > 0)));
+                                        .setIfCondition("globalDifferences", globalDifferences, globalDifferences.size() > 0))
+                        .set("withoutPeers", TimoCloudBase.getInstance().getPeerManager().pollFailedHashes())
+                        .set("unreachablePeers", TimoCloudBase.getInstance().getPeerManager().pollUnreachablePeers()));
                 setDownloadingTemplate(true);
+                stage.close();
                 return;
             }
 
+            stage.close();
+            stage = Profiling.instanceStartStage(server.getName(), "COPY");
             File temporaryDirectory = server.isStatic() ? templateDirectory : new File(TimoCloudBase.getInstance().getFileManager().getServerTemporaryDirectory(), server.getId());
             if (!server.isStatic()) {
                 if (temporaryDirectory.exists()) deleteDirectory(temporaryDirectory);
@@ -212,46 +258,41 @@ public class BaseInstanceManager {
                 throw new ServerStartException("Could not copy TimoCloud.jar into template");
             }
 
-            Integer port = getFreePort(41000);
+            Integer port = TimoCloudBase.getInstance().getPortManager().allocateServerPort(server.getId());
             if (port == null) {
-                TimoCloudBase.getInstance().severe("Error while starting server " + server.getName() + ": No free port found. Please report this!");
+                TimoCloudBase.getInstance().severe("Error while starting server " + server.getName() + ": No free port found. Please check 'server-port-range' in your config.");
                 throw new ServerStartException("No free port found");
             }
-            blockPort(port);
 
             File serverProperties = new File(temporaryDirectory, "server.properties");
             setProperty(serverProperties, "online-mode", "false");
             setProperty(serverProperties, "server-name", server.getName());
 
+            stage.close();
+            stage = Profiling.instanceStartStage(server.getName(), "LAUNCH");
             double millisNow = System.currentTimeMillis();
             TimoCloudBase.getInstance().info("Successfully prepared starting server " + server.getName() + " in " + (millisNow - millisBefore) / 1000 + " seconds.");
 
 
-            ProcessBuilder pb = new ProcessBuilder(
-                    "/bin/sh", "-c",
-                    "screen -mdS " + server.getName() +
-                            " java -server " +
-                            " -Xmx" + server.getRam() + "M" +
-                            " -Dfile.encoding=UTF8 -XX:+UseG1GC -XX:+UnlockExperimentalVMOptions -XX:+AggressiveOpts -XX:+DoEscapeAnalysis -XX:+UseCompressedOops -XX:MaxGCPauseMillis=10 -XX:GCPauseIntervalMillis=100 -XX:+UseAdaptiveSizePolicy -XX:ParallelGCThreads=2 -XX:UseSSE=3 " +
-                            " -Dcom.mojang.eula.agree=true" +
-                            " -Dtimocloud-servername=" + server.getName() +
-                            " -Dtimocloud-serverid=" + server.getId() +
-                            " -Dtimocloud-corehost=" + TimoCloudBase.getInstance().getCoreSocketIP() + ":" + TimoCloudBase.getInstance().getCoreSocketPort() +
-                            " -Dtimocloud-randommap=" + randomMap +
-                            " -Dtimocloud-mapname=" + mapName +
-                            " -Dtimocloud-static=" + server.isStatic() +
-                            " -Dtimocloud-templatedirectory=" + templateDirectory.getAbsolutePath() +
-                            " -Dtimocloud-temporarydirectory=" + temporaryDirectory.getAbsolutePath() +
-                            " -jar spigot.jar -o false -h 0.0.0.0 -p " + port
-            ).directory(temporaryDirectory);
+            List<String> command = new ArrayList<>(Arrays.asList("java", "-server", "-Xmx" + server.getRam() + "M"));
+            command.addAll(JVM_FLAGS);
+            command.addAll(Arrays.asList(
+                    "-Dcom.mojang.eula.agree=true",
+                    "-Dtimocloud-servername=" + server.getName(),
+                    "-Dtimocloud-serverid=" + server.getId(),
+                    "-Dtimocloud-token=" + server.getToken(),
+                    "-Dtimocloud-corehost=" + TimoCloudBase.getInstance().getCoreSocketIP() + ":" + TimoCloudBase.getInstance().getCoreSocketPort(),
+                    "-Dtimocloud-randommap=" + randomMap,
+                    "-Dtimocloud-mapname=" + mapName,
+                    "-Dtimocloud-static=" + server.isStatic(),
+                    "-Dtimocloud-templatedirectory=" + templateDirectory.getAbsolutePath(),
+                    "-Dtimocloud-temporarydirectory=" + temporaryDirectory.getAbsolutePath(),
+                    "-jar", "spigot.jar", "-o", "false", "-h", "0.0.0.0", "-p", String.valueOf(port)));
             try {
-                Process p = pb.start();
-                BufferedReader reader = new BufferedReader(new InputStreamReader(p.getInputStream()));
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    System.out.println(line);
-                }
-                TimoCloudBase.getInstance().info("Successfully started screen session " + server.getName() + ".");
+                TimoCloudBase.getInstance().getProcessManager().launch(server.getId(), server.getName(), SupervisedProcess.InstanceType.SERVER, command, temporaryDirectory);
+                stage.close();
+                TimoCloudBase.getInstance().getResourceManager().requestDiscovery();
+                TimoCloudBase.getInstance().info("Successfully started " + formatProcessMode() + " " + server.getName() + ".");
             } catch (Exception e) {
                 TimoCloudBase.getInstance().severe("Error while starting server " + server.getName() + ":");
                 TimoCloudBase.getInstance().severe(e);
@@ -261,10 +302,12 @@ public class BaseInstanceManager {
             TimoCloudBase.getInstance().getSocketMessageManager().sendMessage(Message.create()
                     .setType("SERVER_STARTED")
                     .setTarget(server.getId())
-                    .set("port", port));
+                    .set("port", port)
+                    .set("supervised", TimoCloudBase.getInstance().getProcessManager().isSupervised(server.getId())));
 
         } catch (Exception e) {
             TimoCloudBase.getInstance().severe("Error while starting server " + server.getName() + ": " + e.getMessage());
+            TimoCloudBase.getInstance().getPortManager().releaseServerPort(server.getId());
             TimoCloudBase.getInstance().getSocketMessageManager().sendMessage(Message.create().setType("SERVER_NOT_STARTED").setTarget(server.getId()));
         }
     }
@@ -273,6 +316,7 @@ public class BaseInstanceManager {
     private void startProxy(BaseProxyObject proxy) {
         TimoCloudBase.getInstance().info("Starting proxy " + proxy.getName() + "...");
         double millisBefore = System.currentTimeMillis();
+        ProfilingSpan stage = Profiling.instanceStartStage(proxy.getName(), "TEMPLATE_CHECK");
         try {
             File templateDirectory = new File((proxy.isStatic() ? TimoCloudBase.getInstance().getFileManager().getProxyStaticDirectory() : TimoCloudBase.getInstance().getFileManager().getProxyTemplatesDirectory()), proxy.getGroup());
             if (!templateDirectory.exists()) templateDirectory.mkdirs();
@@ -290,6 +334,14 @@ public class BaseInstanceManager {
             List<String> templateDifferences = proxy.isStatic() ? new ArrayList<>() : HashUtil.getDifferentFiles("", proxy.getTemplateHash(), templateHashes);
             List<String> gloalDifferences = HashUtil.getDifferentFiles("", proxy.getGlobalHash(), globalHashes);
 
+            BaseTemplateManager templateManager = TimoCloudBase.getInstance().getTemplateManager();
+            if (!proxy.isStatic()) {
+                templateManager.getBlobStore().addAll(templateDirectory, templateHashes);
+                templateDifferences = templateManager.resolveDifferences(templateDirectory, proxy.getTemplateHash(), templateDifferences);
+            }
+            templateManager.getBlobStore().addAll(TimoCloudBase.getInstance().getFileManager().getProxyGlobalDirectory(), globalHashes);
+            gloalDifferences = templateManager.resolveDifferences(TimoCloudBase.getInstance().getFileManager().getProxyGlobalDirectory(), proxy.getGlobalHash(), gloalDifferences);
+
             if (templateDifferences.size() > 0 || gloalDifferences.size() > 0) {
                 TimoCloudBase.getInstance().info("New proxy template updates found! Stopping and downloading updates...");
                 TimoCloudBase.getInstance().getSocketMessageManager().sendMessage(
@@ -299,11 +351,16 @@ public class BaseInstanceManager {
                                 .setIfCondition("template", templateDirectory.getName(), templateDifferences.size() > 0)
                                 .set("differences", Message.create()
                                         .setIfCondition("templateDifferences", templateDifferences, templateDifferences.size() > 0)
-                                        .setIfCondition("globalDifferences", gloalDifferences, gloalDifferences.size() > 0)));
+                                        .setIfCondition("globalDifferences", gloalDifferences, gloalDifferences.size() > 0))
+                                .set("withoutPeers", TimoCloudBase.getInstance().getPeerManager().pollFailedHashes())
+                                .set("unreachablePeers", TimoCloudBase.getInstance().getPeerManager().pollUnreachablePeers()));
                 setDownloadingTemplate(true);
+                stage.close();
                 return;
             }
 
+            stage.close();
+            stage = Profiling.instanceStartStage(proxy.getName(), "COPY");
             File temporaryDirectory = proxy.isStatic() ? templateDirectory : new File(TimoCloudBase.getInstance().getFileManager().getProxyTemporaryDirectory(), proxy.getId());
             if (!proxy.isStatic()) {
                 if (temporaryDirectory.exists()) deleteDirectory(temporaryDirectory);
@@ -336,12 +393,11 @@ public class BaseInstanceManager {
                 throw new ProxyStartException("Could not copy TimoCloud.jar into template");
             }
 
-            Integer port = getFreePort(40000);
+            Integer port = TimoCloudBase.getInstance().getPortManager().allocateProxyPort(proxy.getId());
             if (port == null) {
-                TimoCloudBase.getInstance().severe("Error while starting proxy " + proxy.getName() + ": No free port found. Please report this!");
+                TimoCloudBase.getInstance().severe("Error while starting proxy " + proxy.getName() + ": No free port found. Please check 'proxy-port-range' in your config.");
                 throw new ProxyStartException("No free port found");
             }
-            blockPort(port);
 
             File configFile = new File(temporaryDirectory, "config.yml");
             configFile.createNewFile();
@@ -354,6 +410,7 @@ public class BaseInstanceManager {
             Map<String, Object> map = listeners.size() == 0 ? new LinkedHashMap<>() : listeners.get(0);
             map.put("motd", proxy.getMotd());
             if (proxy.isStatic() && map.containsKey("host")) {
+                TimoCloudBase.getInstance().getPortManager().releaseProxyPort(proxy.getId()); // Static proxies keep their configured port
                 port = Integer.parseInt(((String) map.get("host")).split(":")[1]);
             }
             map.put("host", "0.0.0.0:" + port);
@@ -366,29 +423,30 @@ public class BaseInstanceManager {
             dumperOptions.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
             new Yaml(dumperOptions).dump(config, writer);
 
+            stage.close();
+            stage = Profiling.instanceStartStage(proxy.getName(), "LAUNCH");
             double millisNow = System.currentTimeMillis();
             TimoCloudBase.getInstance().info("Successfully prepared starting proxy " + proxy.getName() + " in " + (millisNow - millisBefore) / 1000 + " seconds.");
 
 
-            ProcessBuilder pb = new ProcessBuilder(
-                    "/bin/sh", "-c",
-                    "screen -mdS " + proxy.getName() +
-                            " java -server " +
-                            " -Xmx" + proxy.getRam() + "M" +
-                            " -Dfile.encoding=UTF8 -XX:+UseG1GC -XX:+UnlockExperimentalVMOptions -XX:+AggressiveOpts -XX:+DoEscapeAnalysis -XX:+UseCompressedOops -XX:MaxGCPauseMillis=10 -XX:GCPauseIntervalMillis=100 -XX:+UseAdaptiveSizePolicy -XX:ParallelGCThreads=2 -XX:UseSSE=3 " +
-                            //" -agentlib:jdwp=transport=dt_socket,server=y,suspend=n,address=5005" +
-                            " -Dcom.mojang.eula.agree=true" +
-                            " -Dtimocloud-proxyname=" + proxy.getName() +
-                            " -Dtimocloud-proxyid=" + proxy.getId() +
-                            " -Dtimocloud-corehost=" + TimoCloudBase.getInstance().getCoreSocketIP() + ":" + TimoCloudBase.getInstance().getCoreSocketPort() +
-                            " -Dtimocloud-static=" + proxy.isStatic() +
-                            " -Dtimocloud-templatedirectory=" + templateDirectory.getAbsolutePath() +
-                            " -Dtimocloud-temporarydirectory=" + temporaryDirectory.getAbsolutePath() +
-                            " -jar BungeeCord.jar"
-            ).directory(temporaryDirectory);
+            List<String> command = new ArrayList<>(Arrays.asList("java", "-server", "-Xmx" + proxy.getRam() + "M"));
+            command.addAll(JVM_FLAGS);
+            //command.add("-agentlib:jdwp=transport=dt_socket,server=y,suspend=n,address=5005");
+            command.addAll(Arrays.asList(
+                    "-Dcom.mojang.eula.agree=true",
+                    "-Dtimocloud-proxyname=" + proxy.getName(),
+                    "-Dtimocloud-proxyid=" + proxy.getId(),
+                    "-Dtimocloud-token=" + proxy.getToken(),
+                    "-Dtimocloud-corehost=" + TimoCloudBase.getInstance().getCoreSocketIP() + ":" + TimoCloudBase.getInstance().getCoreSocketPort(),
+                    "-Dtimocloud-static=" + proxy.isStatic(),
+                    "-Dtimocloud-templatedirectory=" + templateDirectory.getAbsolutePath(),
+                    "-Dtimocloud-temporarydirectory=" + temporaryDirectory.getAbsolutePath(),
+                    "-jar", "BungeeCord.jar"));
             try {
-                pb.start();
-                TimoCloudBase.getInstance().info("Successfully started screen session " + proxy.getName() + ".");
+                TimoCloudBase.getInstance().getProcessManager().launch(proxy.getId(), proxy.getName(), SupervisedProcess.InstanceType.PROXY, command, temporaryDirectory);
+                stage.close();
+                TimoCloudBase.getInstance().getResourceManager().requestDiscovery();
+                TimoCloudBase.getInstance().info("Successfully started " + formatProcessMode() + " " + proxy.getName() + ".");
             } catch (Exception e) {
                 TimoCloudBase.getInstance().severe("Error while starting proxy " + proxy.getName() + ":");
                 TimoCloudBase.getInstance().severe(e);
@@ -397,49 +455,18 @@ public class BaseInstanceManager {
             TimoCloudBase.getInstance().getSocketMessageManager().sendMessage(Message.create()
                     .setType("PROXY_STARTED")
                     .setTarget(proxy.getId())
-                    .set("port", port));
+                    .set("port", port)
+                    .set("supervised", TimoCloudBase.getInstance().getProcessManager().isSupervised(proxy.getId())));
 
         } catch (Exception e) {
             TimoCloudBase.getInstance().severe("Error while starting proxy " + proxy.getName() + ": " + e.getMessage());
+            TimoCloudBase.getInstance().getPortManager().releaseProxyPort(proxy.getId());
             TimoCloudBase.getInstance().getSocketMessageManager().sendMessage(Message.create().setType("PROXY_NOT_STARTED").setTarget(proxy.getId()));
         }
     }
 
-    private Integer getFreePort(int offset) {
-        for (int p = offset; p <= offset + 1000; p++) {
-            if (portIsFree(p)) return p;
-        }
-        return null;
-    }
-
-    private void blockPort(int port) {
-        recentlyUsedPorts.put(port, 60);
-    }
-
-    private boolean portIsFree(int port) {
-        if (recentlyUsedPorts.containsKey(port)) return false;
-        ServerSocket serverSocket = null;
-        try {
-            serverSocket = new ServerSocket(port);
-            return true;
-        } catch (Exception e) {
-            return false;
-        } finally {
-            try {
-                if (serverSocket != null) serverSocket.close();
-            } catch (Exception e) {
-                TimoCloudBase.getInstance().severe(e);
-            }
-        }
-    }
-
-    private void countDownPorts() {
-        List<Integer> remove = new ArrayList<>();
-        for (Integer port : recentlyUsedPorts.keySet()) {
-            recentlyUsedPorts.put(port, recentlyUsedPorts.get(port) - 1);
-            if (recentlyUsedPorts.get(port) <= 0) remove.add(port);
-        }
-        for (Integer port : remove) recentlyUsedPorts.remove(port);
+    private String formatProcessMode() {
+        return TimoCloudBase.getInstance().getProcessManager().getProcessMode() == BaseProcessManager.ProcessMode.NATIVE ? "process" : "screen session";
     }
 
     private void setProperty(File file, String property, String value) {
@@ -463,6 +490,8 @@ public class BaseInstanceManager {
 
 
     public void onServerStopped(String id) {
+        TimoCloudBase.getInstance().getPortManager().releaseServerPort(id);
+        TimoCloudBase.getInstance().getResourceManager().forgetInstance(id);
         File directory = new File(TimoCloudBase.getInstance().getFileManager().getServerTemporaryDirectory(), id);
         /*
         if ((Boolean) TimoCloudBase.getInstance().getFileManager().getConfig().get("save-logs")) {
@@ -484,6 +513,8 @@ public class BaseInstanceManager {
     }
 
     public void onProxyStopped(String id) {
+        TimoCloudBase.getInstance().getPortManager().releaseProxyPort(id);
+        TimoCloudBase.getInstance().getResourceManager().forgetInstance(id);
         File directory = new File(TimoCloudBase.getInstance().getFileManager().getProxyTemporaryDirectory(), id);
         /*
         if ((Boolean) TimoCloudBase.getInstance().getFileManager().getConfig().get("save-logs")) {
@@ -0,0 +1,224 @@
+package cloud.timo.TimoCloud.base.managers;
+
+import cloud.timo.TimoCloud.base.sockets.BasePeerClient;
+import cloud.timo.TimoCloud.base.sockets.BasePeerServer;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lets bases download template files from each other, so the core's upload bandwidth does not limit how fast a template reaches
+ * all bases. The core tells a base which peers have which blobs. Blobs held by the fewest peers are fetched first, so they
+ * spread before those peers become unavailable, and every peer serves only a limited number of downloads at a time.
+ * Blobs which could not be downloaded from any peer are remembered, so the next template request asks the core for them instead.
+ * A peer which cannot be connected to is not tried again during the same download and is reported to the core as well.
+ */
+public class BasePeerManager {
+
+    private final BaseBlobStore blobStore;
+    private final int connectionsPerPeer;
+    private final BasePeerServer server;
+    private final BasePeerClient client;
+    private final Set<String> failedHashes;
+    private final Set<String> unreachablePeers;
+    private int port = -1;
+
+    public BasePeerManager(BaseBlobStore blobStore, int connectionsPerPeer) {
+        this.blobStore = blobStore;
+        this.connectionsPerPeer = connectionsPerPeer;
+        this.server = new BasePeerServer(blobStore);
+        this.client = new BasePeerClient();
+        this.failedHashes = ConcurrentHashMap.newKeySet();
+        this.unreachablePeers = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Starts serving blobs to other bases
+     *
+     * @param port The port to listen on, 0 for any free port or -1 to not serve blobs at all. Other bases have to be able to
+     *             connect to it, so it should be a fixed port which is open in the firewall. If it is already in use, e.g. by
+     *             another base on the same machine, any free port is used instead.
+     */
+    public void start(int port) throws Exception {
+        if (port < 0) return;
+        try {
+            this.port = server.start(port);
+        } catch (Exception e) {
+            if (port == 0) throw e;
+            server.stop();
+            this.port = server.start(0);
+        }
+    }
+
+    /**
+     * @param token The token the core has issued to this base, other bases have to present it to download blobs
+     */
+    public void setToken(String token) {
+        server.setToken(token);
+    }
+
+    public void stop() {
+        server.stop();
+        client.shutdown();
+    }
+
+    /**
+     * @return The port blobs are served on, -1 if they are not served
+     */
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * Downloads blobs from peers and creates them as files in the given directory
+     *
+     * @param files Entries with the file's "path" relative to the directory, its "hash" and the "peers" which have it, each with
+     *              an "address", a "port" and the peer's "token"
+     * @return A future which is completed once every file has either been created or failed on all of its peers
+     */
+    public CompletableFuture<Void> download(File directory, List<?> files) {
+        return new Download(directory, files).start();
+    }
+
+    /**
+     * @return The hashes of all blobs which could not be downloaded from peers since the last call
+     */
+    public List<String> pollFailedHashes() {
+        List<String> hashes = new ArrayList<>();
+        for (Iterator<String> iterator = failedHashes.iterator(); iterator.hasNext(); ) {
+            hashes.add(iterator.next());
+            iterator.remove();
+        }
+        return hashes;
+    }
+
+    /**
+     * @return The peers, as "address:port", which could not be connected to since the last call
+     */
+    public List<String> pollUnreachablePeers() {
+        List<String> peers = new ArrayList<>();
+        for (Iterator<String> iterator = unreachablePeers.iterator(); iterator.hasNext(); ) {
+            peers.add(iterator.next());
+            iterator.remove();
+        }
+        return peers;
+    }
+
+    private static String getKey(Map<?, ?> peer) {
+        return peer.get("address") + ":" + peer.get("port");
+    }
+
+    private class Download {
+
+        private final File directory;
+        private final LinkedList<Task> pending = new LinkedList<>();
+        private final Map<String, Integer> activeDownloads = new HashMap<>();
+        private final Set<String> deadPeers = new HashSet<>();
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+        private int remaining;
+
+        private Download(File directory, List<?> files) {
+            this.directory = directory;
+            for (Object file : files) pending.add(new Task((Map<?, ?>) file));
+            pending.sort(Comparator.comparingInt(task -> task.peers.size())); // Rarest first
+            this.remaining = pending.size();
+        }
+
+        private CompletableFuture<Void> start() {
+            if (remaining == 0) result.complete(null);
+            else schedule();
+            return result;
+        }
+
+        /**
+         * Starts as many downloads as the per-peer limit allows
+         */
+        private synchronized void schedule() {
+            for (Iterator<Task> iterator = pending.iterator(); iterator.hasNext(); ) {
+                Task task = iterator.next();
+                if (blobStore.contains(task.hash)) {
+                    iterator.remove();
+                    finish(task, materialize(task));
+                    continue;
+                }
+                task.peers.removeIf(peer -> deadPeers.contains(getKey(peer)));
+                if (task.peers.isEmpty()) {
+                    iterator.remove();
+                    finish(task, false);
+                    continue;
+                }
+                Map<?, ?> peer = task.peers.stream().filter(candidate -> activeDownloads.getOrDefault(getKey(candidate), 0) < connectionsPerPeer).findFirst().orElse(null);
+                if (peer == null) continue;
+                iterator.remove();
+                task.peers.remove(peer);
+                activeDownloads.merge(getKey(peer), 1, Integer::sum);
+                fetch(task, peer);
+            }
+        }
+
+        private void fetch(Task task, Map<?, ?> peer) {
+            File temporary;
+            try {
+                temporary = blobStore.createTemporaryFile();
+            } catch (IOException e) {
+                onFetched(task, peer, null, true);
+                return;
+            }
+            client.download((String) peer.get("address"), ((Number) peer.get("port")).intValue(), (String) peer.get("token"), task.hash, temporary).whenComplete((ignored, e) -> {
+                if (e != null) {
+                    temporary.delete();
+                    onFetched(task, peer, null, !(e instanceof ConnectException));
+                    return;
+                }
+                onFetched(task, peer, temporary, true);
+            });
+        }
+
+        private synchronized void onFetched(Task task, Map<?, ?> peer, File file, boolean reachable) {
+            activeDownloads.merge(getKey(peer), -1, Integer::sum);
+            if (!reachable && deadPeers.add(getKey(peer))) unreachablePeers.add(getKey(peer));
+            if (file != null) {
+                try {
+                    blobStore.put(task.hash, file);
+                } catch (IOException e) {
+                    file.delete();
+                }
+            }
+            if (blobStore.contains(task.hash)) finish(task, materialize(task));
+            else pending.addFirst(task); // Try the next peer
+            schedule();
+        }
+
+        private boolean materialize(Task task) {
+            if (!blobStore.contains(task.hash)) return false;
+            try {
+                blobStore.materialize(task.hash, new File(directory, task.path));
+                return true;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        private void finish(Task task, boolean success) {
+            if (!success) failedHashes.add(task.hash);
+            if (--remaining == 0) result.complete(null);
+        }
+    }
+
+    private static class Task {
+
+        private final String path;
+        private final String hash;
+        private final List<Map<?, ?>> peers = new ArrayList<>();
+
+        private Task(Map<?, ?> file) {
+            this.path = (String) file.get("path");
+            this.hash = (String) file.get("hash");
+            for (Object peer : (List<?>) file.get("peers")) peers.add((Map<?, ?>) peer);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package cloud.timo.TimoCloud.base.managers;
+
+import cloud.timo.TimoCloud.base.TimoCloudBase;
+import cloud.timo.TimoCloud.lib.utils.network.PortAllocator;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.net.ServerSocket;
+import java.util.HashSet;
+import java.util.Set;
+
+public class BasePortManager {
+
+    private static final String[] PROC_NET_FILES = {"/proc/net/tcp", "/proc/net/tcp6"};
+    private static final String TCP_LISTEN = "0A";
+
+    private final PortAllocator serverPorts;
+    private final PortAllocator proxyPorts;
+    private final boolean procAvailable;
+
+    public BasePortManager() {
+        this.serverPorts = PortAllocator.fromString((String) TimoCloudBase.getInstance().getFileManager().getConfig().get("server-port-range"));
+        this.proxyPorts = PortAllocator.fromString((String) TimoCloudBase.getInstance().getFileManager().getConfig().get("proxy-port-range"));
+        this.procAvailable = new File(PROC_NET_FILES[0]).exists();
+        reconcile();
+    }
+
+    /**
+     * Leases a free port to a server
+     *
+     * @return A port or null if no free port is left
+     */
+    public Integer allocateServerPort(String id) {
+        return allocate(serverPorts, id);
+    }
+
+    /**
+     * Leases a free port to a proxy
+     *
+     * @return A port or null if no free port is left
+     */
+    public Integer allocateProxyPort(String id) {
+        return allocate(proxyPorts, id);
+    }
+
+    public void releaseServerPort(String id) {
+        serverPorts.release(id);
+    }
+
+    public void releaseProxyPort(String id) {
+        proxyPorts.release(id);
+    }
+
+    private Integer allocate(PortAllocator allocator, String id) {
+        if (procAvailable) return allocator.allocate(id);
+        // Without /proc we cannot see other processes' sockets, so we have to verify the chosen port once
+        for (int i = 0; i <= allocator.getTo() - allocator.getFrom(); i++) {
+            Integer port = allocator.allocate(id);
+            if (port == null || canBind(port)) return port;
+            allocator.release(id);
+            allocator.markListening(port);
+        }
+        return null;
+    }
+
+    /**
+     * Reads all listening TCP sockets of this machine at once and marks their ports as used
+     */
+    public void reconcile() {
+        if (!procAvailable) return;
+        Set<Integer> listening = new HashSet<>();
+        for (String fileName : PROC_NET_FILES) {
+            File file = new File(fileName);
+            if (!file.exists()) continue;
+            try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+                reader.readLine(); // Header
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    Integer port = parseListeningPort(line);
+                    if (port != null) listening.add(port);
+                }
+            } catch (Exception e) {
+                TimoCloudBase.getInstance().severe("Error while reading listening ports from " + fileName + ": ");
+                TimoCloudBase.getInstance().severe(e);
+            }
+        }
+        serverPorts.reconcile(listening);
+        proxyPorts.reconcile(listening);
+    }
+
+    /**
+     * Parses a line of /proc/net/tcp, e.g. "0: 00000000:A028 00000000:0000 0A ..."
+     *
+     * @return The local port if the socket is listening, otherwise null
+     */
+    static Integer parseListeningPort(String line) {
+        String[] columns = line.trim().split("\\s+");
+        if (columns.length < 4 || !columns[3].equals(TCP_LISTEN)) return null;
+        int separator = columns[1].lastIndexOf(':');
+        if (separator < 0) return null;
+        try {
+            return Integer.parseInt(columns[1].substring(separator + 1), 16);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static boolean canBind(int port) {
+        try (ServerSocket socket = new ServerSocket(port)) {
+            return socket.isBound();
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    public PortAllocator getServerPorts() {
+        return serverPorts;
+    }
+
+    public PortAllocator getProxyPorts() {
+        return proxyPorts;
+    }
+}
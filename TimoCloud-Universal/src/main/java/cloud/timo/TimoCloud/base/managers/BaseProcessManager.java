@@ -0,0 +1,181 @@
+package cloud.timo.TimoCloud.base.managers;
+
+import cloud.timo.TimoCloud.base.TimoCloudBase;
+import cloud.timo.TimoCloud.base.objects.SupervisedProcess;
+import cloud.timo.TimoCloud.lib.messages.Message;
+import cloud.timo.TimoCloud.lib.utils.EnumUtil;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Starts servers and proxies either inside a screen session or directly as child processes of the base.
+ * Child processes are supervised: their output is kept in a bounded buffer and their exit is reported to the core immediately.
+ */
+public class BaseProcessManager {
+
+    private static final int EXIT_REPORT_LINES = 20;
+
+    private final Map<String, SupervisedProcess> processes;
+
+    public BaseProcessManager() {
+        this.processes = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Launches an instance with the configured process mode
+     *
+     * @param command The java command line, without any screen wrapper
+     */
+    public void launch(String id, String name, SupervisedProcess.InstanceType type, List<String> command, File directory) throws IOException {
+        if (getProcessMode() == ProcessMode.NATIVE) {
+            startSupervised(id, name, type, command, directory);
+        } else {
+            startScreen(name, command, directory);
+        }
+    }
+
+    private void startScreen(String name, List<String> command, File directory) throws IOException {
+        List<String> screenCommand = new ArrayList<>();
+        screenCommand.add("screen");
+        screenCommand.add("-mdS");
+        screenCommand.add(name);
+        screenCommand.addAll(command);
+        Process process = new ProcessBuilder("/bin/sh", "-c", String.join(" ", screenCommand)).directory(directory).start();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            System.out.println(line);
+        }
+    }
+
+    private void startSupervised(String id, String name, SupervisedProcess.InstanceType type, List<String> command, File directory) throws IOException {
+        Process process = new ProcessBuilder(command)
+                .directory(directory)
+                .redirectErrorStream(true)
+                .start();
+        SupervisedProcess supervised = new SupervisedProcess(id, name, type, process, getConsoleBufferLines());
+        processes.put(id, supervised);
+        // The output has to be drained anyway, so the same thread notices when the process exits (end of stream)
+        Thread thread = new Thread(() -> supervise(supervised), "TimoCloud-Process-" + name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void supervise(SupervisedProcess supervised) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(supervised.getProcess().getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                supervised.getConsole().add(line);
+                if (supervised.isAttached()) sendConsoleOutput(supervised.getId(), Collections.singletonList(line), false);
+            }
+        } catch (IOException ignored) {
+            // Stream closed because the process has been destroyed
+        }
+        int exitCode;
+        try {
+            exitCode = supervised.getProcess().waitFor();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        processes.remove(supervised.getId(), supervised);
+        TimoCloudBase.getInstance().info((supervised.getType() == SupervisedProcess.InstanceType.SERVER ? "Server " : "Proxy ") + supervised.getName() + " exited with code " + exitCode + ".");
+        TimoCloudBase.getInstance().getSocketMessageManager().sendMessage(Message.create()
+                .setType("PROCESS_EXITED")
+                .setTarget(supervised.getId())
+                .set("exitCode", exitCode)
+                .set("lastLines", supervised.getConsole().tail(EXIT_REPORT_LINES)));
+    }
+
+    /**
+     * Writes a command into the console of a supervised instance
+     *
+     * @return Whether the instance is supervised by this base
+     */
+    public boolean sendCommand(String id, String command) {
+        SupervisedProcess supervised = processes.get(id);
+        if (supervised == null) return false;
+        try {
+            supervised.sendCommand(command);
+        } catch (IOException e) {
+            TimoCloudBase.getInstance().severe("Error while sending command to " + supervised.getName() + ": ");
+            TimoCloudBase.getInstance().severe(e);
+        }
+        return true;
+    }
+
+    /**
+     * Sends the last lines of an instance's console to the core
+     */
+    public void sendConsole(String id, int lines) {
+        SupervisedProcess supervised = processes.get(id);
+        if (supervised == null) return;
+        sendConsoleOutput(id, supervised.getConsole().tail(lines), true);
+    }
+
+    /**
+     * While a console is attached, every new line is forwarded to the core
+     */
+    public void setAttached(String id, boolean attached) {
+        SupervisedProcess supervised = processes.get(id);
+        if (supervised == null) return;
+        supervised.setAttached(attached);
+    }
+
+    /**
+     * Kills an instance, e.g. because it did not register in time
+     */
+    public void kill(String id, String name) {
+        SupervisedProcess supervised = processes.get(id);
+        if (supervised != null) {
+            supervised.getProcess().destroyForcibly();
+            return;
+        }
+        if (getProcessMode() == ProcessMode.NATIVE) return;
+        try {
+            new ProcessBuilder("screen", "-S", name, "-X", "quit").start();
+        } catch (IOException e) {
+            TimoCloudBase.getInstance().severe("Error while killing screen session " + name + ": ");
+            TimoCloudBase.getInstance().severe(e);
+        }
+    }
+
+    public boolean isSupervised(String id) {
+        return processes.containsKey(id);
+    }
+
+    public Collection<SupervisedProcess> getProcesses() {
+        return processes.values();
+    }
+
+    private void sendConsoleOutput(String id, List<String> lines, boolean requested) {
+        TimoCloudBase.getInstance().getSocketMessageManager().sendMessage(Message.create()
+                .setType("CONSOLE_OUTPUT")
+                .setTarget(id)
+                .set("requested", requested)
+                .setData(lines));
+    }
+
+    public ProcessMode getProcessMode() {
+        ProcessMode mode = EnumUtil.valueOf(ProcessMode.class, (String) TimoCloudBase.getInstance().getFileManager().getConfig().get("process-mode"));
+        return mode == null ? ProcessMode.SCREEN : mode;
+    }
+
+    private int getConsoleBufferLines() {
+        return ((Number) TimoCloudBase.getInstance().getFileManager().getConfig().get("console-buffer-lines")).intValue();
+    }
+
+    public enum ProcessMode {
+        SCREEN, NATIVE
+    }
+}
@@ -2,25 +2,56 @@ package cloud.timo.TimoCloud.base.managers;
 
 
 import cloud.timo.TimoCloud.base.TimoCloudBase;
+import cloud.timo.TimoCloud.base.objects.InstanceUsage;
 import com.sun.management.OperatingSystemMXBean;
+import io.netty.util.concurrent.DefaultThreadFactory;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
+import java.io.IOException;
 import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class BaseResourceManager {
 
+    private static final String[] ID_PROPERTIES = {"-Dtimocloud-serverid=", "-Dtimocloud-proxyid="};
+    private static final int DEFAULT_TICKS_PER_SECOND = 100; // USER_HZ, which is 100 on practically every Linux system
+    private static final int DEFAULT_PAGE_SIZE = 4096;
+    private static final int DISCOVERY_INTERVAL = 30; // Samples between two full scans of /proc
+
     private OperatingSystemMXBean operatingSystemMXBean;
     private double lastCpuLoad;
+    private volatile long cachedMemory;
+
+    private final boolean procAvailable;
+    private final int ticksPerSecond;
+    private final long pageSize;
+    private final Map<String, InstanceUsage> usages;
+    private final ScheduledExecutorService sampler;
+    private volatile boolean discoveryRequested;
+    private int samplesSinceDiscovery;
 
     public BaseResourceManager() {
         this.operatingSystemMXBean = (OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
         this.lastCpuLoad = 0.0;
+        this.procAvailable = new File("/proc/self/stat").exists();
+        this.ticksPerSecond = procAvailable ? (int) getConf("CLK_TCK", DEFAULT_TICKS_PER_SECOND) : DEFAULT_TICKS_PER_SECOND;
+        this.pageSize = procAvailable ? getConf("PAGESIZE", DEFAULT_PAGE_SIZE) : DEFAULT_PAGE_SIZE;
+        this.usages = new ConcurrentHashMap<>();
+        this.discoveryRequested = true;
+        this.sampler = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("TimoCloud-ResourceSampler", true));
+        long interval = ((Number) TimoCloudBase.getInstance().getFileManager().getConfig().get("resource-sample-interval")).longValue();
+        sampler.scheduleAtFixedRate(this::sample, 0, interval, TimeUnit.MILLISECONDS);
     }
 
     public long getFreeMemory() {
-        return (getOperatingSystemMXBean().getFreePhysicalMemorySize())/(1024*1024) + getCache();
+        return (getOperatingSystemMXBean().getFreePhysicalMemorySize())/(1024*1024) + cachedMemory;
     }
 
     public double getCpuUsage() {
@@ -29,23 +60,196 @@ public class BaseResourceManager {
         return this.lastCpuLoad = cpuLoad;
     }
 
-    private long getCache() {
+    /**
+     * Makes the next sample look for new instance processes, e.g. because an instance has just been started
+     */
+    public void requestDiscovery() {
+        discoveryRequested = true;
+    }
+
+    public void forgetInstance(String id) {
+        usages.remove(id);
+    }
+
+    /**
+     * @return Instance id -> [cpu, ram, storage read, storage write], see {@link InstanceUsage#toCompactList()}
+     */
+    public Map<String, List<Number>> getCompactInstanceUsages() {
+        Map<String, List<Number>> compact = new HashMap<>();
+        for (InstanceUsage usage : usages.values()) compact.put(usage.getId(), usage.toCompactList());
+        return compact;
+    }
+
+    public Collection<InstanceUsage> getInstanceUsages() {
+        return usages.values();
+    }
+
+    /**
+     * @return Whether instance processes can be found in /proc, so {@link #getInstanceUsages()} contains all running instances
+     */
+    public boolean isDiscoveryAvailable() {
+        return procAvailable;
+    }
+
+    private void sample() {
+        try {
+            cachedMemory = readCachedMemory();
+            if (!procAvailable) return;
+            if (discoveryRequested || ++samplesSinceDiscovery >= DISCOVERY_INTERVAL) discover();
+            long now = System.nanoTime();
+            for (InstanceUsage usage : usages.values()) {
+                if (!sample(usage, now)) usages.remove(usage.getId(), usage);
+            }
+        } catch (Exception e) {
+            TimoCloudBase.getInstance().severe("Error while sampling resource usage: ");
+            TimoCloudBase.getInstance().severe(e);
+        }
+    }
+
+    /**
+     * Finds the JVMs of servers and proxies by the system properties they have been started with.
+     * This works for screen sessions as well as for supervised processes.
+     */
+    private void discover() {
+        discoveryRequested = false;
+        samplesSinceDiscovery = 0;
+        Set<Integer> knownPids = new HashSet<>();
+        for (InstanceUsage usage : usages.values()) knownPids.add(usage.getPid());
+        File[] processes = new File("/proc").listFiles();
+        if (processes == null) return;
+        for (File process : processes) {
+            int pid;
+            try {
+                pid = Integer.parseInt(process.getName());
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            if (knownPids.contains(pid)) continue;
+            byte[] cmdline;
+            try {
+                cmdline = Files.readAllBytes(new File(process, "cmdline").toPath());
+            } catch (IOException e) {
+                continue; // Process has exited in the meantime
+            }
+            String id = parseInstanceId(cmdline);
+            if (id != null) usages.put(id, new InstanceUsage(id, pid));
+        }
+    }
+
+    /**
+     * @return false if the process does not exist anymore
+     */
+    private boolean sample(InstanceUsage usage, long now) {
+        String directory = "/proc/" + usage.getPid() + "/";
+        long cpuTicks;
+        long rssBytes;
+        try {
+            cpuTicks = parseCpuTicks(readFile(directory + "stat"));
+            rssBytes = parseRssPages(readFile(directory + "statm")) * pageSize;
+        } catch (IOException e) {
+            return false;
+        }
+        long readBytes = -1;
+        long writeBytes = -1;
+        try {
+            String io = readFile(directory + "io");
+            readBytes = parseField(io, "read_bytes");
+            writeBytes = parseField(io, "write_bytes");
+        } catch (IOException ignored) {
+            // /proc/<pid>/io may not be readable, e.g. with hardened kernels
+        }
+        usage.update(cpuTicks, rssBytes, readBytes, writeBytes, now, ticksPerSecond, getOperatingSystemMXBean().getAvailableProcessors());
+        return true;
+    }
+
+    private long readCachedMemory() {
         File meminfo = new File("/proc/meminfo");
         if (! meminfo.exists()) return 0;
         try {
-            FileReader fileReader = new FileReader(meminfo);
-            BufferedReader reader = new BufferedReader(fileReader);
-            String line;
-            while (! (line = reader.readLine()).startsWith("Cached:"));
-            fileReader.close();
-            reader.close();
-            return Long.parseLong(line.replace("Cached:", "").replace("kB", "").trim()) / 1024;
+            return parseField(readFile(meminfo.getPath()), "Cached") / 1024;
         } catch (Exception e) {
             TimoCloudBase.getInstance().severe(e);
             return 0;
         }
     }
 
+    /**
+     * Asks the system for a configuration value, e.g. the page size, which differs between architectures
+     */
+    private static long getConf(String name, long fallback) {
+        try {
+            Process process = new ProcessBuilder("getconf", name).redirectErrorStream(true).start();
+            byte[] output = new byte[64];
+            int length = process.getInputStream().read(output);
+            if (!process.waitFor(5, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                return fallback;
+            }
+            if (length <= 0) return fallback;
+            return parseConf(new String(output, 0, length, StandardCharsets.US_ASCII), fallback);
+        } catch (IOException e) {
+            return fallback;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return fallback;
+        }
+    }
+
+    static long parseConf(String output, long fallback) {
+        try {
+            long value = Long.parseLong(output.trim());
+            return value > 0 ? value : fallback;
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    private static String readFile(String path) throws IOException {
+        return new String(Files.readAllBytes(Paths.get(path)), StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * @param cmdline Content of /proc/[pid]/cmdline, the arguments are separated by null bytes
+     * @return The server or proxy id the process has been started with, or null if it is not an instance
+     */
+    static String parseInstanceId(byte[] cmdline) {
+        String[] arguments = new String(cmdline, StandardCharsets.UTF_8).split("\0");
+        // The screen session has the same arguments, but we are only interested in the JVM itself
+        if (arguments.length == 0 || !new File(arguments[0]).getName().equals("java")) return null;
+        for (String argument : arguments) {
+            for (String property : ID_PROPERTIES) {
+                if (argument.startsWith(property)) return argument.substring(property.length());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Parses utime + stime of /proc/[pid]/stat. The command name may contain spaces, so fields are counted from its closing parenthesis.
+     */
+    static long parseCpuTicks(String stat) {
+        String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+        // fields[0] is field 3 (state), utime is field 14 and stime is field 15
+        return Long.parseLong(fields[11]) + Long.parseLong(fields[12]);
+    }
+
+    static long parseRssPages(String statm) {
+        return Long.parseLong(statm.trim().split(" ")[1]);
+    }
+
+    /**
+     * Parses a "key: value" line as found in /proc/[pid]/io or /proc/meminfo
+     *
+     * @return The value, or -1 if the key does not exist
+     */
+    static long parseField(String content, String key) {
+        for (String line : content.split("\n")) {
+            if (!line.startsWith(key + ":")) continue;
+            return Long.parseLong(line.substring(key.length() + 1).replace("kB", "").trim());
+        }
+        return -1;
+    }
+
     private OperatingSystemMXBean getOperatingSystemMXBean() {
         return operatingSystemMXBean;
     }
@@ -1,23 +1,39 @@
 package cloud.timo.TimoCloud.base.managers;
 
+import cloud.timo.TimoCloud.lib.utils.HashUtil;
 import org.apache.commons.io.FileDeleteStrategy;
 
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.*;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
 public class BaseTemplateManager {
 
-    private static final int BUFFER = 1024;
+    private static final int BUFFER = 64 * 1024;
 
-    public void extractFiles(InputStream inputStream, File destination) throws IOException {
+    private final BaseBlobStore blobStore;
+
+    public BaseTemplateManager(File blobsDirectory) {
+        this.blobStore = new BaseBlobStore(blobsDirectory);
+    }
+
+    /**
+     * @return The hashes of all extracted files
+     */
+    public List<String> extractFiles(InputStream inputStream, File destination) throws IOException {
+        List<String> hashes = new ArrayList<>();
         destination.mkdirs();
         ZipInputStream zipInputStream = new ZipInputStream(inputStream);
         ZipEntry zipEntry;
+        byte[] bytes = new byte[BUFFER];
         while ((zipEntry = zipInputStream.getNextEntry()) != null) {
             File file = new File(destination, zipEntry.getName());
             if (zipEntry.getName().endsWith("/")) {
@@ -29,20 +45,59 @@ public class BaseTemplateManager {
                 else Files.delete(file.toPath());
             }
             file.getParentFile().mkdirs();
-            file.createNewFile();
-            FileOutputStream fos = new FileOutputStream(file);
-            while (zipInputStream.available() > 0) {
-                byte[] bytes = new byte[BUFFER];
-                int readCount = zipInputStream.read(bytes, 0, BUFFER);
-                if (readCount <= 0) continue;
-                fos.write(bytes, 0, readCount);
+            MessageDigest digest = HashUtil.createDigest();
+            try (OutputStream outputStream = new DigestOutputStream(new FileOutputStream(file), digest)) {
+                int readCount;
+                while ((readCount = zipInputStream.read(bytes, 0, BUFFER)) >= 0) {
+                    outputStream.write(bytes, 0, readCount);
+                }
             }
-
-            fos.close();
             file.setLastModified(zipEntry.getTime());
+            String hash = HashUtil.toHex(digest.digest());
+            blobStore.add(hash, file);
+            hashes.add(hash);
             zipInputStream.closeEntry();
         }
         zipInputStream.close();
+        return hashes;
+    }
+
+    /**
+     * Creates all differing files whose content is already in the blob store, e.g. because another template contains them
+     *
+     * @param directory   The template directory
+     * @param hashes      The hashes the template directory should have
+     * @param differences The differences as returned by {@link HashUtil#getDifferentFiles(String, Map, Map)}
+     * @return The files which have to be downloaded, at most one per content. Files with the same content as a downloaded
+     * file are created from the blob store the next time the template is checked.
+     */
+    public List<String> resolveDifferences(File directory, Map<String, Object> hashes, List<String> differences) throws IOException {
+        List<String> missing = new ArrayList<>();
+        Set<String> requested = new HashSet<>();
+        for (String difference : differences) resolve(directory, difference, HashUtil.getHash(hashes, difference), missing, requested);
+        return missing;
+    }
+
+    private void resolve(File directory, String path, Object hash, List<String> missing, Set<String> requested) throws IOException {
+        if (hash instanceof Map) {
+            File file = new File(directory, path);
+            if (file.isFile()) Files.delete(file.toPath());
+            file.mkdirs();
+            String prefix = path.endsWith("/") ? path : path + "/";
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) hash).entrySet()) {
+                resolve(directory, prefix + entry.getKey(), entry.getValue(), missing, requested);
+            }
+            return;
+        }
+        if (hash instanceof String && blobStore.contains((String) hash)) {
+            blobStore.materialize((String) hash, new File(directory, path));
+            return;
+        }
+        if (!(hash instanceof String) || requested.add((String) hash)) missing.add(path);
+    }
+
+    public BaseBlobStore getBlobStore() {
+        return blobStore;
     }
 
 }
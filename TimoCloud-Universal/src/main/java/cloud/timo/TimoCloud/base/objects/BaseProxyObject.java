@@ -6,6 +6,7 @@ public class BaseProxyObject {
 
     private String name;
     private String id;
+    private String token;
     private String group;
     private int ram;
     private boolean isStatic;
@@ -15,9 +16,10 @@ public class BaseProxyObject {
     private Map<String, Object> templateHash;
     private Map<String, Object> globalHash;
 
-    public BaseProxyObject(String name, String id, int ram, boolean isStatic, String group, String motd, int maxPlayers, int maxPlayersPerProxy, Map<String, Object> templateHash, Map<String, Object> globalHash) {
+    public BaseProxyObject(String name, String id, String token, int ram, boolean isStatic, String group, String motd, int maxPlayers, int maxPlayersPerProxy, Map<String, Object> templateHash, Map<String, Object> globalHash) {
         this.name = name;
         this.id = id;
+        this.token = token;
         this.group = group;
         this.ram = ram;
         this.isStatic = isStatic;
@@ -36,6 +38,13 @@ public class BaseProxyObject {
         return id;
     }
 
+    /**
+     * @return The secret the instance authenticates with when it connects or reconnects to the core
+     */
+    public String getToken() {
+        return token;
+    }
+
     public String getGroup() {
         return group;
     }
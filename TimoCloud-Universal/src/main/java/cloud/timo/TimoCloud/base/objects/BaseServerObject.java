@@ -5,6 +5,7 @@ import java.util.Map;
 public class BaseServerObject {
     private String name;
     private String id;
+    private String token;
     private String group;
     private int ram;
     private boolean isStatic;
@@ -13,9 +14,10 @@ public class BaseServerObject {
     private Map<String, Object> mapHash;
     private Map<String, Object> globalHash;
 
-    public BaseServerObject(String name, String id, int ram, boolean isStatic, String map, String group, Map<String, Object> templateHash, Map<String, Object> mapHash, Map<String, Object> globalHash) {
+    public BaseServerObject(String name, String id, String token, int ram, boolean isStatic, String map, String group, Map<String, Object> templateHash, Map<String, Object> mapHash, Map<String, Object> globalHash) {
         this.name = name;
         this.id = id;
+        this.token = token;
         this.group = group;
         this.ram = ram;
         this.isStatic = isStatic;
@@ -33,6 +35,13 @@ public class BaseServerObject {
         return id;
     }
 
+    /**
+     * @return The secret the instance authenticates with when it connects or reconnects to the core
+     */
+    public String getToken() {
+        return token;
+    }
+
     public String getGroup() {
         return group;
     }
@@ -0,0 +1,78 @@
+package cloud.timo.TimoCloud.base.objects;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measured resource usage of a single server or proxy process. Rates are computed from the difference to the previous sample.
+ */
+public class InstanceUsage {
+
+    private final String id;
+    private final int pid;
+    private long lastCpuTicks = -1;
+    private long lastReadBytes = -1;
+    private long lastWriteBytes = -1;
+    private long lastSampleNanos;
+
+    private double cpu;
+    private long ramMegabytes;
+    private long readKilobytesPerSecond;
+    private long writeKilobytesPerSecond;
+
+    public InstanceUsage(String id, int pid) {
+        this.id = id;
+        this.pid = pid;
+    }
+
+    /**
+     * @param cpuTicks   utime + stime of the process in clock ticks
+     * @param rssBytes   Resident set size
+     * @param readBytes  Total bytes read from storage, or -1 if unknown
+     * @param writeBytes Total bytes written to storage, or -1 if unknown
+     */
+    public void update(long cpuTicks, long rssBytes, long readBytes, long writeBytes, long nanos, int ticksPerSecond, int cpuCores) {
+        double seconds = (nanos - lastSampleNanos) / 1_000_000_000.0;
+        if (lastCpuTicks >= 0 && seconds > 0) {
+            cpu = (cpuTicks - lastCpuTicks) / (seconds * ticksPerSecond) * 100 / cpuCores;
+            if (readBytes >= 0 && lastReadBytes >= 0) readKilobytesPerSecond = (long) ((readBytes - lastReadBytes) / seconds / 1024);
+            if (writeBytes >= 0 && lastWriteBytes >= 0) writeKilobytesPerSecond = (long) ((writeBytes - lastWriteBytes) / seconds / 1024);
+        }
+        ramMegabytes = rssBytes / (1024 * 1024);
+        lastCpuTicks = cpuTicks;
+        lastReadBytes = readBytes;
+        lastWriteBytes = writeBytes;
+        lastSampleNanos = nanos;
+    }
+
+    /**
+     * @return [cpu (percent of the whole machine), ram (MB), storage read (KB/s), storage write (KB/s)]
+     */
+    public List<Number> toCompactList() {
+        return Arrays.asList(Math.round(cpu * 10) / 10.0, ramMegabytes, readKilobytesPerSecond, writeKilobytesPerSecond);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public int getPid() {
+        return pid;
+    }
+
+    public double getCpu() {
+        return cpu;
+    }
+
+    public long getRamMegabytes() {
+        return ramMegabytes;
+    }
+
+    public long getReadKilobytesPerSecond() {
+        return readKilobytesPerSecond;
+    }
+
+    public long getWriteKilobytesPerSecond() {
+        return writeKilobytesPerSecond;
+    }
+}
@@ -0,0 +1,72 @@
+package cloud.timo.TimoCloud.base.objects;
+
+import cloud.timo.TimoCloud.lib.utils.LineRingBuffer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A server or proxy JVM which has been started directly by the base (without screen)
+ */
+public class SupervisedProcess {
+
+    private final String id;
+    private final String name;
+    private final InstanceType type;
+    private final Process process;
+    private final LineRingBuffer console;
+    private volatile boolean attached;
+
+    public SupervisedProcess(String id, String name, InstanceType type, Process process, int consoleLines) {
+        this.id = id;
+        this.name = name;
+        this.type = type;
+        this.process = process;
+        this.console = new LineRingBuffer(consoleLines);
+        this.attached = false;
+    }
+
+    /**
+     * Writes a command into the process' standard input, as if it had been typed into its console
+     */
+    public void sendCommand(String command) throws IOException {
+        OutputStream outputStream = process.getOutputStream();
+        synchronized (outputStream) {
+            outputStream.write((command + "\n").getBytes(StandardCharsets.UTF_8));
+            outputStream.flush();
+        }
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public InstanceType getType() {
+        return type;
+    }
+
+    public Process getProcess() {
+        return process;
+    }
+
+    public LineRingBuffer getConsole() {
+        return console;
+    }
+
+    public boolean isAttached() {
+        return attached;
+    }
+
+    public void setAttached(boolean attached) {
+        this.attached = attached;
+    }
+
+    public enum InstanceType {
+        SERVER, PROXY
+    }
+}
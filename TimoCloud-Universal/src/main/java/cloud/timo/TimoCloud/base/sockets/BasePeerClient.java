@@ -0,0 +1,132 @@
+package cloud.timo.TimoCloud.base.sockets;
+
+import cloud.timo.TimoCloud.lib.utils.HashUtil;
+import cloud.timo.TimoCloud.lib.utils.network.NettyUtil;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.*;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.timeout.ReadTimeoutHandler;
+import io.netty.util.CharsetUtil;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Downloads blobs from the {@link BasePeerServer} of other bases and verifies them against their hash
+ */
+public class BasePeerClient {
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 3000;
+    private static final int READ_TIMEOUT_SECONDS = 30;
+
+    private final EventLoopGroup group = NettyUtil.getEventLoopGroup();
+
+    /**
+     * Downloads a blob into the given file
+     *
+     * @return A future which is completed once the whole blob has been received and verified, or completed exceptionally with a
+     * {@link java.net.ConnectException} if the peer cannot be reached
+     */
+    public CompletableFuture<Void> download(String host, int port, String token, String hash, File target) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        new Bootstrap()
+                .group(group)
+                .channel(NettyUtil.getSocketChannelClass())
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, CONNECT_TIMEOUT_MILLIS)
+                .handler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        ch.pipeline().addLast(new ReadTimeoutHandler(READ_TIMEOUT_SECONDS));
+                        ch.pipeline().addLast(new DownloadHandler(token, hash, target, result));
+                    }
+                })
+                .connect(host, port)
+                .addListener((ChannelFutureListener) future -> {
+                    if (!future.isSuccess()) result.completeExceptionally(future.cause());
+                });
+        return result;
+    }
+
+    public void shutdown() {
+        group.shutdownGracefully();
+    }
+
+    private static class DownloadHandler extends ByteToMessageDecoder {
+
+        private final String token;
+        private final String hash;
+        private final File target;
+        private final CompletableFuture<Void> result;
+        private final MessageDigest digest = HashUtil.createDigest();
+        private OutputStream outputStream;
+        private long size = -1;
+        private long received = 0;
+
+        private DownloadHandler(String token, String hash, File target, CompletableFuture<Void> result) {
+            this.token = token;
+            this.hash = hash;
+            this.target = target;
+            this.result = result;
+        }
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) throws Exception {
+            ctx.writeAndFlush(Unpooled.copiedBuffer(token + " " + hash + "\n", CharsetUtil.US_ASCII));
+            super.channelActive(ctx);
+        }
+
+        @Override
+        protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+            if (size < 0) {
+                if (in.readableBytes() < 8) return;
+                size = in.readLong();
+                if (size == BasePeerServer.NOT_FOUND) throw new IOException("Peer does not have blob " + hash);
+                outputStream = new FileOutputStream(target);
+            }
+            int length = (int) Math.min(in.readableBytes(), size - received);
+            if (length > 0) {
+                byte[] bytes = new byte[length];
+                in.readBytes(bytes);
+                digest.update(bytes);
+                outputStream.write(bytes);
+                received += length;
+            }
+            if (in.isReadable()) throw new IOException("Peer sent more bytes than announced");
+            if (received < size) return;
+            close();
+            if (!HashUtil.toHex(digest.digest()).equals(hash)) throw new IOException("Blob " + hash + " from peer does not match its hash");
+            result.complete(null);
+            ctx.close();
+        }
+
+        private void close() throws IOException {
+            if (outputStream == null) return;
+            outputStream.close();
+            outputStream = null;
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            try {
+                super.channelInactive(ctx);
+            } finally {
+                close();
+                if (!result.isDone()) result.completeExceptionally(new IOException("Peer closed the connection before the blob was complete"));
+            }
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+            close();
+            result.completeExceptionally(cause);
+            ctx.close();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package cloud.timo.TimoCloud.base.sockets;
+
+import cloud.timo.TimoCloud.base.managers.BaseBlobStore;
+import cloud.timo.TimoCloud.lib.utils.network.NettyUtil;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.*;
+import io.netty.handler.codec.LineBasedFrameDecoder;
+import io.netty.handler.codec.string.StringDecoder;
+import io.netty.handler.timeout.ReadTimeoutHandler;
+import io.netty.util.CharsetUtil;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.security.MessageDigest;
+
+/**
+ * Serves blobs to other bases. A peer sends this base's token and the hash of the blob it wants, separated by a space and followed
+ * by a line break, and receives the blob's size as a long, or -1 if this base does not have it, followed by the blob's content.
+ * The token is issued by the core at every handshake and only given to other bases together with the template, so connections
+ * from anyone else are closed without an answer.
+ */
+public class BasePeerServer {
+
+    static final int MAX_REQUEST_LENGTH = 128;
+    static final long NOT_FOUND = -1;
+    private static final int READ_TIMEOUT_SECONDS = 30;
+
+    private final BaseBlobStore blobStore;
+    private EventLoopGroup bossGroup;
+    private EventLoopGroup workerGroup;
+    private Channel channel;
+    private volatile String token;
+
+    public BasePeerServer(BaseBlobStore blobStore) {
+        this.blobStore = blobStore;
+    }
+
+    /**
+     * @param port The port to listen on, 0 for any free port
+     * @return The port the server is listening on
+     */
+    public int start(int port) throws InterruptedException {
+        bossGroup = NettyUtil.getEventLoopGroup();
+        workerGroup = NettyUtil.getEventLoopGroup();
+        channel = new ServerBootstrap()
+                .group(bossGroup, workerGroup)
+                .channel(NettyUtil.getServerSocketChannelClass())
+                .childHandler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        ch.pipeline().addLast(new ReadTimeoutHandler(READ_TIMEOUT_SECONDS));
+                        ch.pipeline().addLast(new LineBasedFrameDecoder(MAX_REQUEST_LENGTH));
+                        ch.pipeline().addLast(new StringDecoder(CharsetUtil.US_ASCII));
+                        ch.pipeline().addLast(new RequestHandler());
+                    }
+                })
+                .bind(port).sync().channel();
+        return ((InetSocketAddress) channel.localAddress()).getPort();
+    }
+
+    /**
+     * @param token The token peers have to present, null to reject all requests
+     */
+    public void setToken(String token) {
+        this.token = token;
+    }
+
+    public void stop() {
+        if (channel != null) channel.close();
+        if (bossGroup != null) bossGroup.shutdownGracefully();
+        if (workerGroup != null) workerGroup.shutdownGracefully();
+    }
+
+    private class RequestHandler extends SimpleChannelInboundHandler<String> {
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, String request) {
+            String[] parts = request.trim().split(" ");
+            if (parts.length != 2 || !isAuthorized(parts[0])) {
+                ctx.close();
+                return;
+            }
+            String hash = parts[1];
+            File blob = blobStore.contains(hash) ? blobStore.getBlob(hash) : null;
+            ByteBuf header = ctx.alloc().buffer(8).writeLong(blob == null ? NOT_FOUND : blob.length());
+            if (blob == null) {
+                ctx.writeAndFlush(header).addListener(ChannelFutureListener.CLOSE);
+                return;
+            }
+            ctx.write(header);
+            ctx.writeAndFlush(new DefaultFileRegion(blob, 0, blob.length())).addListener(ChannelFutureListener.CLOSE);
+        }
+
+        private boolean isAuthorized(String token) {
+            String expected = BasePeerServer.this.token;
+            return expected != null && MessageDigest.isEqual(expected.getBytes(CharsetUtil.US_ASCII), token.getBytes(CharsetUtil.US_ASCII));
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            ctx.close();
+        }
+    }
+}
@@ -5,6 +5,7 @@ import cloud.timo.TimoCloud.base.objects.BaseProxyObject;
 import cloud.timo.TimoCloud.base.objects.BaseServerObject;
 import cloud.timo.TimoCloud.lib.messages.Message;
 import cloud.timo.TimoCloud.lib.sockets.BasicStringHandler;
+import cloud.timo.TimoCloud.lib.sockets.compression.StreamCompression;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandler;
 import org.apache.commons.io.FileDeleteStrategy;
@@ -13,7 +14,10 @@ import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.InputStream;
 import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 @ChannelHandler.Sharable
 public class BaseStringHandler extends BasicStringHandler {
@@ -24,7 +28,10 @@ public class BaseStringHandler extends BasicStringHandler {
         Object data = message.get("data");
         switch (type) {
             case "HANDSHAKE_SUCCESS":
-                TimoCloudBase.getInstance().onHandshakeSuccess();
+                TimoCloudBase.getInstance().onHandshakeSuccess((String) message.get("token"), (String) message.get("peerToken"));
+                break;
+            case "COMPRESSION":
+                StreamCompression.enable(channel, (String) message.get("algorithm"), ((Number) message.get("threshold")).intValue());
                 break;
             case "START_SERVER": {
                 String serverName = (String) message.get("name");
@@ -36,7 +43,7 @@ public class BaseStringHandler extends BasicStringHandler {
                 Map<String, Object> templateHash = (Map<String, Object>) message.get("templateHash");
                 Map<String, Object> mapHash = message.containsKey("mapHash") ? (Map<String, Object>) message.get("mapHash") : null;
                 Map<String, Object> globalHash = (Map<String, Object>) message.get("globalHash");
-                TimoCloudBase.getInstance().getInstanceManager().addToServerQueue(new BaseServerObject(serverName, id, ram, isStatic, map, group, templateHash, mapHash, globalHash));
+                TimoCloudBase.getInstance().getInstanceManager().addToServerQueue(new BaseServerObject(serverName, id, (String) message.get("token"), ram, isStatic, map, group, templateHash, mapHash, globalHash));
                 TimoCloudBase.getInstance().info("Added server " + serverName + " to queue.");
                 break;
             }
@@ -51,7 +58,7 @@ public class BaseStringHandler extends BasicStringHandler {
                 int maxPlayersPerProxy = ((Number) message.get("maxplayersperproxy")).intValue();
                 Map<String, Object> templateHash = (Map<String, Object>) message.get("templateHash");
                 Map<String, Object> globalHash = (Map<String, Object>) message.get("globalHash");
-                TimoCloudBase.getInstance().getInstanceManager().addToProxyQueue(new BaseProxyObject(proxyName, id, ram, isStatic, group, motd, maxPlayers, maxPlayersPerProxy, templateHash, globalHash));
+                TimoCloudBase.getInstance().getInstanceManager().addToProxyQueue(new BaseProxyObject(proxyName, id, (String) message.get("token"), ram, isStatic, group, motd, maxPlayers, maxPlayersPerProxy, templateHash, globalHash));
                 TimoCloudBase.getInstance().info("Added proxy " + proxyName + " to queue.");
                 break;
             }
@@ -63,29 +70,67 @@ public class BaseStringHandler extends BasicStringHandler {
             case "PROXY_STOPPED":
                 TimoCloudBase.getInstance().getInstanceManager().onProxyStopped((String) data);
                 break;
+            case "INSTANCES_STOPPED": {
+                Map<String, Object> stopped = (Map<String, Object>) data;
+                if (stopped.containsKey("servers"))
+                    for (String id : (List<String>) stopped.get("servers")) TimoCloudBase.getInstance().getInstanceManager().onServerStopped(id);
+                if (stopped.containsKey("proxies"))
+                    for (String id : (List<String>) stopped.get("proxies")) TimoCloudBase.getInstance().getInstanceManager().onProxyStopped(id);
+                break;
+            }
+            case "CONSOLE_COMMAND":
+                TimoCloudBase.getInstance().getProcessManager().sendCommand(message.getTarget(), (String) data);
+                break;
+            case "GET_CONSOLE":
+                TimoCloudBase.getInstance().getProcessManager().sendConsole(message.getTarget(), ((Number) data).intValue());
+                break;
+            case "ATTACH_CONSOLE":
+                TimoCloudBase.getInstance().getProcessManager().setAttached(message.getTarget(), true);
+                break;
+            case "DETACH_CONSOLE":
+                TimoCloudBase.getInstance().getProcessManager().setAttached(message.getTarget(), false);
+                break;
+            case "KILL_INSTANCE":
+                TimoCloudBase.getInstance().getProcessManager().kill(message.getTarget(), (String) data);
+                break;
             case "DELETE_DIRECTORY":
                 File dir = new File((String) data);
                 if (dir.exists() && dir.isDirectory()) FileDeleteStrategy.FORCE.deleteQuietly(dir);
                 break;
             case "TRANSFER":
                 try {
-                    InputStream inputStream = new ByteArrayInputStream(stringToByteArray((String) message.get("file")));
+                    File destination;
                     switch ((String) message.get("transferType")) {
                         case "SERVER_TEMPLATE":
-                            TimoCloudBase.getInstance().getTemplateManager().extractFiles(inputStream, new File(TimoCloudBase.getInstance().getFileManager().getServerTemplatesDirectory(), (String) message.get("template")));
+                            destination = new File(TimoCloudBase.getInstance().getFileManager().getServerTemplatesDirectory(), (String) message.get("template"));
                             break;
                         case "SERVER_GLOBAL_TEMPLATE":
-                            TimoCloudBase.getInstance().getTemplateManager().extractFiles(inputStream, TimoCloudBase.getInstance().getFileManager().getServerGlobalDirectory());
+                            destination = TimoCloudBase.getInstance().getFileManager().getServerGlobalDirectory();
                             break;
                         case "PROXY_TEMPLATE":
-                            TimoCloudBase.getInstance().getTemplateManager().extractFiles(inputStream, new File(TimoCloudBase.getInstance().getFileManager().getProxyTemplatesDirectory(), (String) message.get("template")));
+                            destination = new File(TimoCloudBase.getInstance().getFileManager().getProxyTemplatesDirectory(), (String) message.get("template"));
                             break;
                         case "PROXY_GLOBAL_TEMPLATE":
-                            TimoCloudBase.getInstance().getTemplateManager().extractFiles(inputStream, TimoCloudBase.getInstance().getFileManager().getProxyGlobalDirectory());
+                            destination = TimoCloudBase.getInstance().getFileManager().getProxyGlobalDirectory();
                             break;
+                        default:
+                            TimoCloudBase.getInstance().severe("Unknown transfer type: " + message.get("transferType"));
+                            return;
+                    }
+                    if (message.containsKey("file")) {
+                        InputStream inputStream = new ByteArrayInputStream(stringToByteArray((String) message.get("file")));
+                        announceBlobs(TimoCloudBase.getInstance().getTemplateManager().extractFiles(inputStream, destination));
                     }
-                    TimoCloudBase.getInstance().getSocketMessageManager().sendMessage(Message.create().setType("TRANSFER_FINISHED").setTarget(message.getTarget()));
-                    TimoCloudBase.getInstance().getInstanceManager().setDownloadingTemplate(false);
+                    List<?> peerFiles = message.containsKey("peerFiles") ? (List<?>) message.get("peerFiles") : Collections.emptyList();
+                    TimoCloudBase.getInstance().getPeerManager().download(destination, peerFiles).whenComplete((ignored, e) -> {
+                        if (e != null) {
+                            TimoCloudBase.getInstance().severe("Error while downloading template files from other bases: ");
+                            TimoCloudBase.getInstance().severe(e);
+                        }
+                        announceBlobs(peerFiles.stream().map(peerFile -> (String) ((Map<?, ?>) peerFile).get("hash")).filter(TimoCloudBase.getInstance().getTemplateManager().getBlobStore()::contains).collect(Collectors.toList()));
+                        TimoCloudBase.getInstance().getSocketMessageManager().sendMessage(Message.create().setType("TRANSFER_FINISHED").setTarget(message.getTarget()));
+                        TimoCloudBase.getInstance().getInstanceManager().setDownloadingTemplate(false);
+                    });
                     break;
                 } catch (Exception e) {
                     TimoCloudBase.getInstance().severe("Error while unpacking transferred files: ");
@@ -96,6 +141,14 @@ public class BaseStringHandler extends BasicStringHandler {
         }
     }
 
+    /**
+     * Tells the core which template files this base can serve to other bases
+     */
+    private void announceBlobs(List<String> hashes) {
+        if (hashes.isEmpty() || TimoCloudBase.getInstance().getPeerManager().getPort() < 0) return;
+        TimoCloudBase.getInstance().getSocketMessageManager().sendMessage(Message.create().setType("BLOBS_AVAILABLE").set("hashes", hashes));
+    }
+
     private byte[] stringToByteArray(String input) {
         return Base64.getDecoder().decode(input.getBytes());
     }
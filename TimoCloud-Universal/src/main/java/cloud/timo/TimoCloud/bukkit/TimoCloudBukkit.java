@@ -20,6 +20,9 @@ import cloud.timo.TimoCloud.bukkit.sockets.BukkitSocketMessageManager;
 import cloud.timo.TimoCloud.bukkit.sockets.BukkitStringHandler;
 import cloud.timo.TimoCloud.lib.logging.LoggingOutputStream;
 import cloud.timo.TimoCloud.lib.messages.Message;
+import cloud.timo.TimoCloud.lib.sockets.CoreReconnector;
+import cloud.timo.TimoCloud.lib.sockets.compression.StreamCompression;
+import cloud.timo.TimoCloud.lib.utils.StatusReporter;
 import com.google.common.io.ByteArrayDataOutput;
 import com.google.common.io.ByteStreams;
 import org.bukkit.Bukkit;
@@ -31,18 +34,33 @@ import org.bukkit.plugin.java.JavaPlugin;
 import java.io.File;
 import java.io.PrintStream;
 import java.net.InetAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 public class TimoCloudBukkit extends JavaPlugin {
 
+    private static final long STATUS_MIN_INTERVAL = 500;
+    private static final long STATUS_REPORT_INTERVAL = 1000;
+    private static final long STATUS_HEARTBEAT = 30000;
+
     private static TimoCloudBukkit instance;
     private BukkitFileManager fileManager;
     private BukkitSocketClientHandler socketClientHandler;
     private BukkitSocketMessageManager socketMessageManager;
+    private CoreReconnector reconnector;
+    private volatile boolean registeredAtCore;
     private BukkitStringHandler stringHandler;
     private SignManager signManager;
     private StateByEventManager stateByEventManager;
+    private StatusReporter statusReporter;
+    private volatile String motd;
+    private volatile boolean statusDirty;
+    private long lastStatusReport;
+    private volatile int onlinePlayersAmount;
+    private volatile int maxPlayersAmount;
     private String prefix = "[TimoCloud] ";
 
     public void info(String message) {
@@ -94,31 +112,55 @@ public class TimoCloudBukkit extends JavaPlugin {
             new BukkitSocketClient().init(getTimoCloudCoreIP(), getTimoCloudCoreSocketPort());
         } catch (Exception e) {
             TimoCloudBukkit.getInstance().severe(e);
+            onSocketDisconnect(true);
         }
     }
 
     private void registerAtBungeeCord() {
+        registeredAtCore = true;
         getSocketMessageManager().sendMessage(Message.create().setType("REGISTER").setTarget(getServerId()));
     }
 
     public void onSocketConnect() {
-        getSocketMessageManager().sendMessage(Message.create().setType("SERVER_HANDSHAKE").setTarget(getServerId()));
+        getSocketMessageManager().sendMessage(Message.create().setType("SERVER_HANDSHAKE").setTarget(getServerId()).setIfNotNull("token", getToken()).set("compression", StreamCompression.getSupportedAlgorithms()));
     }
 
     public void onSocketDisconnect(boolean connectionFailed) {
-        info("Disconnected from TimoCloudCore. Stopping server.");
-        if (connectionFailed) {
+        if (!isEnabled()) return;
+        reconnector.onDisconnected();
+    }
+
+    /**
+     * Called if the core could not be reached again after the connection has been lost, or if it has refused this server
+     */
+    private void onConnectionLost() {
+        info("Stopping server.");
+        if (!reconnector.hasBeenConnected()) {
             System.exit(0);
         } else {
             stop();
         }
     }
 
-    public void onHandshakeSuccess() {
+    /**
+     * @param resumeTimeout Seconds the core waits for this server to reconnect after the core has been restarted
+     */
+    public void onHandshakeSuccess(long resumeTimeout) {
+        boolean resumed = reconnector.isReconnecting();
+        reconnector.onHandshakeSuccess(resumeTimeout);
         getSocketMessageManager().sendMessage(Message.create().setType("SET_MAP").setData(getMapName()));
+        if (resumed && registeredAtCore) registerAtBungeeCord();
+        statusReporter.reset();
+        markStatusDirty();
+        getSocketMessageManager().sendMessage(Message.create().setType("GET_PLAYERS"));
         doEverySecond();
     }
 
+    public void onHandshakeRefused() {
+        severe("TimoCloudCore does not know this server (anymore).");
+        reconnector.onRefused();
+    }
+
     private void stop() {
         Bukkit.getScheduler().runTask(this, () -> {
             Bukkit.shutdown();
@@ -131,15 +173,18 @@ public class TimoCloudBukkit extends JavaPlugin {
         fileManager = new BukkitFileManager();
         socketClientHandler = new BukkitSocketClientHandler();
         socketMessageManager = new BukkitSocketMessageManager();
+        reconnector = new CoreReconnector(this::connectToCore, this::onConnectionLost, this::info);
         stringHandler = new BukkitStringHandler();
         signManager = new SignManager();
         stateByEventManager = new StateByEventManager();
+        statusReporter = new StatusReporter(STATUS_MIN_INTERVAL, STATUS_HEARTBEAT);
 
         APIInstanceUtil.setInternalMessageInstance(new TimoCloudInternalMessageAPIBukkitImplementation());
         APIInstanceUtil.setUniversalInstance(new TimoCloudUniversalAPIBukkitImplementation());
         APIInstanceUtil.setBukkitInstance(new TimoCloudBukkitAPIImplementation());
         APIInstanceUtil.setEventInstance(new EventManager());
         APIInstanceUtil.setMessageInstance(new TimoCloudMessageAPIBukkitImplementation());
+        TimoCloudAPI.getEventAPI().registerListener(((TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI()).getPlayerDirectory());
     }
 
     private void registerCommands() {
@@ -173,6 +218,13 @@ public class TimoCloudBukkit extends JavaPlugin {
         player.sendPluginMessage(this, "BungeeCord", out.toByteArray());
     }
 
+    /**
+     * @return The secret this server authenticates with at the core, which allows it to be re-adopted after a core restart
+     */
+    public String getToken() {
+        return System.getProperty("timocloud-token");
+    }
+
     public boolean isRandomMap() {
         return Boolean.getBoolean("timocloud-randommap");
     }
@@ -198,7 +250,6 @@ public class TimoCloudBukkit extends JavaPlugin {
     }
 
     private void doEverySecond() {
-        sendEverything();
         requestApiData();
     }
 
@@ -208,56 +259,74 @@ public class TimoCloudBukkit extends JavaPlugin {
         Bukkit.getScheduler().scheduleSyncRepeatingTask(this, () -> {
             getSignManager().updateSigns();
         }, 5L, 1L);
+        Bukkit.getScheduler().scheduleSyncRepeatingTask(this, this::reportStatusIfDue, 5L, 5L);
     }
 
-    private void sendEverything() {
-        sendMotds();
-        sendPlayers();
+    /**
+     * Makes the status be reported soon, e.g. because a player has joined
+     */
+    public void markStatusDirty() {
+        statusDirty = true;
     }
 
-    private void requestApiData() {
-        getSocketMessageManager().sendMessage(Message.create().setType("GET_API_DATA"));
+    /**
+     * Reports the status once per second, or after {@link #STATUS_MIN_INTERVAL} if it has been marked dirty, so plugins do not see
+     * more ServerListPingEvents than necessary
+     */
+    private void reportStatusIfDue() {
+        if (System.currentTimeMillis() - lastStatusReport < (statusDirty ? STATUS_MIN_INTERVAL : STATUS_REPORT_INTERVAL)) return;
+        reportStatus();
     }
 
-    private void sendMotds() {
-        try {
-            ServerListPingEvent event = new ServerListPingEvent(InetAddress.getLocalHost(), Bukkit.getMotd(), Bukkit.getOnlinePlayers().size(), Bukkit.getMaxPlayers());
-            Bukkit.getPluginManager().callEvent(event);
-            getSocketMessageManager().sendMessage(Message.create().setType("SET_MOTD").setData(event.getMotd()));
-            getStateByEventManager().setStateByMotd(event.getMotd().trim());
-        } catch (Exception e) {
-            severe("Error while sending MOTD: ");
-            TimoCloudBukkit.getInstance().severe(e);
-            getSocketMessageManager().sendMessage(Message.create().setType("SET_MOTD").setData(Bukkit.getMotd()));
-        }
+    private void requestApiData() {
+        getSocketMessageManager().sendMessage(Message.create().setType("GET_API_DATA"));
     }
 
-    public int getOnlinePlayersAmount() {
+    /**
+     * Calls the ServerListPingEvent once, so that plugins can modify MOTD and player counts, and sends whatever has changed to the core.
+     * Has to be called from the main thread.
+     */
+    public void reportStatus() {
+        statusDirty = false;
+        lastStatusReport = System.currentTimeMillis();
+        String motd = Bukkit.getMotd();
+        int onlinePlayers = Bukkit.getOnlinePlayers().size();
+        int maxPlayers = Bukkit.getMaxPlayers();
         try {
-            ServerListPingEvent event = new ServerListPingEvent(InetAddress.getLocalHost(), Bukkit.getMotd(), Bukkit.getOnlinePlayers().size(), Bukkit.getMaxPlayers());
+            ServerListPingEvent event = new ServerListPingEvent(InetAddress.getLocalHost(), motd, onlinePlayers, maxPlayers);
             Bukkit.getPluginManager().callEvent(event);
-            return event.getNumPlayers();
+            motd = event.getMotd();
+            onlinePlayers = event.getNumPlayers();
+            maxPlayers = event.getMaxPlayers();
         } catch (Exception e) {
             severe("Error while calling ServerListPingEvent: ");
             TimoCloudBukkit.getInstance().severe(e);
-            return Bukkit.getOnlinePlayers().size();
         }
+        boolean motdChanged = !Objects.equals(motd, this.motd);
+        boolean playersChanged = onlinePlayers != this.onlinePlayersAmount || maxPlayers != this.maxPlayersAmount;
+        this.motd = motd;
+        this.onlinePlayersAmount = onlinePlayers;
+        this.maxPlayersAmount = maxPlayers;
+        if (motdChanged && motd != null) getStateByEventManager().setStateByMotd(motd.trim());
+        if (playersChanged) getStateByEventManager().setStateByPlayerCount();
+
+        Map<String, Object> status = new HashMap<>();
+        status.put("motd", motd);
+        status.put("players", onlinePlayers);
+        status.put("maxPlayers", maxPlayers);
+        Map<String, Object> changes = statusReporter.update(status, System.currentTimeMillis());
+        if (changes != null) getSocketMessageManager().sendMessage(Message.create().setType("STATUS").setData(changes));
+    }
+
+    /**
+     * @return The online player count as modified by plugins during the last {@link #reportStatus()}
+     */
+    public int getOnlinePlayersAmount() {
+        return onlinePlayersAmount;
     }
 
     public int getMaxPlayersAmount() {
-        try {
-            ServerListPingEvent event = new ServerListPingEvent(InetAddress.getLocalHost(), Bukkit.getMotd(), Bukkit.getOnlinePlayers().size(), Bukkit.getMaxPlayers());
-            Bukkit.getPluginManager().callEvent(event);
-            return event.getMaxPlayers();
-        } catch (Exception e) {
-            severe("Error while calling ServerListPingEvent: ");
-            TimoCloudBukkit.getInstance().severe(e);
-            return Bukkit.getMaxPlayers();
-        }
-    }
-
-    public void sendPlayers() {
-        getSocketMessageManager().sendMessage(Message.create().setType("SET_PLAYERS").setData(getOnlinePlayersAmount() + "/" + getMaxPlayersAmount()));
+        return maxPlayersAmount;
     }
 
     public static TimoCloudBukkit getInstance() {
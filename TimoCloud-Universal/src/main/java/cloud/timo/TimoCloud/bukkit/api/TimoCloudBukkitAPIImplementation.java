@@ -5,10 +5,17 @@ import cloud.timo.TimoCloud.api.TimoCloudBukkitAPI;
 import cloud.timo.TimoCloud.api.objects.ServerObject;
 import cloud.timo.TimoCloud.bukkit.TimoCloudBukkit;
 
+import java.util.function.Function;
+
 public class TimoCloudBukkitAPIImplementation implements TimoCloudBukkitAPI {
 
     @Override
     public ServerObject getThisServer() {
         return TimoCloudAPI.getUniversalAPI().getServer(TimoCloudBukkit.getInstance().getServerName());
     }
+
+    @Override
+    public void registerSignPlaceholder(String name, Function<ServerObject, String> resolver) {
+        TimoCloudBukkit.getInstance().getSignManager().getPlaceholders().registerVolatile(name, (builder, server) -> builder.append(resolver.apply(server)));
+    }
 }
@@ -9,7 +9,6 @@ import org.bukkit.event.player.PlayerJoinEvent;
 public class PlayerJoin implements Listener {
     @EventHandler (priority = EventPriority.LOWEST)
     public void onPlayerJoinEvent(PlayerJoinEvent event) {
-        TimoCloudBukkit.getInstance().sendPlayers();
-        TimoCloudBukkit.getInstance().getStateByEventManager().onPlayerJoin();
+        TimoCloudBukkit.getInstance().markStatusDirty();
     }
 }
@@ -11,9 +11,6 @@ public class PlayerQuit implements Listener {
     @EventHandler (priority = EventPriority.LOWEST)
     public void onPlayerQuitEvent(PlayerQuitEvent event) {
         event.getPlayer().kickPlayer("");
-        Bukkit.getScheduler().scheduleSyncDelayedTask(TimoCloudBukkit.getInstance(), () -> {
-            TimoCloudBukkit.getInstance().sendPlayers();
-            TimoCloudBukkit.getInstance().getStateByEventManager().onPlayerQuit();
-        }, 1L);
+        Bukkit.getScheduler().scheduleSyncDelayedTask(TimoCloudBukkit.getInstance(), () -> TimoCloudBukkit.getInstance().markStatusDirty(), 1L);
     }
 }
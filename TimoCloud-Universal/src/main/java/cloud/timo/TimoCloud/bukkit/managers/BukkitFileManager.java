@@ -82,6 +82,7 @@ public class BukkitFileManager {
         config.addDefault("PlayersToState.enabledWhileStates", Arrays.asList("WAITING", "LOBBY"));
         config.addDefault("PlayersToState.percentages.100,0", "FULL");
         config.addDefault("PlayersToState.percentages.50,0", "HALF_FULL");
+        config.addDefault("signRenderBudgetMicros", 2000);
         TimoCloudBukkit.getInstance().setPrefix(config.getString("prefix"));
         try {
             config.save(configFile);
@@ -10,18 +10,21 @@ import cloud.timo.TimoCloud.bukkit.signs.SignLayout;
 import cloud.timo.TimoCloud.bukkit.signs.SignParseException;
 import cloud.timo.TimoCloud.bukkit.signs.SignTemplate;
 import cloud.timo.TimoCloud.lib.json.JsonObjectBuilder;
+import cloud.timo.TimoCloud.lib.templates.CompiledTemplate;
+import cloud.timo.TimoCloud.lib.templates.PlaceholderRegistry;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
-import org.bukkit.ChatColor;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.block.Block;
+import org.bukkit.block.BlockState;
 import org.bukkit.block.Sign;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.entity.Player;
 
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 public class SignManager {
@@ -29,29 +32,35 @@ public class SignManager {
     private Set<SignTemplate> signTemplates;
     private Map<Location, SignInstance> signInstances;
     private int updates = 0;
+    private final PlaceholderRegistry<ServerObject> placeholders = createPlaceholders();
 
+    private static final int ORDER_REFRESH_TICKS = 100;
+    private static final int VOLATILE_REFRESH_TICKS = 20;
+
+    private final ArrayDeque<SignInstance> renderQueue = new ArrayDeque<>();
+    private final Map<String, SignTemplate> missingTemplates = new HashMap<>();
+    private List<SignInstance> staticSigns = new ArrayList<>();
+    private Map<String, Map<SignTemplate, SignOrder>> dynamicSigns = new HashMap<>();
+    private boolean orderDirty = true;
+
+    /**
+     * Uses the facing cached in {@link SignInstance#getFacing()}, so no block state has to be fetched while sorting
+     */
     private static final Comparator<SignInstance> compareSignInstancesByLocation = (o1, o2) -> {
-        try {
-            org.bukkit.material.Sign sign1 = (org.bukkit.material.Sign) o1.getLocation().getBlock().getState().getData();
-            org.bukkit.material.Sign sign2 = (org.bukkit.material.Sign) o2.getLocation().getBlock().getState().getData();
-            if (!sign1.getFacing().equals(sign2.getFacing())) return 0;
-            if (o1.getLocation().getBlockY() != o2.getLocation().getBlockY())
-                return o2.getLocation().getBlockY() - o1.getLocation().getBlockY();
-            switch (sign1.getFacing()) {
-                case NORTH:
-                    return o2.getLocation().getBlockX() - o1.getLocation().getBlockX();
-                case SOUTH:
-                    return o1.getLocation().getBlockX() - o2.getLocation().getBlockX();
-                case EAST:
-                    return o2.getLocation().getBlockZ() - o1.getLocation().getBlockZ();
-                case WEST:
-                    return o1.getLocation().getBlockZ() - o2.getLocation().getBlockZ();
-                default:
-                    return 0;
-            }
-        } catch (Exception e) {
-            TimoCloudBukkit.getInstance().severe(e);
-            return 0;
+        if (!o1.getFacing().equals(o2.getFacing())) return o1.getFacing().compareTo(o2.getFacing());
+        if (o1.getLocation().getBlockY() != o2.getLocation().getBlockY())
+            return o2.getLocation().getBlockY() - o1.getLocation().getBlockY();
+        switch (o1.getFacing()) {
+            case NORTH:
+                return o2.getLocation().getBlockX() - o1.getLocation().getBlockX();
+            case SOUTH:
+                return o1.getLocation().getBlockX() - o2.getLocation().getBlockX();
+            case EAST:
+                return o2.getLocation().getBlockZ() - o1.getLocation().getBlockZ();
+            case WEST:
+                return o1.getLocation().getBlockZ() - o2.getLocation().getBlockZ();
+            default:
+                return 0;
         }
     };
 
@@ -62,6 +71,9 @@ public class SignManager {
     public void load() {
         loadSignTemplates();
         loadSignInstances();
+        renderQueue.clear();
+        missingTemplates.clear();
+        orderDirty = true;
 
         TimoCloudBukkit.getInstance().info("Successfully loaded signs!");
     }
@@ -74,12 +86,12 @@ public class SignManager {
             List<String> sortOutStates = config.getStringList(template + ".sortOutStates");
             try {
                 for (String layout : config.getConfigurationSection(template + ".layouts").getKeys(false)) {
-                    List<String>[] lines = Arrays.copyOf(new Object[4], 4, List[].class);
+                    List<CompiledTemplate<ServerObject>>[] lines = Arrays.copyOf(new Object[4], 4, List[].class);
                     for (int i = 0; i < 4; i++) {
                         String line = config.getString(template + ".layouts." + layout + ".lines." + (i + 1));
                         if (line == null)
                             throw new SignParseException("Line " + (i + 1) + " (signTemplates.yml section '" + template + ".layouts.lines." + (i + 1) + ") is not defined.");
-                        lines[i] = Arrays.asList(line.split(";"));
+                        lines[i] = compileLine(line);
                     }
                     Material signBlockMaterial = null;
                     int signBlockData = 0;
@@ -160,103 +172,154 @@ public class SignManager {
 
     private SignTemplate templateNotFound(String name) {
         List[] lines = {
-                Arrays.asList("&cCould not find"),
-                Arrays.asList("&ctemplate"),
-                Arrays.asList(""),
-                Arrays.asList(name)
+                compileLine("&cCould not find"),
+                compileLine("&ctemplate"),
+                compileLine(""),
+                Collections.singletonList(placeholders.compile(name))
         };
         Map<String, SignLayout> layouts = new HashMap<>();
         layouts.put("Default", new SignLayout(lines, -1, null, 0));
         return new SignTemplate("TemplateNotFound", layouts, null);
     }
 
+    /**
+     * Called every tick. Works out which server every sign shows, but only queues signs whose content has changed.
+     * The queue is then rendered within the configured time budget, the rest is rendered in the next ticks.
+     */
     public void updateSigns() {
-        if (TimoCloudAPI.getUniversalAPI().getServerGroups() == null) return;
-        Collection<SignInstance> dynamicInstances = new ArrayList<>();
-        for (SignInstance signInstance : signInstances.values()) {
-            if (signInstance.isDynamic()) {
-                dynamicInstances.add(signInstance);
-            } else {
-                processStaticSign(signInstance);
+        List<ServerGroupObject> serverGroups = TimoCloudAPI.getUniversalAPI().getServerGroups();
+        if (serverGroups == null) return;
+        if (orderDirty || updates % ORDER_REFRESH_TICKS == 0) buildOrder();
+        Map<String, ServerGroupObject> groupsByName = new HashMap<>();
+        for (ServerGroupObject group : serverGroups) groupsByName.put(group.getName().toLowerCase(), group);
+        if (!staticSigns.isEmpty()) processStaticSigns(serverGroups);
+        for (Map.Entry<String, Map<SignTemplate, SignOrder>> entry : dynamicSigns.entrySet()) {
+            ServerGroupObject group = groupsByName.get(entry.getKey());
+            if (group == null) continue;
+            for (Map.Entry<SignTemplate, SignOrder> templateEntry : entry.getValue().entrySet()) {
+                processDynamicSignsPerGroupAndTemplate(group, templateEntry.getKey(), templateEntry.getValue());
             }
         }
-        processDynamicSigns(dynamicInstances);
+        renderQueuedSigns();
         updates++;
     }
 
-    private void processDynamicSigns(Collection<SignInstance> signInstances) {
-        Map<ServerGroupObject, Collection<SignInstance>> groups = new HashMap<>();
-        for (SignInstance signInstance : signInstances) {
-            ServerGroupObject group = TimoCloudAPI.getUniversalAPI().getServerGroup(signInstance.getTarget());
-            groups.putIfAbsent(group, new ArrayList<>());
-            groups.get(group).add(signInstance);
+    /**
+     * Groups the active signs by group and template and sorts them. Block states are only read here, not on every tick.
+     */
+    private void buildOrder() {
+        orderDirty = false;
+        List<SignInstance> staticSigns = new ArrayList<>();
+        Map<String, Map<SignTemplate, SignOrder>> dynamicSigns = new HashMap<>();
+        for (SignInstance signInstance : signInstances.values()) {
+            if (!signInstance.isActive()) continue;
+            BlockState state = signInstance.getLocation().getBlock().getState();
+            if (!(state instanceof Sign)) continue;
+            if (!signInstance.isDynamic()) {
+                staticSigns.add(signInstance);
+                continue;
+            }
+            signInstance.setFacing(((org.bukkit.material.Sign) state.getData()).getFacing());
+            dynamicSigns
+                    .computeIfAbsent(signInstance.getTarget().toLowerCase(), key -> new HashMap<>())
+                    .computeIfAbsent(signInstance.getTemplate(), key -> new SignOrder())
+                    .add(signInstance);
         }
-        for (ServerGroupObject group : groups.keySet()) processDynamicSignsPerGroup(group, groups.get(group));
-    }
-
-    private boolean isSignActive(SignInstance signInstance) {
-        return signInstance.isActive() && signInstance.getLocation().getBlock().getState() instanceof Sign;
+        for (Map<SignTemplate, SignOrder> templates : dynamicSigns.values())
+            for (SignOrder order : templates.values()) order.sort();
+        this.staticSigns = staticSigns;
+        this.dynamicSigns = dynamicSigns;
     }
 
-    private void processDynamicSignsPerGroup(ServerGroupObject group, Collection<SignInstance> signInstances) {
-        Map<SignTemplate, Collection<SignInstance>> templates = new HashMap<>();
-        for (SignInstance signInstance : signInstances) {
-            templates.putIfAbsent(signInstance.getTemplate(), new ArrayList<>());
-            templates.get(signInstance.getTemplate()).add(signInstance);
+    private void processStaticSigns(List<ServerGroupObject> serverGroups) {
+        Map<String, ServerObject> serversByName = new HashMap<>();
+        for (ServerGroupObject group : serverGroups)
+            for (ServerObject server : group.getServers()) serversByName.put(server.getName().toLowerCase(), server);
+        for (SignInstance signInstance : staticSigns) {
+            assignSign(serversByName.get(signInstance.getTarget().toLowerCase()), signInstance.getTemplate(), signInstance);
         }
-        for (SignTemplate template : templates.keySet()) processDynamicSignsPerGroupAndTemplate(group, template, templates.get(template));
     }
 
-    private void processDynamicSignsPerGroupAndTemplate(ServerGroupObject group, SignTemplate template, Collection<SignInstance> signInstances) {
-        if (group == null) return;
-        signInstances = signInstances.stream().filter(this::isSignActive).collect(Collectors.toList());
+    private void processDynamicSignsPerGroupAndTemplate(ServerGroupObject group, SignTemplate template, SignOrder order) {
         Collection<String> sortOutStates = template.getSortOutStates() != null ? template.getSortOutStates() : group.getSortOutStates();
         List<ServerObject> targets = group.getServers().stream().filter(serverObject -> ! sortOutStates.contains(serverObject.getState())).collect(Collectors.toList());
-        List<SignInstance> withPriority = signInstances.stream().filter((signInstance) -> signInstance.getPriority() != 0).collect(Collectors.toList());
-        List<SignInstance> withoutPriority = signInstances.stream().filter((signInstance) -> signInstance.getPriority() == 0).collect(Collectors.toList());
-        withPriority.sort(Comparator.comparing(SignInstance::getPriority));
         Integer lastPriority = null;
         int step = -1;
-        for (SignInstance signInstance : withPriority) {
-            if (signInstance == null) return;
+        for (SignInstance signInstance : order.getWithPriority()) {
             if (lastPriority == null || signInstance.getPriority() != lastPriority) {
                 step++;
                 lastPriority = signInstance.getPriority();
             }
-            writeSign(step < targets.size() ? targets.get(step) : null, step < targets.size() ? signInstance.getTemplate() : getSignTemplate("NoFreeServerFound"), signInstance);
+            assignSign(step < targets.size() ? targets.get(step) : null, step < targets.size() ? signInstance.getTemplate() : getSignTemplate("NoFreeServerFound"), signInstance);
         }
 
         step = -1;
-        withoutPriority.sort(compareSignInstancesByLocation);
-        for (SignInstance signInstance : withoutPriority) {
-            if (signInstance == null) return;
+        for (SignInstance signInstance : order.getWithoutPriority()) {
             step++;
-            writeSign(step < targets.size() ? targets.get(step) : null, step < targets.size() ? signInstance.getTemplate() : getSignTemplate("NoFreeServerFound"), signInstance);
+            assignSign(step < targets.size() ? targets.get(step) : null, step < targets.size() ? signInstance.getTemplate() : getSignTemplate("NoFreeServerFound"), signInstance);
         }
     }
 
-    private void processStaticSign(SignInstance signInstance) {
-        if (signInstance.isDynamic()) {
-            TimoCloudBukkit.getInstance().severe("Fatal error: Wanted to process dynamic sign as static sign. This should never happen - please report this!");
-            return;
+    private void assignSign(ServerObject server, SignTemplate signTemplate, SignInstance signInstance) {
+        if (!signInstance.isActive()) return;
+        if (signTemplate == null) signTemplate = missingTemplates.computeIfAbsent(signInstance.getTemplateName(), this::templateNotFound);
+        signInstance.setTargetServer(server);
+        SignLayout signLayout = signTemplate.getLayout(server == null ? "Default" : server.getState());
+        signInstance.setLayout(signLayout);
+        if (signLayout.getUpdateSpeed() > 0 && updates % signLayout.getUpdateSpeed() == 0)
+            signInstance.setStep(signInstance.getStep() + 1);
+
+        if (signInstance.isQueued()) return;
+        // Values of plugin placeholders can change without the server changing, so such signs are rendered again every second
+        boolean refresh = updates % VOLATILE_REFRESH_TICKS == 0 && signLayout.hasVolatilePlaceholders();
+        if (!refresh
+                && signLayout == signInstance.getRenderedLayout()
+                && signInstance.getStep() == signInstance.getRenderedStep()
+                && hasSameDisplayData(server, signInstance.getRenderedServer())) return;
+        signInstance.setQueued(true);
+        renderQueue.add(signInstance);
+    }
+
+    private void renderQueuedSigns() {
+        long deadline = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(TimoCloudBukkit.getInstance().getFileManager().getConfig().getLong("signRenderBudgetMicros"));
+        while (!renderQueue.isEmpty()) {
+            renderSign(renderQueue.poll());
+            if (System.nanoTime() >= deadline) break;
         }
-        writeSign(TimoCloudAPI.getUniversalAPI().getServer(signInstance.getTarget()), signInstance.getTemplate(), signInstance);
     }
 
-    private void writeSign(ServerObject server, SignTemplate signTemplate, SignInstance signInstance) {
-        if (!isSignActive(signInstance)) return;
-        if (signTemplate == null) signTemplate = templateNotFound(signInstance.getTemplateName());
-        signInstance.setTargetServer(server);
-        SignLayout signLayout = signTemplate.getLayout(server == null ? "Default" : server.getState());
-        Sign sign = (Sign) signInstance.getLocation().getBlock().getState();
+    private void renderSign(SignInstance signInstance) {
+        signInstance.setQueued(false);
+        if (!signInstance.isActive() || getSignInstanceByLocation(signInstance.getLocation()) != signInstance) return; // Locked or removed while queued
+        BlockState state = signInstance.getLocation().getBlock().getState();
+        if (!(state instanceof Sign)) {
+            orderDirty = true;
+            return;
+        }
+        ServerObject server = signInstance.getTargetServer();
+        SignLayout signLayout = signInstance.getLayout();
+        Sign sign = (Sign) state;
+        boolean changed = false;
         for (int i = 0; i < 4; i++) {
-            sign.setLine(i, replace(signLayout.getLine(i).get(signInstance.getStep() % signLayout.getLine(i).size()), server));
+            String line = signLayout.getLine(i).get(signInstance.getStep() % signLayout.getLine(i).size()).render(server);
+            if (line.equals(sign.getLine(i))) continue;
+            sign.setLine(i, line);
+            changed = true;
         }
-        sign.update();
-        setSignBlock(signInstance, signLayout);
+        if (changed) sign.update();
+        if (signLayout != signInstance.getRenderedLayout()) setSignBlock(signInstance, signLayout);
+        signInstance.setRendered(server, signLayout, signInstance.getStep());
+    }
 
-        if (signLayout.getUpdateSpeed() > 0 && updates % signLayout.getUpdateSpeed() == 0)
-            signInstance.setStep(signInstance.getStep() + 1);
+    private static boolean hasSameDisplayData(ServerObject a, ServerObject b) {
+        if (a == null || b == null) return a == b;
+        return a.getOnlinePlayerCount() == b.getOnlinePlayerCount()
+                && a.getMaxPlayerCount() == b.getMaxPlayerCount()
+                && Objects.equals(a.getName(), b.getName())
+                && Objects.equals(a.getState(), b.getState())
+                && Objects.equals(a.getExtra(), b.getExtra())
+                && Objects.equals(a.getMotd(), b.getMotd())
+                && Objects.equals(a.getMap(), b.getMap());
     }
 
     private void setSignBlock(SignInstance signInstance, SignLayout signLayout) {
@@ -278,16 +341,35 @@ public class SignManager {
     }
 
     public String replace(String string, ServerObject server) {
-        if (server == null) return ChatColor.translateAlternateColorCodes('&', string);
-        return ChatColor.translateAlternateColorCodes('&', string
-                .replace("%name%", server.getName())
-                .replace("%server_name%", server.getName())
-                .replace("%current_players%", Integer.toString(server.getOnlinePlayerCount()))
-                .replace("%max_players%", Integer.toString(server.getMaxPlayerCount()))
-                .replace("%state%", server.getState())
-                .replace("%extra%", server.getExtra())
-                .replace("%motd%", server.getMotd())
-                .replace("%map%", server.getMap()));
+        return placeholders.getCompiled(string).render(server);
+    }
+
+    /**
+     * Splits a line of signTemplates.yml into its animation frames (separated by ";") and compiles them
+     */
+    private List<CompiledTemplate<ServerObject>> compileLine(String line) {
+        List<CompiledTemplate<ServerObject>> frames = new ArrayList<>();
+        for (String frame : line.split(";")) frames.add(placeholders.compile(frame));
+        return frames;
+    }
+
+    private static PlaceholderRegistry<ServerObject> createPlaceholders() {
+        return new PlaceholderRegistry<ServerObject>()
+                .register("name", (builder, server) -> builder.append(server.getName()))
+                .register("server_name", (builder, server) -> builder.append(server.getName()))
+                .register("current_players", (builder, server) -> builder.append(server.getOnlinePlayerCount()))
+                .register("max_players", (builder, server) -> builder.append(server.getMaxPlayerCount()))
+                .register("state", (builder, server) -> builder.append(server.getState()))
+                .register("extra", (builder, server) -> builder.append(server.getExtra()))
+                .register("motd", (builder, server) -> builder.append(server.getMotd()))
+                .register("map", (builder, server) -> builder.append(server.getMap()));
+    }
+
+    /**
+     * Placeholders which can be used in sign templates. Plugins can register their own ones here.
+     */
+    public PlaceholderRegistry<ServerObject> getPlaceholders() {
+        return placeholders;
     }
 
     public SignInstance getSignInstanceByLocation(Location location) {
@@ -305,8 +387,7 @@ public class SignManager {
     }
 
     public void addSign(Location location, String target, String template, int priority, Player player) {
-        SignInstance existing = getSignInstanceByLocation(location);
-        if (existing != null) signInstances.remove(existing);
+        signInstances.remove(location);
         if (template.equals("")) template = "Default";
         SignTemplate signTemplate = getSignTemplate(template);
         if (signTemplate == null) {
@@ -321,6 +402,7 @@ public class SignManager {
             return;
         }
         signInstances.put(location, new SignInstance(location, target, template, signTemplate, dynamic, priority));
+        orderDirty = true;
         BukkitMessageManager.sendMessage(player, "&aSuccessfully added sign. Please check the parsed data is correct: " +
                 "\n  &eTarget&6: &3 " + target +
                 "\n  &eIsGroup&6: &3 " + dynamic +
@@ -331,19 +413,47 @@ public class SignManager {
     }
 
     public void removeSign(SignInstance signInstance) {
-        signInstances.remove(signInstance);
+        signInstances.remove(signInstance.getLocation());
+        orderDirty = true;
     }
 
     public void lockSign(Location location) {
         SignInstance signInstance = getSignInstanceByLocation(location);
         if (signInstance == null) return;
         signInstance.setActive(false);
+        orderDirty = true;
     }
 
     public void unlockSign(Location location) {
         SignInstance signInstance = getSignInstanceByLocation(location);
         if (signInstance == null) return;
         signInstance.setActive(true);
+        signInstance.invalidate();
+        orderDirty = true;
+    }
+
+    private static class SignOrder {
+
+        private final List<SignInstance> withPriority = new ArrayList<>();
+        private final List<SignInstance> withoutPriority = new ArrayList<>();
+
+        void add(SignInstance signInstance) {
+            if (signInstance.getPriority() != 0) withPriority.add(signInstance);
+            else withoutPriority.add(signInstance);
+        }
+
+        void sort() {
+            withPriority.sort(Comparator.comparing(SignInstance::getPriority));
+            withoutPriority.sort(compareSignInstancesByLocation);
+        }
+
+        List<SignInstance> getWithPriority() {
+            return withPriority;
+        }
+
+        List<SignInstance> getWithoutPriority() {
+            return withoutPriority;
+        }
     }
 
 }
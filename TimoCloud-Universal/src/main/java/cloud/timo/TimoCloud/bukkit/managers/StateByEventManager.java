@@ -1,6 +1,7 @@
 package cloud.timo.TimoCloud.bukkit.managers;
 
 import cloud.timo.TimoCloud.api.TimoCloudAPI;
+import cloud.timo.TimoCloud.api.objects.ServerObject;
 import cloud.timo.TimoCloud.bukkit.TimoCloudBukkit;
 
 import java.text.NumberFormat;
@@ -23,17 +24,11 @@ public class StateByEventManager {
         }
     }
 
-    public void onPlayerJoin() {
-        setStateByPlayerCount();
-    }
-
-    public void onPlayerQuit() {
-        setStateByPlayerCount();
-    }
-
     public void setStateByPlayerCount() {
+        ServerObject thisServer = TimoCloudAPI.getBukkitAPI().getThisServer();
+        if (thisServer == null) return; // Not registered at the core yet
         int cur = TimoCloudBukkit.getInstance().getOnlinePlayersAmount();
-        String currentState = TimoCloudAPI.getBukkitAPI().getThisServer().getState();
+        String currentState = thisServer.getState();
         if (!currentState.equals(lastStateSet)) stateBefore = currentState;
         if (!TimoCloudBukkit.getInstance().getFileManager().getConfig().getStringList("PlayersToState.enabledWhileStates").contains(stateBefore))
             return;
@@ -2,6 +2,7 @@ package cloud.timo.TimoCloud.bukkit.signs;
 
 import cloud.timo.TimoCloud.api.objects.ServerObject;
 import org.bukkit.Location;
+import org.bukkit.block.BlockFace;
 
 public class SignInstance {
 
@@ -15,6 +16,13 @@ public class SignInstance {
     private ServerObject targetServer;
     private boolean active = true;
 
+    private SignLayout layout;
+    private BlockFace facing;
+    private boolean queued = false;
+    private ServerObject renderedServer;
+    private SignLayout renderedLayout;
+    private int renderedStep = -1;
+
     public SignInstance(Location location, String target, String templateName, SignTemplate template, boolean dynamic, int priority) {
         this.location = location;
         this.target = target;
@@ -71,4 +79,56 @@ public class SignInstance {
     public void setActive(boolean active) {
         this.active = active;
     }
+
+    public SignLayout getLayout() {
+        return layout;
+    }
+
+    public void setLayout(SignLayout layout) {
+        this.layout = layout;
+    }
+
+    /**
+     * @return The direction the sign is facing, cached when the sign order is built
+     */
+    public BlockFace getFacing() {
+        return facing;
+    }
+
+    public void setFacing(BlockFace facing) {
+        this.facing = facing;
+    }
+
+    public boolean isQueued() {
+        return queued;
+    }
+
+    public void setQueued(boolean queued) {
+        this.queued = queued;
+    }
+
+    public ServerObject getRenderedServer() {
+        return renderedServer;
+    }
+
+    public SignLayout getRenderedLayout() {
+        return renderedLayout;
+    }
+
+    public int getRenderedStep() {
+        return renderedStep;
+    }
+
+    public void setRendered(ServerObject server, SignLayout layout, int step) {
+        this.renderedServer = server;
+        this.renderedLayout = layout;
+        this.renderedStep = step;
+    }
+
+    /**
+     * Forces the sign to be rendered again, e.g. after it has been unlocked
+     */
+    public void invalidate() {
+        this.renderedLayout = null;
+    }
 }
@@ -1,33 +1,48 @@
 package cloud.timo.TimoCloud.bukkit.signs;
 
+import cloud.timo.TimoCloud.api.objects.ServerObject;
+import cloud.timo.TimoCloud.lib.templates.CompiledTemplate;
 import org.bukkit.Material;
 
 import java.util.List;
 
 public class SignLayout {
 
-    private List<String>[] lines;
+    private List<CompiledTemplate<ServerObject>>[] lines;
     private long updateSpeed;
     private Material signBlockMaterial;
     private int signBlockData;
 
     public SignLayout() {}
 
-    public SignLayout(List<String>[] lines, long updateSpeed, Material signBlockMaterial, int signBlockData) {
+    public SignLayout(List<CompiledTemplate<ServerObject>>[] lines, long updateSpeed, Material signBlockMaterial, int signBlockData) {
         this.lines = lines;
         this.updateSpeed = updateSpeed;
         this.signBlockMaterial = signBlockMaterial;
         this.signBlockData = signBlockData;
     }
 
-    public List<String> getLine(int lineNumber) {
+    /**
+     * @return The animation frames of the line, each one compiled once when the template has been loaded
+     */
+    public List<CompiledTemplate<ServerObject>> getLine(int lineNumber) {
         return lines[lineNumber];
     }
 
-    public List<String>[] getLines() {
+    public List<CompiledTemplate<ServerObject>>[] getLines() {
         return lines;
     }
 
+    /**
+     * @return Whether a line uses a placeholder registered by a plugin, whose value may change without the server changing
+     */
+    public boolean hasVolatilePlaceholders() {
+        for (List<CompiledTemplate<ServerObject>> line : lines) {
+            for (CompiledTemplate<ServerObject> frame : line) if (frame.hasVolatilePlaceholders()) return true;
+        }
+        return false;
+    }
+
     public long getUpdateSpeed() {
         return updateSpeed;
     }
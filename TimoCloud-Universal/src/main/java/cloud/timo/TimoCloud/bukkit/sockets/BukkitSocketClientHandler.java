@@ -1,17 +1,21 @@
 package cloud.timo.TimoCloud.bukkit.sockets;
 
 import cloud.timo.TimoCloud.bukkit.TimoCloudBukkit;
+import cloud.timo.TimoCloud.lib.sockets.OutboundStage;
+import cloud.timo.TimoCloud.lib.sockets.ReconnectBuffer;
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 
+@ChannelHandler.Sharable
 public class BukkitSocketClientHandler extends ChannelInboundHandlerAdapter {
 
-    private Channel channel;
-    private String queue;
+    private volatile Channel channel;
+    private final ReconnectBuffer queue;
 
     public BukkitSocketClientHandler() {
-        resetQueue();
+        this.queue = new ReconnectBuffer();
     }
 
     @Override
@@ -23,25 +27,35 @@ public class BukkitSocketClientHandler extends ChannelInboundHandlerAdapter {
     }
 
     public void resetQueue() {
-        queue = "";
+        queue.drain();
     }
 
+    /**
+     * Sends the messages which have been buffered while not being connected
+     */
     public void flush() {
         if (channel == null) {
             return;
         }
-        channel.writeAndFlush(queue);
-        resetQueue();
+        for (String message : queue.drain()) OutboundStage.send(channel, message);
     }
 
+    /**
+     * Buffers the message while not connected to the core, e.g. while the core is restarting
+     */
     public void sendMessage(String message) {
-        if (channel == null) {
-            queue += message;
+        Channel channel = this.channel;
+        if (channel == null || !channel.isActive()) {
+            queue.add(message);
         } else {
-            channel.writeAndFlush(message);
+            OutboundStage.send(channel, message);
         }
     }
 
+    public ReconnectBuffer getQueue() {
+        return queue;
+    }
+
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
         // Close the connection when an exception is raised.
@@ -11,12 +11,16 @@ import cloud.timo.TimoCloud.bukkit.TimoCloudBukkit;
 import cloud.timo.TimoCloud.bukkit.api.TimoCloudUniversalAPIBukkitImplementation;
 import cloud.timo.TimoCloud.lib.messages.Message;
 import cloud.timo.TimoCloud.lib.sockets.BasicStringHandler;
+import cloud.timo.TimoCloud.lib.sockets.compression.StreamCompression;
 import cloud.timo.TimoCloud.lib.utils.EnumUtil;
 import cloud.timo.TimoCloud.lib.utils.PluginMessageSerializer;
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
 
+import java.util.List;
 import java.util.Map;
 
+@ChannelHandler.Sharable
 public class BukkitStringHandler extends BasicStringHandler {
 
     @Override
@@ -30,11 +34,20 @@ public class BukkitStringHandler extends BasicStringHandler {
         Object data = message.get("data");
         switch (type) {
             case "HANDSHAKE_SUCCESS":
-                TimoCloudBukkit.getInstance().onHandshakeSuccess();
+                TimoCloudBukkit.getInstance().onHandshakeSuccess(message.containsKey("resumeTimeout") ? ((Number) message.get("resumeTimeout")).longValue() : 0);
+                break;
+            case "HANDSHAKE_REFUSED":
+                TimoCloudBukkit.getInstance().onHandshakeRefused();
+                break;
+            case "COMPRESSION":
+                StreamCompression.enable(channel, (String) message.get("algorithm"), ((Number) message.get("threshold")).intValue());
                 break;
             case "API_DATA":
                 ((TimoCloudUniversalAPIBukkitImplementation) TimoCloudAPI.getUniversalAPI()).setData((Map<String, Object>) data);
                 break;
+            case "PLAYERS":
+                ((TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI()).setPlayers((List<String>) data);
+                break;
             case "EVENT_FIRED":
                 try {
                     EventType eventType = EnumUtil.valueOf(EventType.class, (String) message.get("eventType"));
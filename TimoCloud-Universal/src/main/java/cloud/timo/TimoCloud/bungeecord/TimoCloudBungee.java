@@ -4,6 +4,7 @@ package cloud.timo.TimoCloud.bungeecord;
 import cloud.timo.TimoCloud.api.TimoCloudAPI;
 import cloud.timo.TimoCloud.api.implementations.EventManager;
 import cloud.timo.TimoCloud.api.implementations.TimoCloudUniversalAPIBasicImplementation;
+import cloud.timo.TimoCloud.api.objects.ProxyGroupObject;
 import cloud.timo.TimoCloud.api.utils.APIInstanceUtil;
 import cloud.timo.TimoCloud.bungeecord.api.TimoCloudBungeeAPIImplementation;
 import cloud.timo.TimoCloud.bungeecord.api.TimoCloudInternalMessageAPIBungeeImplementation;
@@ -18,34 +19,54 @@ import cloud.timo.TimoCloud.bungeecord.managers.BungeeEventManager;
 import cloud.timo.TimoCloud.bungeecord.managers.BungeeFileManager;
 import cloud.timo.TimoCloud.bungeecord.managers.IpManager;
 import cloud.timo.TimoCloud.bungeecord.managers.LobbyManager;
+import cloud.timo.TimoCloud.bungeecord.managers.ServerListManager;
 import cloud.timo.TimoCloud.bungeecord.sockets.BungeeSocketClient;
 import cloud.timo.TimoCloud.bungeecord.sockets.BungeeSocketClientHandler;
 import cloud.timo.TimoCloud.bungeecord.sockets.BungeeSocketMessageManager;
 import cloud.timo.TimoCloud.bungeecord.sockets.BungeeStringHandler;
+import cloud.timo.TimoCloud.bungeecord.utils.PlayerUtil;
 import cloud.timo.TimoCloud.lib.logging.LoggingOutputStream;
 import cloud.timo.TimoCloud.lib.messages.Message;
+import cloud.timo.TimoCloud.lib.sockets.CoreReconnector;
+import cloud.timo.TimoCloud.lib.sockets.compression.StreamCompression;
+import cloud.timo.TimoCloud.lib.templates.PlaceholderRegistry;
+import cloud.timo.TimoCloud.lib.templates.ProxyGroupPlaceholders;
+import cloud.timo.TimoCloud.lib.utils.StatusReporter;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import net.md_5.bungee.api.ChatColor;
+import net.md_5.bungee.api.connection.ProxiedPlayer;
 import net.md_5.bungee.api.plugin.Plugin;
 
 import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 public class TimoCloudBungee extends Plugin {
 
+    private static final long STATUS_MIN_INTERVAL = 500;
+    private static final long STATUS_HEARTBEAT = 30000;
+
     private static TimoCloudBungee instance;
     private BungeeFileManager fileManager;
     private LobbyManager lobbyManager;
     private BungeeEventManager eventManager;
     private IpManager ipManager;
+    private ServerListManager serverListManager;
     private BungeeSocketClient socketClient;
     private BungeeSocketClientHandler socketClientHandler;
     private BungeeSocketMessageManager socketMessageManager;
     private BungeeStringHandler bungeeStringHandler;
     private TimoCloudCommand timoCloudCommand;
+    private PlaceholderRegistry<ProxyGroupObject> motdPlaceholders;
+    private StatusReporter statusReporter;
+    private CoreReconnector reconnector;
     private String prefix;
     private boolean shuttingDown = false;
+    private boolean proxyProtocolSupported;
 
     public void info(String message) {
         getLogger().info(ChatColor.translateAlternateColorCodes('&', " " + message));
@@ -96,17 +117,22 @@ public class TimoCloudBungee extends Plugin {
         lobbyManager = new LobbyManager();
         eventManager = new BungeeEventManager();
         ipManager = new IpManager();
+        serverListManager = new ServerListManager();
         socketClient = new BungeeSocketClient();
         socketClientHandler = new BungeeSocketClientHandler();
         socketMessageManager = new BungeeSocketMessageManager();
         bungeeStringHandler = new BungeeStringHandler();
         timoCloudCommand = new TimoCloudCommand();
+        motdPlaceholders = ProxyGroupPlaceholders.create();
+        statusReporter = new StatusReporter(STATUS_MIN_INTERVAL, STATUS_HEARTBEAT);
+        reconnector = new CoreReconnector(this::connectToCore, this::onConnectionLost, this::info);
 
         APIInstanceUtil.setInternalMessageInstance(new TimoCloudInternalMessageAPIBungeeImplementation());
         APIInstanceUtil.setUniversalInstance(new TimoCloudUniversalAPIBungeeImplementation());
         APIInstanceUtil.setBungeeInstance(new TimoCloudBungeeAPIImplementation());
         APIInstanceUtil.setEventInstance(new EventManager());
         APIInstanceUtil.setMessageInstance(new TimoCloudMessageAPIBungeeImplementation());
+        TimoCloudAPI.getEventAPI().registerListener(((TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI()).getPlayerDirectory());
     }
 
     private void registerCommands() {
@@ -144,24 +170,68 @@ public class TimoCloudBungee extends Plugin {
     }
 
     public void onSocketConnect() {
-        getSocketMessageManager().sendMessage(Message.create().setType("PROXY_HANDSHAKE").setTarget(getProxyId()));
+        getSocketMessageManager().sendMessage(Message.create()
+                .setType("PROXY_HANDSHAKE")
+                .setTarget(getProxyId())
+                .setIfNotNull("token", getToken())
+                .set("compression", StreamCompression.getSupportedAlgorithms())
+                .set("proxyProtocol", proxyProtocolSupported)
+                .set("players", getOnlinePlayers()));
+    }
+
+    /**
+     * @return The players on this proxy, serialized like in player events. Sent with every handshake, so a restarted core
+     * knows them before it answers any request for the player directory.
+     */
+    private List<String> getOnlinePlayers() {
+        List<String> players = new ArrayList<>();
+        ObjectMapper objectMapper = ((TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI()).getObjectMapper();
+        for (ProxiedPlayer player : getProxy().getPlayers()) {
+            if (player.getServer() == null) continue; // Will be announced by its connect event
+            try {
+                players.add(objectMapper.writeValueAsString(PlayerUtil.playerToObject(player)));
+            } catch (Exception e) {
+                severe("Error while serializing player " + player.getName() + ": ");
+                severe(e);
+            }
+        }
+        return players;
     }
 
     public void onSocketDisconnect() {
-        info("Disconnected from TimoCloudCore. Shutting down....");
+        if (isShuttingDown()) return;
+        reconnector.onDisconnected();
+    }
+
+    /**
+     * Called if the core could not be reached again after the connection has been lost, or if it has refused this proxy
+     */
+    private void onConnectionLost() {
+        info("Shutting down....");
         stop();
     }
 
-    public void onHandshakeSuccess() {
+    /**
+     * @param resumeTimeout Seconds the core waits for this proxy to reconnect after the core has been restarted
+     */
+    public void onHandshakeSuccess(long resumeTimeout) {
+        reconnector.onHandshakeSuccess(resumeTimeout);
+        getSocketMessageManager().sendMessage(Message.create().setType("GET_PLAYERS"));
+        statusReporter.reset();
         everySecond();
     }
 
+    public void onHandshakeRefused() {
+        severe("TimoCloudCore does not know this proxy (anymore).");
+        reconnector.onRefused();
+    }
+
     private void stop() {
         getProxy().stop();
     }
 
     private void everySecond() {
-        sendEverything();
+        reportStatus();
         requestApiData();
     }
 
@@ -169,12 +239,12 @@ public class TimoCloudBungee extends Plugin {
         getSocketMessageManager().sendMessage(Message.create().setType("GET_API_DATA"));
     }
 
-    private void sendEverything() {
-        sendPlayerCount();
-    }
-
-    public void sendPlayerCount() {
-        getSocketMessageManager().sendMessage(Message.create().setType("SET_PLAYER_COUNT").setData(getProxy().getOnlineCount()));
+    /**
+     * Sends the player count to the core if it has changed. During join storms, changes are coalesced and sent by the next call.
+     */
+    public void reportStatus() {
+        Map<String, Object> changes = statusReporter.update(Collections.singletonMap("players", getProxy().getOnlineCount()), System.currentTimeMillis());
+        if (changes != null) getSocketMessageManager().sendMessage(Message.create().setType("STATUS").setData(changes));
     }
 
     private void registerListeners() {
@@ -183,6 +253,7 @@ public class TimoCloudBungee extends Plugin {
         getProxy().getPluginManager().registerListener(this, new ProxyPing());
         getProxy().getPluginManager().registerListener(this, new EventMonitor());
         getProxy().getPluginManager().registerListener(this, new IpInjector());
+        proxyProtocolSupported = IpInjector.injectPipeline();
     }
 
     public String getProxyName() {
@@ -193,6 +264,13 @@ public class TimoCloudBungee extends Plugin {
         return System.getProperty("timocloud-proxyid");
     }
 
+    /**
+     * @return The secret this proxy authenticates with at the core, which allows it to be re-adopted after a core restart
+     */
+    public String getToken() {
+        return System.getProperty("timocloud-token");
+    }
+
     public static TimoCloudBungee getInstance() {
         return instance;
     }
@@ -201,6 +279,10 @@ public class TimoCloudBungee extends Plugin {
         return fileManager;
     }
 
+    public PlaceholderRegistry<ProxyGroupObject> getMotdPlaceholders() {
+        return motdPlaceholders;
+    }
+
     public LobbyManager getLobbyManager() {
         return lobbyManager;
     }
@@ -213,6 +295,10 @@ public class TimoCloudBungee extends Plugin {
         return ipManager;
     }
 
+    public ServerListManager getServerListManager() {
+        return serverListManager;
+    }
+
     public String getPrefix() {
         return prefix;
     }
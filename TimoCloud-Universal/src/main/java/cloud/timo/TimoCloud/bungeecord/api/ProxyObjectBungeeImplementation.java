@@ -1,17 +1,15 @@
 package cloud.timo.TimoCloud.bungeecord.api;
 
 import cloud.timo.TimoCloud.api.implementations.ProxyObjectBasicImplementation;
-import cloud.timo.TimoCloud.api.objects.PlayerObject;
 import cloud.timo.TimoCloud.api.objects.ProxyObject;
 import lombok.NoArgsConstructor;
 
 import java.net.InetSocketAddress;
-import java.util.List;
 
 @NoArgsConstructor
 public class ProxyObjectBungeeImplementation extends ProxyObjectBasicImplementation implements ProxyObject {
 
-    public ProxyObjectBungeeImplementation(String name, String id, String group, List<PlayerObject> onlinePlayers, int onlinePlayerCount, String base, InetSocketAddress inetSocketAddress) {
-        super(name, id, group, onlinePlayers, onlinePlayerCount, base, inetSocketAddress);
+    public ProxyObjectBungeeImplementation(String name, String id, String group, int onlinePlayerCount, String base, InetSocketAddress inetSocketAddress) {
+        super(name, id, group, onlinePlayerCount, base, inetSocketAddress);
     }
 }
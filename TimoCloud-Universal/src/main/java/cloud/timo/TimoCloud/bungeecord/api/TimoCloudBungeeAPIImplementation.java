@@ -2,12 +2,20 @@ package cloud.timo.TimoCloud.bungeecord.api;
 
 import cloud.timo.TimoCloud.api.TimoCloudAPI;
 import cloud.timo.TimoCloud.api.TimoCloudBungeeAPI;
+import cloud.timo.TimoCloud.api.objects.ProxyGroupObject;
 import cloud.timo.TimoCloud.api.objects.ProxyObject;
 import cloud.timo.TimoCloud.bungeecord.TimoCloudBungee;
 
+import java.util.function.Function;
+
 public class TimoCloudBungeeAPIImplementation implements TimoCloudBungeeAPI {
     @Override
     public ProxyObject getThisProxy() {
         return TimoCloudAPI.getUniversalAPI().getProxy(TimoCloudBungee.getInstance().getProxyName());
     }
+
+    @Override
+    public void registerMotdPlaceholder(String name, Function<ProxyGroupObject, String> resolver) {
+        TimoCloudBungee.getInstance().getMotdPlaceholders().register(name, (builder, group) -> builder.append(resolver.apply(group)));
+    }
 }
@@ -48,6 +48,7 @@ public class TimoCloudCommand extends Command {
             }
             if (args[0].equalsIgnoreCase("reload")) {
                 TimoCloudBungee.getInstance().getFileManager().load();
+                TimoCloudBungee.getInstance().getLobbyManager().loadConfig();
                 BungeeMessageManager.sendMessage(sender, "&aSuccessfully reloaded from configuration!");
                 // Do not return because we want to reload the Core configuration as well
             }
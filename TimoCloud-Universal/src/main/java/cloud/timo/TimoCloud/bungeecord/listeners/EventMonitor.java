@@ -30,7 +30,7 @@ public class EventMonitor implements Listener {
 
     @EventHandler
     public void onPlayerConnect(PostLoginEvent event) {
-        TimoCloudBungee.getInstance().sendPlayerCount();
+        TimoCloudBungee.getInstance().reportStatus();
         pending.add(event.getPlayer().getUniqueId());
     }
 
@@ -52,8 +52,9 @@ public class EventMonitor implements Listener {
 
     @EventHandler
     public void onPlayerQuitEvent(net.md_5.bungee.api.event.PlayerDisconnectEvent event) {
-        TimoCloudBungee.getInstance().sendPlayerCount();
+        TimoCloudBungee.getInstance().reportStatus();
         TimoCloudBungee.getInstance().getEventManager().sendEvent(new PlayerDisconnectEvent(getPlayer(event.getPlayer())));
+        TimoCloudBungee.getInstance().getLobbyManager().removeFromHistory(event.getPlayer().getUniqueId());
     }
 
     private PlayerObject getPlayer(ProxiedPlayer proxiedPlayer) {
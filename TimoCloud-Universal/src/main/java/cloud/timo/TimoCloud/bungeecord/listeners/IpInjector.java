@@ -1,6 +1,12 @@
 package cloud.timo.TimoCloud.bungeecord.listeners;
 
+import cloud.timo.TimoCloud.api.TimoCloudAPI;
+import cloud.timo.TimoCloud.api.objects.CordObject;
 import cloud.timo.TimoCloud.bungeecord.TimoCloudBungee;
+import cloud.timo.TimoCloud.lib.utils.network.ProxyProtocol;
+import cloud.timo.TimoCloud.lib.utils.network.ProxyProtocolDecoder;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
 import net.md_5.bungee.api.connection.Connection;
 import net.md_5.bungee.api.event.PlayerHandshakeEvent;
 import net.md_5.bungee.api.event.PreLoginEvent;
@@ -9,9 +15,55 @@ import net.md_5.bungee.api.plugin.Listener;
 import net.md_5.bungee.event.EventHandler;
 
 import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 
 public class IpInjector implements Listener {
 
+    private static final String DECODER_NAME = "timocloud-proxy-protocol";
+
+    /**
+     * Adds a {@link ProxyProtocolDecoder} in front of BungeeCord's pipeline, so that Cords can pass the client's address in-band.
+     * Has to be called before BungeeCord binds its listeners, i.e. while plugins are being enabled.
+     *
+     * @return Whether the decoder has been injected, i.e. whether Cords may send PROXY protocol headers to this proxy
+     */
+    public static boolean injectPipeline() {
+        try {
+            Field serverChildField = Class.forName("net.md_5.bungee.netty.PipelineUtils").getDeclaredField("SERVER_CHILD");
+            serverChildField.setAccessible(true);
+            ChannelInitializer<Channel> serverChild = (ChannelInitializer<Channel>) serverChildField.get(null);
+            Method initChannel = ChannelInitializer.class.getDeclaredMethod("initChannel", Channel.class);
+            initChannel.setAccessible(true);
+            ChannelInitializer<Channel> injectingServerChild = new ChannelInitializer<Channel>() {
+                @Override
+                protected void initChannel(Channel channel) throws Exception {
+                    initChannel.invoke(serverChild, channel);
+                    channel.pipeline().addFirst(DECODER_NAME, new ProxyProtocolDecoder(IpInjector::isCord));
+                }
+            };
+            Field modifiersField = Field.class.getDeclaredField("modifiers");
+            modifiersField.setAccessible(true);
+            modifiersField.setInt(serverChildField, serverChildField.getModifiers() & ~Modifier.FINAL);
+            serverChildField.set(null, injectingServerChild);
+            return true;
+        } catch (Exception e) {
+            TimoCloudBungee.getInstance().severe("Error while injecting PROXY protocol decoder, client addresses will only be received via the core: ");
+            TimoCloudBungee.getInstance().severe(e);
+            return false;
+        }
+    }
+
+    private static boolean isCord(InetAddress address) {
+        if (address.isLoopbackAddress()) return true;
+        for (CordObject cord : TimoCloudAPI.getUniversalAPI().getCords()) {
+            if (address.equals(cord.getIpAddress())) return true;
+        }
+        return false;
+    }
+
     @EventHandler (priority = -128)
     public void onPreLoginEvent(PreLoginEvent event) {
         injectConnection(event.getConnection());
@@ -28,14 +80,17 @@ public class IpInjector implements Listener {
     }
 
     private void injectConnection(Connection connection) {
-        if (TimoCloudBungee.getInstance().getIpManager().getAddressByChannel(connection.getAddress()) == null) return;
         try {
             Field wrapperField = connection.getClass().getDeclaredField("ch");
             wrapperField.setAccessible(true);
             Object wrapper = wrapperField.get(connection);
+            Channel channel = (Channel) wrapper.getClass().getMethod("getHandle").invoke(wrapper);
+            InetSocketAddress address = channel.attr(ProxyProtocol.SOURCE_ADDRESS).get();
+            if (address == null) address = TimoCloudBungee.getInstance().getIpManager().getAddressByChannel(connection.getAddress());
+            if (address == null) return;
             Field addressField = wrapper.getClass().getDeclaredField("remoteAddress");
             addressField.setAccessible(true);
-            addressField.set(wrapper, TimoCloudBungee.getInstance().getIpManager().getAddressByChannel(connection.getAddress()));
+            addressField.set(wrapper, address);
         } catch (Exception e) {
             TimoCloudBungee.getInstance().severe("Error while injecting ip address: ");
             TimoCloudBungee.getInstance().severe(e);
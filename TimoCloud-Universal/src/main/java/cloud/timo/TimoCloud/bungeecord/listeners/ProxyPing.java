@@ -2,7 +2,7 @@ package cloud.timo.TimoCloud.bungeecord.listeners;
 
 import cloud.timo.TimoCloud.api.TimoCloudAPI;
 import cloud.timo.TimoCloud.api.objects.ProxyObject;
-import net.md_5.bungee.api.ChatColor;
+import cloud.timo.TimoCloud.bungeecord.TimoCloudBungee;
 import net.md_5.bungee.api.ServerPing;
 import net.md_5.bungee.api.chat.TextComponent;
 import net.md_5.bungee.api.event.ProxyPingEvent;
@@ -21,6 +21,6 @@ public class ProxyPing implements Listener {
                 proxyObject.getGroup().getOnlinePlayerCount(),
                 serverPing.getPlayers().getSample()
         ));
-        serverPing.setDescriptionComponent(new TextComponent(ChatColor.translateAlternateColorCodes('&', proxyObject.getGroup().getMotd())));
+        serverPing.setDescriptionComponent(new TextComponent(TimoCloudBungee.getInstance().getMotdPlaceholders().getCompiled(proxyObject.getGroup().getMotd()).render(proxyObject.getGroup())));
     }
 }
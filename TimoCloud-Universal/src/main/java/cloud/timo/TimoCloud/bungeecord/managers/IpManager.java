@@ -1,15 +1,27 @@
 package cloud.timo.TimoCloud.bungeecord.managers;
 
 import java.net.InetSocketAddress;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
+/**
+ * Client addresses sent by Cords via the core (SET_IP), used when the Cord does not send a PROXY protocol header.
+ * Addresses are only needed until the login, so only the most recent ones are kept.
+ */
 public class IpManager {
 
+    private static final int MAX_ADDRESSES = 4096;
+
     private Map<InetSocketAddress, InetSocketAddress> addresses;
 
     public IpManager() {
-        addresses = new HashMap<>();
+        addresses = Collections.synchronizedMap(new LinkedHashMap<InetSocketAddress, InetSocketAddress>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<InetSocketAddress, InetSocketAddress> eldest) {
+                return size() > MAX_ADDRESSES;
+            }
+        });
     }
 
     public InetSocketAddress getAddressByChannel(InetSocketAddress channel) {
@@ -2,91 +2,74 @@ package cloud.timo.TimoCloud.bungeecord.managers;
 
 import cloud.timo.TimoCloud.api.TimoCloudAPI;
 import cloud.timo.TimoCloud.api.objects.ServerGroupObject;
-import cloud.timo.TimoCloud.api.objects.ServerObject;
 import cloud.timo.TimoCloud.bungeecord.TimoCloudBungee;
 import cloud.timo.TimoCloud.bungeecord.objects.LobbyChooseStrategy;
+import cloud.timo.TimoCloud.bungeecord.objects.LobbyHistory;
+import cloud.timo.TimoCloud.bungeecord.objects.LobbyIndex;
 import net.md_5.bungee.api.ProxyServer;
 import net.md_5.bungee.api.config.ServerInfo;
 import net.md_5.bungee.api.connection.ProxiedPlayer;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 public class LobbyManager {
 
     private static final long INVALIDATE_CACHE_TIME = 2000;
+    private static final int MAX_HISTORY_PLAYERS = 10000;
+    private static final int MAX_HISTORY_LOBBIES = 32;
 
-    private Map<UUID, List<String>> lobbyHistory;
-    private Map<UUID, Long> lastUpdate;
+    private final LobbyHistory lobbyHistory;
+    private volatile LobbyIndex lobbyIndex;
+    private volatile String fallbackGroup;
+    private volatile LobbyChooseStrategy lobbyChooseStrategy;
 
     public LobbyManager() {
-        lobbyHistory = new HashMap<>();
-        lastUpdate = new HashMap<>();
+        lobbyHistory = new LobbyHistory(INVALIDATE_CACHE_TIME, MAX_HISTORY_PLAYERS, MAX_HISTORY_LOBBIES);
+        lobbyIndex = null;
+        loadConfig();
     }
 
-    private List<String> getVisitedLobbies(UUID uuid) {
-        lobbyHistory.putIfAbsent(uuid, new ArrayList<>());
-        lastUpdate.putIfAbsent(uuid, 0L);
-        if (new Date().getTime()-lastUpdate.get(uuid) >= INVALIDATE_CACHE_TIME) {
-            lobbyHistory.put(uuid, new ArrayList<>());
-        }
-        lastUpdate.put(uuid, new Date().getTime());
-        return lobbyHistory.get(uuid);
+    /**
+     * Reads fallbackGroup and LobbyChooseStrategy once instead of on every join
+     */
+    public void loadConfig() {
+        fallbackGroup = TimoCloudBungee.getInstance().getFileManager().getConfig().getString("fallbackGroup");
+        lobbyChooseStrategy = LobbyChooseStrategy.valueOf(TimoCloudBungee.getInstance().getFileManager().getConfig().getString("LobbyChooseStrategy"));
+        updateIndex();
+    }
+
+    /**
+     * Rebuilds the lobby index, called whenever new API data has been received
+     */
+    public void updateIndex() {
+        // While the plugin is enabling, the API has not been set up yet. The index is built with the first API data then.
+        if (TimoCloudAPI.getUniversalAPI() == null) return;
+        ServerGroupObject group = TimoCloudAPI.getUniversalAPI().getServerGroup(fallbackGroup);
+        lobbyIndex = group == null ? null : new LobbyIndex(group.getServers());
     }
 
     public void addToHistory(UUID uuid, String server) {
-        lobbyHistory.putIfAbsent(uuid, new ArrayList<>());
-        lobbyHistory.get(uuid).add(server);
+        lobbyHistory.add(uuid, server);
     }
 
-    private LobbyChooseStrategy getLobbyChooseStrategy() {
-        return LobbyChooseStrategy.valueOf(TimoCloudBungee.getInstance().getFileManager().getConfig().getString("LobbyChooseStrategy"));
+    public void removeFromHistory(UUID uuid) {
+        lobbyHistory.remove(uuid);
     }
 
     public ServerInfo searchFreeLobby(UUID uuid, ServerInfo notThis) {
-        ServerGroupObject group = TimoCloudAPI.getUniversalAPI().getServerGroup(TimoCloudBungee.getInstance().getFileManager().getConfig().getString("fallbackGroup"));
-        if (group == null) {
-            TimoCloudBungee.getInstance().severe("Error while searching lobby: Could not find specified fallbackGroup '" + TimoCloudBungee.getInstance().getFileManager().getConfig().getString("fallbackGroup") + "'");
+        LobbyIndex index = lobbyIndex;
+        if (index == null) {
+            TimoCloudBungee.getInstance().severe("Error while searching lobby: Could not find specified fallbackGroup '" + fallbackGroup + "'");
             return null;
         }
-        String notThisName = notThis == null ? "" : notThis.getName();
-        List<ServerObject> servers = group.getServers().stream()
-                .filter(server -> !server.getName().equals(notThisName))
-                .filter(server -> server.getOnlinePlayerCount() < server.getMaxPlayerCount())
-                .collect(Collectors.toList());
-        List<ServerObject> removeServers = new ArrayList<>();
-        ServerObject notThisServer = notThis == null ? null : TimoCloudAPI.getUniversalAPI().getServer(notThis.getName());
-        if (notThisServer != null) removeServers.add(notThisServer);
-        List<String> history = getVisitedLobbies(uuid);
-
-        for (ServerObject server : servers) {
-            if (history.contains(server.getName()) && ! removeServers.contains(server)) removeServers.add(server);
-        }
-        servers.removeAll(removeServers);
-        if (servers.size() == 0) {
-            return null;
-        }
-
-        servers.sort(Comparator.comparingInt(ServerObject::getOnlinePlayerCount));
-        ServerObject target = null;
-        switch (getLobbyChooseStrategy()) {
-            case RANDOM:
-                target = servers.get(new Random().nextInt(servers.size()));
-                break;
-            case FILL:
-                for (int i = servers.size()-1; i>= 0; i--) {
-                    ServerObject server = servers.get(i);
-                    if (server.getOnlinePlayerCount() < server.getMaxPlayerCount()) {
-                        target = server;
-                        break;
-                    }
-                }
-                break;
-            case BALANCE:
-                target = servers.get(0);
-                break;
+        Set<String> exclude = lobbyHistory.getVisited(uuid);
+        if (notThis != null) {
+            if (exclude.isEmpty()) exclude = new HashSet<>();
+            exclude.add(notThis.getName());
         }
-        return TimoCloudBungee.getInstance().getProxy().getServers().get(target.getName());
+        String target = index.select(lobbyChooseStrategy, exclude);
+        if (target == null) return null;
+        return TimoCloudBungee.getInstance().getProxy().getServers().get(target);
     }
 
     public ServerInfo getFreeLobby(UUID uuid, boolean kicked) {
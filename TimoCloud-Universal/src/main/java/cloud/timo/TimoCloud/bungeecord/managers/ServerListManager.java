@@ -0,0 +1,76 @@
+package cloud.timo.TimoCloud.bungeecord.managers;
+
+import cloud.timo.TimoCloud.bungeecord.TimoCloudBungee;
+import cloud.timo.TimoCloud.lib.messages.Message;
+import net.md_5.bungee.api.config.ServerInfo;
+
+import java.net.InetSocketAddress;
+import java.util.*;
+
+/**
+ * Keeps the proxy's server list in sync with the core. The core sends a full SERVER_LIST when the proxy registers and versioned
+ * SERVER_LIST_DELTA messages afterwards. If a delta is missing, a full list is requested.
+ * Only servers added by the core are ever removed, servers from BungeeCord's own config are left alone.
+ */
+public class ServerListManager {
+
+    private final Set<String> servers = new HashSet<>();
+    private long version = -1;
+    private boolean resyncRequested = false;
+
+    public synchronized void setServers(long version, List<Map<String, Object>> entries) {
+        Map<String, ServerInfo> proxyServers = TimoCloudBungee.getInstance().getProxy().getServers();
+        Map<String, ServerInfo> added = construct(entries, proxyServers);
+        Set<String> names = new HashSet<>();
+        for (Map<String, Object> entry : entries) names.add((String) entry.get("name"));
+        List<String> removed = new ArrayList<>();
+        for (String name : servers) if (!names.contains(name)) removed.add(name);
+        apply(proxyServers, removed, added);
+        servers.clear();
+        servers.addAll(names);
+        this.version = version;
+        this.resyncRequested = false;
+    }
+
+    public synchronized void applyDelta(long version, List<String> removed, List<Map<String, Object>> entries) {
+        if (version != this.version + 1) {
+            requestServerList();
+            return;
+        }
+        Map<String, ServerInfo> proxyServers = TimoCloudBungee.getInstance().getProxy().getServers();
+        apply(proxyServers, removed, construct(entries, proxyServers));
+        servers.removeAll(removed);
+        for (Map<String, Object> entry : entries) servers.add((String) entry.get("name"));
+        this.version = version;
+    }
+
+    private void requestServerList() {
+        if (resyncRequested) return;
+        resyncRequested = true;
+        TimoCloudBungee.getInstance().getSocketMessageManager().sendMessage(Message.create().setType("GET_SERVER_LIST"));
+    }
+
+    /**
+     * Creates the ServerInfos of all entries which are new or whose address has changed
+     */
+    private static Map<String, ServerInfo> construct(List<Map<String, Object>> entries, Map<String, ServerInfo> proxyServers) {
+        Map<String, ServerInfo> serverInfos = new HashMap<>();
+        for (Map<String, Object> entry : entries) {
+            String name = (String) entry.get("name");
+            InetSocketAddress address = new InetSocketAddress((String) entry.get("address"), ((Number) entry.get("port")).intValue());
+            ServerInfo existing = proxyServers.get(name);
+            if (existing != null && address.equals(existing.getAddress())) continue;
+            serverInfos.put(name, TimoCloudBungee.getInstance().getProxy().constructServerInfo(name, address, "", false));
+        }
+        return serverInfos;
+    }
+
+    private static void apply(Map<String, ServerInfo> proxyServers, Collection<String> removed, Map<String, ServerInfo> added) {
+        for (String name : removed) proxyServers.remove(name);
+        proxyServers.putAll(added);
+    }
+
+    public synchronized long getVersion() {
+        return version;
+    }
+}
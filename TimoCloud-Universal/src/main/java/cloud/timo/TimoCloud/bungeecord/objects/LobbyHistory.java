@@ -0,0 +1,79 @@
+package cloud.timo.TimoCloud.bungeecord.objects;
+
+import java.util.*;
+
+/**
+ * Remembers which lobbies a player has recently been kicked to, so that they are not sent to the same lobby again.
+ * Entries expire when they have not been used for a while, and the amount of players and lobbies per player is bounded.
+ */
+public class LobbyHistory {
+
+    private final long expireMillis;
+    private final int maxPlayers;
+    private final int maxLobbiesPerPlayer;
+    private final LinkedHashMap<UUID, Entry> entries;
+
+    public LobbyHistory(long expireMillis, int maxPlayers, int maxLobbiesPerPlayer) {
+        this.expireMillis = expireMillis;
+        this.maxPlayers = maxPlayers;
+        this.maxLobbiesPerPlayer = maxLobbiesPerPlayer;
+        this.entries = new LinkedHashMap<UUID, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, Entry> eldest) {
+                return size() > LobbyHistory.this.maxPlayers;
+            }
+        };
+    }
+
+    /**
+     * @return The lobbies the player has visited recently. Calling this keeps the history alive.
+     */
+    public synchronized Set<String> getVisited(UUID uuid) {
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(uuid);
+        if (entry == null) return Collections.emptySet();
+        if (now - entry.lastUpdate >= expireMillis) {
+            entries.remove(uuid);
+            return Collections.emptySet();
+        }
+        entry.lastUpdate = now;
+        return new HashSet<>(entry.lobbies);
+    }
+
+    public synchronized void add(UUID uuid, String lobby) {
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(uuid);
+        if (entry == null || now - entry.lastUpdate >= expireMillis) {
+            entry = new Entry();
+            entries.put(uuid, entry);
+        }
+        entry.lastUpdate = now;
+        if (entry.lobbies.size() >= maxLobbiesPerPlayer) entry.lobbies.removeFirst();
+        entry.lobbies.addLast(lobby);
+        purgeExpired(now);
+    }
+
+    public synchronized void remove(UUID uuid) {
+        entries.remove(uuid);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * The map is in access order, so expired entries are at its beginning
+     */
+    private void purgeExpired(long now) {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (now - iterator.next().lastUpdate < expireMillis) break;
+            iterator.remove();
+        }
+    }
+
+    private static class Entry {
+        private final ArrayDeque<String> lobbies = new ArrayDeque<>();
+        private long lastUpdate;
+    }
+}
@@ -0,0 +1,107 @@
+package cloud.timo.TimoCloud.bungeecord.objects;
+
+import cloud.timo.TimoCloud.api.objects.ServerObject;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The lobbies of the fallback group which have free slots, ordered by their player count.
+ * Built from API data; players sent to a lobby are counted immediately, so that joins between two API updates are spread as well.
+ */
+public class LobbyIndex {
+
+    private static final int RANDOM_ATTEMPTS = 8;
+
+    private final TreeSet<Lobby> byLoad;
+    private final Map<String, Lobby> byName;
+    private final String[] names;
+
+    public LobbyIndex(Collection<ServerObject> servers) {
+        this.byLoad = new TreeSet<>();
+        this.byName = new HashMap<>();
+        for (ServerObject server : servers) {
+            if (server.getOnlinePlayerCount() >= server.getMaxPlayerCount()) continue;
+            Lobby lobby = new Lobby(server.getName(), server.getOnlinePlayerCount(), server.getMaxPlayerCount());
+            byLoad.add(lobby);
+            byName.put(lobby.name, lobby);
+        }
+        this.names = byName.keySet().toArray(new String[0]);
+    }
+
+    /**
+     * Chooses a lobby and counts the player for it
+     *
+     * @param exclude Lobbies which must not be chosen
+     * @return The lobby's name or null if no lobby is free
+     */
+    public synchronized String select(LobbyChooseStrategy strategy, Set<String> exclude) {
+        Lobby lobby = null;
+        switch (strategy) {
+            case RANDOM:
+                lobby = selectRandom(exclude);
+                if (lobby == null) lobby = first(byLoad.iterator(), exclude);
+                break;
+            case FILL:
+                lobby = first(byLoad.descendingIterator(), exclude);
+                break;
+            case BALANCE:
+                lobby = first(byLoad.iterator(), exclude);
+                break;
+        }
+        if (lobby == null) return null;
+        addPlayer(lobby);
+        return lobby.name;
+    }
+
+    private Lobby selectRandom(Set<String> exclude) {
+        if (names.length == 0) return null;
+        for (int i = 0; i < RANDOM_ATTEMPTS; i++) {
+            Lobby lobby = byName.get(names[ThreadLocalRandom.current().nextInt(names.length)]);
+            if (lobby != null && !exclude.contains(lobby.name)) return lobby;
+        }
+        return null;
+    }
+
+    private static Lobby first(Iterator<Lobby> iterator, Set<String> exclude) {
+        while (iterator.hasNext()) {
+            Lobby lobby = iterator.next();
+            if (!exclude.contains(lobby.name)) return lobby;
+        }
+        return null;
+    }
+
+    private void addPlayer(Lobby lobby) {
+        byLoad.remove(lobby);
+        if (lobby.players + 1 >= lobby.maxPlayers) {
+            byName.remove(lobby.name);
+            return;
+        }
+        Lobby updated = new Lobby(lobby.name, lobby.players + 1, lobby.maxPlayers);
+        byLoad.add(updated);
+        byName.put(updated.name, updated);
+    }
+
+    public synchronized int size() {
+        return byLoad.size();
+    }
+
+    private static class Lobby implements Comparable<Lobby> {
+
+        private final String name;
+        private final int players;
+        private final int maxPlayers;
+
+        private Lobby(String name, int players, int maxPlayers) {
+            this.name = name;
+            this.players = players;
+            this.maxPlayers = maxPlayers;
+        }
+
+        @Override
+        public int compareTo(Lobby o) {
+            int compare = Integer.compare(players, o.players);
+            return compare != 0 ? compare : name.compareTo(o.name);
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package cloud.timo.TimoCloud.bungeecord.sockets;
 
 import cloud.timo.TimoCloud.bungeecord.TimoCloudBungee;
+import cloud.timo.TimoCloud.lib.sockets.OutboundStage;
+import cloud.timo.TimoCloud.lib.sockets.compression.StreamCompression;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelInitializer;
 import io.netty.handler.codec.string.StringDecoder;
@@ -15,6 +17,8 @@ public class BungeePipeline extends ChannelInitializer<Channel> {
         ch.pipeline().addLast("decoder", new StringDecoder(CharsetUtil.UTF_8));
         ch.pipeline().addLast("encoder", new StringEncoder(CharsetUtil.UTF_8));
         ch.pipeline().addLast("handler", TimoCloudBungee.getInstance().getBungeeStringHandler());
+        StreamCompression.install(ch.pipeline());
+        OutboundStage.install(ch.pipeline());
     }
 
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 package cloud.timo.TimoCloud.bungeecord.sockets;
 
 import cloud.timo.TimoCloud.bungeecord.TimoCloudBungee;
+import cloud.timo.TimoCloud.lib.sockets.OutboundStage;
 import cloud.timo.TimoCloud.lib.utils.network.NettyUtil;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.ChannelFuture;
@@ -14,6 +15,7 @@ public class BungeeSocketClient {
         b.group(group)
                 .channel(NettyUtil.getSocketChannelClass())
                 .option(ChannelOption.TCP_NODELAY, true)
+                .option(ChannelOption.WRITE_BUFFER_WATER_MARK, OutboundStage.getDefaultWaterMark())
                 .handler(new BungeePipeline());
         ChannelFuture f = null;
         try {
@@ -11,14 +11,18 @@ import cloud.timo.TimoCloud.bungeecord.TimoCloudBungee;
 import cloud.timo.TimoCloud.bungeecord.api.TimoCloudUniversalAPIBungeeImplementation;
 import cloud.timo.TimoCloud.lib.messages.Message;
 import cloud.timo.TimoCloud.lib.sockets.BasicStringHandler;
+import cloud.timo.TimoCloud.lib.sockets.compression.StreamCompression;
 import cloud.timo.TimoCloud.lib.utils.EnumUtil;
 import cloud.timo.TimoCloud.lib.utils.PluginMessageSerializer;
 import cloud.timo.TimoCloud.lib.utils.network.InetAddressUtil;
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
 
 import java.net.InetSocketAddress;
+import java.util.List;
 import java.util.Map;
 
+@ChannelHandler.Sharable
 public class BungeeStringHandler extends BasicStringHandler {
 
     @Override
@@ -32,10 +36,20 @@ public class BungeeStringHandler extends BasicStringHandler {
         Object data = message.get("data");
         switch (type) {
             case "HANDSHAKE_SUCCESS":
-                TimoCloudBungee.getInstance().onHandshakeSuccess();
+                TimoCloudBungee.getInstance().onHandshakeSuccess(message.containsKey("resumeTimeout") ? ((Number) message.get("resumeTimeout")).longValue() : 0);
+                break;
+            case "HANDSHAKE_REFUSED":
+                TimoCloudBungee.getInstance().onHandshakeRefused();
+                break;
+            case "COMPRESSION":
+                StreamCompression.enable(channel, (String) message.get("algorithm"), ((Number) message.get("threshold")).intValue());
                 break;
             case "API_DATA":
                 ((TimoCloudUniversalAPIBungeeImplementation) TimoCloudAPI.getUniversalAPI()).setData((Map<String, Object>) data);
+                TimoCloudBungee.getInstance().getLobbyManager().updateIndex();
+                break;
+            case "PLAYERS":
+                ((TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI()).setPlayers((List<String>) data);
                 break;
             case "EVENT_FIRED":
                 try {
@@ -52,6 +66,12 @@ public class BungeeStringHandler extends BasicStringHandler {
             case "EXECUTE_COMMAND":
                 TimoCloudBungee.getInstance().getProxy().getPluginManager().dispatchCommand(TimoCloudBungee.getInstance().getProxy().getConsole(), (String) data);
                 break;
+            case "SERVER_LIST":
+                TimoCloudBungee.getInstance().getServerListManager().setServers(((Number) message.get("version")).longValue(), (List<Map<String, Object>>) message.get("servers"));
+                break;
+            case "SERVER_LIST_DELTA":
+                TimoCloudBungee.getInstance().getServerListManager().applyDelta(((Number) message.get("version")).longValue(), (List<String>) message.get("remove"), (List<Map<String, Object>>) message.get("add"));
+                break;
             case "ADD_SERVER":
                 TimoCloudBungee.getInstance().getProxy().getServers().put(server, TimoCloudBungee.getInstance().getProxy().constructServerInfo(server, new InetSocketAddress((String) message.get("address"), ((Number) message.get("port")).intValue()), "", false));
                 break;
@@ -1,6 +1,9 @@
 package cloud.timo.TimoCloud.cord;
 
+import cloud.timo.TimoCloud.api.TimoCloudAPI;
 import cloud.timo.TimoCloud.api.implementations.EventManager;
+import cloud.timo.TimoCloud.api.implementations.TimoCloudUniversalAPIBasicImplementation;
+import cloud.timo.TimoCloud.api.objects.ProxyGroupObject;
 import cloud.timo.TimoCloud.api.utils.APIInstanceUtil;
 import cloud.timo.TimoCloud.cord.api.TimoCloudInternalMessageAPICordImplementation;
 import cloud.timo.TimoCloud.cord.api.TimoCloudMessageAPICordImplementation;
@@ -8,23 +11,28 @@ import cloud.timo.TimoCloud.cord.api.TimoCloudUniversalAPICordImplementation;
 import cloud.timo.TimoCloud.cord.managers.CordFileManager;
 import cloud.timo.TimoCloud.cord.managers.ProxyManager;
 import cloud.timo.TimoCloud.cord.sockets.*;
-import cloud.timo.TimoCloud.lib.logging.LoggingOutputStream;
+import cloud.timo.TimoCloud.lib.logging.AsyncLogger;
+import cloud.timo.TimoCloud.lib.logging.LogEntry;
 import cloud.timo.TimoCloud.lib.messages.Message;
 import cloud.timo.TimoCloud.lib.modules.ModuleType;
 import cloud.timo.TimoCloud.lib.modules.TimoCloudModule;
+import cloud.timo.TimoCloud.lib.sockets.compression.StreamCompression;
+import cloud.timo.TimoCloud.lib.templates.PlaceholderRegistry;
+import cloud.timo.TimoCloud.lib.templates.ProxyGroupPlaceholders;
 import cloud.timo.TimoCloud.lib.utils.options.OptionSet;
 import io.netty.channel.Channel;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 
 import java.io.File;
-import java.io.PrintStream;
 import java.net.ServerSocket;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 
 public class TimoCloudCord implements TimoCloudModule {
 
@@ -41,6 +49,7 @@ public class TimoCloudCord implements TimoCloudModule {
     private static final String ANSI_WHITE = "\u001B[37m";
 
     private static TimoCloudCord instance;
+    private AsyncLogger logger;
     private OptionSet options;
     private String prefix = ANSI_YELLOW + "[" +ANSI_CYAN + "Timo" + ANSI_RESET + "Cloud" + ANSI_YELLOW + "]" + ANSI_RESET;
     private CordFileManager fileManager;
@@ -49,8 +58,8 @@ public class TimoCloudCord implements TimoCloudModule {
     private CordSocketClientHandler socketClientHandler;
     private CordSocketMessageManager socketMessageManager;
     private CordSocketServer socketServer;
-    private MinecraftDecoder minecraftDecoder;
     private CordStringHandler stringHandler;
+    private PlaceholderRegistry<ProxyGroupObject> motdPlaceholders;
     private ScheduledExecutorService scheduler;
     private Channel channel;
     private boolean connected = false;
@@ -60,24 +69,56 @@ public class TimoCloudCord implements TimoCloudModule {
         return "[" + format.format(new Date()) + "] ";
     }
 
-    private String formatLog(String message, String color) {
-        return (getTime() + getPrefix() + color + message + ANSI_RESET);
+    private String formatLog(long time, String message, String color) {
+        return ("[" + format.format(new Date(time)) + "] " + getPrefix() + color + message + ANSI_RESET);
     }
 
     public void info(String message) {
-        System.out.println(formatLog(message, ANSI_RESET));
+        log(Level.INFO, message, null);
     }
 
     public void warning(String message) {
-        System.err.println(formatLog(message, ANSI_YELLOW));
+        log(Level.WARNING, message, null);
     }
 
     public void severe(String message) {
-        System.err.println(formatLog(message, ANSI_RED));
+        log(Level.SEVERE, message, null);
     }
 
     public void severe(Throwable throwable) {
-        throwable.printStackTrace(new PrintStream(new LoggingOutputStream(this::severe)));
+        log(Level.SEVERE, null, throwable);
+    }
+
+    private void log(Level level, String message, Throwable throwable) {
+        if (logger == null) {
+            if (message != null) (level == Level.INFO ? System.out : System.err).println(message);
+            if (throwable != null) throwable.printStackTrace();
+            return;
+        }
+        logger.log(level, message, throwable);
+    }
+
+    /**
+     * Writes a batch of log entries to the console with a single write per stream
+     */
+    private void writeToConsole(List<LogEntry> entries) {
+        StringBuilder out = new StringBuilder();
+        StringBuilder err = new StringBuilder();
+        for (LogEntry entry : entries) {
+            StringBuilder target = entry.getLevel() == Level.INFO ? out : err;
+            String color = entry.getLevel() == Level.SEVERE ? ANSI_RED : entry.getLevel() == Level.WARNING ? ANSI_YELLOW : ANSI_RESET;
+            if (entry.getMessage() != null) target.append(formatLog(entry.getTime(), entry.getMessage(), color)).append(System.lineSeparator());
+            if (entry.getThrowable() == null) continue;
+            for (String line : AsyncLogger.getStackTraceLines(entry.getThrowable())) target.append(formatLog(entry.getTime(), line, color)).append(System.lineSeparator());
+        }
+        if (out.length() > 0) {
+            System.out.print(out);
+            System.out.flush();
+        }
+        if (err.length() > 0) {
+            System.err.print(err);
+            System.err.flush();
+        }
     }
 
     @Override
@@ -87,6 +128,7 @@ public class TimoCloudCord implements TimoCloudModule {
         new Thread(this::initSocketServer).start();
         info(ANSI_GREEN + "TimoCloudCord has been loaded");
         scheduleConnecting();
+        scheduler.scheduleAtFixedRate(proxyManager::logStatistics, 1, 1, TimeUnit.MINUTES);
     }
 
     @Override
@@ -96,14 +138,15 @@ public class TimoCloudCord implements TimoCloudModule {
 
     private void makeInstances() throws Exception {
         instance = this;
+        logger = new AsyncLogger("TimoCloudCord", this::writeToConsole);
         fileManager = new CordFileManager();
         proxyManager = new ProxyManager();
         socketClient = new CordSocketClient();
         socketClientHandler = new CordSocketClientHandler();
         socketMessageManager = new CordSocketMessageManager();
         socketServer = new CordSocketServer();
-        minecraftDecoder = new MinecraftDecoder();
         stringHandler = new CordStringHandler();
+        motdPlaceholders = ProxyGroupPlaceholders.create();
         scheduler = Executors.newScheduledThreadPool(1);
         workerGroup = new NioEventLoopGroup();
 
@@ -111,6 +154,8 @@ public class TimoCloudCord implements TimoCloudModule {
         APIInstanceUtil.setUniversalInstance(new TimoCloudUniversalAPICordImplementation());
         APIInstanceUtil.setEventInstance(new EventManager());
         APIInstanceUtil.setMessageInstance(new TimoCloudMessageAPICordImplementation());
+        TimoCloudAPI.getEventAPI().registerListener(((TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI()).getPlayerDirectory());
+        TimoCloudAPI.getEventAPI().registerListener(proxyManager);
     }
 
     private void scheduleConnecting() {
@@ -151,7 +196,7 @@ public class TimoCloudCord implements TimoCloudModule {
 
     public void onSocketConnect() {
         setConnected(true);
-        getSocketMessageManager().sendMessage(Message.create().setType("CORD_HANDSHAKE").set("cord", getName()));
+        getSocketMessageManager().sendMessage(Message.create().setType("CORD_HANDSHAKE").set("cord", getName()).set("compression", StreamCompression.getSupportedAlgorithms()));
         info("Successfully connected to Core socket!");
     }
 
@@ -161,7 +206,7 @@ public class TimoCloudCord implements TimoCloudModule {
     }
 
     public void onHandshakeSuccess() {
-
+        getSocketMessageManager().sendMessage(Message.create().setType("GET_PLAYERS"));
     }
 
     private void initSocketServer() {
@@ -218,6 +263,35 @@ public class TimoCloudCord implements TimoCloudModule {
         return (Integer) getFileManager().getConfig().get("core-port");
     }
 
+    /**
+     * @return Whether the client's address is passed with a PROXY protocol header instead of a SET_IP message through the core to
+     * proxies which have said they can decode it
+     */
+    public boolean useProxyProtocol() {
+        return Boolean.TRUE.equals(getFileManager().getConfig().get("proxy-protocol"));
+    }
+
+    /**
+     * @return Milliseconds to wait for a single proxy to accept a connection
+     */
+    public int getConnectTimeout() {
+        return ((Number) getFileManager().getConfig().get("connect-timeout")).intValue();
+    }
+
+    /**
+     * @return Milliseconds a client may spend connecting to proxies in total before it is disconnected, including failovers
+     */
+    public int getConnectBudget() {
+        return ((Number) getFileManager().getConfig().get("connect-budget")).intValue();
+    }
+
+    /**
+     * @return Milliseconds a proxy is skipped after a failed connect before a single client is sent to it as a probe
+     */
+    public int getCircuitBreakerCooldown() {
+        return ((Number) getFileManager().getConfig().get("circuit-breaker-cooldown")).intValue();
+    }
+
     public static TimoCloudCord getInstance() {
         return instance;
     }
@@ -250,8 +324,8 @@ public class TimoCloudCord implements TimoCloudModule {
         return socketServer;
     }
 
-    public MinecraftDecoder getMinecraftDecoder() {
-        return minecraftDecoder;
+    public PlaceholderRegistry<ProxyGroupObject> getMotdPlaceholders() {
+        return motdPlaceholders;
     }
 
     public CordStringHandler getStringHandler() {
@@ -1,17 +1,29 @@
 package cloud.timo.TimoCloud.cord.managers;
 
 import cloud.timo.TimoCloud.api.TimoCloudAPI;
+import cloud.timo.TimoCloud.api.events.EventHandler;
+import cloud.timo.TimoCloud.api.events.Listener;
+import cloud.timo.TimoCloud.api.events.ProxyUnregisterEvent;
 import cloud.timo.TimoCloud.api.objects.ProxyGroupObject;
 import cloud.timo.TimoCloud.api.objects.ProxyObject;
 import cloud.timo.TimoCloud.cord.TimoCloudCord;
+import cloud.timo.TimoCloud.cord.utils.CircuitBreaker;
 
-import java.util.Comparator;
-import java.util.List;
-import java.util.Random;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
-public class ProxyManager {
+public class ProxyManager implements Listener {
+
+    /**
+     * Circuit breakers of proxies which recently could not be reached, by proxy id. Reachable proxies have no entry.
+     */
+    private final Map<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+    private final AtomicLong connectFailures = new AtomicLong();
+    private final AtomicLong failovers = new AtomicLong();
+    private final AtomicLong droppedClients = new AtomicLong();
 
     public ProxyGroupObject getProxyGroupByHostName(String hostName) {
         for (ProxyGroupObject group : TimoCloudAPI.getUniversalAPI().getProxyGroups())
@@ -36,22 +48,90 @@ public class ProxyManager {
 
 
     public ProxyObject getFreeProxy(ProxyGroupObject group) {
+        return getFreeProxy(group, Collections.emptySet());
+    }
+
+    /**
+     * Chooses a proxy, skipping the given ones and those whose circuit breaker is open
+     *
+     * @param excluded Ids of proxies which must not be chosen, e.g. because they already failed for this client
+     */
+    public ProxyObject getFreeProxy(ProxyGroupObject group, Set<String> excluded) {
         if (group.getProxyChooseStrategy() == null) {
             TimoCloudCord.getInstance().severe("Error while choosing proxy: ProxyChooseStrategy of group '" + group.getName() + "' is null. Please report this.");
             return null;
         }
-        List<ProxyObject> proxies = group.getProxies().stream().filter(proxy -> proxy.getOnlinePlayerCount() < proxy.getGroup().getMaxPlayerCountPerProxy()).collect(Collectors.toList());
+        long now = System.currentTimeMillis();
+        List<ProxyObject> proxies = group.getProxies().stream()
+                .filter(proxy -> proxy.getOnlinePlayerCount() < proxy.getGroup().getMaxPlayerCountPerProxy())
+                .filter(proxy -> !excluded.contains(proxy.getId()))
+                .filter(proxy -> isCallPermitted(proxy, now))
+                .collect(Collectors.toList());
         proxies.sort(Comparator.comparing(ProxyObject::getOnlinePlayerCount));
-        if (proxies.size() == 0) return null;
+        while (proxies.size() > 0) {
+            ProxyObject proxy = choose(group, proxies);
+            CircuitBreaker circuitBreaker = circuitBreakers.get(proxy.getId());
+            if (circuitBreaker == null || circuitBreaker.tryAcquire(now)) return proxy;
+            proxies.remove(proxy); // Another client is already probing this proxy
+        }
+        return null;
+    }
+
+    private static ProxyObject choose(ProxyGroupObject group, List<ProxyObject> proxies) {
         switch (group.getProxyChooseStrategy()) {
             case RANDOM:
                 return proxies.get(new Random().nextInt(proxies.size()));
             case FILL:
                 return proxies.get(proxies.size() - 1);
             case BALANCE:
+            default:
                 return proxies.get(0);
         }
-        return null;
+    }
+
+    private boolean isCallPermitted(ProxyObject proxy, long now) {
+        CircuitBreaker circuitBreaker = circuitBreakers.get(proxy.getId());
+        return circuitBreaker == null || circuitBreaker.isCallPermitted(now);
+    }
+
+    public void onConnectSuccess(ProxyObject proxy) {
+        CircuitBreaker circuitBreaker = circuitBreakers.remove(proxy.getId());
+        if (circuitBreaker != null) TimoCloudCord.getInstance().info("Proxy " + proxy.getName() + " is reachable again after " + circuitBreaker.getFailures() + " failed connect(s).");
+    }
+
+    public void onConnectFailure(ProxyObject proxy) {
+        connectFailures.incrementAndGet();
+        circuitBreakers.computeIfAbsent(proxy.getId(), id -> new CircuitBreaker(TimoCloudCord.getInstance().getCircuitBreakerCooldown()))
+                .onFailure(System.currentTimeMillis());
+    }
+
+    public void onFailover() {
+        failovers.incrementAndGet();
+    }
+
+    public void onClientDropped() {
+        droppedClients.incrementAndGet();
+    }
+
+    @EventHandler
+    public void onProxyUnregister(ProxyUnregisterEvent event) {
+        circuitBreakers.remove(event.getProxy().getId());
+    }
+
+    /**
+     * Logs how many connects to proxies have failed since the last call, how many clients have been retried on another proxy
+     * and how many have been disconnected because no proxy could be reached. Nothing is logged if everything went fine.
+     */
+    public void logStatistics() {
+        long connectFailures = this.connectFailures.getAndSet(0);
+        long failovers = this.failovers.getAndSet(0);
+        long droppedClients = this.droppedClients.getAndSet(0);
+        if (connectFailures == 0 && droppedClients == 0) return;
+        TimoCloudCord.getInstance().warning("Proxy connections during the last minute: " + connectFailures + " failed, " + failovers + " client(s) failed over to another proxy, " + droppedClients + " client(s) dropped.");
+    }
+
+    public CircuitBreaker getCircuitBreaker(String proxyId) {
+        return circuitBreakers.get(proxyId);
     }
 
 }
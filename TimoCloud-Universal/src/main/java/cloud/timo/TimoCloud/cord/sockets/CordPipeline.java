@@ -1,6 +1,8 @@
 package cloud.timo.TimoCloud.cord.sockets;
 
 import cloud.timo.TimoCloud.cord.TimoCloudCord;
+import cloud.timo.TimoCloud.lib.sockets.OutboundStage;
+import cloud.timo.TimoCloud.lib.sockets.compression.StreamCompression;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelInitializer;
 import io.netty.handler.codec.string.StringDecoder;
@@ -15,6 +17,8 @@ public class CordPipeline extends ChannelInitializer<Channel> {
         ch.pipeline().addLast("decoder", new StringDecoder(CharsetUtil.UTF_8));
         ch.pipeline().addLast("encoder", new StringEncoder(CharsetUtil.UTF_8));
         ch.pipeline().addLast("handler", TimoCloudCord.getInstance().getStringHandler());
+        StreamCompression.install(ch.pipeline());
+        OutboundStage.install(ch.pipeline());
     }
 
 }
\ No newline at end of file
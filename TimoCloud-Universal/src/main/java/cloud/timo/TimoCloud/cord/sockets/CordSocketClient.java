@@ -1,6 +1,7 @@
 package cloud.timo.TimoCloud.cord.sockets;
 
 import cloud.timo.TimoCloud.cord.TimoCloudCord;
+import cloud.timo.TimoCloud.lib.sockets.OutboundStage;
 import cloud.timo.TimoCloud.lib.utils.network.NettyUtil;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.ChannelFuture;
@@ -14,6 +15,7 @@ public class CordSocketClient {
         b.group(group)
                 .channel(NettyUtil.getSocketChannelClass())
                 .option(ChannelOption.TCP_NODELAY, true)
+                .option(ChannelOption.WRITE_BUFFER_WATER_MARK, OutboundStage.getDefaultWaterMark())
                 .handler(new CordPipeline());
         ChannelFuture f = null;
         try {
@@ -1,6 +1,7 @@
 package cloud.timo.TimoCloud.cord.sockets;
 
 import cloud.timo.TimoCloud.cord.TimoCloudCord;
+import cloud.timo.TimoCloud.lib.sockets.OutboundStage;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
@@ -24,7 +25,7 @@ public class CordSocketClientHandler extends ChannelInboundHandlerAdapter {
     }
 
     public void sendMessage(String message) {
-        if (channel != null && channel.isActive()) channel.writeAndFlush(message);
+        if (channel != null && channel.isActive()) OutboundStage.send(channel, message);
     }
 
     @Override
@@ -20,7 +20,7 @@ public class CordSocketServer {
                     .childHandler(new ChannelInitializer<Channel>() {
                         @Override
                         protected void initChannel(Channel channel) {
-                            channel.pipeline().addLast("minecraftdecoder", TimoCloudCord.getInstance().getMinecraftDecoder());
+                            channel.pipeline().addLast(MinecraftDecoder.NAME, new MinecraftDecoder());
                         }
                     })
                     .group(bossGroup, workerGroup)
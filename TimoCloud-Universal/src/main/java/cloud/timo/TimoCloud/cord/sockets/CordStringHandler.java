@@ -11,11 +11,13 @@ import cloud.timo.TimoCloud.cord.TimoCloudCord;
 import cloud.timo.TimoCloud.cord.api.TimoCloudUniversalAPICordImplementation;
 import cloud.timo.TimoCloud.lib.messages.Message;
 import cloud.timo.TimoCloud.lib.sockets.BasicStringHandler;
+import cloud.timo.TimoCloud.lib.sockets.compression.StreamCompression;
 import cloud.timo.TimoCloud.lib.utils.EnumUtil;
 import cloud.timo.TimoCloud.lib.utils.PluginMessageSerializer;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandler;
 
+import java.util.List;
 import java.util.Map;
 
 @ChannelHandler.Sharable
@@ -29,10 +31,16 @@ public class CordStringHandler extends BasicStringHandler {
             case "HANDSHAKE_SUCCESS":
                 TimoCloudCord.getInstance().onHandshakeSuccess();
                 break;
+            case "COMPRESSION":
+                StreamCompression.enable(channel, (String) message.get("algorithm"), ((Number) message.get("threshold")).intValue());
+                break;
             case "API_DATA": {
                 ((TimoCloudUniversalAPICordImplementation) TimoCloudAPI.getUniversalAPI()).setData((Map<String, Object>) data);
                 break;
             }
+            case "PLAYERS":
+                ((TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI()).setPlayers((List<String>) data);
+                break;
             case "EVENT_FIRED":
                 try {
                     EventType eventType = EnumUtil.valueOf(EventType.class, (String) message.get("eventType"));
@@ -1,45 +1,80 @@
 package cloud.timo.TimoCloud.cord.sockets;
 
+import cloud.timo.TimoCloud.api.implementations.ProxyObjectBasicImplementation;
 import cloud.timo.TimoCloud.api.objects.ProxyGroupObject;
 import cloud.timo.TimoCloud.api.objects.ProxyObject;
 import cloud.timo.TimoCloud.cord.TimoCloudCord;
+import cloud.timo.TimoCloud.cord.managers.ProxyManager;
 import cloud.timo.TimoCloud.cord.objects.ConnectionState;
+import cloud.timo.TimoCloud.lib.logging.LogRateLimit;
 import cloud.timo.TimoCloud.lib.messages.Message;
+import cloud.timo.TimoCloud.lib.profiling.Profiling;
+import cloud.timo.TimoCloud.lib.profiling.ProfilingSpan;
+import cloud.timo.TimoCloud.lib.utils.network.ProxyProtocol;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.*;
 import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.ByteToMessageDecoder;
 
 import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import static cloud.timo.TimoCloud.cord.utils.PacketUtil.*;
 
+/**
+ * Reads the handshake of a new client connection to find out which hostname it connected to, then connects it to a proxy.
+ * Nothing is consumed: the handshake and everything the client sends until the proxy connection is ready stays cumulated
+ * and is forwarded to the proxy as soon as this decoder removes itself.
+ * Supports the modern handshake as well as legacy (pre-1.7) server list pings.
+ */
+public class MinecraftDecoder extends ByteToMessageDecoder {
 
-@ChannelHandler.Sharable
-public class MinecraftDecoder extends SimpleChannelInboundHandler<ByteBuf> {
+    public static final String NAME = "minecraftdecoder";
 
-    public MinecraftDecoder() {
+    static final int MAX_HANDSHAKE_LENGTH = 2048;
+    static final int MAX_HOST_NAME_BYTES = 255 * 4;
+    private static final int MAX_BUFFERED_BYTES = 65536;
+
+    private static final int LEGACY_PING = 0xFE;
+    private static final int LEGACY_PLUGIN_MESSAGE = 0xFA;
+
+    private static final int VAR_INT_INCOMPLETE = -1;
+    private static final int VAR_INT_TOO_BIG = -2;
+
+    private static final LogRateLimit CONNECT_LOG_LIMIT = new LogRateLimit(20);
+
+    enum Result {
+        INCOMPLETE, INVALID, COMPLETE
     }
 
+    private boolean connecting = false;
+    private String hostName;
+    private int varInt;
+
     @Override
-    public void channelRead0(final ChannelHandlerContext ctx, ByteBuf buf) throws Exception {
-        try {
-            final int packetLength = readVarInt(buf);
-            final int packetID = readVarInt(buf);
-            if (packetID == 0) {
-                final int clientVersion = readVarInt(buf);
-                final String hostName = readString(buf);
-                final int port = buf.readUnsignedShort();
-                final int state = readVarInt(buf);
-                buf.retain();
-                connectClient(ctx.channel(), hostName, buf);
-            } else {
-                //TimoCloudCord.getInstance().severe("Received non-status packet: " + packetID);
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+        if (connecting) {
+            if (in.readableBytes() > MAX_BUFFERED_BYTES) {
+                in.skipBytes(in.readableBytes());
+                ctx.close();
             }
-        } catch (Exception e) {
-            buf.resetReaderIndex(); // Wait until we receive the full packet
             return;
         }
+        switch (parse(in)) {
+            case INCOMPLETE:
+                return;
+            case INVALID:
+                in.skipBytes(in.readableBytes());
+                ctx.close();
+                return;
+            case COMPLETE:
+                connecting = true;
+                connectClient(ctx.channel(), getHostName());
+        }
     }
 
     @Override
@@ -48,27 +83,129 @@ public class MinecraftDecoder extends SimpleChannelInboundHandler<ByteBuf> {
         TimoCloudCord.getInstance().severe(cause);
     }
 
-    public static void connectClient(Channel channel, String hostName, ByteBuf loginPacket) {
+    /**
+     * Looks for a complete handshake at the reader index without moving it
+     *
+     * @return {@link Result#COMPLETE} if the handshake was read, then {@link #getHostName()} returns the hostname the client connected to
+     */
+    Result parse(ByteBuf in) {
+        if (!in.isReadable()) return Result.INCOMPLETE;
+        if (in.getUnsignedByte(in.readerIndex()) == LEGACY_PING) return parseLegacy(in);
+
+        int index = peekVarInt(in, in.readerIndex(), in.writerIndex(), 3);
+        if (index == VAR_INT_INCOMPLETE) return Result.INCOMPLETE;
+        if (index == VAR_INT_TOO_BIG || varInt <= 0 || varInt > MAX_HANDSHAKE_LENGTH) return Result.INVALID;
+        int end = index + varInt;
+        if (in.writerIndex() < end) return Result.INCOMPLETE;
+
+        // From here on the whole packet is available, so running out of bytes means it is malformed
+        index = peekVarInt(in, index, end, 5); // Packet ID
+        if (index < 0 || varInt != 0) return Result.INVALID;
+        index = peekVarInt(in, index, end, 5); // Protocol version
+        if (index < 0) return Result.INVALID;
+        index = peekVarInt(in, index, end, 3); // Host name length
+        if (index < 0 || varInt < 0 || varInt > MAX_HOST_NAME_BYTES || index + varInt + 3 > end) return Result.INVALID;
+        String hostName = in.toString(index, varInt, StandardCharsets.UTF_8);
+        index += varInt + 2; // Host name and port
+        if (peekVarInt(in, index, end, 5) < 0) return Result.INVALID; // Next state
+        this.hostName = hostName;
+        return Result.COMPLETE;
+    }
+
+    private Result parseLegacy(ByteBuf in) {
+        int index = in.readerIndex();
+        if (in.readableBytes() < 3 || in.getUnsignedByte(index + 1) != 0x01 || in.getUnsignedByte(index + 2) != LEGACY_PLUGIN_MESSAGE) {
+            // Pings before 1.6 do not contain a host name
+            this.hostName = "";
+            return Result.COMPLETE;
+        }
+        // 1.6: 0xFE 0x01 0xFA, channel name as short length + UTF-16BE, short data length, data
+        if (in.writerIndex() < index + 5) return Result.INCOMPLETE;
+        int channelLength = in.getUnsignedShort(index + 3);
+        if (channelLength > 64) return Result.INVALID;
+        int dataStart = index + 5 + channelLength * 2 + 2;
+        if (in.writerIndex() < dataStart) return Result.INCOMPLETE;
+        int dataLength = in.getUnsignedShort(dataStart - 2);
+        if (dataLength > MAX_HANDSHAKE_LENGTH) return Result.INVALID;
+        if (in.writerIndex() < dataStart + dataLength) return Result.INCOMPLETE;
+
+        // Data: byte protocol version, short host name length (chars), host name as UTF-16BE, int port
+        if (dataLength < 3) return Result.INVALID;
+        int hostNameBytes = in.getUnsignedShort(dataStart + 1) * 2;
+        if (3 + hostNameBytes + 4 > dataLength) return Result.INVALID;
+        this.hostName = in.toString(dataStart + 3, hostNameBytes, StandardCharsets.UTF_16BE);
+        return Result.COMPLETE;
+    }
+
+    /**
+     * Reads a VarInt at the given absolute index into {@link #varInt}
+     *
+     * @return The index after the VarInt, {@link #VAR_INT_INCOMPLETE} if end was reached or {@link #VAR_INT_TOO_BIG} if it is longer than maxBytes
+     */
+    private int peekVarInt(ByteBuf in, int index, int end, int maxBytes) {
+        int value = 0;
+        for (int i = 0; i < maxBytes; i++) {
+            if (index >= end) return VAR_INT_INCOMPLETE;
+            byte b = in.getByte(index++);
+            value |= (b & 0x7F) << (i * 7);
+            if ((b & 0x80) == 0) {
+                varInt = value;
+                return index;
+            }
+        }
+        return VAR_INT_TOO_BIG;
+    }
+
+    String getHostName() {
+        return hostName;
+    }
+
+    public static void connectClient(Channel channel, String hostName) {
         ProxyGroupObject proxyGroupObject = TimoCloudCord.getInstance().getProxyManager().getProxyGroupByHostName(hostName);
         if (proxyGroupObject == null) {
             TimoCloudCord.getInstance().severe("Error: No proxy group found for hostname '" + hostName + "'");
             channel.close();
             return;
         }
-        connectClient(channel, proxyGroupObject, hostName, loginPacket);
+        connectClient(channel, proxyGroupObject, hostName);
+    }
+
+    public static void connectClient(Channel channel, ProxyGroupObject proxyGroupObject, String hostName) {
+        connectClient(channel, proxyGroupObject, hostName, new HashSet<>(), System.currentTimeMillis() + TimoCloudCord.getInstance().getConnectBudget());
     }
 
-    public static void connectClient(Channel channel, ProxyGroupObject proxyGroupObject, String hostName, ByteBuf loginPacket) {
-        ProxyObject proxyObject = TimoCloudCord.getInstance().getProxyManager().getFreeProxy(proxyGroupObject);
+    /**
+     * Connects the client to the best proxy which has not been tried yet. If that fails, the next one is tried until the connect budget is used up.
+     *
+     * @param tried    Ids of proxies which already failed for this client
+     * @param deadline Time in milliseconds after which no further proxy is tried
+     */
+    private static void connectClient(Channel channel, ProxyGroupObject proxyGroupObject, String hostName, Set<String> tried, long deadline) {
+        ProxyManager proxyManager = TimoCloudCord.getInstance().getProxyManager();
+        long remaining = deadline - System.currentTimeMillis();
+        ProxyObject proxyObject = remaining > 0 ? proxyManager.getFreeProxy(proxyGroupObject, tried) : null;
         if (proxyObject == null) {
-            TimoCloudCord.getInstance().severe("No free proxy of group '" + proxyGroupObject.getName() + "' found. Disconnecting client.");
+            if (tried.isEmpty()) {
+                TimoCloudCord.getInstance().severe("No free proxy of group '" + proxyGroupObject.getName() + "' found. Disconnecting client.");
+            } else {
+                TimoCloudCord.getInstance().severe("Could not reach any proxy of group '" + proxyGroupObject.getName() + "' after " + tried.size() + " attempt(s). Disconnecting client.");
+                proxyManager.onClientDropped();
+            }
             channel.close();
             return;
         }
-        connectClient(channel, proxyObject, hostName, loginPacket);
+        tried.add(proxyObject.getId());
+        int timeout = (int) Math.min(TimoCloudCord.getInstance().getConnectTimeout(), remaining);
+        connectClient(channel, proxyObject, hostName, timeout, () -> {
+            proxyManager.onConnectFailure(proxyObject);
+            if (!channel.isActive()) return;
+            proxyManager.onFailover();
+            TimoCloudCord.getInstance().warning("Could not reach proxy " + proxyObject.getName() + ", trying another proxy of group " + proxyGroupObject.getName() + " for [" + channel.remoteAddress() + "].");
+            connectClient(channel, proxyGroupObject, hostName, tried, deadline);
+        });
     }
 
-    public static void connectClient(Channel channel, ProxyObject proxyObject, String hostName, ByteBuf loginPacket) {
+    private static void connectClient(Channel channel, ProxyObject proxyObject, String hostName, int timeout, Runnable onFailure) {
         ProxyDownstreamHandler downstreamHandler = channel.attr(DOWNSTREAM_HANDLER).get() == null ? new ProxyDownstreamHandler(channel) : channel.attr(DOWNSTREAM_HANDLER).get();
         channel.attr(DOWNSTREAM_HANDLER).set(downstreamHandler);
         channel.attr(CONNECTION_STATE).set(ConnectionState.HANDSHAKE);
@@ -77,7 +214,7 @@ public class MinecraftDecoder extends SimpleChannelInboundHandler<ByteBuf> {
                 .group(TimoCloudCord.getInstance().getWorkerGroup())
                 .channel(NioSocketChannel.class)
                 .option(ChannelOption.SO_KEEPALIVE, true)
-                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 1000)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, timeout)
                 .handler(new ChannelInitializer<Channel>() {
                     @Override
                     public void initChannel(Channel ch) throws Exception {
@@ -86,10 +223,30 @@ public class MinecraftDecoder extends SimpleChannelInboundHandler<ByteBuf> {
                 });
 
 
+        ProfilingSpan span = Profiling.connect(proxyObject.getName(), hostName);
         final ChannelFuture cf = b.connect(proxyObject.getSocketAddress());
         cf.addListener((ChannelFutureListener) future -> {
-            if (future.isSuccess()) {
-                TimoCloudCord.getInstance().info("[" + channel.remoteAddress() + "] connected to hostname '" + hostName + "'. Using proxy " + proxyObject.getName() + " of group " + proxyObject.getGroup().getName() + ".");
+            span.close();
+            if (!future.isSuccess()) {
+                cf.channel().close();
+                onFailure.run();
+                return;
+            }
+            TimoCloudCord.getInstance().getProxyManager().onConnectSuccess(proxyObject);
+            if (CONNECT_LOG_LIMIT.tryAcquire(System.currentTimeMillis())) {
+                TimoCloudCord.getInstance().info(CONNECT_LOG_LIMIT.withSuppressed("[" + channel.remoteAddress() + "] connected to hostname '" + hostName + "'. Using proxy " + proxyObject.getName() + " of group " + proxyObject.getGroup().getName() + "."));
+            }
+            if (TimoCloudCord.getInstance().useProxyProtocol() && ((ProxyObjectBasicImplementation) proxyObject).supportsProxyProtocol()) {
+                future.channel().write(ProxyProtocol.encode(future.channel().alloc(), (InetSocketAddress) channel.remoteAddress(), (InetSocketAddress) cf.channel().remoteAddress()));
+            } else {
+                sendIpToBungee(proxyObject, (InetSocketAddress) channel.remoteAddress(), (InetSocketAddress) cf.channel().localAddress());
+            }
+            // Switch the client's pipeline on its own event loop so no read can overtake the bytes cumulated by the decoder
+            channel.eventLoop().execute(() -> {
+                if (!channel.isActive()) {
+                    cf.channel().close();
+                    return;
+                }
                 if (channel.attr(UPSTREAM_HANDLER).get() == null) {
                     ProxyUpstreamHandler upstreamHandler = new ProxyUpstreamHandler(cf.channel(), downstreamHandler);
                     channel.pipeline().addLast(upstreamHandler);
@@ -97,17 +254,10 @@ public class MinecraftDecoder extends SimpleChannelInboundHandler<ByteBuf> {
                 } else {
                     channel.attr(UPSTREAM_HANDLER).get().setChannel(cf.channel());
                 }
-                if (channel.pipeline().get("minecraftdecoder") != null) channel.pipeline().remove("minecraftdecoder");
-
-                sendIpToBungee(proxyObject, (InetSocketAddress) channel.remoteAddress(), (InetSocketAddress) cf.channel().localAddress());
-
-                loginPacket.resetReaderIndex();
-                future.channel().writeAndFlush(loginPacket.retain());
+                // Removing the decoder passes the handshake and all bytes received since to the upstream handler
+                if (channel.pipeline().get(NAME) != null) channel.pipeline().remove(NAME);
                 channel.attr(CONNECTION_STATE).set(ConnectionState.PROXY);
-            } else {
-                channel.close();
-                cf.channel().close();
-            }
+            });
         });
     }
 
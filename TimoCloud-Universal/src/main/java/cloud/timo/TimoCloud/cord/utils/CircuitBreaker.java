@@ -0,0 +1,62 @@
+package cloud.timo.TimoCloud.cord.utils;
+
+/**
+ * Decides whether connecting to a proxy is worth trying.
+ * A failed connect opens the circuit, so the proxy is skipped until the cooldown has passed. Then a single connection is let
+ * through as a probe (half-open): if it succeeds the proxy manager discards the circuit breaker, otherwise it stays open for another cooldown.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final long cooldownMillis;
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int failures;
+
+    public CircuitBreaker(long cooldownMillis) {
+        this.cooldownMillis = cooldownMillis;
+    }
+
+    /**
+     * @return Whether a connection would be let through right now, without claiming the half-open probe
+     */
+    public synchronized boolean isCallPermitted(long now) {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                return now - openedAt >= cooldownMillis;
+            default:
+                return false; // A probe is already in flight
+        }
+    }
+
+    /**
+     * Claims permission for a connection. If the cooldown has passed, the caller becomes the half-open probe.
+     */
+    public synchronized boolean tryAcquire(long now) {
+        if (!isCallPermitted(now)) return false;
+        if (state == State.OPEN) state = State.HALF_OPEN;
+        return true;
+    }
+
+    public synchronized void onFailure(long now) {
+        failures++;
+        state = State.OPEN;
+        openedAt = now;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * @return The number of consecutive failed connects
+     */
+    public synchronized int getFailures() {
+        return failures;
+    }
+}
@@ -1,6 +1,7 @@
 package cloud.timo.TimoCloud.cord.utils;
 
 import cloud.timo.TimoCloud.api.objects.ProxyGroupObject;
+import cloud.timo.TimoCloud.cord.TimoCloudCord;
 import cloud.timo.TimoCloud.cord.objects.ConnectionState;
 import cloud.timo.TimoCloud.cord.sockets.ProxyDownstreamHandler;
 import cloud.timo.TimoCloud.cord.sockets.ProxyUpstreamHandler;
@@ -9,6 +10,8 @@ import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.util.AttributeKey;
 
+import java.nio.charset.StandardCharsets;
+
 public class PacketUtil {
 
     public final static AttributeKey<ConnectionState> CONNECTION_STATE = AttributeKey.valueOf("connectionstate");
@@ -28,7 +31,7 @@ public class PacketUtil {
                         .set("online", proxyGroupObject.getOnlinePlayerCount())
                         .toJson())
                 .set("description", Message.create()
-                        .set("text", proxyGroupObject.getMotd())
+                        .set("text", TimoCloudCord.getInstance().getMotdPlaceholders().getCompiled(proxyGroupObject.getMotd()).render(proxyGroupObject))
                         .toJson())
                 .toString(), buf);
         return buf;
@@ -79,7 +82,7 @@ public class PacketUtil {
         int len = readVarInt(buf);
         byte[] b = new byte[len];
         buf.readBytes(b);
-        return new String(b);
+        return new String(b, StandardCharsets.UTF_8);
     }
 
     public static void writeVarInt(int value, ByteBuf output) {
@@ -96,7 +99,7 @@ public class PacketUtil {
     }
 
     public static void writeString(String s, ByteBuf buf) {
-        byte[] b = s.getBytes();
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
         writeVarInt(b.length, buf);
         buf.writeBytes(b);
     }
@@ -2,6 +2,8 @@ package cloud.timo.TimoCloud.core;
 
 import cloud.timo.TimoCloud.api.TimoCloudAPI;
 import cloud.timo.TimoCloud.api.implementations.EventManager;
+import cloud.timo.TimoCloud.api.implementations.TimoCloudMessageAPIBasicImplementation;
+import cloud.timo.TimoCloud.api.implementations.TimoCloudUniversalAPIBasicImplementation;
 import cloud.timo.TimoCloud.api.plugins.TimoCloudPlugin;
 import cloud.timo.TimoCloud.api.utils.APIInstanceUtil;
 import cloud.timo.TimoCloud.core.api.TimoCloudCoreAPIImplementation;
@@ -13,7 +15,9 @@ import cloud.timo.TimoCloud.core.sockets.CoreSocketServer;
 import cloud.timo.TimoCloud.core.sockets.CoreSocketServerHandler;
 import cloud.timo.TimoCloud.core.sockets.CoreStringHandler;
 import cloud.timo.TimoCloud.core.utils.completers.*;
-import cloud.timo.TimoCloud.lib.logging.LoggingOutputStream;
+import cloud.timo.TimoCloud.lib.logging.AsyncLogger;
+import cloud.timo.TimoCloud.lib.logging.LogEntry;
+import cloud.timo.TimoCloud.lib.logging.RollingLogFile;
 import cloud.timo.TimoCloud.lib.modules.ModuleType;
 import cloud.timo.TimoCloud.lib.modules.TimoCloudModule;
 import cloud.timo.TimoCloud.lib.utils.options.OptionSet;
@@ -27,13 +31,14 @@ import org.jline.terminal.TerminalBuilder;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.PrintStream;
 import java.nio.charset.Charset;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.Collections;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
-import java.util.logging.*;
+import java.util.logging.Level;
 
 import static org.jline.builtins.Completers.TreeCompleter.node;
 
@@ -43,19 +48,20 @@ public class TimoCloudCore implements TimoCloudModule {
     private boolean shuttingDown;
     private OptionSet options;
     private CoreFileManager fileManager;
-    SimpleFormatter simpleFormatter = new SimpleFormatter();
-    Logger logger;
+    private AsyncLogger logger;
     private CoreSocketServer socketServer;
     private CoreSocketServerHandler socketServerHandler;
     private CoreStringHandler stringHandler;
     private CoreInstanceManager instanceManager;
     private Channel channel;
     private TemplateManager templateManager;
+    private BlobTracker blobTracker;
     private CommandManager commandManager;
     private CoreEventManager eventManager;
     private CloudFlareManager cloudFlareManager;
     private PluginManager pluginManager;
     private PluginMessageManager pluginMessageManager;
+    private CoreScheduler scheduler;
     private boolean running;
     private boolean waitingForCommand = false;
     private LineReader reader;
@@ -63,54 +69,68 @@ public class TimoCloudCore implements TimoCloudModule {
     private static final String ANSI_RESET = "\u001B[0m";
     private static final String ANSI_RED = "\u001B[31m";
 
-    static {
-        System.setProperty("java.util.logging.SimpleFormatter.format", "[%1$tF %1$tT] [%4$-7s] %5$s %n");
-    }
+    private static final DateTimeFormatter CONSOLE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
     public void info(String message) {
-        if (getReader() == null) {
-            System.out.println(message);
-            return;
-        }
-        if (isWaitingForCommand()) getReader().callWidget(LineReader.CLEAR);
-        getReader().getTerminal().writer().print(getSimpleFormatter().format(new LogRecord(Level.INFO, message)));
-        if (isWaitingForCommand()) getReader().callWidget(LineReader.REDRAW_LINE);
-        if (isWaitingForCommand()) getReader().callWidget(LineReader.REDISPLAY);
-        getReader().getTerminal().writer().flush();
-
-        if (getLogger() != null) getLogger().info(message);
+        log(Level.INFO, message, null);
     }
 
     public void warning(String message) {
-        if (getReader() == null) {
-            System.out.println(message);
-            return;
-        }
-        if (isWaitingForCommand()) getReader().callWidget(LineReader.CLEAR);
-        getReader().getTerminal().writer().print(getSimpleFormatter().format(new LogRecord(Level.WARNING, message)));
-        if (isWaitingForCommand()) getReader().callWidget(LineReader.REDRAW_LINE);
-        if (isWaitingForCommand()) getReader().callWidget(LineReader.REDISPLAY);
-        getReader().getTerminal().writer().flush();
-
-        if (getLogger() != null) getLogger().warning(message);
+        log(Level.WARNING, message, null);
     }
 
     public void severe(String message) {
-        if (getReader() == null) {
-            System.err.println(message);
-            return;
-        }
-        if (isWaitingForCommand()) getReader().callWidget(LineReader.CLEAR);
-        getReader().getTerminal().writer().print(getSimpleFormatter().format(new LogRecord(Level.SEVERE, ANSI_RED + message + ANSI_RESET)));
-        if (isWaitingForCommand()) getReader().callWidget(LineReader.REDRAW_LINE);
-        if (isWaitingForCommand()) getReader().callWidget(LineReader.REDISPLAY);
-        getReader().getTerminal().writer().flush();
-
-        if (getLogger() != null) getLogger().severe(message);
+        log(Level.SEVERE, message, null);
     }
 
     public void severe(Throwable throwable) {
-        throwable.printStackTrace(new PrintStream(new LoggingOutputStream(this::severe)));
+        log(Level.SEVERE, null, throwable);
+    }
+
+    private void log(Level level, String message, Throwable throwable) {
+        if (getLogger() == null) {
+            if (message != null) (level == Level.INFO ? System.out : System.err).println(message);
+            if (throwable != null) throwable.printStackTrace();
+            return;
+        }
+        getLogger().log(level, message, throwable);
+    }
+
+    /**
+     * Writes a batch of log entries to the console, redrawing the command prompt only once
+     */
+    private void writeToConsole(List<LogEntry> entries) {
+        StringBuilder output = new StringBuilder();
+        for (LogEntry entry : entries) {
+            if (entry.getMessage() != null) formatConsoleLine(entry, entry.getMessage(), output);
+            if (entry.getThrowable() != null) {
+                for (String line : AsyncLogger.getStackTraceLines(entry.getThrowable())) formatConsoleLine(entry, line, output);
+            }
+        }
+        LineReader reader = getReader();
+        if (reader == null) {
+            System.out.print(output);
+            System.out.flush();
+            return;
+        }
+        boolean redraw = isWaitingForCommand();
+        if (redraw) reader.callWidget(LineReader.CLEAR);
+        reader.getTerminal().writer().print(output);
+        if (redraw) reader.callWidget(LineReader.REDRAW_LINE);
+        if (redraw) reader.callWidget(LineReader.REDISPLAY);
+        reader.getTerminal().writer().flush();
+    }
+
+    private void formatConsoleLine(LogEntry entry, String line, StringBuilder output) {
+        output.append('[');
+        CONSOLE_TIME_FORMAT.formatTo(Instant.ofEpochMilli(entry.getTime()).atZone(ZoneId.systemDefault()), output);
+        String levelName = entry.getLevel().getName();
+        output.append("] [").append(levelName);
+        for (int i = levelName.length(); i < 7; i++) output.append(' ');
+        output.append("] ");
+        if (entry.getLevel() == Level.SEVERE) output.append(ANSI_RED).append(line).append(ANSI_RESET);
+        else output.append(line);
+        output.append(" ").append(System.lineSeparator());
     }
 
     @Override
@@ -120,6 +140,7 @@ public class TimoCloudCore implements TimoCloudModule {
         this.options = optionSet;
         makeInstances();
         getInstanceManager().init();
+        getCloudFlareManager().requestSync();
         new Thread(this::initSocketServer).start();
         registerTasks();
         getPluginManager().loadPlugins();
@@ -133,10 +154,16 @@ public class TimoCloudCore implements TimoCloudModule {
 
     @Override
     public void unload() {
+        // Instances are going to disconnect now, but they should be re-adopted after the restart
+        getInstanceManager().getInstanceJournal().close();
         getCloudFlareManager().unload();
         for (TimoCloudPlugin plugin : getPluginManager().getPlugins()) {
             plugin.onUnload();
         }
+        getPluginManager().shutdown();
+        getScheduler().shutdown();
+        getStringHandler().shutdown();
+        getTemplateManager().shutdown();
         channel.close();
     }
 
@@ -160,7 +187,8 @@ public class TimoCloudCore implements TimoCloudModule {
                 node("listgroups"),
                 node("baseinfo", new Completers.TreeCompleter.Node(new BaseNameCompleter(), Collections.emptyList())),
                 node("listbases"),
-                node("sendcommand", new Completers.TreeCompleter.Node(new AggregateCompleter(new ServerGroupNameCompleter(), new ProxyGroupNameCompleter(), new ServerNameCompleter(), new ProxyNameCompleter()), Collections.emptyList()))
+                node("sendcommand", new Completers.TreeCompleter.Node(new AggregateCompleter(new ServerGroupNameCompleter(), new ProxyGroupNameCompleter(), new ServerNameCompleter(), new ProxyNameCompleter()), Collections.emptyList())),
+                node("console", new Completers.TreeCompleter.Node(new AggregateCompleter(new ServerNameCompleter(), new ProxyNameCompleter()), Collections.singletonList(node("attach", "detach"))))
                 );
         Parser parser = new DefaultParser();
         String prompt = "> ";
@@ -200,11 +228,14 @@ public class TimoCloudCore implements TimoCloudModule {
             System.exit(1);
         }
         fileManager.load();
+        getLogger().setMinimumLevel(getLogLevel());
+        this.scheduler = new CoreScheduler();
         this.socketServerHandler = new CoreSocketServerHandler();
         this.socketServer = new CoreSocketServer();
         this.stringHandler = new CoreStringHandler();
         this.instanceManager = new CoreInstanceManager();
-        this.templateManager = new TemplateManager();
+        this.templateManager = new TemplateManager(new File(getFileManager().getTemporaryDirectory(), "archives/"), getTemplateArchiveCacheSize());
+        this.blobTracker = new BlobTracker();
         this.commandManager = new CommandManager();
         this.eventManager = new CoreEventManager();
         this.cloudFlareManager = new CloudFlareManager();
@@ -215,24 +246,22 @@ public class TimoCloudCore implements TimoCloudModule {
         APIInstanceUtil.setCoreInstance(new TimoCloudCoreAPIImplementation());
         APIInstanceUtil.setEventInstance(new EventManager());
         APIInstanceUtil.setMessageInstance(new TimoCloudMessageAPICoreImplementation());
+        ((EventManager) TimoCloudAPI.getEventAPI()).setListenerExecutor(getPluginManager());
+        ((TimoCloudMessageAPIBasicImplementation) TimoCloudAPI.getMessageAPI()).setListenerExecutor(getPluginManager());
         TimoCloudAPI.getEventAPI().registerListener(getEventManager());
+        TimoCloudAPI.getEventAPI().registerListener(((TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI()).getPlayerDirectory());
         TimoCloudAPI.getEventAPI().registerListener(getCloudFlareManager());
     }
 
     private void createLogger() throws IOException {
-        logger = Logger.getLogger("TimoCloudCore");
-        logger.setUseParentHandlers(false);
         File logsDirectory = getFileManager().getLogsDirectory();
         logsDirectory.mkdirs();
-        FileHandler fileHandler = new FileHandler(logsDirectory.getCanonicalPath() + "/core-%g.log", 5242880, 100, false);
-        SimpleFormatter formatter = new SimpleFormatter();
-        fileHandler.setFormatter(formatter);
-        logger.addHandler(fileHandler);
+        logger = new AsyncLogger("TimoCloudCore", this::writeToConsole, new RollingLogFile(logsDirectory, "core", 5242880, 100));
     }
 
     private void registerTasks() {
-        ScheduledExecutorService executor = Executors.newScheduledThreadPool(1);
-        executor.scheduleAtFixedRate(this::everySecond, 1, 1, TimeUnit.SECONDS);
+        getScheduler().scheduleAtFixedRate(this::everySecond, 1, 1, TimeUnit.SECONDS);
+        getScheduler().scheduleAtFixedRate(getPluginManager()::checkRunningCalls, 1, 1, TimeUnit.SECONDS);
     }
 
     private void everySecond() {
@@ -248,6 +277,102 @@ public class TimoCloudCore implements TimoCloudModule {
         return (Integer) getFileManager().getConfig().get("socket-port");
     }
 
+    /**
+     * @return Seconds after the base has launched an instance after which it is killed if it has not registered, 0 to disable.
+     * Only applies to bases supervising their processes natively
+     */
+    public int getInstanceStartupTimeout() {
+        return ((Number) getFileManager().getConfig().get("instance-startup-timeout")).intValue();
+    }
+
+    /**
+     * @return Seconds a restarted core waits for the instances which were running before to reconnect, 0 to not re-adopt them
+     */
+    public int getInstanceResumeTimeout() {
+        return ((Number) getFileManager().getConfig().get("instance-resume-timeout")).intValue();
+    }
+
+    /**
+     * @return Bytes queued for an instance after which low-priority messages to it are dropped or coalesced
+     */
+    public int getWriteBufferHighWaterMark() {
+        return ((Number) getFileManager().getConfig().get("write-buffer-high-water-mark")).intValue();
+    }
+
+    /**
+     * @return Bytes the queue of an instance has to fall below before it receives low-priority messages again
+     */
+    public int getWriteBufferLowWaterMark() {
+        return ((Number) getFileManager().getConfig().get("write-buffer-low-water-mark")).intValue();
+    }
+
+    /**
+     * @return The algorithm used to compress connections to other machines, "none" to disable compression
+     */
+    public String getCompressionAlgorithm() {
+        return (String) getFileManager().getConfig().get("compression");
+    }
+
+    /**
+     * @return Messages smaller than this many bytes are sent uncompressed
+     */
+    public int getCompressionThreshold() {
+        return ((Number) getFileManager().getConfig().get("compression-threshold")).intValue();
+    }
+
+    /**
+     * @return Bytes of template archives which are kept on disk to be sent to other bases
+     */
+    public long getTemplateArchiveCacheSize() {
+        return ((Number) getFileManager().getConfig().get("template-archive-cache-size")).longValue();
+    }
+
+    /**
+     * @return Milliseconds a single event or message listener of a plugin may take before it is considered slow
+     */
+    public long getPluginListenerBudget() {
+        return ((Number) getFileManager().getConfig().get("plugin-listener-budget")).longValue();
+    }
+
+    /**
+     * @return Listener calls which may wait for a plugin's thread before further ones are dropped
+     */
+    public int getPluginQueueCapacity() {
+        return ((Number) getFileManager().getConfig().get("plugin-queue-capacity")).intValue();
+    }
+
+    /**
+     * @return Slow listener calls within a minute after which a plugin is quarantined, 0 to never quarantine plugins
+     */
+    public int getPluginQuarantineViolations() {
+        return ((Number) getFileManager().getConfig().get("plugin-quarantine-violations")).intValue();
+    }
+
+    /**
+     * @return Maximum number of blocking message handlers, e.g. template requests or commands, which run at the same time
+     */
+    public int getMessageHandlerThreads() {
+        return ((Number) getFileManager().getConfig().get("message-handler-threads")).intValue();
+    }
+
+    /**
+     * @return Whether bases download template files from each other instead of the core where possible
+     */
+    public boolean isPeerDistributionEnabled() {
+        return Boolean.TRUE.equals(getFileManager().getConfig().get("peer-distribution"));
+    }
+
+    /**
+     * @return Messages below this level are not logged
+     */
+    public Level getLogLevel() {
+        try {
+            return Level.parse(String.valueOf(getFileManager().getConfig().get("log-level")).toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return Level.INFO;
+        }
+    }
+
     private void initSocketServer() {
         try {
             socketServer.init("0.0.0.0", getSocketPort());
@@ -275,11 +400,7 @@ public class TimoCloudCore implements TimoCloudModule {
         return fileManager;
     }
 
-    public SimpleFormatter getSimpleFormatter() {
-        return simpleFormatter;
-    }
-
-    public Logger getLogger() {
+    public AsyncLogger getLogger() {
         return logger;
     }
 
@@ -291,6 +412,10 @@ public class TimoCloudCore implements TimoCloudModule {
         return templateManager;
     }
 
+    public BlobTracker getBlobTracker() {
+        return blobTracker;
+    }
+
     public CommandManager getCommandManager() {
         return commandManager;
     }
@@ -311,6 +436,10 @@ public class TimoCloudCore implements TimoCloudModule {
         return pluginMessageManager;
     }
 
+    public CoreScheduler getScheduler() {
+        return scheduler;
+    }
+
     public CoreSocketServer getSocketServer() {
         return socketServer;
     }
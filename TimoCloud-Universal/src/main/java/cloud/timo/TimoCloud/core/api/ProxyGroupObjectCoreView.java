@@ -0,0 +1,122 @@
+package cloud.timo.TimoCloud.core.api;
+
+import cloud.timo.TimoCloud.api.objects.ProxyChooseStrategy;
+import cloud.timo.TimoCloud.api.objects.ProxyGroupObject;
+import cloud.timo.TimoCloud.api.objects.ProxyObject;
+import cloud.timo.TimoCloud.api.objects.ServerGroupObject;
+import cloud.timo.TimoCloud.core.objects.ProxyGroup;
+
+import java.util.List;
+
+/**
+ * Live API view of a {@link ProxyGroup}. The proxy list is maintained by the group whenever a proxy is added or removed,
+ * so reading it does not copy anything. Use {@link #snapshot()} if you need a detached copy.
+ */
+public class ProxyGroupObjectCoreView implements ProxyGroupObject {
+
+    private final ProxyGroup group;
+
+    public ProxyGroupObjectCoreView(ProxyGroup group) {
+        this.group = group;
+    }
+
+    public ProxyGroupObject snapshot() {
+        return group.toGroupObject();
+    }
+
+    @Override
+    public String getName() {
+        return group.getName();
+    }
+
+    /**
+     * @return An unmodifiable list of live proxy views, ordered by name
+     */
+    @Override
+    public List<ProxyObject> getProxies() {
+        return group.getProxyViews();
+    }
+
+    @Override
+    public int getOnlinePlayerCount() {
+        return group.getOnlinePlayerCount();
+    }
+
+    @Override
+    public int getMaxPlayerCount() {
+        return group.getMaxPlayerCount();
+    }
+
+    @Override
+    public int getMaxPlayerCountPerProxy() {
+        return group.getMaxPlayerCountPerProxy();
+    }
+
+    @Override
+    public int getKeepFreeSlots() {
+        return group.getKeepFreeSlots();
+    }
+
+    @Override
+    public int getRam() {
+        return group.getRam();
+    }
+
+    @Override
+    public String getMotd() {
+        return group.getMotd();
+    }
+
+    @Override
+    public boolean isStatic() {
+        return group.isStatic();
+    }
+
+    @Override
+    public int getPriority() {
+        return group.getPriority();
+    }
+
+    /**
+     * @return An unmodifiable list of live server group views
+     */
+    @Override
+    public List<ServerGroupObject> getServerGroups() {
+        return group.getServerGroupViews();
+    }
+
+    @Override
+    public String getBase() {
+        return group.getBaseName();
+    }
+
+    @Override
+    public ProxyChooseStrategy getProxyChooseStrategy() {
+        return group.getProxyChooseStrategy();
+    }
+
+    /**
+     * @return An unmodifiable list of the group's host names
+     */
+    @Override
+    public List<String> getHostNames() {
+        return group.getHostNameViews();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return group.equals(((ProxyGroupObjectCoreView) o).group);
+    }
+
+    @Override
+    public int hashCode() {
+        return group.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return getName();
+    }
+}
@@ -0,0 +1,117 @@
+package cloud.timo.TimoCloud.core.api;
+
+import cloud.timo.TimoCloud.api.TimoCloudAPI;
+import cloud.timo.TimoCloud.api.implementations.TimoCloudUniversalAPIBasicImplementation;
+import cloud.timo.TimoCloud.api.messages.objects.AddressedPluginMessage;
+import cloud.timo.TimoCloud.api.messages.objects.MessageClientAddress;
+import cloud.timo.TimoCloud.api.messages.objects.MessageClientAddressType;
+import cloud.timo.TimoCloud.api.messages.objects.PluginMessage;
+import cloud.timo.TimoCloud.api.objects.PlayerObject;
+import cloud.timo.TimoCloud.api.objects.ProxyGroupObject;
+import cloud.timo.TimoCloud.api.objects.ProxyObject;
+import cloud.timo.TimoCloud.core.objects.Proxy;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.List;
+
+/**
+ * Live API view of a {@link Proxy}. Every getter reads the proxy's current state, nothing is copied.
+ * Use {@link #snapshot()} if you need a detached copy.
+ */
+public class ProxyObjectCoreView implements ProxyObject {
+
+    private final Proxy proxy;
+    private final MessageClientAddress messageClientAddress;
+
+    public ProxyObjectCoreView(Proxy proxy) {
+        this.proxy = proxy;
+        this.messageClientAddress = new MessageClientAddress(proxy.getId(), MessageClientAddressType.PROXY);
+    }
+
+    public ProxyObject snapshot() {
+        return proxy.toProxyObject();
+    }
+
+    @Override
+    public String getName() {
+        return proxy.getName();
+    }
+
+    @Override
+    public String getId() {
+        return proxy.getId();
+    }
+
+    @Override
+    public ProxyGroupObject getGroup() {
+        return proxy.getGroup().getView();
+    }
+
+    @Override
+    public List<PlayerObject> getOnlinePlayers() {
+        return ((TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI()).getPlayerDirectory().getPlayersOnProxy(getName());
+    }
+
+    @Override
+    public int getOnlinePlayerCount() {
+        return proxy.getOnlinePlayerCount();
+    }
+
+    @Override
+    public String getBase() {
+        return proxy.getBase() == null ? null : proxy.getBase().getName();
+    }
+
+    @Override
+    public InetSocketAddress getSocketAddress() {
+        return proxy.getAddress();
+    }
+
+    @Override
+    public InetAddress getIpAddress() {
+        return proxy.getAddress().getAddress();
+    }
+
+    @Override
+    public int getPort() {
+        return proxy.getAddress().getPort();
+    }
+
+    @Override
+    public MessageClientAddress getMessageAddress() {
+        return messageClientAddress;
+    }
+
+    @Override
+    public void executeCommand(String command) {
+        proxy.executeCommand(command);
+    }
+
+    @Override
+    public void stop() {
+        proxy.stop();
+    }
+
+    @Override
+    public void sendPluginMessage(PluginMessage message) {
+        TimoCloudAPI.getMessageAPI().sendMessage(new AddressedPluginMessage(getMessageAddress(), message));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return proxy.equals(((ProxyObjectCoreView) o).proxy);
+    }
+
+    @Override
+    public int hashCode() {
+        return proxy.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return getName();
+    }
+}
@@ -0,0 +1,84 @@
+package cloud.timo.TimoCloud.core.api;
+
+import cloud.timo.TimoCloud.api.objects.ServerGroupObject;
+import cloud.timo.TimoCloud.api.objects.ServerObject;
+import cloud.timo.TimoCloud.core.objects.ServerGroup;
+
+import java.util.List;
+
+/**
+ * Live API view of a {@link ServerGroup}. The server list is maintained by the group whenever a server is added or removed,
+ * so reading it does not copy anything. Use {@link #snapshot()} if you need a detached copy.
+ */
+public class ServerGroupObjectCoreView implements ServerGroupObject {
+
+    private final ServerGroup group;
+
+    public ServerGroupObjectCoreView(ServerGroup group) {
+        this.group = group;
+    }
+
+    public ServerGroupObject snapshot() {
+        return group.toGroupObject();
+    }
+
+    @Override
+    public String getName() {
+        return group.getName();
+    }
+
+    /**
+     * @return An unmodifiable list of live server views, ordered by their number
+     */
+    @Override
+    public List<ServerObject> getServers() {
+        return group.getServerViews();
+    }
+
+    @Override
+    public int getOnlineAmount() {
+        return group.getOnlineAmount();
+    }
+
+    @Override
+    public int getMaxAmount() {
+        return group.getMaxAmount();
+    }
+
+    @Override
+    public int getRam() {
+        return group.getRam();
+    }
+
+    @Override
+    public boolean isStatic() {
+        return group.isStatic();
+    }
+
+    @Override
+    public String getBase() {
+        return group.getBaseName();
+    }
+
+    @Override
+    public List<String> getSortOutStates() {
+        return group.getSortOutStates();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return group.equals(((ServerGroupObjectCoreView) o).group);
+    }
+
+    @Override
+    public int hashCode() {
+        return group.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return getName();
+    }
+}
@@ -0,0 +1,171 @@
+package cloud.timo.TimoCloud.core.api;
+
+import cloud.timo.TimoCloud.api.TimoCloudAPI;
+import cloud.timo.TimoCloud.api.implementations.TimoCloudUniversalAPIBasicImplementation;
+import cloud.timo.TimoCloud.api.messages.objects.AddressedPluginMessage;
+import cloud.timo.TimoCloud.api.messages.objects.MessageClientAddress;
+import cloud.timo.TimoCloud.api.messages.objects.MessageClientAddressType;
+import cloud.timo.TimoCloud.api.messages.objects.PluginMessage;
+import cloud.timo.TimoCloud.api.objects.PlayerObject;
+import cloud.timo.TimoCloud.api.objects.ServerGroupObject;
+import cloud.timo.TimoCloud.api.objects.ServerObject;
+import cloud.timo.TimoCloud.core.objects.Server;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Live API view of a {@link Server}. Every getter reads the server's current state, nothing is copied.
+ * Use {@link #snapshot()} if you need a detached copy.
+ */
+public class ServerObjectCoreView implements ServerObject {
+
+    /**
+     * Orders servers by the number at the end of their name, e.g. Lobby-2 before Lobby-10
+     */
+    public static final Comparator<ServerObject> ORDER = Comparator.comparingInt((ServerObject server) -> nameSuffix(server.getName())).thenComparing(ServerObject::getName);
+
+    private final Server server;
+    private final MessageClientAddress messageClientAddress;
+
+    public ServerObjectCoreView(Server server) {
+        this.server = server;
+        this.messageClientAddress = new MessageClientAddress(server.getId(), MessageClientAddressType.SERVER);
+    }
+
+    public ServerObject snapshot() {
+        return server.toServerObject();
+    }
+
+    @Override
+    public String getName() {
+        return server.getName();
+    }
+
+    @Override
+    public String getId() {
+        return server.getId();
+    }
+
+    @Override
+    public ServerGroupObject getGroup() {
+        return server.getGroup().getView();
+    }
+
+    @Override
+    public String getState() {
+        return server.getState();
+    }
+
+    @Override
+    public void setState(String state) {
+        server.setState(state);
+    }
+
+    @Override
+    public String getExtra() {
+        return server.getExtra();
+    }
+
+    @Override
+    public void setExtra(String extra) {
+        server.setExtra(extra);
+    }
+
+    @Override
+    public String getMap() {
+        return server.getMap();
+    }
+
+    @Override
+    public String getMotd() {
+        return server.getMotd();
+    }
+
+    @Override
+    public List<PlayerObject> getOnlinePlayers() {
+        return ((TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI()).getPlayerDirectory().getPlayersOnServer(getName());
+    }
+
+    @Override
+    public int getOnlinePlayerCount() {
+        return server.getOnlinePlayerCount();
+    }
+
+    @Override
+    public int getMaxPlayerCount() {
+        return server.getMaxPlayers();
+    }
+
+    @Override
+    public String getBase() {
+        return server.getBase() == null ? null : server.getBase().getName();
+    }
+
+    @Override
+    public InetSocketAddress getSocketAddress() {
+        return server.getAddress();
+    }
+
+    @Override
+    public InetAddress getIpAddress() {
+        return server.getAddress().getAddress();
+    }
+
+    @Override
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public boolean isSortedOut() {
+        return server.getGroup().getSortOutStates().contains(server.getState());
+    }
+
+    @Override
+    public MessageClientAddress getMessageAddress() {
+        return messageClientAddress;
+    }
+
+    @Override
+    public void executeCommand(String command) {
+        server.executeCommand(command);
+    }
+
+    @Override
+    public void stop() {
+        server.stop();
+    }
+
+    @Override
+    public void sendPluginMessage(PluginMessage message) {
+        TimoCloudAPI.getMessageAPI().sendMessage(new AddressedPluginMessage(getMessageAddress(), message));
+    }
+
+    static int nameSuffix(String name) {
+        try {
+            return Integer.parseInt(name.substring(name.lastIndexOf('-') + 1));
+        } catch (NumberFormatException e) {
+            return Integer.MAX_VALUE;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return server.equals(((ServerObjectCoreView) o).server);
+    }
+
+    @Override
+    public int hashCode() {
+        return server.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return getName();
+    }
+}
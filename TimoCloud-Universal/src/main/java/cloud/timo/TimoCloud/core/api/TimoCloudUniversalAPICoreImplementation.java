@@ -9,11 +9,13 @@ import cloud.timo.TimoCloud.core.objects.ProxyGroup;
 import cloud.timo.TimoCloud.core.objects.Server;
 import cloud.timo.TimoCloud.core.objects.ServerGroup;
 
-import java.util.Collection;
 import java.util.List;
-import java.util.UUID;
 import java.util.stream.Collectors;
 
+/**
+ * Returns live views of the core's servers, proxies and groups, see {@link ServerObjectCoreView}.
+ * Snapshots, e.g. for sending them to clients, are created by {@link ServerGroup#toGroupObject()} and its equivalents.
+ */
 public class TimoCloudUniversalAPICoreImplementation extends TimoCloudUniversalAPIBasicImplementation implements TimoCloudUniversalAPI {
 
     public TimoCloudUniversalAPICoreImplementation() {
@@ -22,51 +24,35 @@ public class TimoCloudUniversalAPICoreImplementation extends TimoCloudUniversalA
 
     @Override
     public List<ServerGroupObject> getServerGroups() {
-        return TimoCloudCore.getInstance().getInstanceManager().getServerGroups().stream().map(ServerGroup::toGroupObject).collect(Collectors.toList());
+        return TimoCloudCore.getInstance().getInstanceManager().getServerGroups().stream().map(ServerGroup::getView).collect(Collectors.toList());
     }
 
     @Override
     public ServerGroupObject getServerGroup(String groupName) {
         ServerGroup serverGroup = TimoCloudCore.getInstance().getInstanceManager().getServerGroupByName(groupName);
-        return serverGroup == null ? null : serverGroup.toGroupObject();
+        return serverGroup == null ? null : serverGroup.getView();
     }
 
     @Override
     public ServerObject getServer(String serverName) {
         Server server = TimoCloudCore.getInstance().getInstanceManager().getServerByName(serverName);
-        return server == null ? null : server.toServerObject();
+        return server == null ? null : server.getView();
     }
 
     @Override
     public List<ProxyGroupObject> getProxyGroups() {
-        return TimoCloudCore.getInstance().getInstanceManager().getProxyGroups().stream().map(ProxyGroup::toGroupObject).collect(Collectors.toList());
+        return TimoCloudCore.getInstance().getInstanceManager().getProxyGroups().stream().map(ProxyGroup::getView).collect(Collectors.toList());
     }
 
     @Override
     public ProxyGroupObject getProxyGroup(String groupName) {
         ProxyGroup proxyGroup = TimoCloudCore.getInstance().getInstanceManager().getProxyGroupByName(groupName);
-        return proxyGroup == null ? null : proxyGroup.toGroupObject();
+        return proxyGroup == null ? null : proxyGroup.getView();
     }
 
     @Override
     public ProxyObject getProxy(String proxyName) {
         Proxy proxy = TimoCloudCore.getInstance().getInstanceManager().getProxyByName(proxyName);
-        return proxy == null ? null : proxy.toProxyObject();
-    }
-
-    @Override
-    public PlayerObject getPlayer(UUID uuid) {
-        for (Proxy proxy : TimoCloudCore.getInstance().getInstanceManager().getProxyGroups().stream().map(ProxyGroup::getProxies).flatMap(Collection::stream).collect(Collectors.toList()))
-            for (PlayerObject playerObject : proxy.getOnlinePlayers())
-                if (playerObject.getUuid().equals(uuid)) return playerObject;
-        return null;
-    }
-
-    @Override
-    public PlayerObject getPlayer(String name) {
-        for (Proxy proxy : TimoCloudCore.getInstance().getInstanceManager().getProxyGroups().stream().map(ProxyGroup::getProxies).flatMap(Collection::stream).collect(Collectors.toList()))
-            for (PlayerObject playerObject : proxy.getOnlinePlayers())
-                if (playerObject.getName().equals(name)) return playerObject;
-        return null;
+        return proxy == null ? null : proxy.getView();
     }
 }
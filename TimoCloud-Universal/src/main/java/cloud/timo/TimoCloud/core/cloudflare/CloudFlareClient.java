@@ -0,0 +1,219 @@
+package cloud.timo.TimoCloud.core.cloudflare;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Minimal client for CloudFlare's DNS API.
+ * Responses are always read completely and connections are never disconnected explicitly, so the JVM keeps them alive and
+ * reuses them for the next request. Rate limited (429) and failed (5xx, I/O) requests are retried with exponential backoff,
+ * and a Retry-After given by the API pauses all requests of this client, not only the one which was limited.
+ */
+public class CloudFlareClient {
+
+    public static final String DEFAULT_API_URL = "https://api.cloudflare.com/client/v4/";
+
+    private static final int PAGE_SIZE = 100;
+    private static final int CONNECT_TIMEOUT = 10000;
+    private static final int READ_TIMEOUT = 30000;
+
+    private final String apiUrl;
+    private final String email;
+    private final String apiKey;
+    private final int maxRetries;
+    private final long backoffMillis;
+    private final AtomicLong pausedUntil;
+    private final AtomicLong requests;
+
+    /**
+     * @param maxRetries    How often a rate limited or failed request is retried
+     * @param backoffMillis Time to wait before the first retry, doubled for each further one
+     */
+    public CloudFlareClient(String apiUrl, String email, String apiKey, int maxRetries, long backoffMillis) {
+        this.apiUrl = apiUrl.endsWith("/") ? apiUrl : apiUrl + "/";
+        this.email = email;
+        this.apiKey = apiKey;
+        this.maxRetries = maxRetries;
+        this.backoffMillis = backoffMillis;
+        this.pausedUntil = new AtomicLong();
+        this.requests = new AtomicLong();
+    }
+
+    public List<DnsZone> getZones() throws CloudFlareException {
+        List<DnsZone> zones = new ArrayList<>();
+        for (JsonElement zone : getAllPages("zones")) zones.add(DnsZone.fromJson(zone.getAsJsonObject()));
+        return zones;
+    }
+
+    public List<DnsRecord> getRecords(DnsZone zone) throws CloudFlareException {
+        List<DnsRecord> records = new ArrayList<>();
+        for (JsonElement record : getAllPages("zones/" + zone.getId() + "/dns_records")) records.add(DnsRecord.fromJson(record.getAsJsonObject()));
+        return records;
+    }
+
+    /**
+     * @return The created record with its id
+     */
+    public DnsRecord createRecord(DnsRecord record) throws CloudFlareException {
+        return DnsRecord.fromJson(request("POST", "zones/" + record.getZone().getId() + "/dns_records", record.toJson().toString()).get("result").getAsJsonObject());
+    }
+
+    public void deleteRecord(DnsRecord record) throws CloudFlareException {
+        request("DELETE", "zones/" + record.getZone().getId() + "/dns_records/" + record.getId(), null);
+    }
+
+    /**
+     * @return The number of HTTP requests sent so far, including retries
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    private JsonArray getAllPages(String path) throws CloudFlareException {
+        JsonArray results = new JsonArray();
+        int totalPages = 1;
+        for (int page = 1; page <= totalPages; page++) {
+            JsonObject response = request("GET", path + "?per_page=" + PAGE_SIZE + "&page=" + page, null);
+            results.addAll(response.get("result").getAsJsonArray());
+            if (response.has("result_info") && response.get("result_info").isJsonObject()) {
+                JsonObject resultInfo = response.get("result_info").getAsJsonObject();
+                if (resultInfo.has("total_pages")) totalPages = resultInfo.get("total_pages").getAsInt();
+            }
+        }
+        return results;
+    }
+
+    private JsonObject request(String method, String path, String data) throws CloudFlareException {
+        CloudFlareException lastError = null;
+        for (int attempt = 0; attempt <= maxRetries; attempt++) {
+            waitUntilNotPaused();
+            try {
+                return execute(method, path, data);
+            } catch (RetryableException e) {
+                lastError = e;
+                if (attempt == maxRetries) break;
+                long backoff = backoffMillis << attempt;
+                pause(e.getRetryAfterMillis() >= 0 ? e.getRetryAfterMillis() : backoff, e.getRetryAfterMillis() >= 0);
+            }
+        }
+        throw lastError;
+    }
+
+    private JsonObject execute(String method, String path, String data) throws CloudFlareException {
+        requests.incrementAndGet();
+        HttpURLConnection connection;
+        int status;
+        String body;
+        try {
+            connection = (HttpURLConnection) new URL(apiUrl + path).openConnection();
+            connection.setRequestMethod(method);
+            connection.setConnectTimeout(CONNECT_TIMEOUT);
+            connection.setReadTimeout(READ_TIMEOUT);
+            connection.setUseCaches(false);
+            connection.setRequestProperty("X-Auth-Email", email);
+            connection.setRequestProperty("X-Auth-Key", apiKey);
+            connection.setRequestProperty("Content-Type", "application/json");
+            connection.setRequestProperty("Accept", "application/json");
+            if (data != null) {
+                connection.setDoOutput(true);
+                try (OutputStream outputStream = connection.getOutputStream()) {
+                    outputStream.write(data.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            status = connection.getResponseCode();
+            body = readFully(status < 400 ? connection.getInputStream() : connection.getErrorStream());
+        } catch (IOException e) {
+            throw new RetryableException("Error while executing request " + method + " " + path + ": " + e.getMessage(), -1);
+        }
+        if (status == 429) {
+            throw new RetryableException("CloudFlare API rate limit exceeded", getRetryAfterMillis(connection));
+        }
+        if (status >= 500) {
+            throw new RetryableException("CloudFlare API returned status " + status + " for " + method + " " + path, getRetryAfterMillis(connection));
+        }
+        JsonObject response;
+        try {
+            response = new JsonParser().parse(body).getAsJsonObject();
+        } catch (Exception e) {
+            throw new CloudFlareException("CloudFlare API returned an invalid response with status " + status + " for " + method + " " + path);
+        }
+        if (!response.has("success") || !response.get("success").getAsBoolean()) {
+            JsonArray errors = response.has("errors") && response.get("errors").isJsonArray() ? response.get("errors").getAsJsonArray() : new JsonArray();
+            throw new CloudFlareException("CloudFlare API returned an error: " + (errors.size() > 0 ? errors.get(0).toString() : "status " + status));
+        }
+        return response;
+    }
+
+    private static String readFully(InputStream inputStream) throws IOException {
+        if (inputStream == null) return "";
+        try (InputStream in = inputStream) {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int length;
+            while ((length = in.read(buffer)) >= 0) outputStream.write(buffer, 0, length);
+            return new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static long getRetryAfterMillis(HttpURLConnection connection) {
+        String retryAfter = connection.getHeaderField("Retry-After");
+        if (retryAfter == null) return -1;
+        try {
+            return Long.parseLong(retryAfter.trim()) * 1000;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @param global Whether all requests of this client are paused, which is the case if the API told us to
+     */
+    private void pause(long millis, boolean global) throws CloudFlareException {
+        long until = System.currentTimeMillis() + millis;
+        if (global) pausedUntil.accumulateAndGet(until, Math::max);
+        else sleep(millis);
+    }
+
+    private void waitUntilNotPaused() throws CloudFlareException {
+        long remaining;
+        while ((remaining = pausedUntil.get() - System.currentTimeMillis()) > 0) sleep(remaining);
+    }
+
+    private static void sleep(long millis) throws CloudFlareException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CloudFlareException("Interrupted while waiting for the CloudFlare API");
+        }
+    }
+
+    private static class RetryableException extends CloudFlareException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long retryAfterMillis;
+
+        private RetryableException(String message, long retryAfterMillis) {
+            super(message);
+            this.retryAfterMillis = retryAfterMillis;
+        }
+
+        private long getRetryAfterMillis() {
+            return retryAfterMillis;
+        }
+    }
+}
@@ -39,6 +39,9 @@ public class DnsRecord {
     }
 
     public static DnsRecord fromJson(JsonObject jsonObject) {
+        if (jsonObject.get("type").getAsString().equals("SRV") && jsonObject.has("data") && jsonObject.get("data").isJsonObject()) {
+            return SrvRecord.fromJson(jsonObject);
+        }
         return new DnsRecord(
                 jsonObject.get("id").getAsString(),
                 jsonObject.get("type").getAsString(),
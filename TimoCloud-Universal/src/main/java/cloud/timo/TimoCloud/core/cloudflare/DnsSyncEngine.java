@@ -0,0 +1,174 @@
+package cloud.timo.TimoCloud.core.cloudflare;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Keeps CloudFlare's DNS records in line with the records TimoCloud wants to exist.
+ * Zones and managed records are cached, so a pass only costs requests for records which actually have to be created or
+ * deleted. The cache is refreshed after it expired or whenever a change failed, because then it might not be accurate anymore.
+ * Changes of a pass are executed in parallel, but never more at once than the configured concurrency.
+ */
+public class DnsSyncEngine {
+
+    private final CloudFlareClient client;
+    private final Predicate<DnsZone> zoneFilter;
+    private final Predicate<DnsRecord> managed;
+    private final Function<List<DnsZone>, Collection<DnsRecord>> desiredState;
+    private final long cacheLifetimeMillis;
+    private final ExecutorService executor;
+    private List<DnsZone> zones;
+    private List<DnsRecord> records;
+    private long loadedAt;
+
+    /**
+     * @param zoneFilter          Zones whose records are synchronized
+     * @param managed             Records which are created by TimoCloud, only these are ever deleted
+     * @param desiredState        Computes all records which should exist in the given zones
+     * @param concurrency         Maximum number of requests at once
+     * @param cacheLifetimeMillis Time after which zones and records are loaded again, to notice changes made by others
+     */
+    public DnsSyncEngine(CloudFlareClient client, Predicate<DnsZone> zoneFilter, Predicate<DnsRecord> managed, Function<List<DnsZone>, Collection<DnsRecord>> desiredState, int concurrency, long cacheLifetimeMillis) {
+        this.client = client;
+        this.zoneFilter = zoneFilter;
+        this.managed = managed;
+        this.desiredState = desiredState;
+        this.cacheLifetimeMillis = cacheLifetimeMillis;
+        this.executor = Executors.newFixedThreadPool(concurrency, new DefaultThreadFactory("TimoCloud-DnsSync", true));
+    }
+
+    /**
+     * Creates all desired records which do not exist and deletes all managed records which are not desired anymore
+     *
+     * @return The changes which have been made
+     * @throws CloudFlareException If loading the current state or any change failed. Successful changes are kept.
+     */
+    public synchronized Changes reconcile() throws CloudFlareException {
+        if (zones == null || System.currentTimeMillis() - loadedAt > cacheLifetimeMillis) load();
+
+        Map<String, DnsRecord> desired = new LinkedHashMap<>();
+        for (DnsRecord record : desiredState.apply(zones)) desired.putIfAbsent(getKey(record), record);
+        Map<String, DnsRecord> existing = new HashMap<>();
+        List<DnsRecord> toDelete = new ArrayList<>();
+        for (DnsRecord record : records) {
+            String key = getKey(record);
+            if (!desired.containsKey(key) || existing.putIfAbsent(key, record) != null) toDelete.add(record); // Not desired or a duplicate
+        }
+        List<DnsRecord> toCreate = new ArrayList<>();
+        for (Map.Entry<String, DnsRecord> entry : desired.entrySet()) {
+            if (!existing.containsKey(entry.getKey())) toCreate.add(entry.getValue());
+        }
+
+        List<Callable<DnsRecord>> tasks = new ArrayList<>();
+        for (DnsRecord record : toDelete) tasks.add(() -> {
+            client.deleteRecord(record);
+            return record;
+        });
+        for (DnsRecord record : toCreate) tasks.add(() -> client.createRecord(record));
+        List<Future<DnsRecord>> results;
+        try {
+            results = executor.invokeAll(tasks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            zones = null;
+            throw new CloudFlareException("Interrupted while synchronizing DNS records");
+        }
+
+        Changes changes = new Changes();
+        Exception firstError = null;
+        int failed = 0;
+        for (int i = 0; i < results.size(); i++) {
+            boolean deletion = i < toDelete.size();
+            try {
+                DnsRecord record = results.get(i).get();
+                if (deletion) {
+                    records.remove(record);
+                    changes.deleted++;
+                } else {
+                    records.add(record);
+                    changes.created++;
+                }
+            } catch (ExecutionException e) {
+                failed++;
+                if (firstError == null) firstError = (Exception) e.getCause();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failed++;
+            }
+        }
+        if (failed > 0) {
+            zones = null;
+            throw new CloudFlareException(failed + " of " + tasks.size() + " DNS changes failed" + (firstError == null ? "" : ": " + firstError.getMessage()));
+        }
+        return changes;
+    }
+
+    /**
+     * Loads all zones and their managed records, the records of all zones at once
+     */
+    private void load() throws CloudFlareException {
+        List<DnsZone> zones = new ArrayList<>();
+        for (DnsZone zone : client.getZones()) if (zoneFilter.test(zone)) zones.add(zone);
+        List<Callable<List<DnsRecord>>> tasks = new ArrayList<>();
+        for (DnsZone zone : zones) tasks.add(() -> client.getRecords(zone));
+        List<DnsRecord> records = new ArrayList<>();
+        try {
+            for (Future<List<DnsRecord>> future : executor.invokeAll(tasks)) {
+                for (DnsRecord record : future.get()) if (managed.test(record)) records.add(record);
+            }
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof CloudFlareException ? (CloudFlareException) e.getCause() : new CloudFlareException("Error while loading DNS records: " + e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CloudFlareException("Interrupted while loading DNS records");
+        }
+        this.zones = zones;
+        this.records = records;
+        this.loadedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Makes the next pass load zones and records again
+     */
+    public synchronized void invalidate() {
+        zones = null;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * @return A key which is equal for records which are interchangeable, no matter whether they have been created or loaded
+     */
+    static String getKey(DnsRecord record) {
+        String zone = record.getZone() == null ? "" : record.getZone().getId();
+        if (record instanceof SrvRecord) {
+            SrvRecord srvRecord = (SrvRecord) record;
+            return zone + "|SRV|" + srvRecord.getFullName().toLowerCase() + "|" + srvRecord.getPort() + "|" + srvRecord.getTarget().toLowerCase();
+        }
+        return zone + "|" + record.getType() + "|" + record.getName().toLowerCase() + "|" + record.getContent();
+    }
+
+    public static class Changes {
+
+        private int created;
+        private int deleted;
+
+        public int getCreated() {
+            return created;
+        }
+
+        public int getDeleted() {
+            return deleted;
+        }
+
+        public boolean isEmpty() {
+            return created == 0 && deleted == 0;
+        }
+    }
+}
@@ -5,6 +5,8 @@ import com.google.gson.JsonObject;
 
 public class SrvRecord extends DnsRecord {
 
+    public static final String NAME_PREFIX = "_minecraft._tcp.";
+
     private int priority;
     private int weight;
     private int port;
@@ -34,6 +36,13 @@ public class SrvRecord extends DnsRecord {
         return target;
     }
 
+    /**
+     * @return The record's name including service and protocol, as returned by the API
+     */
+    public String getFullName() {
+        return getName().toLowerCase().startsWith(NAME_PREFIX) ? getName() : NAME_PREFIX + getName();
+    }
+
     @Override
     public JsonObject toJson() {
         return JsonObjectBuilder.create()
@@ -55,4 +64,23 @@ public class SrvRecord extends DnsRecord {
                         .toJsonObject())
                 .toJsonObject();
     }
+
+    public static SrvRecord fromJson(JsonObject jsonObject) {
+        JsonObject data = jsonObject.get("data").getAsJsonObject();
+        return new SrvRecord(
+                jsonObject.get("id").getAsString(),
+                jsonObject.get("type").getAsString(),
+                jsonObject.get("name").getAsString(),
+                jsonObject.get("content").getAsString(),
+                jsonObject.get("ttl").getAsInt(),
+                new DnsZone(
+                        jsonObject.get("zone_id").getAsString(),
+                        jsonObject.get("zone_name").getAsString()
+                ),
+                data.get("priority").getAsInt(),
+                data.get("weight").getAsInt(),
+                data.get("port").getAsInt(),
+                data.get("target").getAsString()
+        );
+    }
 }
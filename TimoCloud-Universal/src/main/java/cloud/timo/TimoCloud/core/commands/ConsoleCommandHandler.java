@@ -0,0 +1,58 @@
+package cloud.timo.TimoCloud.core.commands;
+
+import cloud.timo.TimoCloud.api.core.commands.CommandHandler;
+import cloud.timo.TimoCloud.api.core.commands.CommandSender;
+import cloud.timo.TimoCloud.core.TimoCloudCore;
+import cloud.timo.TimoCloud.core.commands.utils.CommandFormatUtil;
+import cloud.timo.TimoCloud.core.objects.Base;
+import cloud.timo.TimoCloud.core.objects.Instance;
+import cloud.timo.TimoCloud.core.objects.Proxy;
+import cloud.timo.TimoCloud.core.objects.Server;
+import cloud.timo.TimoCloud.lib.messages.Message;
+
+public class ConsoleCommandHandler extends CommandFormatUtil implements CommandHandler {
+
+    private static final int DEFAULT_LINES = 50;
+
+    @Override
+    public void onCommand(String command, CommandSender sender, String... args) {
+        if (args.length < 1) {
+            notEnoughArgs(sender, "console <serverName | proxyName> [lines | attach | detach]");
+            return;
+        }
+        String target = args[0];
+        Server server = TimoCloudCore.getInstance().getInstanceManager().getServerByName(target);
+        Proxy proxy = TimoCloudCore.getInstance().getInstanceManager().getProxyByName(target);
+        if (server == null && proxy == null) {
+            sender.sendError("Could not find any server or proxy with the name '" + target + "'");
+            return;
+        }
+        Instance instance = server != null ? server : proxy;
+        String id = instance.getId();
+        Base base = instance.getBase();
+        String option = args.length > 1 ? args[1].toLowerCase() : String.valueOf(DEFAULT_LINES);
+        switch (option) {
+            case "attach":
+                instance.getConsole().attach(sender);
+                base.sendMessage(Message.create().setType("ATTACH_CONSOLE").setTarget(id));
+                sender.sendMessage("&2Attached to the console of &e" + target + "&2. Use &6console " + target + " detach &2to stop.");
+                return;
+            case "detach":
+                instance.getConsole().detach();
+                base.sendMessage(Message.create().setType("DETACH_CONSOLE").setTarget(id));
+                sender.sendMessage("&2Detached from the console of &e" + target + "&2.");
+                return;
+            default:
+                int lines;
+                try {
+                    lines = Integer.parseInt(option);
+                } catch (NumberFormatException e) {
+                    sender.sendError("'" + option + "' is neither a number nor attach/detach.");
+                    return;
+                }
+                instance.getConsole().request(sender);
+                base.sendMessage(Message.create().setType("GET_CONSOLE").setTarget(id).setData(lines));
+        }
+    }
+
+}
@@ -21,7 +21,11 @@ public class HelpCommandHandler implements CommandHandler {
         sender.sendMessage("  &6listgroups &7- &7lists all groups and started servers");
         sender.sendMessage("  &6baseinfo &7<&2baseName&7> - displays base info");
         sender.sendMessage("  &6listbases &7- &7lists all bases");
+        sender.sendMessage("  &6networkinfo &7- &7shows how many bytes were sent and how well they were compressed");
+        sender.sendMessage("  &6plugins &7[&2release&7 | &2quarantine &7<&2plugin&7>] - &7shows how long the listeners of each plugin take, or releases or quarantines a plugin");
+        sender.sendMessage("  &6profile &7<&2start&7 | &2dump&7 | &2stop&7> - &7records a Java Flight Recorder profile of the core and saves it to the debug directory");
         sender.sendMessage("  &6sendcommand &7<&2groupName&7 | &2serverName&7 | &2proxyName&7> <&2command&7> - &7sends the given command to all server of a given group or the given server");
+        sender.sendMessage("  &6console &7<&2serverName&7 | &2proxyName&7> [&2lines &7(&9int&7) | &2attach&7 | &2detach&7] - &7shows the last console lines of an instance started in native process mode, or streams them while attached");
     }
 
 }
@@ -0,0 +1,35 @@
+package cloud.timo.TimoCloud.core.commands;
+
+import cloud.timo.TimoCloud.api.core.commands.CommandHandler;
+import cloud.timo.TimoCloud.api.core.commands.CommandSender;
+import cloud.timo.TimoCloud.core.TimoCloudCore;
+import cloud.timo.TimoCloud.lib.sockets.MessageTypeStatistics;
+import cloud.timo.TimoCloud.lib.sockets.OutboundStage;
+import cloud.timo.TimoCloud.lib.sockets.compression.CompressionStatistics;
+import cloud.timo.TimoCloud.lib.sockets.compression.StreamCompression;
+
+import java.util.concurrent.TimeUnit;
+
+public class NetworkInfoCommandHandler implements CommandHandler {
+
+    @Override
+    public void onCommand(String command, CommandSender sender, String... args) {
+        CompressionStatistics statistics = StreamCompression.getStatistics();
+        sender.sendMessage("&6Network statistics of the core:");
+        sender.sendMessage("  &6Sent: &e" + statistics.getUncompressedBytes() + " &7bytes, &e" + statistics.getCompressedBytes() + " &7bytes compressed (&e" + String.format("%.1f", statistics.getCompressionRatio() * 100) + "%&7)");
+        sender.sendMessage("  &6Received: &e" + statistics.getDecompressedBytes() + " &7bytes decompressed");
+        sender.sendMessage("  &6CPU time: &e" + TimeUnit.NANOSECONDS.toMillis(statistics.getCompressionNanos()) + "ms &7compressing, &e" + TimeUnit.NANOSECONDS.toMillis(statistics.getDecompressionNanos()) + "ms &7decompressing");
+        sender.sendMessage("  &6Low-priority messages: &e" + OutboundStage.getDroppedMessages() + " &7dropped, &e" + OutboundStage.getCoalescedMessages() + " &7coalesced");
+        sender.sendMessage("&6Received messages by type:");
+        for (MessageTypeStatistics type : TimoCloudCore.getInstance().getStringHandler().getStatistics().values()) {
+            sender.sendMessage("  &6" + type.getType() + ": &e" + type.getHandled() + " &7handled, &e" + type.getQueued() + " &7queued (max &e" + type.getMaxQueued()
+                    + "&7), waited &e" + formatMillis(type.getAverageWaitingNanos()) + "ms&7, took &e" + formatMillis(type.getAverageHandlingNanos()) + "ms &7on average (max &e"
+                    + formatMillis(type.getMaxHandlingNanos()) + "ms&7)");
+        }
+    }
+
+    private static String formatMillis(long nanos) {
+        return String.format("%.2f", nanos / 1000000.0);
+    }
+
+}
@@ -0,0 +1,46 @@
+package cloud.timo.TimoCloud.core.commands;
+
+import cloud.timo.TimoCloud.api.core.commands.CommandHandler;
+import cloud.timo.TimoCloud.api.core.commands.CommandSender;
+import cloud.timo.TimoCloud.core.TimoCloudCore;
+import cloud.timo.TimoCloud.core.plugins.PluginExecutor;
+
+import java.util.concurrent.TimeUnit;
+
+public class PluginsCommandHandler implements CommandHandler {
+
+    @Override
+    public void onCommand(String command, CommandSender sender, String... args) {
+        if (args.length == 0) {
+            listPlugins(sender);
+            return;
+        }
+        if (args.length < 2 || !(args[0].equalsIgnoreCase("release") || args[0].equalsIgnoreCase("quarantine"))) {
+            sender.sendError("Usage: plugins [release | quarantine <plugin>]");
+            return;
+        }
+        PluginExecutor executor = TimoCloudCore.getInstance().getPluginManager().getExecutor(args[1]);
+        if (executor == null) {
+            sender.sendError("Could not find any plugin with the name '" + args[1] + "'.");
+            return;
+        }
+        if (args[0].equalsIgnoreCase("release")) {
+            executor.release();
+            sender.sendMessage("&2Plugin &e" + executor.getPluginName() + " &2will receive events and messages again.");
+        } else {
+            executor.quarantine("an administrator has requested it");
+            sender.sendMessage("&2Plugin &e" + executor.getPluginName() + " &2has been quarantined.");
+        }
+    }
+
+    private void listPlugins(CommandSender sender) {
+        sender.sendMessage("&6Plugins of the core:");
+        for (PluginExecutor executor : TimoCloudCore.getInstance().getPluginManager().getExecutors()) {
+            sender.sendMessage("  &e" + executor.getPluginName() + (executor.isQuarantined() ? " &c(quarantined)" : "") + "&7: &e" + executor.getCalls() + " &7calls, &e"
+                    + executor.getSlowCalls() + " &7over budget (&e" + executor.getBudgetMillis() + "ms&7), &e" + executor.getDroppedCalls() + " &7dropped");
+            sender.sendMessage("    &7CPU time: &e" + TimeUnit.NANOSECONDS.toMillis(executor.getCpuNanos()) + "ms&7, running: &e" + TimeUnit.NANOSECONDS.toMillis(executor.getWallNanos())
+                    + "ms&7, queued: &e" + executor.getQueued() + " &7(max &e" + executor.getMaxQueued() + "&7)");
+        }
+    }
+
+}
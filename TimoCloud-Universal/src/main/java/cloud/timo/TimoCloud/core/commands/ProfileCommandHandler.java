@@ -0,0 +1,55 @@
+package cloud.timo.TimoCloud.core.commands;
+
+import cloud.timo.TimoCloud.api.core.commands.CommandHandler;
+import cloud.timo.TimoCloud.api.core.commands.CommandSender;
+import cloud.timo.TimoCloud.core.TimoCloudCore;
+import cloud.timo.TimoCloud.lib.profiling.Profiling;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+public class ProfileCommandHandler implements CommandHandler {
+
+    private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss");
+
+    @Override
+    public void onCommand(String command, CommandSender sender, String... args) {
+        if (!Profiling.isAvailable()) {
+            sender.sendError("Java Flight Recorder is not available on this JVM. Please use Java 8u262 or newer.");
+            return;
+        }
+        String action = args.length > 0 ? args[0].toLowerCase() : "";
+        try {
+            switch (action) {
+                case "start":
+                    if (Profiling.isRecording()) {
+                        sender.sendError("A recording is already running. Use 'profile dump' or 'profile stop'.");
+                        return;
+                    }
+                    Profiling.startRecording();
+                    sender.sendMessage("&2Started recording. Use &6profile dump &2to save it while it continues or &6profile stop &2to end it.");
+                    break;
+                case "dump":
+                case "stop": {
+                    if (!Profiling.isRecording()) {
+                        sender.sendError("No recording is running. Use 'profile start' first.");
+                        return;
+                    }
+                    File file = new File(TimoCloudCore.getInstance().getFileManager().getDebugDirectory(), "profile_" + DATE_FORMAT.format(new Date()) + ".jfr");
+                    if (action.equals("dump")) Profiling.dumpRecording(file);
+                    else Profiling.stopRecording(file);
+                    sender.sendMessage("&2Saved recording to &e" + file.getAbsolutePath() + "&2. Open it with JDK Mission Control.");
+                    break;
+                }
+                default:
+                    sender.sendError("Usage: profile <start | dump | stop>");
+            }
+        } catch (Exception e) {
+            sender.sendError("Error while profiling: " + e.getMessage());
+            TimoCloudCore.getInstance().severe("Error while profiling: ");
+            TimoCloudCore.getInstance().severe(e);
+        }
+    }
+
+}
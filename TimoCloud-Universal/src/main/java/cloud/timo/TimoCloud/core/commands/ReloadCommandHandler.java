@@ -9,6 +9,7 @@ public class ReloadCommandHandler implements CommandHandler {
     @Override
     public void onCommand(String command, CommandSender sender, String... args) {
         TimoCloudCore.getInstance().getFileManager().load();
+        TimoCloudCore.getInstance().getLogger().setMinimumLevel(TimoCloudCore.getInstance().getLogLevel());
         TimoCloudCore.getInstance().getInstanceManager().loadGroups();
         sender.sendMessage("&2Successfully reloaded from configuration!");
     }
@@ -19,6 +19,7 @@ public class CommandFormatUtil {
             sender.sendMessage("    &e" + server.getName() +
                     " &7(&6Base&7: &2" + server.getBase().getName() + "&7) " +
                     " &7(&6State&7: " + server.getState() + "&7) " +
+                    formatUsage(server) +
                     (server.getMap() == null || server.getMap().equals("") ? "" : (" &7(&6Map&7: &e" + server.getMap() + "&7)")));
         }
     }
@@ -39,7 +40,8 @@ public class CommandFormatUtil {
         for (Proxy proxy : group.getProxies()) {
             sender.sendMessage("    " + proxy.getName() +
                     " &7(&6Base&7: &2" + proxy.getBase().getName() + "&7) " +
-                    " &7(&6Players&7: &2" + proxy.getOnlinePlayerCount() + "&7) ");
+                    " &7(&6Players&7: &2" + proxy.getOnlinePlayerCount() + "&7) " +
+                    formatUsage(proxy));
         }
     }
 
@@ -54,6 +56,11 @@ public class CommandFormatUtil {
                 "&7)");
     }
 
+    private static String formatUsage(Instance instance) {
+        if (instance.getUsedRam() < 0) return "";
+        return " &7(&6RAM&7: &2" + instance.getUsedRam() + "MB&7/&2" + instance.getGroup().getRam() + "MB&7, &6CPU&7: &2" + instance.getCpuUsage() + "%&7) ";
+    }
+
     public void displayGroup(Group group, CommandSender sender) {
         if (group instanceof ServerGroup) displayGroup((ServerGroup) group, sender);
         else if (group instanceof ProxyGroup) displayGroup((ProxyGroup) group, sender);
@@ -0,0 +1,53 @@
+package cloud.timo.TimoCloud.core.managers;
+
+import java.util.*;
+
+/**
+ * Keeps track of which bases have which template blobs, so bases can be told where to download template files from instead
+ * of receiving them from the core
+ */
+public class BlobTracker {
+
+    private final Map<String, Set<String>> basesByHash;
+    private final Map<String, Set<String>> hashesByBase;
+
+    public BlobTracker() {
+        this.basesByHash = new HashMap<>();
+        this.hashesByBase = new HashMap<>();
+    }
+
+    /**
+     * @param replace Whether the given hashes are the base's complete inventory, e.g. after it has (re)connected
+     */
+    public synchronized void addBlobs(String base, Collection<String> hashes, boolean replace) {
+        if (replace) removeBase(base);
+        Set<String> inventory = hashesByBase.computeIfAbsent(base, key -> new HashSet<>());
+        for (String hash : hashes) {
+            if (!inventory.add(hash)) continue;
+            basesByHash.computeIfAbsent(hash, key -> new HashSet<>()).add(base);
+        }
+    }
+
+    public synchronized void removeBase(String base) {
+        Set<String> inventory = hashesByBase.remove(base);
+        if (inventory == null) return;
+        for (String hash : inventory) {
+            Set<String> bases = basesByHash.get(hash);
+            if (bases == null) continue;
+            bases.remove(base);
+            if (bases.isEmpty()) basesByHash.remove(hash);
+        }
+    }
+
+    /**
+     * @return The names of all bases which have the given blob
+     */
+    public synchronized List<String> getBases(String hash) {
+        Set<String> bases = basesByHash.get(hash);
+        return bases == null ? new ArrayList<>() : new ArrayList<>(bases);
+    }
+
+    public synchronized int getBlobCount() {
+        return basesByHash.size();
+    }
+}
@@ -5,208 +5,208 @@ import cloud.timo.TimoCloud.api.events.Listener;
 import cloud.timo.TimoCloud.api.events.ProxyRegisterEvent;
 import cloud.timo.TimoCloud.api.events.ProxyUnregisterEvent;
 import cloud.timo.TimoCloud.core.TimoCloudCore;
-import cloud.timo.TimoCloud.core.cloudflare.CloudFlareException;
+import cloud.timo.TimoCloud.core.cloudflare.CloudFlareClient;
 import cloud.timo.TimoCloud.core.cloudflare.DnsRecord;
+import cloud.timo.TimoCloud.core.cloudflare.DnsSyncEngine;
 import cloud.timo.TimoCloud.core.cloudflare.DnsZone;
 import cloud.timo.TimoCloud.core.cloudflare.SrvRecord;
 import cloud.timo.TimoCloud.core.objects.Base;
 import cloud.timo.TimoCloud.core.objects.Proxy;
-import cloud.timo.TimoCloud.lib.objects.HttpRequestProperty;
-import cloud.timo.TimoCloud.lib.utils.ArrayUtil;
-import cloud.timo.TimoCloud.lib.utils.network.HttpRequestUtil;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
+import cloud.timo.TimoCloud.core.objects.ProxyGroup;
+import cloud.timo.TimoCloud.core.objects.Server;
+import cloud.timo.TimoCloud.core.objects.ServerGroup;
+import io.netty.util.concurrent.DefaultThreadFactory;
 
+import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Executors;
-import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
-
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Publishes an address record for every base and an SRV record for every proxy on CloudFlare.
+ * Instead of sending requests for every register and unregister event, events only request a synchronization. Requests within
+ * a short window are handled by one pass of the {@link DnsSyncEngine}, which compares the desired records with its cached
+ * view of CloudFlare and only sends the differences. A periodic pass repairs records which could not be changed before.
+ */
 public class CloudFlareManager implements Listener {
 
-    private static final String CLOUDFLARE_API_URL = "https://api.cloudflare.com/client/v4/";
-    private ExecutorService executorService;
+    private static final long SYNC_DELAY_MILLIS = 1000;
+
+    private volatile DnsSyncEngine syncEngine;
+    private volatile ScheduledExecutorService executorService;
+    private final AtomicBoolean syncRequested;
 
     public CloudFlareManager() {
-        executorService = Executors.newCachedThreadPool();
+        syncRequested = new AtomicBoolean();
         load();
     }
 
     public void load() {
         if (!enabled()) return;
-        deleteExistingRecords();
+        Map<String, Object> config = TimoCloudCore.getInstance().getFileManager().getCloudFlareConfig();
+        CloudFlareClient client = new CloudFlareClient(
+                (String) config.getOrDefault("api-url", CloudFlareClient.DEFAULT_API_URL),
+                (String) config.get("email"),
+                (String) config.get("api-key"),
+                ((Number) config.get("max-retries")).intValue(),
+                1000);
+        syncEngine = new DnsSyncEngine(client, this::isZoneUsed, this::isManaged, this::getDesiredRecords,
+                ((Number) config.get("max-concurrent-requests")).intValue(),
+                TimeUnit.SECONDS.toMillis(((Number) config.get("cache-lifetime")).longValue()));
+        syncRequested.set(false); // A pass requested before the last unload has been cancelled
+        executorService = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("TimoCloud-CloudFlare", true));
+        long interval = ((Number) config.get("sync-interval")).longValue();
+        // The first pass is requested once the instances of the last run have been restored, see TimoCloudCore#load
+        executorService.scheduleWithFixedDelay(this::sync, interval, interval, TimeUnit.SECONDS);
     }
 
     public void unload() {
-        if (!enabled()) return;
+        if (executorService != null) executorService.shutdownNow();
+        if (syncEngine != null) syncEngine.shutdown();
+        executorService = null;
+        syncEngine = null;
     }
 
     @EventHandler
     public void onProxyRegisterEvent(ProxyRegisterEvent event) {
-        if (!enabled()) return;
-        executorService.submit(() -> {
-            Proxy proxy = TimoCloudCore.getInstance().getInstanceManager().getProxyByProxyObject(event.getProxy());
-            for (String hostName : getActiveHostnames()) {
-                for (String hostName1 : proxy.getGroup().getHostNames()) {
-                    if (!nameMatches(hostName, hostName1)) continue;
-                    proxy.setDnsRecord(addRecord(new SrvRecord(
-                            null,
-                            "SRV",
-                            hostName,
-                            formatInetAddress(proxy.getAddress().getAddress()),
-                            1,
-                            getZoneByName(getDomainByHostname(hostName)),
-                            1,
-                            1,
-                            proxy.getPort(),
-                            proxy.getBase().getName().toLowerCase() + ".base." + getDomainByHostname(hostName))
-                    ));
-                    break;
-                }
-            }
-        });
+        requestSync();
     }
 
     @EventHandler
     public void onProxyUnregisterEvent(ProxyUnregisterEvent event) {
-        if (!enabled()) return;
-        Proxy proxy = TimoCloudCore.getInstance().getInstanceManager().getProxyByProxyObject(event.getProxy());
-        if (proxy.getDnsRecord() == null) return;
-        executorService.submit(() -> {
-            deleteRecord(proxy.getDnsRecord());
-        });
+        requestSync();
     }
 
     public void onBaseRegisterEvent(Base base) {
-        if (!enabled()) return;
-        executorService.submit(() -> {
-            for (DnsZone zone : getZones()) {
-                addRecord(new DnsRecord(null, "A", base.getName().toLowerCase() + ".base." + zone.getName(), formatInetAddress(base.getPublicAddress()), 1, zone));
-            }
-        });
+        requestSync();
     }
 
     public void onBaseUnregisterEvent(Base base) {
-        if (!enabled()) return;
-        executorService.submit(() -> {
-            for (DnsZone zone : getZones()) {
-                for (DnsRecord record : getRecords(zone)) {
-                    if (record.getName().startsWith(base.getName().toLowerCase() + ".base.")) {
-                        deleteRecord(record);
-                    }
-                }
-            }
-        });
+        requestSync();
     }
 
-    private void deleteExistingRecords() {
-        executorService.submit(() -> {
-            for (DnsZone zone : getZones()) {
-                for (DnsRecord record : getRecords(zone)) {
-                    if (record.getName().contains(".base.")) deleteRecord(record);
-                }
-            }
-        });
-        executorService.submit(() -> {
-            for (String hostname : getActiveHostnames()) { // Delete SRV records
-                for (DnsRecord record : getMatchingSrvRecords(hostname, "SRV")) {
-                    deleteRecord(record);
-                }
-            }
-        });
-    }
-
-    private DnsRecord addRecord(DnsRecord record) {
+    /**
+     * Schedules a synchronization pass unless one is already pending, so bursts of changes are sent in one batch
+     */
+    public void requestSync() {
+        ScheduledExecutorService executorService = this.executorService;
+        if (executorService == null || executorService.isShutdown() || !syncRequested.compareAndSet(false, true)) return;
         try {
-            return DnsRecord.fromJson(request(CLOUDFLARE_API_URL + "zones/" + record.getZone().getId() + "/dns_records", "POST", record.toJson().toString()).getAsJsonObject());
-        } catch (Exception e) {
-            if (e.getMessage().contains("The record already exists.")) return null; // This happens when a base connects while we are deleting old records
-            TimoCloudCore.getInstance().severe(e);
-            return null;
+            executorService.schedule(this::sync, SYNC_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            syncRequested.set(false); // Unloaded in the meantime
         }
     }
 
-    private void deleteRecord(DnsRecord record) {
+    private void sync() {
+        syncRequested.set(false);
+        DnsSyncEngine syncEngine = this.syncEngine;
+        if (syncEngine == null) return;
         try {
-            request(CLOUDFLARE_API_URL + "zones/" + record.getZone().getId() + "/dns_records/" + record.getId(), "DELETE");
+            DnsSyncEngine.Changes changes = syncEngine.reconcile();
+            if (!changes.isEmpty()) TimoCloudCore.getInstance().info("Updated DNS records: " + changes.getCreated() + " created, " + changes.getDeleted() + " deleted.");
         } catch (Exception e) {
+            TimoCloudCore.getInstance().severe("Error while synchronizing DNS records with CloudFlare. Check your API access data or internet connection: ");
             TimoCloudCore.getInstance().severe(e);
         }
     }
 
-    private List<String> getActiveHostnames() {
-        return (List<String>) TimoCloudCore.getInstance().getFileManager().getCloudFlareConfig().get("hostnames");
+    /**
+     * Proxies which were running before a core restart and have not reconnected yet, and their bases, keep their records, so
+     * players can still join them while the core waits for them to be re-adopted
+     */
+    private Collection<DnsRecord> getDesiredRecords(List<DnsZone> zones) {
+        List<DnsRecord> records = new ArrayList<>();
+        Set<Base> resumingBases = getResumingBases();
+        for (Base base : TimoCloudCore.getInstance().getInstanceManager().getBases()) {
+            if (!(base.isConnected() || resumingBases.contains(base)) || base.getPublicAddress() == null) continue;
+            for (DnsZone zone : zones) {
+                records.add(new DnsRecord(null, base.getPublicAddress() instanceof Inet6Address ? "AAAA" : "A", getBaseHostName(base, zone.getName()), formatInetAddress(base.getPublicAddress()), 1, zone));
+            }
+        }
+        for (ProxyGroup group : TimoCloudCore.getInstance().getInstanceManager().getProxyGroups()) {
+            for (Proxy proxy : group.getProxies()) {
+                if (!proxy.isRegistered() && !(proxy.isResuming() && proxy.getPort() > 0)) continue;
+                for (String hostName : getActiveHostnames()) {
+                    DnsZone zone = getZoneByName(zones, getDomainByHostname(hostName));
+                    if (zone == null) continue;
+                    for (String hostName1 : group.getHostNames()) {
+                        if (!nameMatches(hostName, hostName1)) continue;
+                        records.add(new SrvRecord(
+                                null,
+                                "SRV",
+                                hostName,
+                                formatInetAddress(proxy.getAddress().getAddress()),
+                                1,
+                                zone,
+                                1,
+                                1,
+                                proxy.getPort(),
+                                getBaseHostName(proxy.getBase(), zone.getName())));
+                        break;
+                    }
+                }
+            }
+        }
+        return records;
     }
 
-    private List<DnsRecord> getMatchingSrvRecords(String hostName, String type) {
-        String domain = getDomainByHostname(hostName.trim().toLowerCase());
-        DnsZone zone = getZoneByName(domain);
-        if (zone == null) return new ArrayList<>();
-        return getRecords(zone).stream().filter(record -> record.getType().equals(type)).filter(record -> nameMatches(record.getName(), "_minecraft._tcp." + hostName)).collect(Collectors.toList()); // We found one valid zone, so there won't be another one
+    private static Set<Base> getResumingBases() {
+        Set<Base> bases = new HashSet<>();
+        for (ServerGroup group : TimoCloudCore.getInstance().getInstanceManager().getServerGroups()) {
+            for (Server server : group.getServers()) if (server.isResuming()) bases.add(server.getBase());
+        }
+        for (ProxyGroup group : TimoCloudCore.getInstance().getInstanceManager().getProxyGroups()) {
+            for (Proxy proxy : group.getProxies()) if (proxy.isResuming()) bases.add(proxy.getBase());
+        }
+        return bases;
     }
 
-    private DnsZone getZoneByName(String name) {
-        for (DnsZone zone : getZones()) {
-            if (zone.getName().equalsIgnoreCase(name)) return zone;
+    private boolean isZoneUsed(DnsZone zone) {
+        for (String hostName : getActiveHostnames()) {
+            if (hostName.toLowerCase().contains(zone.getName().trim().toLowerCase())) return true;
         }
-        return null;
+        return false;
     }
 
-    private List<DnsZone> getZones() {
-        try {
-            JsonArray jsonArray = request(CLOUDFLARE_API_URL + "zones?per_page=100", "GET").getAsJsonArray();
-            return StreamSupport.stream(jsonArray.spliterator(), false)
-                    .map(object -> DnsZone.fromJson(object.getAsJsonObject()))
-                    .filter(object -> {
-                        for (String hostName : getActiveHostnames())
-                            if (hostName.toLowerCase().contains(object.getName().trim().toLowerCase()))
-                                return true;
-                        return false;
-                    })
-                    .collect(Collectors.toList());
-        } catch (Exception e) {
-            TimoCloudCore.getInstance().severe("Error while getting DNS zones via API. Check your API access data or internet connection.");
-            e.printStackTrace();
-            return new ArrayList<>();
+    /**
+     * @return Whether the record has been created by TimoCloud and may therefore be deleted
+     */
+    private boolean isManaged(DnsRecord record) {
+        if (record.getName().contains(".base.")) return true;
+        if (!record.getType().equals("SRV")) return false;
+        for (String hostName : getActiveHostnames()) {
+            if (nameMatches(record.getName(), SrvRecord.NAME_PREFIX + hostName)) return true;
         }
+        return false;
     }
 
-    private List<DnsRecord> getRecords(DnsZone zone) {
-        try {
-            JsonArray jsons = request(CLOUDFLARE_API_URL + "zones/" + zone.getId() + "/dns_records?per_page=100", "GET").getAsJsonArray();
-            return StreamSupport.stream(jsons.spliterator(), false).map(object -> DnsRecord.fromJson(object.getAsJsonObject())).collect(Collectors.toList());
-        } catch (Exception e) {
-            TimoCloudCore.getInstance().severe("Error while getting DNS records via API. Check your API access data or internet connection.");
-            e.printStackTrace();
-            return new ArrayList<>();
-        }
+    private static String getBaseHostName(Base base, String domain) {
+        return base.getName().toLowerCase() + ".base." + domain;
     }
 
-    private boolean enabled() {
-        return (Boolean) TimoCloudCore.getInstance().getFileManager().getCloudFlareConfig().get("enabled");
+    private List<String> getActiveHostnames() {
+        return (List<String>) TimoCloudCore.getInstance().getFileManager().getCloudFlareConfig().get("hostnames");
     }
 
-    private JsonElement request(String url, String method, String data, HttpRequestProperty... additionalProperties) throws CloudFlareException {
-        try {
-            JsonElement response = HttpRequestUtil.requestJson(url, method, data, ArrayUtil.concatArrays(getRequestProperties(), additionalProperties));
-            JsonObject jsonObject = response.getAsJsonObject();
-            if (! jsonObject.get("success").getAsBoolean()) {
-                throw new CloudFlareException("CloudFlare API returned an error: " + jsonObject.get("errors").getAsJsonArray().get(0).toString());
-            }
-            return jsonObject.get("result");
-        } catch (Exception e) {
-            TimoCloudCore.getInstance().severe("Error while executing request '" + url + "': ");
-            TimoCloudCore.getInstance().severe(e);
-            return null;
+    private static DnsZone getZoneByName(List<DnsZone> zones, String name) {
+        for (DnsZone zone : zones) {
+            if (zone.getName().equalsIgnoreCase(name)) return zone;
         }
+        return null;
     }
 
-    private JsonElement request(String url, String method, HttpRequestProperty... additionalProperties) throws CloudFlareException {
-        return request(url, method, (String) null, additionalProperties);
+    private boolean enabled() {
+        return (Boolean) TimoCloudCore.getInstance().getFileManager().getCloudFlareConfig().get("enabled");
     }
 
     private static String getDomainByHostname(String hostName) {
@@ -230,17 +230,7 @@ public class CloudFlareManager implements Listener {
         return i == j;
     }
 
-    private HttpRequestProperty[] getRequestProperties() {
-        return new HttpRequestProperty[]{
-                new HttpRequestProperty("X-Auth-Email", (String) TimoCloudCore.getInstance().getFileManager().getCloudFlareConfig().get("email")),
-                new HttpRequestProperty("X-Auth-Key", (String) TimoCloudCore.getInstance().getFileManager().getCloudFlareConfig().get("api-key")),
-                new HttpRequestProperty("Content-Type", "application/json"),
-                new HttpRequestProperty("Accept", "application/json")
-        };
-    }
-
     private static String formatInetAddress(InetAddress address) {
-        if (address.toString().startsWith("/")) return address.toString().substring(1);
-        return address.toString();
+        return address.getHostAddress();
     }
 }
@@ -39,6 +39,7 @@ public class CommandManager {
 
     private void registerDefaultCommands() {
         registerCommand(new BaseInfoCommandHandler(), "baseinfo", "base");
+        registerCommand(new ConsoleCommandHandler(), "console", "screen");
         registerCommand(new CreateGroupCommandHandler(), "creategroup", "addgroup");
         registerCommand(new DebugCommandHandler(), "debug");
         registerCommand(new DeleteGroupCommand(), "deletegroup", "removegroup");
@@ -47,6 +48,9 @@ public class CommandManager {
         registerCommand(new HelpCommandHandler(), "help", "?");
         registerCommand(new ListBasesCommand(), "listbases", "bases", "showbases");
         registerCommand(new ListGroupsCommandHandler(), "listgroups", "groups", "showgroups");
+        registerCommand(new NetworkInfoCommandHandler(), "networkinfo", "network");
+        registerCommand(new PluginsCommandHandler(), "plugins", "pl");
+        registerCommand(new ProfileCommandHandler(), "profile", "jfr");
         registerCommand(new ReloadCommandHandler(), "reload");
         registerCommand(new RestartCommandHandler(), "restart", "restartgroup");
         registerCommand(new SendCommandCommandHandler(), "sendcommand", "executecommand", "send");
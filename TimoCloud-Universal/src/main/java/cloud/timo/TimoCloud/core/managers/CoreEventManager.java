@@ -13,6 +13,10 @@ import cloud.timo.TimoCloud.core.objects.Proxy;
 import cloud.timo.TimoCloud.core.objects.Server;
 import cloud.timo.TimoCloud.core.sockets.Communicatable;
 import cloud.timo.TimoCloud.lib.messages.Message;
+import cloud.timo.TimoCloud.lib.profiling.Profiling;
+import cloud.timo.TimoCloud.lib.profiling.ProfilingSpan;
+
+import java.util.List;
 
 public class CoreEventManager implements Listener {
 
@@ -21,11 +25,17 @@ public class CoreEventManager implements Listener {
                 .setType("EVENT_FIRED")
                 .set("eventType", event.getType().name())
                 .setData(eventToJSON(event));
-        for (Communicatable communicatable : TimoCloudCore.getInstance().getInstanceManager().getAllCommunicatableInstances()) {
-            if (communicatable instanceof Base) continue; // Bases do not support events
-            communicatable.sendMessage(message);
+        List<Communicatable> receivers = TimoCloudCore.getInstance().getInstanceManager().getAllCommunicatableInstances();
+        ProfilingSpan span = Profiling.eventFanOut(event.getType().name(), receivers.size());
+        try {
+            for (Communicatable communicatable : receivers) {
+                if (communicatable instanceof Base) continue; // Bases do not support events
+                communicatable.sendMessage(message);
+            }
+            ((EventManager) TimoCloudAPI.getEventAPI()).callEvent(event);
+        } finally {
+            span.close();
         }
-        ((EventManager) TimoCloudAPI.getEventAPI()).callEvent(event);
     }
 
     private static String eventToJSON(Event event) {
@@ -182,6 +182,13 @@ public class CoreFileManager {
         return pluginsDirectory;
     }
 
+    /**
+     * @return The file the core records its bases and instances in, see {@link InstanceJournal}
+     */
+    public File getInstanceJournalFile() {
+        return new File(getBaseDirectory(), "instances.journal");
+    }
+
     public File getConfigFile() {
         return configFile;
     }
@@ -1,10 +1,14 @@
 package cloud.timo.TimoCloud.core.managers;
 
 import cloud.timo.TimoCloud.api.objects.ProxyObject;
+import cloud.timo.TimoCloud.api.objects.ServerGroupObject;
 import cloud.timo.TimoCloud.api.objects.ServerObject;
 import cloud.timo.TimoCloud.core.TimoCloudCore;
 import cloud.timo.TimoCloud.core.objects.*;
 import cloud.timo.TimoCloud.core.sockets.Communicatable;
+import cloud.timo.TimoCloud.lib.messages.Message;
+import cloud.timo.TimoCloud.lib.profiling.Profiling;
+import cloud.timo.TimoCloud.lib.profiling.ProfilingSpan;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
@@ -14,15 +18,20 @@ import io.netty.channel.Channel;
 import java.io.File;
 import java.net.InetAddress;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class CoreInstanceManager {
 
     private Map<String, ServerGroup> serverGroups;
+    private volatile List<ServerGroupObject> serverGroupViews = Collections.emptyList();
     private Map<String, ProxyGroup> proxyGroups;
     private Map<String, Base> bases;
     private Map<String, Cord> cords;
+    private InstanceJournal instanceJournal;
+    private final List<Runnable> afterProxiesResumed = new ArrayList<>();
 
     private static final int MAX_SERVERS = 2500;
     private static final int MAX_PROXIES = 500;
@@ -30,6 +39,7 @@ public class CoreInstanceManager {
     public void init() {
         makeInstances();
         loadGroups();
+        restoreInstances();
     }
 
     private void makeInstances() {
@@ -37,6 +47,126 @@ public class CoreInstanceManager {
         proxyGroups = new HashMap<>();
         bases = new HashMap<>();
         cords = new HashMap<>();
+        instanceJournal = new InstanceJournal(TimoCloudCore.getInstance().getFileManager().getInstanceJournalFile());
+    }
+
+    /**
+     * Re-creates the bases, servers and proxies which were running before the core has been restarted from the instance
+     * journal. They are re-adopted as soon as they reconnect with their token; the ones which have not reconnected after the
+     * instance resume timeout are forgotten.
+     */
+    private void restoreInstances() {
+        instanceJournal.load();
+        int timeout = TimoCloudCore.getInstance().getInstanceResumeTimeout();
+        for (Message record : instanceJournal.getRecords(InstanceJournal.BASE)) {
+            try {
+                Base base = new Base((String) record.get("id"), InetAddress.getByName((String) record.get("address")), InetAddress.getByName((String) record.get("publicAddress")), null);
+                base.setToken((String) record.get("token"));
+                bases.put(base.getName(), base);
+            } catch (Exception e) {
+                TimoCloudCore.getInstance().severe("Error while restoring base " + record.get("id") + " from the instance journal: ");
+                TimoCloudCore.getInstance().severe(e);
+            }
+        }
+        int restored = 0;
+        for (Message record : instanceJournal.getRecords(InstanceJournal.SERVER)) {
+            ServerGroup group = getServerGroupByExactName((String) record.get("group"));
+            Base base = bases.get(record.get("base"));
+            if (timeout <= 0 || group == null || base == null) {
+                instanceJournal.remove(InstanceJournal.SERVER, (String) record.get("id"));
+                continue;
+            }
+            new Server((String) record.get("name"), (String) record.get("id"), base, (String) record.get("map"), group).resume(record);
+            restored++;
+        }
+        for (Message record : instanceJournal.getRecords(InstanceJournal.PROXY)) {
+            ProxyGroup group = getProxyGroupByExactName((String) record.get("group"));
+            Base base = bases.get(record.get("base"));
+            if (timeout <= 0 || group == null || base == null) {
+                instanceJournal.remove(InstanceJournal.PROXY, (String) record.get("id"));
+                continue;
+            }
+            new Proxy((String) record.get("name"), (String) record.get("id"), base, group).resume(record);
+            restored++;
+        }
+        if (restored == 0) return;
+        TimoCloudCore.getInstance().info("Waiting up to " + timeout + " seconds for " + restored + " servers and proxies which were running before the restart to reconnect.");
+        TimoCloudCore.getInstance().getScheduler().schedule(() -> abandonUnresumedInstances(null, true), timeout, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Called after a base has completed its handshake
+     *
+     * @param runningInstances Ids of the servers and proxies the base is running, or null if it cannot tell
+     */
+    public void onBaseConnected(Base base, List<String> runningInstances) {
+        instanceJournal.put(base.toJournalRecord());
+        if (runningInstances == null) return;
+        Set<String> running = new HashSet<>(runningInstances);
+        abandonUnresumedInstances(instance -> instance.getBase() == base && !running.contains(instance.getId()), false);
+    }
+
+    /**
+     * Forgets servers and proxies which were running before the core has been restarted, but have not been re-adopted
+     *
+     * @param filter Decides which of them are forgotten, null for all
+     * @param kill   Whether their processes might still be running and should be killed
+     */
+    private void abandonUnresumedInstances(Predicate<Instance> filter, boolean kill) {
+        int abandoned = 0;
+        for (ServerGroup group : getServerGroups()) {
+            for (Server server : new ArrayList<>(group.getServers())) {
+                if (!server.isResuming() || (filter != null && !filter.test(server))) continue;
+                server.abandon(kill);
+                abandoned++;
+            }
+        }
+        for (ProxyGroup group : getProxyGroups()) {
+            for (Proxy proxy : new ArrayList<>(group.getProxies())) {
+                if (!proxy.isResuming() || (filter != null && !filter.test(proxy))) continue;
+                proxy.abandon(kill);
+                abandoned++;
+            }
+        }
+        if (abandoned > 0) TimoCloudCore.getInstance().info(abandoned + " servers and proxies which were running before the restart have not been re-adopted.");
+    }
+
+    /**
+     * Runs the given action once no proxy which was running before the core has been restarted is waiting to be re-adopted
+     * anymore, immediately if there is none
+     */
+    public void runWhenProxiesResumed(Runnable action) {
+        synchronized (afterProxiesResumed) {
+            if (isAnyProxyResuming()) {
+                afterProxiesResumed.add(action);
+                return;
+            }
+        }
+        action.run();
+    }
+
+    /**
+     * Called after a proxy has been re-adopted or abandoned
+     */
+    public void onProxyResumed() {
+        List<Runnable> actions;
+        synchronized (afterProxiesResumed) {
+            if (afterProxiesResumed.isEmpty() || isAnyProxyResuming()) return;
+            actions = new ArrayList<>(afterProxiesResumed);
+            afterProxiesResumed.clear();
+        }
+        for (Runnable action : actions) action.run();
+    }
+
+    private boolean isAnyProxyResuming() {
+        for (ProxyGroup group : getProxyGroups()) {
+            for (Proxy proxy : group.getProxies()) if (proxy.isResuming()) return true;
+        }
+        return false;
+    }
+
+    public InstanceJournal getInstanceJournal() {
+        return instanceJournal;
     }
 
     /**
@@ -67,6 +197,7 @@ public class CoreInstanceManager {
             e.printStackTrace();
         }
         this.serverGroups = serverGroups;
+        updateServerGroupViews();
     }
 
     /**
@@ -131,7 +262,12 @@ public class CoreInstanceManager {
      * Tasks which should be performed every second
      */
     public void everySecond() {
-        processInstanceDemands();
+        ProfilingSpan span = Profiling.instanceDemands();
+        try {
+            processInstanceDemands();
+        } finally {
+            span.close();
+        }
     }
 
     /**
@@ -200,6 +336,7 @@ public class CoreInstanceManager {
      */
     public void addGroup(ServerGroup group) {
         serverGroups.put(group.getName(), group);
+        updateServerGroupViews();
     }
 
     /**
@@ -218,6 +355,7 @@ public class CoreInstanceManager {
      */
     public void removeServerGroup(ServerGroup group) {
         getServerGroups().remove(group);
+        updateServerGroupViews();
         group.stopAllServers();
         saveServerGroups();
     }
@@ -346,6 +484,19 @@ public class CoreInstanceManager {
         return serverGroups.values();
     }
 
+    private synchronized void updateServerGroupViews() {
+        List<ServerGroupObject> serverGroupViews = new ArrayList<>();
+        for (ServerGroup serverGroup : serverGroups.values()) serverGroupViews.add(serverGroup.getView());
+        this.serverGroupViews = Collections.unmodifiableList(serverGroupViews);
+    }
+
+    /**
+     * @return An unmodifiable list of the API views of all server groups
+     */
+    public List<ServerGroupObject> getServerGroupViews() {
+        return serverGroupViews;
+    }
+
     /**
      * @return A collection of all proxy groups
      */
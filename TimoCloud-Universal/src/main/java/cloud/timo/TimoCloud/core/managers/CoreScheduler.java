@@ -0,0 +1,224 @@
+package cloud.timo.TimoCloud.core.managers;
+
+import cloud.timo.TimoCloud.core.TimoCloudCore;
+import cloud.timo.TimoCloud.core.objects.Base;
+import cloud.timo.TimoCloud.lib.messages.Message;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Core-wide scheduler for delayed and periodic tasks, backed by a single hashed-wheel timer.
+ * The wheel thread only hands due tasks to one worker thread, so slow tasks never delay other timeouts.
+ */
+public class CoreScheduler {
+
+    private static final long TICK_MILLIS = 100;
+    private static final int TICKS_PER_WHEEL = 512;
+    private static final long INSTANCE_STOPPED_DELAY_MILLIS = 300000;
+    private static final long BATCH_WINDOW_MILLIS = 1000;
+
+    private final HashedWheelTimer timer;
+    private final ExecutorService worker;
+    private final Map<String, Timeout> keyedTasks;
+    private final Map<String, StopBatch> stopBatches;
+    private final Map<String, StopBatch> stopBatchesById;
+
+    public CoreScheduler() {
+        this.timer = new HashedWheelTimer(new DefaultThreadFactory("TimoCloud-Timer", true), TICK_MILLIS, TimeUnit.MILLISECONDS, TICKS_PER_WHEEL);
+        this.worker = Executors.newSingleThreadExecutor(new DefaultThreadFactory("TimoCloud-Scheduler", true));
+        this.keyedTasks = new ConcurrentHashMap<>();
+        this.stopBatches = new HashMap<>();
+        this.stopBatchesById = new HashMap<>();
+    }
+
+    /**
+     * Runs a task once after the given delay
+     *
+     * @return A handle which can be used to cancel the task
+     */
+    public Timeout schedule(Runnable runnable, long delay, TimeUnit unit) {
+        return timer.newTimeout(timeout -> execute(runnable), delay, unit);
+    }
+
+    /**
+     * Runs a task once after the given delay. If a task with the same key is already pending, it will be cancelled and replaced.
+     *
+     * @param key A unique key, e.g. an instance id
+     */
+    public void schedule(String key, Runnable runnable, long delay, TimeUnit unit) {
+        Timeout[] holder = new Timeout[1];
+        holder[0] = timer.newTimeout(timeout -> {
+            if (!keyedTasks.remove(key, holder[0])) return;
+            execute(runnable);
+        }, delay, unit);
+        Timeout previous = keyedTasks.put(key, holder[0]);
+        if (previous != null) previous.cancel();
+    }
+
+    /**
+     * Cancels a pending task which has been scheduled with the given key
+     *
+     * @return Whether a pending task has been cancelled
+     */
+    public boolean cancel(String key) {
+        Timeout timeout = keyedTasks.remove(key);
+        return timeout != null && timeout.cancel();
+    }
+
+    /**
+     * Runs a task repeatedly at a fixed rate until the returned handle is cancelled
+     */
+    public PeriodicTask scheduleAtFixedRate(Runnable runnable, long initialDelay, long period, TimeUnit unit) {
+        PeriodicTask task = new PeriodicTask(runnable, unit.toNanos(period));
+        task.scheduleNext(System.nanoTime() + unit.toNanos(initialDelay));
+        return task;
+    }
+
+    /**
+     * Tells the base to clean up a stopped server after the usual grace period.
+     * Notifications for the same base which are due at the same time are sent as one batched message.
+     */
+    public void scheduleServerStopped(Base base, String id) {
+        scheduleInstanceStopped(base, "servers", id);
+    }
+
+    /**
+     * Tells the base to clean up a stopped proxy after the usual grace period.
+     * Notifications for the same base which are due at the same time are sent as one batched message.
+     */
+    public void scheduleProxyStopped(Base base, String id) {
+        scheduleInstanceStopped(base, "proxies", id);
+    }
+
+    private void scheduleInstanceStopped(Base base, String category, String id) {
+        cancelInstanceStopped(id);
+        long now = System.currentTimeMillis();
+        // Notifications are grouped into windows, so that all instances of one base which stopped at about the same time share one message
+        long window = (now + INSTANCE_STOPPED_DELAY_MILLIS) / BATCH_WINDOW_MILLIS + 1;
+        String batchKey = base.getName() + ":" + window;
+        synchronized (stopBatches) {
+            StopBatch batch = stopBatches.get(batchKey);
+            if (batch == null) {
+                batch = new StopBatch(batchKey, base);
+                stopBatches.put(batchKey, batch);
+                StopBatch finalBatch = batch;
+                schedule(() -> flushInstanceStopped(finalBatch), window * BATCH_WINDOW_MILLIS - now, TimeUnit.MILLISECONDS);
+            }
+            batch.add(category, id);
+            stopBatchesById.put(id, batch);
+        }
+    }
+
+    /**
+     * Cancels a pending SERVER_STOPPED/PROXY_STOPPED notification, e.g. because the instance has reappeared
+     */
+    public void cancelInstanceStopped(String id) {
+        synchronized (stopBatches) {
+            StopBatch batch = stopBatchesById.remove(id);
+            if (batch != null) batch.remove(id);
+        }
+    }
+
+    private void flushInstanceStopped(StopBatch batch) {
+        List<String> servers;
+        List<String> proxies;
+        synchronized (stopBatches) {
+            stopBatches.remove(batch.getKey());
+            for (List<String> ids : batch.getIds().values()) ids.forEach(stopBatchesById::remove);
+            servers = new ArrayList<>(batch.getIds().get("servers"));
+            proxies = new ArrayList<>(batch.getIds().get("proxies"));
+        }
+        if (servers.isEmpty() && proxies.isEmpty()) return;
+        batch.getBase().sendMessage(Message.create()
+                .setType("INSTANCES_STOPPED")
+                .setData(Message.create()
+                        .setIfCondition("servers", servers, !servers.isEmpty())
+                        .setIfCondition("proxies", proxies, !proxies.isEmpty())));
+    }
+
+    private void execute(Runnable runnable) {
+        worker.execute(() -> {
+            try {
+                runnable.run();
+            } catch (Exception e) {
+                TimoCloudCore.getInstance().severe("Error while executing scheduled task: ");
+                TimoCloudCore.getInstance().severe(e);
+            }
+        });
+    }
+
+    public void shutdown() {
+        timer.stop();
+        worker.shutdown();
+    }
+
+    public class PeriodicTask {
+
+        private final Runnable runnable;
+        private final long periodNanos;
+        private volatile Timeout timeout;
+        private volatile boolean cancelled;
+
+        private PeriodicTask(Runnable runnable, long periodNanos) {
+            this.runnable = runnable;
+            this.periodNanos = periodNanos;
+        }
+
+        private void scheduleNext(long deadline) {
+            if (cancelled) return;
+            timeout = timer.newTimeout(t -> {
+                // The next deadline is based on the planned one, not on the actual execution time, so that the rate does not drift
+                scheduleNext(deadline + periodNanos);
+                execute(runnable);
+            }, Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        }
+
+        public void cancel() {
+            cancelled = true;
+            Timeout timeout = this.timeout;
+            if (timeout != null) timeout.cancel();
+        }
+    }
+
+    private static class StopBatch {
+
+        private final String key;
+        private final Base base;
+        private final Map<String, List<String>> ids;
+
+        private StopBatch(String key, Base base) {
+            this.key = key;
+            this.base = base;
+            this.ids = new HashMap<>();
+            ids.put("servers", new ArrayList<>());
+            ids.put("proxies", new ArrayList<>());
+        }
+
+        private void add(String category, String id) {
+            ids.get(category).add(id);
+        }
+
+        private void remove(String id) {
+            ids.values().forEach(list -> list.remove(id));
+        }
+
+        private String getKey() {
+            return key;
+        }
+
+        private Base getBase() {
+            return base;
+        }
+
+        private Map<String, List<String>> getIds() {
+            return ids;
+        }
+    }
+}
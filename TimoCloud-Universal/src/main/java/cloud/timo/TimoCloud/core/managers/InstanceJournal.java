@@ -0,0 +1,255 @@
+package cloud.timo.TimoCloud.core.managers;
+
+import cloud.timo.TimoCloud.core.TimoCloudCore;
+import cloud.timo.TimoCloud.lib.messages.Message;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durable record of all bases and instances the core knows about, so a restarted core can re-adopt instances which are still
+ * running instead of starting the network from scratch.
+ * Every change is appended to the journal file as one JSON line. Changes are made by the socket threads, so they are only
+ * queued there and written by a single background thread, which flushes once per batch of queued changes. When the journal has
+ * grown to several times the number of live records, it is replaced by a snapshot of them.
+ */
+public class InstanceJournal {
+
+    public static final String SERVER = "server";
+    public static final String PROXY = "proxy";
+    public static final String BASE = "base";
+
+    private static final int COMPACT_MIN_ENTRIES = 1000;
+    private static final int COMPACT_RATIO = 4;
+    private static final long CLOSE_TIMEOUT_SECONDS = 5;
+
+    private final File file;
+    private final Map<String, Message> records;
+    private List<Message> pending;
+    private ExecutorService executor;
+    private Writer writer; // Only used by the executor's thread after loading
+    private int entries;
+    private boolean closed = true; // Until it has been loaded
+
+    public InstanceJournal(File file) {
+        this.file = file;
+        this.records = new LinkedHashMap<>();
+        this.pending = new ArrayList<>();
+    }
+
+    /**
+     * Replays the journal file, replaces it by a snapshot of the live records and opens it for appending.
+     * A torn last line, e.g. because the core was killed while writing it, is skipped.
+     */
+    public synchronized void load() {
+        records.clear();
+        if (file.exists()) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.trim().isEmpty()) continue;
+                    try {
+                        apply(Message.createFromJsonString(line));
+                    } catch (Exception e) {
+                        TimoCloudCore.getInstance().warning("Skipping unreadable line of instance journal " + file.getName() + ".");
+                    }
+                }
+            } catch (IOException e) {
+                TimoCloudCore.getInstance().severe("Error while reading instance journal " + file.getAbsolutePath() + ": ");
+                TimoCloudCore.getInstance().severe(e);
+            }
+        }
+        closed = false;
+        compact(snapshot());
+        entries = records.size();
+        if (executor == null || executor.isShutdown()) {
+            executor = Executors.newSingleThreadExecutor(new DefaultThreadFactory("TimoCloud-InstanceJournal", true));
+        }
+    }
+
+    private void apply(Message entry) {
+        String key = key((String) entry.get("kind"), (String) entry.get("id"));
+        if ("REMOVE".equals(entry.getType())) {
+            records.remove(key);
+            return;
+        }
+        Message record = Message.create(entry);
+        record.remove("type");
+        records.put(key, record);
+    }
+
+    /**
+     * Stores the given record, replacing the previous one with the same kind and id
+     *
+     * @param record Has to contain the keys "kind" (one of {@link #SERVER}, {@link #PROXY} and {@link #BASE}) and "id"
+     */
+    public synchronized void put(Message record) {
+        if (closed) return;
+        String key = key((String) record.get("kind"), (String) record.get("id"));
+        if (record.equals(records.get(key))) return;
+        records.put(key, Message.create(record));
+        append(entry("PUT", record));
+    }
+
+    public synchronized void remove(String kind, String id) {
+        if (closed || records.remove(key(kind, id)) == null) return;
+        append(Message.create().setType("REMOVE").set("kind", kind).set("id", id));
+    }
+
+    /**
+     * @return All records of the given kind, in the order they have been created
+     */
+    public synchronized List<Message> getRecords(String kind) {
+        List<Message> result = new ArrayList<>();
+        for (Message record : records.values()) {
+            if (kind.equals(record.get("kind"))) result.add(Message.create(record));
+        }
+        return result;
+    }
+
+    public synchronized Message getRecord(String kind, String id) {
+        Message record = records.get(key(kind, id));
+        return record == null ? null : Message.create(record);
+    }
+
+    private static Message entry(String type, Message record) {
+        Message entry = Message.create().setType(type);
+        entry.putAll(record);
+        return entry;
+    }
+
+    /**
+     * Queues the entry and schedules writing the queue unless that has already been scheduled
+     */
+    private void append(Message entry) {
+        pending.add(entry);
+        entries++;
+        if (pending.size() == 1) executor.execute(this::writePending);
+    }
+
+    private List<Message> snapshot() {
+        List<Message> snapshot = new ArrayList<>();
+        for (Message record : records.values()) snapshot.add(entry("PUT", record));
+        return snapshot;
+    }
+
+    /**
+     * Writes all queued entries at once. The snapshot for compacting is taken together with them, so it contains exactly
+     * their changes.
+     */
+    private void writePending() {
+        List<Message> batch;
+        List<Message> snapshot = null;
+        synchronized (this) {
+            batch = pending;
+            pending = new ArrayList<>();
+            if (entries >= Math.max(COMPACT_MIN_ENTRIES, records.size() * COMPACT_RATIO)) {
+                snapshot = snapshot();
+                entries = records.size();
+            }
+        }
+        if (snapshot != null) {
+            compact(snapshot);
+            return;
+        }
+        try {
+            if (writer == null) openWriter();
+            for (Message entry : batch) {
+                writer.write(entry.toJson());
+                writer.write('\n');
+            }
+            writer.flush();
+        } catch (IOException e) {
+            TimoCloudCore.getInstance().severe("Error while writing instance journal " + file.getAbsolutePath() + ": ");
+            TimoCloudCore.getInstance().severe(e);
+            closeWriter();
+        }
+    }
+
+    /**
+     * Atomically replaces the journal file by the given entries
+     */
+    private void compact(List<Message> snapshot) {
+        closeWriter();
+        File snapshotFile = new File(file.getParentFile(), file.getName() + ".tmp");
+        try {
+            try (FileOutputStream out = new FileOutputStream(snapshotFile);
+                 Writer snapshotWriter = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+                for (Message entry : snapshot) {
+                    snapshotWriter.write(entry.toJson());
+                    snapshotWriter.write('\n');
+                }
+                snapshotWriter.flush();
+                out.getFD().sync();
+            }
+            Files.move(snapshotFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            TimoCloudCore.getInstance().severe("Error while compacting instance journal " + file.getAbsolutePath() + ": ");
+            TimoCloudCore.getInstance().severe(e);
+        }
+    }
+
+    private void openWriter() throws IOException {
+        writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+    }
+
+    private void closeWriter() {
+        if (writer == null) return;
+        try {
+            writer.close();
+        } catch (IOException ignored) {
+        }
+        writer = null;
+    }
+
+    /**
+     * Blocks until all changes made so far have been written
+     */
+    public void flush() {
+        ExecutorService executor;
+        synchronized (this) {
+            executor = this.executor;
+        }
+        if (executor == null || executor.isShutdown()) return;
+        try {
+            executor.submit(() -> {}).get(); // Runs after all writes which have been scheduled before
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Stops recording changes and writes the ones which are still queued. Called when the core shuts down, so the instances
+     * disconnecting because of it are not removed from the journal and can be re-adopted after the restart.
+     */
+    public void close() {
+        ExecutorService executor;
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            executor = this.executor;
+        }
+        if (executor == null) return;
+        executor.execute(this::closeWriter);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String key(String kind, String id) {
+        return kind + ":" + id;
+    }
+}
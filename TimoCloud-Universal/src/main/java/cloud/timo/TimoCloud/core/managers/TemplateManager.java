@@ -1,25 +1,286 @@
 package cloud.timo.TimoCloud.core.managers;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.io.OutputStream;
-import java.util.Collection;
+import cloud.timo.TimoCloud.lib.profiling.Profiling;
+import cloud.timo.TimoCloud.lib.profiling.ProfilingSpan;
+import cloud.timo.TimoCloud.lib.utils.HashUtil;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.io.*;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
+/**
+ * Builds the zip archives which are sent to bases when their templates are outdated.
+ * Archives are cached on disk, keyed by the requested files and their current size and modification time, so every base
+ * asking for the same update gets the same archive and it is only built once. Archives are built on a background pool and the
+ * least recently used ones are deleted when the cache exceeds its maximum size.
+ * Bases requesting the same archive at the same time share one encoded copy of it in memory.
+ */
 public class TemplateManager {
 
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_BUILD_ATTEMPTS = 3;
+    private static final Set<String> COMPRESSED_EXTENSIONS = new HashSet<>(Arrays.asList("jar", "zip", "gz", "png", "jpg", "jpeg", "ogg"));
+
+    private final File cacheDirectory;
+    private final long maxCacheSize;
+    private final ExecutorService executor;
+    private final Map<String, CompletableFuture<File>> builds;
+    private final LinkedHashMap<String, File> archives;
+    private final Map<String, String[]> fileHashes;
+    private final Map<String, WeakReference<String>> encodedArchives;
+    private long cacheSize;
+
+    public TemplateManager(File cacheDirectory, long maxCacheSize) {
+        this.cacheDirectory = cacheDirectory;
+        this.maxCacheSize = maxCacheSize;
+        this.executor = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors() / 2), new DefaultThreadFactory("TimoCloud-TemplateArchiver", true));
+        this.builds = new ConcurrentHashMap<>();
+        this.archives = new LinkedHashMap<>(16, 0.75f, true);
+        this.fileHashes = new ConcurrentHashMap<>();
+        this.encodedArchives = new ConcurrentHashMap<>();
+        loadCachedArchives();
+    }
+
+    private void loadCachedArchives() {
+        cacheDirectory.mkdirs();
+        File[] files = cacheDirectory.listFiles();
+        if (files == null) return;
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File file : files) {
+            if (file.getName().endsWith(".zip")) addToCache(file.getName().substring(0, file.getName().length() - 4), file);
+            else file.delete(); // Left over from an interrupted build
+        }
+    }
+
+    /**
+     * Reads the archive of the given files, building it first if it is not cached yet
+     *
+     * @param directory The template directory, paths in the archive are relative to it
+     * @param files     Files or directories inside the template directory
+     * @return The archive's content encoded with Base64, completed on the background pool
+     */
+    public CompletableFuture<String> getEncodedArchive(File directory, Collection<File> files) {
+        return getEncodedArchive(directory, files, 1);
+    }
+
+    private CompletableFuture<String> getEncodedArchive(File directory, Collection<File> files, int attempt) {
+        return CompletableFuture.supplyAsync(() -> getArchiveKey(directory, files), executor)
+                .thenCompose(key -> getArchive(key, directory, files))
+                .thenApplyAsync(this::encodeArchive, executor)
+                .handle((encoded, e) -> {
+                    if (e == null) return CompletableFuture.completedFuture(encoded);
+                    // The archive has been evicted by another build after it was looked up, so it is built again
+                    if (attempt < MAX_BUILD_ATTEMPTS && isMissingFile(e)) return getEncodedArchive(directory, files, attempt + 1);
+                    CompletableFuture<String> failed = new CompletableFuture<>();
+                    failed.completeExceptionally(e);
+                    return failed;
+                })
+                .thenCompose(Function.identity());
+    }
+
+    private static boolean isMissingFile(Throwable throwable) {
+        while (throwable != null) {
+            if (throwable instanceof NoSuchFileException || throwable instanceof FileNotFoundException) return true;
+            throwable = throwable.getCause();
+        }
+        return false;
+    }
+
+    /**
+     * Reads and encodes the archive only if no copy of it is still referenced, e.g. by a message which is being sent to another base
+     */
+    private String encodeArchive(File archive) {
+        String[] encoded = new String[1];
+        encodedArchives.compute(archive.getName(), (name, reference) -> {
+            encoded[0] = reference == null ? null : reference.get();
+            if (encoded[0] != null) return reference;
+            try {
+                encoded[0] = Base64.getEncoder().encodeToString(Files.readAllBytes(archive.toPath()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return new WeakReference<>(encoded[0]);
+        });
+        return encoded[0];
+    }
+
+    /**
+     * Decides which of the given files a base downloads from other bases. A file is assigned to peers if any peer has its content
+     * and the base has not failed to download that content from peers before, all other files have to be sent by the core.
+     *
+     * @param directory    The template directory
+     * @param files        Files or directories inside the template directory
+     * @param getPeers     Returns the peers which have the blob with the given hash
+     * @param withoutPeers Hashes of blobs which have to be sent by the core
+     * @return The planned transfer, completed on the background pool
+     */
+    public CompletableFuture<TemplateTransfer> planTransfer(File directory, Collection<File> files, Function<String, List<Map<String, Object>>> getPeers, Collection<String> withoutPeers) {
+        return CompletableFuture.supplyAsync(() -> {
+            SortedMap<String, File> entries = new TreeMap<>();
+            for (File file : files) collectEntries(file, directory, entries);
+            TemplateTransfer transfer = new TemplateTransfer();
+            for (Map.Entry<String, File> entry : entries.entrySet()) {
+                File file = entry.getValue();
+                if (file.isFile()) {
+                    String hash = getFileHash(file);
+                    List<Map<String, Object>> peers = withoutPeers.contains(hash) ? Collections.emptyList() : getPeers.apply(hash);
+                    if (!peers.isEmpty()) {
+                        Map<String, Object> peerFile = new LinkedHashMap<>();
+                        peerFile.put("path", entry.getKey());
+                        peerFile.put("hash", hash);
+                        peerFile.put("peers", peers);
+                        transfer.getPeerFiles().add(peerFile);
+                        continue;
+                    }
+                }
+                transfer.getCoreFiles().add(file);
+            }
+            return transfer;
+        }, executor);
+    }
+
+    /**
+     * @return The file's hash, only computed again if its size or modification time changed
+     */
+    private String getFileHash(File file) {
+        String path = file.getAbsolutePath();
+        String length = String.valueOf(file.length());
+        String lastModified = String.valueOf(file.lastModified());
+        String[] cached = fileHashes.get(path);
+        if (cached != null && cached[0].equals(length) && cached[1].equals(lastModified)) return cached[2];
+        try {
+            String hash = HashUtil.getFileHash(file);
+            fileHashes.put(path, new String[]{length, lastModified, hash});
+            return hash;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private CompletableFuture<File> getArchive(String key, File directory, Collection<File> files) {
+        synchronized (archives) {
+            File archive = archives.get(key);
+            if (archive != null && archive.exists()) return CompletableFuture.completedFuture(archive);
+        }
+        CompletableFuture<File> build = new CompletableFuture<>();
+        CompletableFuture<File> running = builds.putIfAbsent(key, build);
+        if (running != null) return running; // Someone else is already building this archive
+        executor.execute(() -> {
+            try {
+                String currentKey = key;
+                for (int attempt = 1; ; attempt++) {
+                    File archive = buildArchive(currentKey, directory, files);
+                    String keyAfterBuild = getArchiveKey(directory, files);
+                    if (keyAfterBuild.equals(currentKey)) {
+                        addToCache(currentKey, archive);
+                        build.complete(archive);
+                        break;
+                    }
+                    // Files have changed while they were archived, so the archive might mix old and new content
+                    archive.delete();
+                    if (attempt == MAX_BUILD_ATTEMPTS) throw new IOException("Files in " + directory.getPath() + " kept changing while they were archived");
+                    currentKey = keyAfterBuild;
+                }
+            } catch (Exception e) {
+                build.completeExceptionally(e);
+            } finally {
+                builds.remove(key, build);
+            }
+        });
+        return build;
+    }
+
+    private File buildArchive(String key, File directory, Collection<File> files) throws IOException {
+        cacheDirectory.mkdirs();
+        File temporary = new File(cacheDirectory, key + ".tmp");
+        File archive = new File(cacheDirectory, key + ".zip");
+        ProfilingSpan span = Profiling.templateOperation("archive", directory.getPath());
+        try (OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(temporary), BUFFER_SIZE)) {
+            zipFiles(files, directory, outputStream);
+        } catch (IOException e) {
+            temporary.delete();
+            throw e;
+        } finally {
+            span.close();
+        }
+        Files.move(temporary.toPath(), archive.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return archive;
+    }
+
+    private void addToCache(String key, File archive) {
+        synchronized (archives) {
+            File previous = archives.put(key, archive);
+            if (previous != null) cacheSize -= previous.length();
+            cacheSize += archive.length();
+            Iterator<Map.Entry<String, File>> iterator = archives.entrySet().iterator();
+            while (cacheSize > maxCacheSize && iterator.hasNext()) {
+                Map.Entry<String, File> eldest = iterator.next();
+                if (eldest.getKey().equals(key)) continue; // Never evict the archive which is about to be sent
+                cacheSize -= eldest.getValue().length();
+                eldest.getValue().delete();
+                encodedArchives.remove(eldest.getValue().getName());
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * @return A key which changes whenever the set of archived files or any of their sizes or modification times changes
+     */
+    static String getArchiveKey(File directory, Collection<File> files) {
+        SortedMap<String, File> entries = new TreeMap<>();
+        for (File file : files) collectEntries(file, directory, entries);
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(directory.getAbsolutePath().getBytes(StandardCharsets.UTF_8));
+            for (Map.Entry<String, File> entry : entries.entrySet()) {
+                File file = entry.getValue();
+                String line = "\n" + entry.getKey() + "\t" + (file.isDirectory() ? -1 : file.length()) + "\t" + file.lastModified();
+                digest.update(line.getBytes(StandardCharsets.UTF_8));
+            }
+            StringBuilder key = new StringBuilder();
+            for (byte b : digest.digest()) key.append(String.format("%02x", b));
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void collectEntries(File file, File base, Map<String, File> entries) {
+        if (file.isDirectory() && file.listFiles().length > 0) {
+            for (File file1 : file.listFiles()) collectEntries(file1, base, entries);
+            return;
+        }
+        if (!file.exists()) return;
+        entries.put(base.toURI().relativize(file.toURI()).getPath(), file);
+    }
+
     public void zipFiles(Collection<File> files, File base, OutputStream output) throws IOException {
         ZipOutputStream zos = new ZipOutputStream(output);
-        for (File file : files) addFile(file, base, zos);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        for (File file : files) addFile(file, base, zos, buffer);
         zos.close();
         output.flush();
     }
 
-    private static void addFile(File file, File base, ZipOutputStream zos) throws IOException {
+    private static void addFile(File file, File base, ZipOutputStream zos, byte[] buffer) throws IOException {
         if (file.isDirectory() && file.listFiles().length > 0) {
-            for (File file1 : file.listFiles()) addFile(file1, base, zos);
+            for (File file1 : file.listFiles()) addFile(file1, base, zos, buffer);
             return;
         }
         try {
@@ -27,21 +288,64 @@ public class TemplateManager {
             String relative = base.toURI().relativize(file.toURI()).getPath();
             if (file.isDirectory() && ! relative.endsWith("/")) relative += "/";
             ZipEntry zipEntry = new ZipEntry(relative);
+            zipEntry.setTime(file.lastModified());
+            if (! file.isDirectory() && isCompressed(file)) {
+                // Deflating already compressed files costs a lot of CPU for nearly no gain, so they are stored as they are
+                zipEntry.setMethod(ZipEntry.STORED);
+                zipEntry.setSize(file.length());
+                zipEntry.setCompressedSize(file.length());
+                zipEntry.setCrc(getCrc(file, buffer));
+            }
             zos.putNextEntry(zipEntry);
             if (! file.isDirectory()) {
-                FileInputStream fis = new FileInputStream(file);
-                byte[] bytes = new byte[1024];
-                int length;
-                while ((length = fis.read(bytes)) >= 0) {
-                    zos.write(bytes, 0, length);
+                try (InputStream inputStream = new FileInputStream(file)) {
+                    int length;
+                    while ((length = inputStream.read(buffer)) >= 0) {
+                        zos.write(buffer, 0, length);
+                    }
                 }
-                fis.close();
             }
-            zipEntry.setTime(file.lastModified());
             zos.closeEntry();
+        } catch (IOException e) {
+            throw e;
         } catch (Exception e) {
-            e.printStackTrace();
-            return;
+            throw new IOException("Error while archiving " + file.getPath(), e);
+        }
+    }
+
+    private static boolean isCompressed(File file) {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        return dot >= 0 && COMPRESSED_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase());
+    }
+
+    private static long getCrc(File file, byte[] buffer) throws IOException {
+        CRC32 crc = new CRC32();
+        try (InputStream inputStream = new FileInputStream(file)) {
+            int length;
+            while ((length = inputStream.read(buffer)) >= 0) crc.update(buffer, 0, length);
+        }
+        return crc.getValue();
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public static class TemplateTransfer {
+
+        private final List<Map<String, Object>> peerFiles = new ArrayList<>();
+        private final List<File> coreFiles = new ArrayList<>();
+
+        /**
+         * @return Entries with the file's "path" relative to the template directory, its "hash" and the "peers" which have it
+         */
+        public List<Map<String, Object>> getPeerFiles() {
+            return peerFiles;
+        }
+
+        public List<File> getCoreFiles() {
+            return coreFiles;
         }
     }
 }
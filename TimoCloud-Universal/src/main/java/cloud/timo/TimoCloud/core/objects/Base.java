@@ -1,14 +1,18 @@
 package cloud.timo.TimoCloud.core.objects;
 
 import cloud.timo.TimoCloud.core.TimoCloudCore;
+import cloud.timo.TimoCloud.core.managers.InstanceJournal;
 import cloud.timo.TimoCloud.core.sockets.Communicatable;
 import cloud.timo.TimoCloud.lib.messages.Message;
 import io.netty.channel.Channel;
 
 import java.net.InetAddress;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Base implements Communicatable {
 
@@ -16,11 +20,15 @@ public class Base implements Communicatable {
     private InetAddress address;
     private InetAddress publicAddress; // Used for connecting to public proxies
     private Channel channel;
+    private int peerPort = -1;
+    private Set<String> unreachablePeers;
     private int availableRam;
     private int maxRam;
     private double cpu;
     private boolean connected;
     private boolean ready;
+    private String token;
+    private String peerToken;
     private Set<Server> servers;
     private Set<Proxy> proxies;
 
@@ -32,6 +40,7 @@ public class Base implements Communicatable {
         setReady(false);
         servers = new HashSet<>();
         proxies = new HashSet<>();
+        unreachablePeers = ConcurrentHashMap.newKeySet();
     }
 
     @Override
@@ -48,6 +57,7 @@ public class Base implements Communicatable {
         setChannel(null);
         setConnected(false);
         setReady(false);
+        TimoCloudCore.getInstance().getBlobTracker().removeBase(getName());
         TimoCloudCore.getInstance().getCloudFlareManager().onBaseUnregisterEvent(this);
         TimoCloudCore.getInstance().info("Base " + getName() + " disconnected.");
     }
@@ -61,25 +71,58 @@ public class Base implements Communicatable {
                 Map map = (Map) data;
                 setReady((boolean) map.get("ready"));
                 int maxRam = ((Number) map.get("maxRam")).intValue();
-                int usedRam = servers.stream().mapToInt((server) -> server.getGroup().getRam()).sum() + proxies.stream().mapToInt((proxy) -> proxy.getGroup().getRam()).sum();
+                if (map.containsKey("instances")) updateInstanceUsages((Map<String, List<Number>>) map.get("instances"));
+                int usedRam = servers.stream().mapToInt(this::getAccountedRam).sum() + proxies.stream().mapToInt(this::getAccountedRam).sum();
                 int availableRam = ((Number) map.get("availableRam")).intValue();
                 setAvailableRam(Math.max(0, Math.min(availableRam, maxRam-usedRam)));
                 setCpu(((Double) map.get("cpu")));
                 setMaxRam(maxRam);
                 break;
+            case "BLOBS_AVAILABLE":
+                TimoCloudCore.getInstance().getBlobTracker().addBlobs(getName(), (List<String>) message.get("hashes"), Boolean.TRUE.equals(message.get("replace")));
+                break;
             default:
                 sendMessage(message);
         }
     }
 
+    private void updateInstanceUsages(Map<String, List<Number>> usages) {
+        for (Server server : servers) {
+            List<Number> usage = usages.get(server.getId());
+            if (usage != null) server.setUsage(usage);
+        }
+        for (Proxy proxy : proxies) {
+            List<Number> usage = usages.get(proxy.getId());
+            if (usage != null) proxy.setUsage(usage);
+        }
+    }
+
+    /**
+     * Running instances are accounted with the RAM they actually use, starting ones with their group's full reservation because they are still growing
+     */
+    private int getAccountedRam(Instance instance) {
+        int reserved = instance.getGroup().getRam();
+        if (!instance.isRegistered() || instance.getUsedRam() < 0) return reserved;
+        return Math.min(reserved, instance.getUsedRam());
+    }
+
     @Override
     public void sendMessage(Message message) {
-        if (getChannel() != null) getChannel().writeAndFlush(message.toJson());
+        TimoCloudCore.getInstance().getSocketServerHandler().sendMessage(getChannel(), message);
     }
 
     @Override
     public void onHandshakeSuccess() {
-        sendMessage(Message.create().setType("HANDSHAKE_SUCCESS"));
+        sendMessage(Message.create().setType("HANDSHAKE_SUCCESS").setIfNotNull("token", getToken()).setIfNotNull("peerToken", getPeerToken()));
+    }
+
+    public Message toJournalRecord() {
+        return Message.create()
+                .set("kind", InstanceJournal.BASE)
+                .set("id", getName())
+                .set("address", getAddress().getHostAddress())
+                .set("publicAddress", getPublicAddress().getHostAddress())
+                .set("token", getToken());
     }
     public String getName() {
         return name;
@@ -106,6 +149,28 @@ public class Base implements Communicatable {
         return this.channel;
     }
 
+    /**
+     * @return The port the base serves template files to other bases on, -1 if it does not
+     */
+    public int getPeerPort() {
+        return peerPort;
+    }
+
+    public void setPeerPort(int peerPort) {
+        this.peerPort = peerPort;
+    }
+
+    /**
+     * @return The peers, as "address:port", this base could not connect to since its last handshake
+     */
+    public Set<String> getUnreachablePeers() {
+        return unreachablePeers;
+    }
+
+    public void addUnreachablePeers(Collection<String> peers) {
+        unreachablePeers.addAll(peers);
+    }
+
     public int getAvailableRam() {
         return availableRam;
     }
@@ -130,6 +195,28 @@ public class Base implements Communicatable {
         this.cpu = cpu;
     }
 
+    /**
+     * @return Identifies the current run of the base, so the core can tell after a reconnect whether the base has been restarted
+     */
+    public String getToken() {
+        return token;
+    }
+
+    public void setToken(String token) {
+        this.token = token;
+    }
+
+    /**
+     * @return Other bases have to present it to download template files from this base, only given to them together with a template
+     */
+    public String getPeerToken() {
+        return peerToken;
+    }
+
+    public void setPeerToken(String peerToken) {
+        this.peerToken = peerToken;
+    }
+
     public boolean isConnected() {
         return connected;
     }
@@ -60,7 +60,7 @@ public class Cord implements Communicatable {
 
     @Override
     public void sendMessage(Message message) {
-        if (getChannel() != null) getChannel().writeAndFlush(message.toJson());
+        TimoCloudCore.getInstance().getSocketServerHandler().sendMessage(getChannel(), message);
     }
 
     @Override
@@ -1,5 +1,7 @@
 package cloud.timo.TimoCloud.core.objects;
 
+import java.util.List;
+
 public interface Instance {
 
     String getName();
@@ -7,6 +9,29 @@ public interface Instance {
 
     Group getGroup();
 
+    Base getBase();
+
+    boolean isRegistered();
+
+    /**
+     * Called with the usage measured by the base, see the RESOURCES message
+     *
+     * @param usage [cpu (percent), ram (MB), storage read (KB/s), storage write (KB/s)]
+     */
+    void setUsage(List<Number> usage);
+
+    /**
+     * @return The RAM in MB actually used by the process, or -1 if the base has not measured it yet
+     */
+    int getUsedRam();
+
+    double getCpuUsage();
+
+    /**
+     * @return Receives the console output the base sends for this instance
+     */
+    InstanceConsole getConsole();
+
     void start();
     void stop();
     void register();
@@ -0,0 +1,57 @@
+package cloud.timo.TimoCloud.core.objects;
+
+import cloud.timo.TimoCloud.api.core.commands.CommandSender;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Forwards the console output a base sends for an instance to the command senders which asked for it
+ */
+public class InstanceConsole {
+
+    private final String name;
+    private final Queue<CommandSender> requests = new ConcurrentLinkedQueue<>();
+    private final Set<CommandSender> attached = ConcurrentHashMap.newKeySet();
+
+    public InstanceConsole(String name) {
+        this.name = name;
+    }
+
+    /**
+     * The sender receives the next lines the base sends as an answer to GET_CONSOLE
+     */
+    public void request(CommandSender sender) {
+        requests.add(sender);
+    }
+
+    /**
+     * The sender receives every new line until the console is detached
+     */
+    public void attach(CommandSender sender) {
+        attached.add(sender);
+    }
+
+    public void detach() {
+        attached.clear();
+    }
+
+    /**
+     * @param requested Whether the lines answer a GET_CONSOLE request, otherwise they are new lines of an attached console
+     */
+    public void onOutput(List<String> lines, boolean requested) {
+        if (requested) {
+            CommandSender sender = requests.poll();
+            if (sender != null) send(sender, lines);
+            return;
+        }
+        for (CommandSender sender : attached) send(sender, lines);
+    }
+
+    private void send(CommandSender sender, List<String> lines) {
+        for (String line : lines) sender.sendMessage("&7[" + name + "] &r" + line);
+    }
+}
@@ -6,7 +6,8 @@ import cloud.timo.TimoCloud.api.objects.PlayerObject;
 import cloud.timo.TimoCloud.api.objects.ProxyObject;
 import cloud.timo.TimoCloud.core.TimoCloudCore;
 import cloud.timo.TimoCloud.core.api.ProxyObjectCoreImplementation;
-import cloud.timo.TimoCloud.core.cloudflare.DnsRecord;
+import cloud.timo.TimoCloud.core.api.ProxyObjectCoreView;
+import cloud.timo.TimoCloud.core.managers.InstanceJournal;
 import cloud.timo.TimoCloud.core.sockets.Communicatable;
 import cloud.timo.TimoCloud.lib.messages.Message;
 import cloud.timo.TimoCloud.lib.utils.DoAfterAmount;
@@ -16,9 +17,12 @@ import io.netty.channel.Channel;
 import java.io.File;
 import java.net.InetSocketAddress;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 public class Proxy implements Instance, Communicatable {
 
+    private static final long SERVER_LIST_FLUSH_DELAY = 100;
+
     private String name;
     private String id;
     private ProxyGroup group;
@@ -26,14 +30,21 @@ public class Proxy implements Instance, Communicatable {
     private InetSocketAddress address;
     private Base base;
     private int onlinePlayerCount;
+    private int usedRam = -1;
+    private double cpuUsage = 0;
     private final Set<PlayerObject> onlinePlayers;
     private Channel channel;
     private boolean starting;
     private boolean registered;
-    private DnsRecord dnsRecord;
+    private String token;
+    private boolean resuming;
+    private boolean proxyProtocol;
     private Set<Server> registeredServers;
+    private final ProxyServerList serverList;
 
     private DoAfterAmount templateUpdate;
+    private final ProxyObjectCoreView view;
+    private final InstanceConsole console;
 
     public Proxy(String name, String id, Base base, ProxyGroup group) {
         this.name = name;
@@ -43,15 +54,79 @@ public class Proxy implements Instance, Communicatable {
         this.address = new InetSocketAddress(base.getAddress(), 0);
         this.onlinePlayers = Collections.synchronizedSet(new HashSet<>());
         this.registeredServers = new HashSet<>();
+        this.serverList = new ProxyServerList();
+        this.token = UUID.randomUUID().toString();
+        this.view = new ProxyObjectCoreView(this);
+        this.console = new InstanceConsole(name);
+    }
+
+    /**
+     * Re-creates a proxy which was running before the core has been restarted. It counts as starting until it has
+     * reconnected with its token.
+     *
+     * @param record The proxy's {@link #toJournalRecord() journal record}
+     */
+    public void resume(Message record) {
+        this.token = (String) record.get("token");
+        if (record.get("port") != null) setPort(((Number) record.get("port")).intValue());
+        this.resuming = true;
+        this.starting = true;
+        getBase().addProxy(this);
+        getGroup().addProxy(this);
+    }
+
+    /**
+     * Forgets a proxy which was running before the core has been restarted, but has not been re-adopted
+     *
+     * @param kill Whether the process might still be running and should be killed
+     */
+    public void abandon(boolean kill) {
+        if (!isResuming()) return;
+        this.resuming = false;
+        this.starting = false;
+        getGroup().removeProxy(this);
+        getBase().removeProxy(this);
+        TimoCloudCore.getInstance().getInstanceManager().getInstanceJournal().remove(InstanceJournal.PROXY, getId());
+        if (kill) getBase().sendMessage(Message.create().setType("KILL_INSTANCE").setTarget(getId()).setData(getName()));
+        TimoCloudCore.getInstance().getScheduler().scheduleProxyStopped(getBase(), getId());
+        TimoCloudCore.getInstance().getInstanceManager().onProxyResumed();
+    }
+
+    /**
+     * Records the proxy in the instance journal, so it can be re-adopted after a core restart
+     */
+    private void journal() {
+        if (!isStarting() && !isRegistered()) return;
+        TimoCloudCore.getInstance().getInstanceManager().getInstanceJournal().put(toJournalRecord());
+    }
+
+    public Message toJournalRecord() {
+        return Message.create()
+                .set("kind", InstanceJournal.PROXY)
+                .set("id", getId())
+                .set("name", getName())
+                .set("group", getGroup().getName())
+                .set("base", getBase().getName())
+                .set("token", getToken())
+                .set("port", getPort())
+                .set("registered", isRegistered());
     }
 
     @Override
     public void register() {
         if (isRegistered()) return;
+        TimoCloudCore.getInstance().getScheduler().cancelInstanceStopped(getId());
+        TimoCloudCore.getInstance().getScheduler().cancel(getStartupTimeoutKey());
         getGroup().onProxyConnect(this);
         this.starting = false;
         this.registered = true;
+        journal();
+        boolean resumed = isResuming();
+        if (resumed) TimoCloudCore.getInstance().info("Proxy " + getName() + " has been re-adopted.");
+        this.resuming = false;
+        if (resumed) TimoCloudCore.getInstance().getInstanceManager().onProxyResumed();
         for (Server server : getGroup().getRegisteredServers()) registerServer(server);
+        sendServerList();
         TimoCloudCore.getInstance().getEventManager().fireEvent(new ProxyRegisterEvent(toProxyObject()));
     }
 
@@ -62,13 +137,8 @@ public class Proxy implements Instance, Communicatable {
         TimoCloudCore.getInstance().getEventManager().fireEvent(new ProxyUnregisterEvent(toProxyObject()));
         getGroup().removeProxy(this);
         getBase().removeProxy(this);
-
-        new Timer().schedule(new TimerTask() {
-            @Override
-            public void run() {
-                getBase().sendMessage(Message.create().setType("PROXY_STOPPED").setData(getId()));
-            }
-        }, 300000);
+        TimoCloudCore.getInstance().getInstanceManager().getInstanceJournal().remove(InstanceJournal.PROXY, getId());
+        TimoCloudCore.getInstance().getScheduler().scheduleProxyStopped(getBase(), getId());
     }
 
     @Override
@@ -82,6 +152,7 @@ public class Proxy implements Instance, Communicatable {
                     .set("group", getGroup().getName())
                     .set("ram", getGroup().getRam())
                     .set("static", getGroup().isStatic())
+                    .set("token", getToken())
                     .set("motd", getGroup().getMotd())
                     .set("maxplayers", getGroup().getMaxPlayerCount())
                     .set("maxplayersperproxy", getGroup().getMaxPlayerCountPerProxy())
@@ -108,6 +179,54 @@ public class Proxy implements Instance, Communicatable {
         }
         getBase().addProxy(this);
         getGroup().addProxy(this);
+        journal();
+    }
+
+    /**
+     * Starts counting the startup timeout once the base has launched the process, so time spent in the base's queue and
+     * downloading templates does not count against it. Only processes supervised by the base are killed, since the exit of a
+     * screen session is never reported and the proxy would stay starting forever.
+     */
+    private void scheduleStartupTimeout() {
+        int timeout = TimoCloudCore.getInstance().getInstanceStartupTimeout();
+        if (timeout <= 0) return;
+        TimoCloudCore.getInstance().getScheduler().schedule(getStartupTimeoutKey(), () -> {
+            if (isRegistered() || !isStarting()) return;
+            TimoCloudCore.getInstance().severe("Proxy " + getName() + " did not register within " + timeout + " seconds. Killing it.");
+            getBase().sendMessage(Message.create()
+                    .setType("KILL_INSTANCE")
+                    .setTarget(getId())
+                    .setData(getName()));
+        }, timeout, TimeUnit.SECONDS);
+    }
+
+    private String getStartupTimeoutKey() {
+        return "startup-timeout:" + getId();
+    }
+
+    /**
+     * Called when the base reports that the process of this proxy has exited
+     */
+    public void onProcessExited(int exitCode, List<String> lastLines) {
+        TimoCloudCore.getInstance().getScheduler().cancel(getStartupTimeoutKey());
+        if (exitCode != 0) {
+            TimoCloudCore.getInstance().severe("Proxy " + getName() + " exited with code " + exitCode + ". Last console lines:");
+            for (String line : lastLines) TimoCloudCore.getInstance().severe("[" + getName() + "] " + line);
+        }
+        if (getChannel() != null) getChannel().close();
+        if (isRegistered()) {
+            unregister();
+            return;
+        }
+        // The process died before it registered, so nobody else is going to clean up
+        boolean resumed = isResuming();
+        this.starting = false;
+        this.resuming = false;
+        getGroup().removeProxy(this);
+        getBase().removeProxy(this);
+        TimoCloudCore.getInstance().getInstanceManager().getInstanceJournal().remove(InstanceJournal.PROXY, getId());
+        TimoCloudCore.getInstance().getScheduler().scheduleProxyStopped(getBase(), getId());
+        if (resumed) TimoCloudCore.getInstance().getInstanceManager().onProxyResumed();
     }
 
     @Override
@@ -117,21 +236,43 @@ public class Proxy implements Instance, Communicatable {
     }
 
     public void registerServer(Server server) {
-        sendMessage(Message.create()
-                .setType("ADD_SERVER")
-                .set("name", server.getName())
-                .set("address", server.getAddress().getAddress().getHostAddress())
-                .set("port", server.getPort()));
+        boolean scheduleFlush;
+        synchronized (serverList) {
+            scheduleFlush = serverList.add(server.getName(), server.getAddress().getAddress().getHostAddress(), server.getPort());
+        }
+        if (scheduleFlush) scheduleServerListFlush();
         if (!registeredServers.contains(server)) registeredServers.add(server);
     }
 
     public void unregisterServer(Server server) {
-        sendMessage(Message.create()
-                .setType("REMOVE_SERVER")
-                .setData(server.getName()));
+        boolean scheduleFlush;
+        synchronized (serverList) {
+            scheduleFlush = serverList.remove(server.getName());
+        }
+        if (scheduleFlush) scheduleServerListFlush();
         registeredServers.remove(server);
     }
 
+    /**
+     * Sends all servers to the proxy, replacing the ones it knows
+     */
+    public void sendServerList() {
+        synchronized (serverList) {
+            sendMessage(serverList.snapshot());
+        }
+    }
+
+    private void scheduleServerListFlush() {
+        TimoCloudCore.getInstance().getScheduler().schedule(this::flushServerList, SERVER_LIST_FLUSH_DELAY, TimeUnit.MILLISECONDS);
+    }
+
+    private void flushServerList() {
+        synchronized (serverList) {
+            Message delta = serverList.flush();
+            if (delta != null) sendMessage(delta);
+        }
+    }
+
     public void onPlayerConnect(PlayerObject playerObject) {
         getOnlinePlayers().add(playerObject);
     }
@@ -155,6 +296,8 @@ public class Proxy implements Instance, Communicatable {
                 break;
             case "PROXY_STARTED":
                 setPort(((Number) message.get("port")).intValue());
+                journal();
+                if (Boolean.TRUE.equals(message.get("supervised"))) scheduleStartupTimeout();
                 break;
             case "PROXY_NOT_STARTED":
                 //unregister();
@@ -162,12 +305,26 @@ public class Proxy implements Instance, Communicatable {
             case "EXECUTE_COMMAND":
                 executeCommand((String) data);
                 break;
+            case "STATUS": {
+                Map<String, Object> status = (Map<String, Object>) data;
+                if (status.containsKey("players")) this.onlinePlayerCount = ((Number) status.get("players")).intValue();
+                break;
+            }
             case "SET_PLAYER_COUNT":
                 this.onlinePlayerCount = ((Number) data).intValue();
                 break;
+            case "GET_SERVER_LIST":
+                sendServerList();
+                break;
             case "TRANSFER_FINISHED":
                 getTemplateUpdate().addOne();
                 break;
+            case "PROCESS_EXITED":
+                onProcessExited(((Number) message.get("exitCode")).intValue(), (List<String>) message.get("lastLines"));
+                break;
+            case "CONSOLE_OUTPUT":
+                getConsole().onOutput((List<String>) data, Boolean.TRUE.equals(message.get("requested")));
+                break;
             default:
                 sendMessage(message);
         }
@@ -175,7 +332,7 @@ public class Proxy implements Instance, Communicatable {
 
     @Override
     public void sendMessage(Message message) {
-        if (getChannel() != null) getChannel().writeAndFlush(message.toJson());
+        TimoCloudCore.getInstance().getSocketServerHandler().sendMessage(getChannel(), message);
     }
 
     @Override
@@ -195,10 +352,16 @@ public class Proxy implements Instance, Communicatable {
     @Override
     public void onHandshakeSuccess() {
         sendMessage(Message.create()
-                .setType("HANDSHAKE_SUCCESS"));
+                .setType("HANDSHAKE_SUCCESS")
+                .set("resumeTimeout", TimoCloudCore.getInstance().getInstanceResumeTimeout()));
     }
 
     public void executeCommand(String command) {
+        if (getChannel() == null) {
+            // Not connected (yet), so write the command directly into the process' console
+            getBase().sendMessage(Message.create().setType("CONSOLE_COMMAND").setTarget(getId()).setData(command));
+            return;
+        }
         sendMessage(Message.create()
                 .setType("EXECUTE_COMMAND")
                 .setData(command));
@@ -253,20 +416,59 @@ public class Proxy implements Instance, Communicatable {
         this.channel = channel;
     }
 
+    @Override
+    public void setUsage(List<Number> usage) {
+        this.cpuUsage = usage.get(0).doubleValue();
+        this.usedRam = usage.get(1).intValue();
+    }
+
+    @Override
+    public int getUsedRam() {
+        return usedRam;
+    }
+
+    @Override
+    public double getCpuUsage() {
+        return cpuUsage;
+    }
+
+    @Override
+    public InstanceConsole getConsole() {
+        return console;
+    }
+
     public boolean isStarting() {
         return starting;
     }
 
-    public boolean isRegistered() {
-        return registered;
+    /**
+     * @return Whether the proxy was running before the core has been restarted and has not been re-adopted yet
+     */
+    public boolean isResuming() {
+        return resuming;
+    }
+
+    /**
+     * @return The secret the proxy has to present in its handshake
+     */
+    public String getToken() {
+        return token;
     }
 
-    public DnsRecord getDnsRecord() {
-        return dnsRecord;
+    /**
+     * @return Whether the proxy has said in its handshake that it can decode PROXY protocol headers sent by Cords
+     */
+    public boolean supportsProxyProtocol() {
+        return proxyProtocol;
     }
 
-    public void setDnsRecord(DnsRecord dnsRecord) {
-        this.dnsRecord = dnsRecord;
+    public void setProxyProtocol(boolean proxyProtocol) {
+        this.proxyProtocol = proxyProtocol;
+    }
+
+    @Override
+    public boolean isRegistered() {
+        return registered;
     }
 
     public Set<Server> getRegisteredServers() {
@@ -281,15 +483,19 @@ public class Proxy implements Instance, Communicatable {
         this.templateUpdate = templateUpdate;
     }
 
+    public ProxyObjectCoreView getView() {
+        return view;
+    }
+
     public ProxyObject toProxyObject() {
         return new ProxyObjectCoreImplementation(
                 getName(),
                 getId(),
                 getGroup().getName(),
-                new ArrayList<>(getOnlinePlayers()),
                 getOnlinePlayerCount(),
                 getBase().getName(),
-                getAddress()
+                getAddress(),
+                supportsProxyProtocol()
         );
     }
 
@@ -4,8 +4,10 @@ import cloud.timo.TimoCloud.api.implementations.ProxyObjectBasicImplementation;
 import cloud.timo.TimoCloud.api.objects.ProxyChooseStrategy;
 import cloud.timo.TimoCloud.api.objects.ProxyGroupObject;
 import cloud.timo.TimoCloud.api.objects.ProxyObject;
+import cloud.timo.TimoCloud.api.objects.ServerGroupObject;
 import cloud.timo.TimoCloud.core.TimoCloudCore;
 import cloud.timo.TimoCloud.core.api.ProxyGroupObjectCoreImplementation;
+import cloud.timo.TimoCloud.core.api.ProxyGroupObjectCoreView;
 import cloud.timo.TimoCloud.lib.utils.EnumUtil;
 
 import java.util.*;
@@ -27,8 +29,12 @@ public class ProxyGroup implements Group {
     private boolean allServerGroups;
     private String baseName;
     private Set<String> hostNames;
+    private volatile List<String> hostNameViews = Collections.emptyList();
     private ProxyChooseStrategy proxyChooseStrategy;
     private Map<String, Proxy> proxies = new HashMap<>();
+    private volatile List<ProxyObject> proxyViews = Collections.emptyList();
+    private volatile List<ServerGroupObject> serverGroupViews = Collections.emptyList();
+    private final ProxyGroupObjectCoreView view = new ProxyGroupObjectCoreView(this);
 
     public ProxyGroup(String name, int maxPlayerCountPerProxy, int maxPlayerCount, int keepFreeSlots, int minAmount, int maxAmount, int ram, String motd, boolean isStatic, int priority, List<String> serverGroups, String baseName, String proxyChooseStrategy, List<String> hostNames) {
         construct(name, maxPlayerCountPerProxy, maxPlayerCount, keepFreeSlots, minAmount, maxAmount, ram, motd, isStatic, priority, serverGroups, baseName, proxyChooseStrategy, hostNames);
@@ -85,6 +91,9 @@ public class ProxyGroup implements Group {
             ServerGroup serverGroup = TimoCloudCore.getInstance().getInstanceManager().getServerGroupByName(groupName);
             if (serverGroup != null) this.serverGroups.add(serverGroup);
         }
+        List<ServerGroupObject> serverGroupViews = new ArrayList<>();
+        for (ServerGroup serverGroup : this.serverGroups) serverGroupViews.add(serverGroup.getView());
+        this.serverGroupViews = Collections.unmodifiableList(serverGroupViews);
 
         this.baseName = baseName;
         if (isStatic() && getBaseName() == null) {
@@ -94,6 +103,7 @@ public class ProxyGroup implements Group {
         if (this.proxyChooseStrategy == null) this.proxyChooseStrategy = ProxyChooseStrategy.BALANCE;
 
         this.hostNames = hostnames.stream().map(String::trim).collect(Collectors.toSet());
+        this.hostNameViews = Collections.unmodifiableList(new ArrayList<>(this.hostNames));
 
         reload();
     }
@@ -123,10 +133,30 @@ public class ProxyGroup implements Group {
         }
         if (proxies.containsKey(proxy.getId())) return;
         proxies.put(proxy.getId(), proxy);
+        updateProxyViews();
     }
 
     public void removeProxy(Proxy proxy) {
         proxies.remove(proxy.getId());
+        updateProxyViews();
+    }
+
+    /**
+     * Proxies are added and removed rarely, but read through the API all the time, hence the API list is rebuilt here instead of on every read
+     */
+    private synchronized void updateProxyViews() {
+        List<ProxyObject> proxyViews = new ArrayList<>();
+        for (Proxy proxy : proxies.values()) proxyViews.add(proxy.getView());
+        proxyViews.sort(Comparator.comparing(ProxyObject::getName));
+        this.proxyViews = Collections.unmodifiableList(proxyViews);
+    }
+
+    public List<ProxyObject> getProxyViews() {
+        return proxyViews;
+    }
+
+    public ProxyGroupObjectCoreView getView() {
+        return view;
     }
 
     public void onProxyConnect(Proxy proxy) {
@@ -171,7 +201,9 @@ public class ProxyGroup implements Group {
     }
 
     public int getOnlinePlayerCount() {
-        return getProxies().stream().mapToInt(Proxy::getOnlinePlayerCount).sum();
+        int onlinePlayerCount = 0;
+        for (Proxy proxy : proxies.values()) onlinePlayerCount += proxy.getOnlinePlayerCount();
+        return onlinePlayerCount;
     }
 
     public int getMaxPlayerCountPerProxy() {
@@ -254,6 +286,14 @@ public class ProxyGroup implements Group {
         return serverGroups;
     }
 
+    /**
+     * @return An unmodifiable list of the API views of {@link #getServerGroups()}, which is only rebuilt when the group or the set of server groups changes
+     */
+    public List<ServerGroupObject> getServerGroupViews() {
+        if (allServerGroups) return TimoCloudCore.getInstance().getInstanceManager().getServerGroupViews();
+        return serverGroupViews;
+    }
+
     @Override
     public String getBaseName() {
         return baseName;
@@ -271,6 +311,10 @@ public class ProxyGroup implements Group {
         return hostNames;
     }
 
+    public List<String> getHostNameViews() {
+        return hostNameViews;
+    }
+
     public Collection<Proxy> getProxies() {
         return new HashSet<>(proxies.values());
     }
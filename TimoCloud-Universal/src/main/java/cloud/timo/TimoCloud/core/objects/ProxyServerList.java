@@ -0,0 +1,83 @@
+package cloud.timo.TimoCloud.core.objects;
+
+import cloud.timo.TimoCloud.lib.messages.Message;
+
+import java.util.*;
+
+/**
+ * The servers a proxy knows about. Changes are collected and sent as one versioned SERVER_LIST_DELTA message, so the proxy
+ * can detect a missed delta by a gap in the version and request a full SERVER_LIST.
+ * Not thread-safe, callers synchronize on this object.
+ */
+public class ProxyServerList {
+
+    private final Map<String, Map<String, Object>> servers = new LinkedHashMap<>();
+    private final Map<String, Map<String, Object>> pendingAdds = new LinkedHashMap<>();
+    private final Set<String> pendingRemoves = new LinkedHashSet<>();
+    private long version = 0;
+
+    /**
+     * @return Whether this is the first pending change, i.e. a flush has to be scheduled
+     */
+    public boolean add(String name, String address, int port) {
+        boolean first = !hasPendingChanges();
+        Map<String, Object> entry = new HashMap<>();
+        entry.put("name", name);
+        entry.put("address", address);
+        entry.put("port", port);
+        pendingRemoves.remove(name);
+        pendingAdds.put(name, entry);
+        return first;
+    }
+
+    /**
+     * @return Whether this is the first pending change, i.e. a flush has to be scheduled
+     */
+    public boolean remove(String name) {
+        boolean first = !hasPendingChanges();
+        pendingAdds.remove(name);
+        if (servers.containsKey(name)) pendingRemoves.add(name);
+        return first;
+    }
+
+    public boolean hasPendingChanges() {
+        return !pendingAdds.isEmpty() || !pendingRemoves.isEmpty();
+    }
+
+    /**
+     * Applies all pending changes
+     *
+     * @return The SERVER_LIST_DELTA message, or null if nothing has changed
+     */
+    public Message flush() {
+        if (!hasPendingChanges()) return null;
+        List<String> removed = new ArrayList<>(pendingRemoves);
+        List<Map<String, Object>> added = new ArrayList<>(pendingAdds.values());
+        for (String name : pendingRemoves) servers.remove(name);
+        servers.putAll(pendingAdds);
+        pendingRemoves.clear();
+        pendingAdds.clear();
+        return Message.create()
+                .setType("SERVER_LIST_DELTA")
+                .set("version", ++version)
+                .set("remove", removed)
+                .set("add", added);
+    }
+
+    /**
+     * Applies all pending changes and starts a new version
+     *
+     * @return The SERVER_LIST message containing all servers
+     */
+    public Message snapshot() {
+        flush();
+        return Message.create()
+                .setType("SERVER_LIST")
+                .set("version", ++version)
+                .set("servers", new ArrayList<>(servers.values()));
+    }
+
+    public long getVersion() {
+        return version;
+    }
+}
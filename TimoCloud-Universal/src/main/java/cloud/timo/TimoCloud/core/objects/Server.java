@@ -6,6 +6,8 @@ import cloud.timo.TimoCloud.api.objects.PlayerObject;
 import cloud.timo.TimoCloud.api.objects.ServerObject;
 import cloud.timo.TimoCloud.core.TimoCloudCore;
 import cloud.timo.TimoCloud.core.api.ServerObjectCoreImplementation;
+import cloud.timo.TimoCloud.core.api.ServerObjectCoreView;
+import cloud.timo.TimoCloud.core.managers.InstanceJournal;
 import cloud.timo.TimoCloud.core.sockets.Communicatable;
 import cloud.timo.TimoCloud.lib.messages.Message;
 import cloud.timo.TimoCloud.lib.utils.DoAfterAmount;
@@ -16,6 +18,7 @@ import java.io.File;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 public class Server implements Instance, Communicatable {
 
@@ -31,12 +34,19 @@ public class Server implements Instance, Communicatable {
     private String motd = "";
     private final Set<PlayerObject> onlinePlayers;
     private int onlinePlayerCount = 0;
+    private int usedRam = -1;
+    private double cpuUsage = 0;
     private int maxPlayers = 0;
     private String map;
     private boolean starting;
     private boolean registered = false;
+    private String token;
+    private boolean resuming;
+    private String pendingState; // Applied on registration instead of ONLINE
 
     private DoAfterAmount templateUpdate;
+    private final ServerObjectCoreView view;
+    private final InstanceConsole console;
 
     public Server(String name, String id, Base base, String map, ServerGroup group) {
         this.name = name;
@@ -47,6 +57,65 @@ public class Server implements Instance, Communicatable {
         this.onlinePlayers = Collections.synchronizedSet(new HashSet<>());
         this.map = map;
         if (this.map == null) this.map = "";
+        this.token = UUID.randomUUID().toString();
+        this.view = new ServerObjectCoreView(this);
+        this.console = new InstanceConsole(name);
+    }
+
+    /**
+     * Re-creates a server which was running before the core has been restarted. It counts as starting until it has
+     * reconnected with its token and registered again.
+     *
+     * @param record The server's {@link #toJournalRecord() journal record}
+     */
+    public void resume(Message record) {
+        this.token = (String) record.get("token");
+        if (record.get("port") != null) setPort(((Number) record.get("port")).intValue());
+        if (record.get("extra") != null) this.extra = (String) record.get("extra");
+        if (Boolean.TRUE.equals(record.get("registered"))) this.pendingState = (String) record.get("state");
+        this.resuming = true;
+        this.starting = true;
+        getGroup().addStartingServer(this);
+        getBase().addServer(this);
+    }
+
+    /**
+     * Forgets a server which was running before the core has been restarted, but has not been re-adopted
+     *
+     * @param kill Whether the process might still be running and should be killed
+     */
+    public void abandon(boolean kill) {
+        if (!isResuming()) return;
+        this.resuming = false;
+        this.starting = false;
+        getGroup().removeServer(this);
+        getBase().removeServer(this);
+        TimoCloudCore.getInstance().getInstanceManager().getInstanceJournal().remove(InstanceJournal.SERVER, getId());
+        if (kill) getBase().sendMessage(Message.create().setType("KILL_INSTANCE").setTarget(getId()).setData(getName()));
+        TimoCloudCore.getInstance().getScheduler().scheduleServerStopped(getBase(), getId());
+    }
+
+    /**
+     * Records the server in the instance journal, so it can be re-adopted after a core restart
+     */
+    private void journal() {
+        if (!isStarting() && !isRegistered()) return;
+        TimoCloudCore.getInstance().getInstanceManager().getInstanceJournal().put(toJournalRecord());
+    }
+
+    public Message toJournalRecord() {
+        return Message.create()
+                .set("kind", InstanceJournal.SERVER)
+                .set("id", getId())
+                .set("name", getName())
+                .set("group", getGroup().getName())
+                .set("base", getBase().getName())
+                .set("map", getMap())
+                .set("token", getToken())
+                .setIfNotNull("port", port)
+                .set("registered", isRegistered())
+                .set("state", getState())
+                .set("extra", getExtra());
     }
 
     public boolean isStatic() {
@@ -64,6 +133,7 @@ public class Server implements Instance, Communicatable {
                     .set("group", getGroup().getName())
                     .set("ram", getGroup().getRam())
                     .set("static", getGroup().isStatic())
+                    .set("token", getToken())
                     .setIfNotNull("map", getMap())
                     .set("globalHash", HashUtil.getHashes(TimoCloudCore.getInstance().getFileManager().getServerGlobalDirectory()));
             if (!getGroup().isStatic()) {
@@ -91,6 +161,52 @@ public class Server implements Instance, Communicatable {
         }
         getGroup().addStartingServer(this);
         getBase().addServer(this);
+        journal();
+    }
+
+    /**
+     * Starts counting the startup timeout once the base has launched the process, so time spent in the base's queue and
+     * downloading templates does not count against it. Only processes supervised by the base are killed, since the exit of a
+     * screen session is never reported and the server would stay starting forever.
+     */
+    private void scheduleStartupTimeout() {
+        int timeout = TimoCloudCore.getInstance().getInstanceStartupTimeout();
+        if (timeout <= 0) return;
+        TimoCloudCore.getInstance().getScheduler().schedule(getStartupTimeoutKey(), () -> {
+            if (isRegistered() || !isStarting()) return;
+            TimoCloudCore.getInstance().severe("Server " + getName() + " did not register within " + timeout + " seconds. Killing it.");
+            getBase().sendMessage(Message.create()
+                    .setType("KILL_INSTANCE")
+                    .setTarget(getId())
+                    .setData(getName()));
+        }, timeout, TimeUnit.SECONDS);
+    }
+
+    private String getStartupTimeoutKey() {
+        return "startup-timeout:" + getId();
+    }
+
+    /**
+     * Called when the base reports that the process of this server has exited
+     */
+    public void onProcessExited(int exitCode, List<String> lastLines) {
+        TimoCloudCore.getInstance().getScheduler().cancel(getStartupTimeoutKey());
+        if (exitCode != 0) {
+            TimoCloudCore.getInstance().severe("Server " + getName() + " exited with code " + exitCode + ". Last console lines:");
+            for (String line : lastLines) TimoCloudCore.getInstance().severe("[" + getName() + "] " + line);
+        }
+        if (getChannel() != null) getChannel().close();
+        if (isRegistered()) {
+            unregister();
+            return;
+        }
+        // The process died before it registered, so nobody else is going to clean up
+        this.starting = false;
+        this.resuming = false;
+        getGroup().removeServer(this);
+        getBase().removeServer(this);
+        TimoCloudCore.getInstance().getInstanceManager().getInstanceJournal().remove(InstanceJournal.SERVER, getId());
+        TimoCloudCore.getInstance().getScheduler().scheduleServerStopped(getBase(), getId());
     }
 
     @Override
@@ -115,15 +231,22 @@ public class Server implements Instance, Communicatable {
     @Override
     public void register() {
         if (isRegistered()) return;
+        TimoCloudCore.getInstance().getScheduler().cancelInstanceStopped(getId());
+        TimoCloudCore.getInstance().getScheduler().cancel(getStartupTimeoutKey());
         getGroup().onServerConnect(this);
-        setState("ONLINE");
+        // A server which has been re-adopted after a core restart keeps the state it had before, unless it has set a newer one
+        // before registering, e.g. one which was buffered while the core was unavailable
+        setState(pendingState != null ? pendingState : "ONLINE");
+        this.pendingState = null;
         for (ProxyGroup proxyGroup : TimoCloudCore.getInstance().getInstanceManager().getProxyGroups()) {
             if (!proxyGroup.getServerGroups().contains(getGroup())) continue;
             proxyGroup.registerServer(this);
         }
         this.starting = false;
         this.registered = true;
-        TimoCloudCore.getInstance().info("Server " + getName() + " registered.");
+        journal();
+        TimoCloudCore.getInstance().info("Server " + getName() + (isResuming() ? " has been re-adopted." : " registered."));
+        this.resuming = false;
         TimoCloudCore.getInstance().getEventManager().fireEvent(new ServerRegisterEvent(toServerObject()));
     }
 
@@ -139,12 +262,8 @@ public class Server implements Instance, Communicatable {
             proxyGroup.unregisterServer(this);
         }
         this.registered = false;
-        new Timer().schedule(new TimerTask() {
-            @Override
-            public void run() {
-                getBase().sendMessage(Message.create().setType("SERVER_STOPPED").setData(getId()));
-            }
-        }, 300000);
+        TimoCloudCore.getInstance().getInstanceManager().getInstanceJournal().remove(InstanceJournal.SERVER, getId());
+        TimoCloudCore.getInstance().getScheduler().scheduleServerStopped(getBase(), getId());
     }
 
     public void onPlayerConnect(PlayerObject playerObject) {
@@ -162,16 +281,27 @@ public class Server implements Instance, Communicatable {
         switch (type) {
             case "SET_STATE":
                 setState((String) data);
+                if (!isRegistered()) this.pendingState = (String) data;
+                journal();
                 break;
             case "SET_EXTRA":
                 setExtra((String) data);
+                journal();
                 break;
             case "SET_MOTD":
                 setMotd((String) data);
                 break;
             case "SET_MAP":
                 setMap((String) data);
+                journal();
                 break;
+            case "STATUS": {
+                Map<String, Object> status = (Map<String, Object>) data;
+                if (status.containsKey("motd")) setMotd((String) status.get("motd"));
+                if (status.containsKey("players")) setOnlinePlayerCount(((Number) status.get("players")).intValue());
+                if (status.containsKey("maxPlayers")) setMaxPlayers(((Number) status.get("maxPlayers")).intValue());
+                break;
+            }
             case "SET_PLAYERS":
                 setOnlinePlayerCount(Integer.parseInt(((String) data).split("/")[0]));
                 setMaxPlayers(Integer.parseInt(((String) data).split("/")[1]));
@@ -184,6 +314,8 @@ public class Server implements Instance, Communicatable {
                 break;
             case "SERVER_STARTED":
                 setPort(((Number) message.get("port")).intValue());
+                journal();
+                if (Boolean.TRUE.equals(message.get("supervised"))) scheduleStartupTimeout();
                 break;
             case "SERVER_NOT_STARTED":
                 //unregister();
@@ -194,6 +326,12 @@ public class Server implements Instance, Communicatable {
             case "TRANSFER_FINISHED":
                 getTemplateUpdate().addOne();
                 break;
+            case "PROCESS_EXITED":
+                onProcessExited(((Number) message.get("exitCode")).intValue(), (List<String>) message.get("lastLines"));
+                break;
+            case "CONSOLE_OUTPUT":
+                getConsole().onOutput((List<String>) data, Boolean.TRUE.equals(message.get("requested")));
+                break;
             default:
                 sendMessage(message);
         }
@@ -201,12 +339,12 @@ public class Server implements Instance, Communicatable {
 
     @Override
     public void sendMessage(Message message) {
-        if (getChannel() != null) getChannel().writeAndFlush(message.toJson());
+        TimoCloudCore.getInstance().getSocketServerHandler().sendMessage(getChannel(), message);
     }
 
     @Override
     public void onHandshakeSuccess() {
-        sendMessage(Message.create().setType("HANDSHAKE_SUCCESS"));
+        sendMessage(Message.create().setType("HANDSHAKE_SUCCESS").set("resumeTimeout", TimoCloudCore.getInstance().getInstanceResumeTimeout()));
     }
 
     @Override
@@ -219,6 +357,7 @@ public class Server implements Instance, Communicatable {
         return id;
     }
 
+    @Override
     public boolean isRegistered() {
         return registered;
     }
@@ -314,10 +453,45 @@ public class Server implements Instance, Communicatable {
         return ! (getMap() == null || getMap().isEmpty());
     }
 
+    @Override
+    public void setUsage(List<Number> usage) {
+        this.cpuUsage = usage.get(0).doubleValue();
+        this.usedRam = usage.get(1).intValue();
+    }
+
+    @Override
+    public int getUsedRam() {
+        return usedRam;
+    }
+
+    @Override
+    public double getCpuUsage() {
+        return cpuUsage;
+    }
+
+    @Override
+    public InstanceConsole getConsole() {
+        return console;
+    }
+
     public boolean isStarting() {
         return starting;
     }
 
+    /**
+     * @return Whether the server was running before the core has been restarted and has not been re-adopted yet
+     */
+    public boolean isResuming() {
+        return resuming;
+    }
+
+    /**
+     * @return The secret the server has to present in its handshake
+     */
+    public String getToken() {
+        return token;
+    }
+
 
     public DoAfterAmount getTemplateUpdate() {
         return templateUpdate;
@@ -328,9 +502,18 @@ public class Server implements Instance, Communicatable {
     }
 
     public void executeCommand(String command) {
+        if (getChannel() == null) {
+            // Not connected (yet), so write the command directly into the process' console
+            getBase().sendMessage(Message.create().setType("CONSOLE_COMMAND").setTarget(getId()).setData(command));
+            return;
+        }
         sendMessage(Message.create().setType("EXECUTE_COMMAND").setData(command));
     }
 
+    public ServerObjectCoreView getView() {
+        return view;
+    }
+
     public ServerObject toServerObject() {
         return new ServerObjectCoreImplementation(
                 getName(),
@@ -340,7 +523,6 @@ public class Server implements Instance, Communicatable {
                 getExtra(),
                 getMap(),
                 getMotd(),
-                new ArrayList<>(getOnlinePlayers()),
                 getOnlinePlayerCount(),
                 getMaxPlayers(),
                 getBase() == null ? null : getBase().getName(),
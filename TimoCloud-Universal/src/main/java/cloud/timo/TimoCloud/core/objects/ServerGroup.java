@@ -2,8 +2,11 @@ package cloud.timo.TimoCloud.core.objects;
 
 import cloud.timo.TimoCloud.api.implementations.ServerObjectBasicImplementation;
 import cloud.timo.TimoCloud.api.objects.ServerGroupObject;
+import cloud.timo.TimoCloud.api.objects.ServerObject;
 import cloud.timo.TimoCloud.core.TimoCloudCore;
 import cloud.timo.TimoCloud.core.api.ServerGroupObjectCoreImplementation;
+import cloud.timo.TimoCloud.core.api.ServerGroupObjectCoreView;
+import cloud.timo.TimoCloud.core.api.ServerObjectCoreView;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -21,6 +24,8 @@ public class ServerGroup implements Group {
     private List<String> sortOutStates;
 
     private Map<String, Server> servers = new HashMap<>();
+    private volatile List<ServerObject> serverViews = Collections.emptyList();
+    private final ServerGroupObjectCoreView view = new ServerGroupObjectCoreView(this);
 
     public ServerGroup() {}
 
@@ -110,10 +115,30 @@ public class ServerGroup implements Group {
             return;
         }
         servers.put(server.getId(), server);
+        updateServerViews();
     }
 
     public void removeServer(Server server) {
         servers.remove(server.getId());
+        updateServerViews();
+    }
+
+    /**
+     * Servers are added and removed rarely, but read through the API all the time, hence the API list is rebuilt here instead of on every read
+     */
+    private synchronized void updateServerViews() {
+        List<ServerObject> serverViews = new ArrayList<>();
+        for (Server server : servers.values()) serverViews.add(server.getView());
+        serverViews.sort(ServerObjectCoreView.ORDER);
+        this.serverViews = Collections.unmodifiableList(serverViews);
+    }
+
+    public List<ServerObject> getServerViews() {
+        return serverViews;
+    }
+
+    public ServerGroupObjectCoreView getView() {
+        return view;
     }
 
     public Collection<Server> getServers() {
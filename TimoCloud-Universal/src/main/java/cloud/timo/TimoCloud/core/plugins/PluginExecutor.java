@@ -0,0 +1,232 @@
+package cloud.timo.TimoCloud.core.plugins;
+
+import cloud.timo.TimoCloud.core.TimoCloudCore;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Calls the event and message listeners of one plugin on the plugin's own thread, in the order they have been submitted.
+ * Every call has a time budget. Calls which exceed it are logged, and calls which are still running after it are reported
+ * with the plugin thread's stack trace. A plugin which exceeds its budget too often within a minute is quarantined: it does
+ * not receive any events or messages until it is released again.
+ */
+public class PluginExecutor {
+
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+    private static final long VIOLATION_WINDOW_MILLIS = 60000;
+    private static final int STACK_TRACE_DEPTH = 12;
+
+    private final String pluginName;
+    private final ThreadPoolExecutor executor;
+    private final long budgetNanos;
+    private final int quarantineViolations;
+    private final Deque<Long> violations;
+    private final AtomicLong calls;
+    private final AtomicLong slowCalls;
+    private final AtomicLong droppedCalls;
+    private final AtomicLong cpuNanos;
+    private final AtomicLong wallNanos;
+    private final AtomicInteger maxQueued;
+    private volatile boolean quarantined;
+    private volatile Thread thread;
+    private volatile String currentCall;
+    private volatile long currentCallStart;
+    private volatile boolean currentCallReported;
+
+    /**
+     * @param budgetMillis         Time a single listener call may take before it is considered slow
+     * @param queueCapacity        Calls which may wait for the plugin's thread, further ones are dropped
+     * @param quarantineViolations Slow calls within a minute after which the plugin is quarantined, 0 to never quarantine it
+     */
+    public PluginExecutor(String pluginName, long budgetMillis, int queueCapacity, int quarantineViolations) {
+        this.pluginName = pluginName;
+        this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), new DefaultThreadFactory("TimoCloud-Plugin-" + pluginName, true));
+        this.budgetNanos = TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+        this.quarantineViolations = quarantineViolations;
+        this.violations = new ArrayDeque<>();
+        this.calls = new AtomicLong();
+        this.slowCalls = new AtomicLong();
+        this.droppedCalls = new AtomicLong();
+        this.cpuNanos = new AtomicLong();
+        this.wallNanos = new AtomicLong();
+        this.maxQueued = new AtomicInteger();
+    }
+
+    /**
+     * @param name Describes the call in log messages
+     * @return Whether the call has been queued, false if the plugin is quarantined or its queue is full
+     */
+    public boolean submit(String name, Runnable call) {
+        if (quarantined) {
+            droppedCalls.incrementAndGet();
+            return false;
+        }
+        try {
+            executor.execute(() -> run(name, call));
+        } catch (RejectedExecutionException e) {
+            if (droppedCalls.getAndIncrement() % 1000 == 0 && !executor.isShutdown()) {
+                TimoCloudCore.getInstance().warning("Plugin " + pluginName + " cannot keep up with its events and messages. Dropping " + name + ". " + droppedCalls.get() + " calls have been dropped so far.");
+            }
+            return false;
+        }
+        maxQueued.accumulateAndGet(executor.getQueue().size(), Math::max);
+        return true;
+    }
+
+    private void run(String name, Runnable call) {
+        if (quarantined) {
+            droppedCalls.incrementAndGet();
+            return;
+        }
+        thread = Thread.currentThread();
+        long cpuStart = getCurrentThreadCpuTime();
+        long start = System.nanoTime();
+        currentCall = name;
+        currentCallReported = false;
+        currentCallStart = start;
+        try {
+            call.run();
+        } catch (Throwable t) {
+            TimoCloudCore.getInstance().severe("Uncaught exception in " + name + " of plugin " + pluginName + ": ");
+            TimoCloudCore.getInstance().severe(t);
+        } finally {
+            currentCallStart = 0;
+            long wall = System.nanoTime() - start;
+            calls.incrementAndGet();
+            wallNanos.addAndGet(wall);
+            if (cpuStart >= 0) cpuNanos.addAndGet(Math.max(0, getCurrentThreadCpuTime() - cpuStart));
+            if (wall > budgetNanos) onBudgetExceeded(name, wall, currentCallReported);
+        }
+    }
+
+    /**
+     * Reports the current call if it has been running for longer than the budget, so listeners which hang are noticed before
+     * they return. Should be called periodically.
+     */
+    public void checkRunningCall() {
+        long start = currentCallStart;
+        Thread thread = this.thread;
+        if (start == 0 || currentCallReported || thread == null || System.nanoTime() - start <= budgetNanos) return;
+        currentCallReported = true;
+        StringBuilder stackTrace = new StringBuilder();
+        StackTraceElement[] elements = thread.getStackTrace();
+        for (int i = 0; i < Math.min(STACK_TRACE_DEPTH, elements.length); i++) stackTrace.append("\n    at ").append(elements[i]);
+        TimoCloudCore.getInstance().warning(currentCall + " of plugin " + pluginName + " has been running for " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+                + "ms, its budget is " + getBudgetMillis() + "ms. " + getQueued() + " further calls are waiting. It is currently at:" + stackTrace);
+    }
+
+    /**
+     * @param reported Whether the call has already been reported while it was running
+     */
+    private void onBudgetExceeded(String name, long nanos, boolean reported) {
+        slowCalls.incrementAndGet();
+        if (!reported) {
+            TimoCloudCore.getInstance().warning(name + " of plugin " + pluginName + " took " + TimeUnit.NANOSECONDS.toMillis(nanos) + "ms, its budget is " + getBudgetMillis() + "ms.");
+        }
+        if (quarantineViolations <= 0) return;
+        long now = System.currentTimeMillis();
+        synchronized (violations) {
+            violations.addLast(now);
+            while (!violations.isEmpty() && violations.peekFirst() < now - VIOLATION_WINDOW_MILLIS) violations.removeFirst();
+            if (violations.size() < quarantineViolations) return;
+            violations.clear();
+        }
+        quarantine("it has exceeded its time budget of " + getBudgetMillis() + "ms " + quarantineViolations + " times within a minute");
+    }
+
+    /**
+     * Stops delivering events and messages to the plugin and drops all calls which are still waiting
+     *
+     * @param reason Why the plugin is quarantined, logged as "Plugin ... has been quarantined because &lt;reason&gt;"
+     */
+    public void quarantine(String reason) {
+        if (quarantined) return;
+        quarantined = true;
+        int dropped = executor.getQueue().size();
+        executor.getQueue().clear();
+        droppedCalls.addAndGet(dropped);
+        TimoCloudCore.getInstance().severe("Plugin " + pluginName + " has been quarantined because " + reason
+                + ". It will not receive events or messages anymore. Use 'plugins release " + pluginName + "' to release it.");
+    }
+
+    public void release() {
+        synchronized (violations) {
+            violations.clear();
+        }
+        quarantined = false;
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private static long getCurrentThreadCpuTime() {
+        try {
+            return THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported() ? THREAD_MX_BEAN.getCurrentThreadCpuTime() : -1;
+        } catch (UnsupportedOperationException e) {
+            return -1;
+        }
+    }
+
+    public String getPluginName() {
+        return pluginName;
+    }
+
+    public boolean isQuarantined() {
+        return quarantined;
+    }
+
+    public long getBudgetMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(budgetNanos);
+    }
+
+    public long getCalls() {
+        return calls.get();
+    }
+
+    public long getSlowCalls() {
+        return slowCalls.get();
+    }
+
+    /**
+     * @return Calls which have not been executed because the plugin was quarantined or its queue was full
+     */
+    public long getDroppedCalls() {
+        return droppedCalls.get();
+    }
+
+    /**
+     * @return CPU time the plugin's listeners have used in nanoseconds, 0 if the JVM does not measure thread CPU time
+     */
+    public long getCpuNanos() {
+        return cpuNanos.get();
+    }
+
+    /**
+     * @return Time the plugin's listeners have been running in nanoseconds, including time they were blocked
+     */
+    public long getWallNanos() {
+        return wallNanos.get();
+    }
+
+    /**
+     * @return Calls which are currently waiting for the plugin's thread
+     */
+    public int getQueued() {
+        return executor.getQueue().size();
+    }
+
+    public int getMaxQueued() {
+        return maxQueued.get();
+    }
+}
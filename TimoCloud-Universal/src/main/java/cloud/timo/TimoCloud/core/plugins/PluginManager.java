@@ -1,5 +1,6 @@
 package cloud.timo.TimoCloud.core.plugins;
 
+import cloud.timo.TimoCloud.api.implementations.ListenerExecutor;
 import cloud.timo.TimoCloud.api.plugins.PluginLoadException;
 import cloud.timo.TimoCloud.api.plugins.TimoCloudPlugin;
 import cloud.timo.TimoCloud.api.plugins.TimoCloudPluginDescription;
@@ -13,16 +14,22 @@ import java.io.InputStream;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.stream.Collectors;
 
-public class PluginManager {
+/**
+ * Loads the core's plugins. Event and message listeners of a plugin are called on the plugin's own {@link PluginExecutor},
+ * which is found by the class loader of the listener's class, so a slow plugin cannot stall the thread delivering them.
+ */
+public class PluginManager implements ListenerExecutor {
 
     private Map<TimoCloudPluginDescription, TimoCloudPlugin> plugins;
+    private final Map<ClassLoader, PluginExecutor> executors;
 
     public PluginManager() {
-
+        this.executors = new ConcurrentHashMap<>();
     }
 
     public void loadPlugins() {
@@ -66,12 +73,16 @@ public class PluginManager {
                     throw new PluginLoadException("Main class does not extend TimoCloudPlugin");
                 }
                 TimoCloudPlugin mainInstance = (TimoCloudPlugin) main.getDeclaredConstructor().newInstance();
+                PluginExecutor executor = new PluginExecutor(plugin.getName(), TimoCloudCore.getInstance().getPluginListenerBudget(), TimoCloudCore.getInstance().getPluginQueueCapacity(), TimoCloudCore.getInstance().getPluginQuarantineViolations());
+                executors.put(classLoader, executor);
                 try {
                     mainInstance.onLoad();
                     TimoCloudCore.getInstance().info("Loaded plugin " + plugin.getName() + " version " + plugin.getVersion() + " by " + plugin.getAuthor() + ".");
                     plugins.put(plugin, mainInstance);
                     plugin.setPlugin(mainInstance);
                 } catch (Exception e) {
+                    executors.remove(classLoader);
+                    executor.shutdown();
                     TimoCloudCore.getInstance().severe("Error while enabling plugin " + plugin.getName() + " version " + plugin.getVersion() + " by " + plugin.getAuthor() + ": ");
                     TimoCloudCore.getInstance().severe(e);
                 }
@@ -185,4 +196,35 @@ public class PluginManager {
     public Collection<TimoCloudPlugin> getPlugins() {
         return plugins.values();
     }
+
+    @Override
+    public void execute(Object listener, String name, Runnable call) {
+        PluginExecutor executor = executors.get(listener.getClass().getClassLoader());
+        if (executor == null) call.run(); // Listeners of the core itself
+        else executor.submit(name, call);
+    }
+
+    /**
+     * Reports plugin listeners which have been running for longer than their budget
+     */
+    public void checkRunningCalls() {
+        for (PluginExecutor executor : executors.values()) executor.checkRunningCall();
+    }
+
+    public Collection<PluginExecutor> getExecutors() {
+        List<PluginExecutor> executors = new ArrayList<>(this.executors.values());
+        executors.sort(Comparator.comparing(PluginExecutor::getPluginName));
+        return executors;
+    }
+
+    public PluginExecutor getExecutor(String pluginName) {
+        for (PluginExecutor executor : executors.values()) {
+            if (executor.getPluginName().equalsIgnoreCase(pluginName)) return executor;
+        }
+        return null;
+    }
+
+    public void shutdown() {
+        for (PluginExecutor executor : executors.values()) executor.shutdown();
+    }
 }
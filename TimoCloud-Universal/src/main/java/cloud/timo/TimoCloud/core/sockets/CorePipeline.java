@@ -1,6 +1,8 @@
 package cloud.timo.TimoCloud.core.sockets;
 
 import cloud.timo.TimoCloud.core.TimoCloudCore;
+import cloud.timo.TimoCloud.lib.sockets.OutboundStage;
+import cloud.timo.TimoCloud.lib.sockets.compression.StreamCompression;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelInitializer;
 import io.netty.handler.codec.string.StringDecoder;
@@ -15,6 +17,8 @@ public class CorePipeline extends ChannelInitializer<Channel> {
         ch.pipeline().addLast("encoder", new StringEncoder(CharsetUtil.UTF_8));
         ch.pipeline().addLast("handler", TimoCloudCore.getInstance().getStringHandler());
         ch.pipeline().addLast(TimoCloudCore.getInstance().getSocketServerHandler());
+        StreamCompression.install(ch.pipeline());
+        OutboundStage.install(ch.pipeline());
     }
 
 }
\ No newline at end of file
@@ -6,6 +6,7 @@ import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.WriteBufferWaterMark;
 
 public class CoreSocketServer {
 
@@ -20,6 +21,7 @@ public class CoreSocketServer {
                     .channel(NettyUtil.getServerSocketChannelClass())
                     .option(ChannelOption.SO_BACKLOG, 128)
                     .childOption(ChannelOption.SO_KEEPALIVE, true)
+                    .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(TimoCloudCore.getInstance().getWriteBufferLowWaterMark(), TimoCloudCore.getInstance().getWriteBufferHighWaterMark()))
             ;
 
 
@@ -1,13 +1,14 @@
 package cloud.timo.TimoCloud.core.sockets;
 
 import cloud.timo.TimoCloud.lib.messages.Message;
+import cloud.timo.TimoCloud.lib.sockets.OutboundStage;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @ChannelHandler.Sharable
 public class CoreSocketServerHandler extends ChannelInboundHandlerAdapter {
@@ -15,11 +16,11 @@ public class CoreSocketServerHandler extends ChannelInboundHandlerAdapter {
     private Map<Channel, Communicatable> communicatables;
 
     public CoreSocketServerHandler() {
-        communicatables = new HashMap<>();
+        communicatables = new ConcurrentHashMap<>();
     }
 
     public void sendMessage(Channel channel, Message json) {
-        if (channel != null && channel.isActive()) channel.writeAndFlush(json.toJson());
+        OutboundStage.send(channel, json);
     }
 
     @Override
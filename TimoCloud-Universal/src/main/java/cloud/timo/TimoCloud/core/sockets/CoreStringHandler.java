@@ -6,16 +6,21 @@ import cloud.timo.TimoCloud.api.events.EventType;
 import cloud.timo.TimoCloud.api.implementations.TimoCloudUniversalAPIBasicImplementation;
 import cloud.timo.TimoCloud.api.messages.objects.AddressedPluginMessage;
 import cloud.timo.TimoCloud.api.objects.CordObject;
-import cloud.timo.TimoCloud.api.objects.ProxyGroupObject;
-import cloud.timo.TimoCloud.api.objects.ServerGroupObject;
+import cloud.timo.TimoCloud.api.objects.PlayerObject;
 import cloud.timo.TimoCloud.api.utils.EventUtil;
 import cloud.timo.TimoCloud.core.TimoCloudCore;
+import cloud.timo.TimoCloud.core.managers.TemplateManager;
 import cloud.timo.TimoCloud.core.objects.Base;
 import cloud.timo.TimoCloud.core.objects.Cord;
 import cloud.timo.TimoCloud.core.objects.Proxy;
+import cloud.timo.TimoCloud.core.objects.ProxyGroup;
 import cloud.timo.TimoCloud.core.objects.Server;
+import cloud.timo.TimoCloud.core.objects.ServerGroup;
 import cloud.timo.TimoCloud.lib.messages.Message;
 import cloud.timo.TimoCloud.lib.sockets.BasicStringHandler;
+import cloud.timo.TimoCloud.lib.sockets.MessageDispatcher;
+import cloud.timo.TimoCloud.lib.sockets.MessageTypeStatistics;
+import cloud.timo.TimoCloud.lib.sockets.compression.StreamCompression;
 import cloud.timo.TimoCloud.lib.utils.DoAfterAmount;
 import cloud.timo.TimoCloud.lib.utils.EnumUtil;
 import cloud.timo.TimoCloud.lib.utils.PluginMessageSerializer;
@@ -23,303 +28,429 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandler;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.util.ArrayList;
-import java.util.Base64;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 @ChannelHandler.Sharable
 public class CoreStringHandler extends BasicStringHandler {
 
+    private final MessageDispatcher dispatcher;
+
+    public CoreStringHandler() {
+        this.dispatcher = new MessageDispatcher("TimoCloud-MessageHandler", TimoCloudCore.getInstance().getMessageHandlerThreads(), (message, e) -> {
+            TimoCloudCore.getInstance().severe("Error while handling message of type " + message.getType() + ": ");
+            TimoCloudCore.getInstance().severe(e);
+        });
+        registerHandlers();
+    }
+
+    /**
+     * Registers the handler of every message type. Handlers which block (host name resolution, file access, plugin listeners,
+     * serializing the whole network) run on worker threads, all others directly on the connection's I/O thread.
+     */
+    private void registerHandlers() {
+        dispatcher.register("SERVER_HANDSHAKE", false, this::handleServerHandshake);
+        dispatcher.register("PROXY_HANDSHAKE", false, this::handleProxyHandshake);
+        dispatcher.register("BASE_HANDSHAKE", true, this::handleBaseHandshake);
+        dispatcher.register("CORD_HANDSHAKE", true, this::handleCordHandshake);
+        registerAuthenticated("GET_API_DATA", true, this::handleGetApiData);
+        registerAuthenticated("GET_PLAYERS", true, this::handleGetPlayers);
+        registerAuthenticated("FIRE_EVENT", true, this::handleFireEvent);
+        registerAuthenticated("PARSE_COMMAND", true, this::handleParseCommand);
+        registerAuthenticated("CHECK_IF_DELETABLE", false, this::handleCheckIfDeletable);
+        registerAuthenticated("PLUGIN_MESSAGE", true, this::handlePluginMessage);
+        registerAuthenticated("SERVER_TEMPLATE_REQUEST", true, this::handleServerTemplateRequest);
+        registerAuthenticated("PROXY_TEMPLATE_REQUEST", true, this::handleProxyTemplateRequest);
+        // These fire events, which call plugin listeners
+        registerAuthenticated("REGISTER", true, this::forwardToTarget);
+        registerAuthenticated("PROCESS_EXITED", true, this::forwardToTarget);
+        dispatcher.setDefaultHandler(false, authenticated(this::forwardToTarget));
+    }
+
+    private void registerAuthenticated(String type, boolean blocking, MessageDispatcher.Handler handler) {
+        dispatcher.register(type, blocking, authenticated(handler));
+    }
+
+    /**
+     * Only passes messages of channels which have completed their handshake to the given handler
+     */
+    private MessageDispatcher.Handler authenticated(MessageDispatcher.Handler handler) {
+        return (message, channel) -> {
+            if (TimoCloudCore.getInstance().getSocketServerHandler().getCommunicatable(channel) == null) {
+                closeChannel(channel);
+                TimoCloudCore.getInstance().severe("Unknown connection from " + channel.remoteAddress() + ", blocking. Please make sure to block the TimoCloudCore socket port (" + TimoCloudCore.getInstance().getSocketPort() + ") in your firewall to avoid this.");
+                return;
+            }
+            handler.handle(message, channel);
+        };
+    }
+
     @Override
     public void handleMessage(Message message, String originalMessage, Channel channel) {
-        Communicatable sender = TimoCloudCore.getInstance().getSocketServerHandler().getCommunicatable(channel);
-        String targetId = (String) message.get("target");
-        Server server = TimoCloudCore.getInstance().getInstanceManager().getServerById(targetId);
-        Proxy proxy = TimoCloudCore.getInstance().getInstanceManager().getProxyById(targetId);
-        String baseName = (String) message.get("base");
-        String cordName = (String) message.get("cord");
-        Communicatable target = null;
-        if (server != null) target = server;
-        else if (proxy != null) target = proxy;
-        else if (baseName != null) target = TimoCloudCore.getInstance().getInstanceManager().getBase(baseName);
-        else if (cordName != null) target = TimoCloudCore.getInstance().getInstanceManager().getCord(cordName);
+        dispatcher.dispatch(message, channel);
+    }
+
+    public Map<String, MessageTypeStatistics> getStatistics() {
+        return dispatcher.getStatistics();
+    }
+
+    public void shutdown() {
+        dispatcher.shutdown();
+    }
+
+    private static Server getServer(Message message) {
+        return TimoCloudCore.getInstance().getInstanceManager().getServerById((String) message.get("target"));
+    }
+
+    private static Proxy getProxy(Message message) {
+        return TimoCloudCore.getInstance().getInstanceManager().getProxyById((String) message.get("target"));
+    }
+
+    /**
+     * @return The server, proxy, base or cord the message is addressed to, or its sender if it has no target
+     */
+    private static Communicatable getTarget(Message message, Channel channel) {
+        Communicatable target = getServer(message);
+        if (target == null) target = getProxy(message);
+        if (target == null && message.get("base") != null) target = TimoCloudCore.getInstance().getInstanceManager().getBase((String) message.get("base"));
+        else if (target == null && message.get("cord") != null) target = TimoCloudCore.getInstance().getInstanceManager().getCord((String) message.get("cord"));
         if (target == null) target = TimoCloudCore.getInstance().getSocketServerHandler().getCommunicatable(channel);
-        String type = (String) message.get("type");
-        Object data = message.get("data");
-        InetAddress address = ((InetSocketAddress) channel.remoteAddress()).getAddress();
-        switch (type) { // Handshakes
-            case "SERVER_HANDSHAKE": {
-                if (server == null) {
-                    closeChannel(channel);
-                    return;
-                }
-                if (!address.equals(server.getBase().getAddress())) {
-                    TimoCloudCore.getInstance().severe("Server connected with different InetAddress than its base. Refusing connection.");
-                    return;
-                }
-                TimoCloudCore.getInstance().getSocketServerHandler().setCommunicatable(channel, server);
-                server.onConnect(channel);
-                server.onHandshakeSuccess();
-                return;
-            }
-            case "PROXY_HANDSHAKE": {
-                if (proxy == null) {
-                    closeChannel(channel);
-                    return;
-                }
-                if (!address.equals(proxy.getBase().getAddress())) {
-                    TimoCloudCore.getInstance().severe("Proxy connected with different InetAddress than its base. Refusing connection.");
-                    return;
-                }
-                TimoCloudCore.getInstance().getSocketServerHandler().setCommunicatable(channel, proxy);
-                proxy.onConnect(channel);
-                proxy.onHandshakeSuccess();
-                return;
-            }
-            case "BASE_HANDSHAKE": {
-                if (!ipAllowed(address)) {
-                    TimoCloudCore.getInstance().severe("Unknown base connected from " + address.getHostAddress() + ". If you want to allow this connection, please add the IP address to 'allowedIPs' in your config.yml, else, please block the port " + ((Integer) TimoCloudCore.getInstance().getFileManager().getConfig().get("socket-port")) + " in your firewall.");
-                    closeChannel(channel);
-                    return;
-                }
-                if (TimoCloudCore.getInstance().getInstanceManager().isBaseConnected(baseName)) {
-                    TimoCloudCore.getInstance().severe("Error while base handshake: A base with the name '" + baseName + "' is already conencted.");
-                    return;
-                }
-                InetAddress publicAddress = address;
-                try {
-                    publicAddress = InetAddress.getByName((String) message.get("publicAddress"));
-                } catch (Exception e) {
-                    TimoCloudCore.getInstance().severe("Unable to resolve public ip address '" + message.get("publicAddress") + "' for base " + baseName + ". Please make sure the base's hostname is configured correctly in your operating system.");
-                }
-                Base base = TimoCloudCore.getInstance().getInstanceManager().getOrCreateBase(baseName, address, publicAddress, channel);
-                TimoCloudCore.getInstance().getSocketServerHandler().setCommunicatable(channel, base);
-                base.onConnect(channel);
-                base.onHandshakeSuccess();
-                return;
-            }
-            case "CORD_HANDSHAKE": {
-                if (!ipAllowed(address)) {
-                    TimoCloudCore.getInstance().severe("Unknown cord connected from " + address.getHostAddress() + ". If you want to allow this connection, please add the IP address to 'allowedIPs' in your config.yml, else, please block the port " + ((Integer) TimoCloudCore.getInstance().getFileManager().getConfig().get("socket-port")) + " in your firewall.");
-                    closeChannel(channel);
-                    return;
-                }
-                if (TimoCloudCore.getInstance().getInstanceManager().isCordConnected(cordName)) {
-                    TimoCloudCore.getInstance().severe("Error while cord handshake: A cord with the name '" + cordName + "' is already conencted.");
-                    return;
-                }
-                Cord cord = TimoCloudCore.getInstance().getInstanceManager().getOrCreateCord(cordName, address, channel);
-                TimoCloudCore.getInstance().getSocketServerHandler().setCommunicatable(channel, cord);
-                cord.onConnect(channel);
-                cord.onHandshakeSuccess();
-                return;
-            }
+        return target;
+    }
+
+    private static InetAddress getAddress(Channel channel) {
+        return ((InetSocketAddress) channel.remoteAddress()).getAddress();
+    }
+
+    /**
+     * Tells a server or proxy that the core does not know it (anymore), so it shuts down instead of trying to reconnect
+     */
+    private void refuseHandshake(Channel channel) {
+        TimoCloudCore.getInstance().getSocketServerHandler().sendMessage(channel, Message.create().setType("HANDSHAKE_REFUSED"));
+        closeChannel(channel);
+    }
+
+    private void handleServerHandshake(Message message, Channel channel) {
+        Server server = getServer(message);
+        if (server == null) {
+            refuseHandshake(channel);
+            return;
+        }
+        if (!getAddress(channel).equals(server.getBase().getAddress())) {
+            TimoCloudCore.getInstance().severe("Server connected with different InetAddress than its base. Refusing connection.");
+            return;
         }
+        if (!server.getToken().equals(message.get("token"))) {
+            TimoCloudCore.getInstance().severe("Server " + server.getName() + " connected with a wrong token. Refusing connection.");
+            refuseHandshake(channel);
+            return;
+        }
+        TimoCloudCore.getInstance().getSocketServerHandler().setCommunicatable(channel, server);
+        server.onConnect(channel);
+        server.onHandshakeSuccess();
+        negotiateCompression(channel, message);
+    }
+
+    private void handleProxyHandshake(Message message, Channel channel) {
+        Proxy proxy = getProxy(message);
+        if (proxy == null) {
+            refuseHandshake(channel);
+            return;
+        }
+        if (!getAddress(channel).equals(proxy.getBase().getAddress())) {
+            TimoCloudCore.getInstance().severe("Proxy connected with different InetAddress than its base. Refusing connection.");
+            return;
+        }
+        if (!proxy.getToken().equals(message.get("token"))) {
+            TimoCloudCore.getInstance().severe("Proxy " + proxy.getName() + " connected with a wrong token. Refusing connection.");
+            refuseHandshake(channel);
+            return;
+        }
+        TimoCloudCore.getInstance().getSocketServerHandler().setCommunicatable(channel, proxy);
+        proxy.setProxyProtocol(Boolean.TRUE.equals(message.get("proxyProtocol")));
+        if (message.containsKey("players")) restoreProxyPlayers(proxy, (List<String>) message.get("players"));
+        proxy.onConnect(channel);
+        proxy.onHandshakeSuccess();
+        negotiateCompression(channel, message);
+    }
 
-        // No Handshake, so we have to check if the channel is registered
-        if (sender == null) {
+    private void handleBaseHandshake(Message message, Channel channel) {
+        InetAddress address = getAddress(channel);
+        String baseName = (String) message.get("base");
+        if (!ipAllowed(address)) {
+            TimoCloudCore.getInstance().severe("Unknown base connected from " + address.getHostAddress() + ". If you want to allow this connection, please add the IP address to 'allowedIPs' in your config.yml, else, please block the port " + ((Integer) TimoCloudCore.getInstance().getFileManager().getConfig().get("socket-port")) + " in your firewall.");
             closeChannel(channel);
-            TimoCloudCore.getInstance().severe("Unknown connection from " + channel.remoteAddress() + ", blocking. Please make sure to block the TimoCloudCore socket port (" + TimoCloudCore.getInstance().getSocketPort() + ") in your firewall to avoid this.");
             return;
         }
+        if (TimoCloudCore.getInstance().getInstanceManager().isBaseConnected(baseName)) {
+            TimoCloudCore.getInstance().severe("Error while base handshake: A base with the name '" + baseName + "' is already conencted.");
+            return;
+        }
+        InetAddress publicAddress = address;
+        try {
+            publicAddress = InetAddress.getByName((String) message.get("publicAddress"));
+        } catch (Exception e) {
+            TimoCloudCore.getInstance().severe("Unable to resolve public ip address '" + message.get("publicAddress") + "' for base " + baseName + ". Please make sure the base's hostname is configured correctly in your operating system.");
+        }
+        Base base = TimoCloudCore.getInstance().getInstanceManager().getOrCreateBase(baseName, address, publicAddress, channel);
+        base.setPeerPort(message.containsKey("peerPort") ? ((Number) message.get("peerPort")).intValue() : -1);
+        base.getUnreachablePeers().clear();
+        base.setPeerToken(UUID.randomUUID().toString());
+        // The base presents the token it got at its last handshake, a different one means that it has been restarted in the meantime
+        if (base.getToken() == null || !base.getToken().equals(message.get("token"))) {
+            if (base.getToken() != null) TimoCloudCore.getInstance().info("Base " + baseName + " has been restarted.");
+            base.setToken(UUID.randomUUID().toString());
+        }
+        TimoCloudCore.getInstance().getSocketServerHandler().setCommunicatable(channel, base);
+        base.onConnect(channel);
+        base.onHandshakeSuccess();
+        TimoCloudCore.getInstance().getInstanceManager().onBaseConnected(base, (List<String>) message.get("instances"));
+        negotiateCompression(channel, message);
+    }
 
-        switch (type) {
-            case "GET_API_DATA": {
-                List serverGroups = new ArrayList();
-                List proxyGroups = new ArrayList();
-                List cords = new ArrayList();
-                ObjectMapper objectMapper = ((TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI()).getObjectMapper();
-                try {
-                    for (ServerGroupObject serverGroupObject : TimoCloudAPI.getUniversalAPI().getServerGroups())
-                        serverGroups.add(objectMapper.writeValueAsString(serverGroupObject));
-                    for (ProxyGroupObject proxyGroupObject : TimoCloudAPI.getUniversalAPI().getProxyGroups())
-                        proxyGroups.add(objectMapper.writeValueAsString(proxyGroupObject));
-                    for (CordObject cordObject : TimoCloudAPI.getUniversalAPI().getCords())
-                        cords.add(objectMapper.writeValueAsString(cordObject));
-                    TimoCloudCore.getInstance().getSocketServerHandler().sendMessage(channel, Message.create()
-                            .setType("API_DATA")
-                            .setData(
-                                    Message.create()
-                                            .set("serverGroups", serverGroups)
-                                            .set("proxyGroups", proxyGroups)
-                                            .set("cords", cords)));
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-                break;
-            }
-            case "FIRE_EVENT": {
-                try {
-                    TimoCloudCore.getInstance().getEventManager().fireEvent(
-                            ((TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI()).getObjectMapper().readValue(
-                                    (String) data, EventUtil.getClassByEventType(
-                                            EnumUtil.valueOf(EventType.class, (String) message.get("eventType")))));
-                } catch (Exception e) {
-                    TimoCloudCore.getInstance().severe("Error while firing event: ");
-                    e.printStackTrace();
-                }
-                break;
-            }
-            case "PARSE_COMMAND": {
-                TimoCloudCore.getInstance().getCommandManager().onCommand((String) data, new CommandSender() {
-                    @Override
-                    public void sendMessage(String msg) {
-                        TimoCloudCore.getInstance().getSocketServerHandler().sendMessage(channel, Message.create()
-                                .setType("SEND_MESSAGE_TO_SENDER")
-                                .set("sender", message.get("sender"))
-                                .setData(msg));
-                    }
-
-                    @Override
-                    public void sendError(String message) {
-                        sendMessage("&c" + message);
-                    }
-                });
-                break;
-            }
-            case "CHECK_IF_DELETABLE": {
-                if (target == null || target instanceof Base) {
-                    TimoCloudCore.getInstance().getSocketServerHandler().sendMessage(channel, Message.create().setType("DELETE_DIRECTORY").setData(data));
-                }
-                break;
-            }
-            case "PLUGIN_MESSAGE": {
-                AddressedPluginMessage addressedPluginMessage = PluginMessageSerializer.deserialize((Map) data);
-                TimoCloudCore.getInstance().getPluginMessageManager().onMessage(addressedPluginMessage);
-                break;
+    private void handleCordHandshake(Message message, Channel channel) {
+        InetAddress address = getAddress(channel);
+        String cordName = (String) message.get("cord");
+        if (!ipAllowed(address)) {
+            TimoCloudCore.getInstance().severe("Unknown cord connected from " + address.getHostAddress() + ". If you want to allow this connection, please add the IP address to 'allowedIPs' in your config.yml, else, please block the port " + ((Integer) TimoCloudCore.getInstance().getFileManager().getConfig().get("socket-port")) + " in your firewall.");
+            closeChannel(channel);
+            return;
+        }
+        if (TimoCloudCore.getInstance().getInstanceManager().isCordConnected(cordName)) {
+            TimoCloudCore.getInstance().severe("Error while cord handshake: A cord with the name '" + cordName + "' is already conencted.");
+            return;
+        }
+        Cord cord = TimoCloudCore.getInstance().getInstanceManager().getOrCreateCord(cordName, address, channel);
+        TimoCloudCore.getInstance().getSocketServerHandler().setCommunicatable(channel, cord);
+        cord.onConnect(channel);
+        cord.onHandshakeSuccess();
+        negotiateCompression(channel, message);
+    }
+
+    private void handleGetApiData(Message message, Channel channel) {
+        List serverGroups = new ArrayList();
+        List proxyGroups = new ArrayList();
+        List cords = new ArrayList();
+        ObjectMapper objectMapper = ((TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI()).getObjectMapper();
+        try {
+            for (ServerGroup serverGroup : TimoCloudCore.getInstance().getInstanceManager().getServerGroups())
+                serverGroups.add(objectMapper.writeValueAsString(serverGroup.toGroupObject()));
+            for (ProxyGroup proxyGroup : TimoCloudCore.getInstance().getInstanceManager().getProxyGroups())
+                proxyGroups.add(objectMapper.writeValueAsString(proxyGroup.toGroupObject()));
+            for (CordObject cordObject : TimoCloudAPI.getUniversalAPI().getCords())
+                cords.add(objectMapper.writeValueAsString(cordObject));
+            TimoCloudCore.getInstance().getSocketServerHandler().sendMessage(channel, Message.create()
+                    .setType("API_DATA")
+                    .setData(
+                            Message.create()
+                                    .set("serverGroups", serverGroups)
+                                    .set("proxyGroups", proxyGroups)
+                                    .set("cords", cords)));
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Takes the players a proxy reports at its handshake, so a restarted core knows the players which are still online
+     */
+    private void restoreProxyPlayers(Proxy proxy, List<String> players) {
+        TimoCloudUniversalAPIBasicImplementation universalAPI = (TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI();
+        try {
+            universalAPI.getPlayerDirectory().setProxyPlayers(proxy.getName(), universalAPI.readPlayers(players));
+        } catch (Exception e) {
+            TimoCloudCore.getInstance().severe("Error while reading players of proxy " + proxy.getName() + ": ");
+            TimoCloudCore.getInstance().severe(e);
+        }
+    }
+
+    /**
+     * Answers once all proxies which were running before a core restart have reported their players or have been abandoned,
+     * since the directory would be incomplete before
+     */
+    private void handleGetPlayers(Message message, Channel channel) {
+        TimoCloudCore.getInstance().getInstanceManager().runWhenProxiesResumed(() -> sendPlayers(channel));
+    }
+
+    private void sendPlayers(Channel channel) {
+        List players = new ArrayList();
+        ObjectMapper objectMapper = ((TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI()).getObjectMapper();
+        try {
+            for (PlayerObject playerObject : ((TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI()).getPlayerDirectory().getPlayers())
+                players.add(objectMapper.writeValueAsString(playerObject));
+            TimoCloudCore.getInstance().getSocketServerHandler().sendMessage(channel, Message.create()
+                    .setType("PLAYERS")
+                    .setData(players));
+        } catch (Exception e) {
+            TimoCloudCore.getInstance().severe("Error while sending player directory: ");
+            TimoCloudCore.getInstance().severe(e);
+        }
+    }
+
+    private void handleFireEvent(Message message, Channel channel) {
+        try {
+            TimoCloudCore.getInstance().getEventManager().fireEvent(
+                    ((TimoCloudUniversalAPIBasicImplementation) TimoCloudAPI.getUniversalAPI()).getObjectMapper().readValue(
+                            (String) message.get("data"), EventUtil.getClassByEventType(
+                                    EnumUtil.valueOf(EventType.class, (String) message.get("eventType")))));
+        } catch (Exception e) {
+            TimoCloudCore.getInstance().severe("Error while firing event: ");
+            e.printStackTrace();
+        }
+    }
+
+    private void handleParseCommand(Message message, Channel channel) {
+        TimoCloudCore.getInstance().getCommandManager().onCommand((String) message.get("data"), new CommandSender() {
+            @Override
+            public void sendMessage(String msg) {
+                TimoCloudCore.getInstance().getSocketServerHandler().sendMessage(channel, Message.create()
+                        .setType("SEND_MESSAGE_TO_SENDER")
+                        .set("sender", message.get("sender"))
+                        .setData(msg));
             }
-            case "SERVER_TEMPLATE_REQUEST": {
-                server.getBase().setAvailableRam(server.getBase().getAvailableRam() + server.getGroup().getRam()); // Start paused, hence ram is free
-                TimoCloudCore.getInstance().info("Base requested template update for server " + server.getName() + ". Sending update and starting server again...");
-                Map differences = (Map) message.get("differences");
-                List<String> templateDifferences = differences.containsKey("templateDifferences") ? (List<String>) differences.get("templateDifferences") : null;
-                String template = message.containsKey("template") ? (String) message.get("template") : null;
-                List<String> mapDifferences = differences.containsKey("mapDifferences") ? (List<String>) differences.get("mapDifferences") : null;
-                String map = message.containsKey("map") ? (String) message.get("map") : null;
-                List<String> globalDifferences = differences.containsKey("globalDifferences") ? (List<String>) differences.get("globalDifferences") : null;
-                int amount = 0;
-                if (templateDifferences != null) amount++;
-                if (mapDifferences != null) amount++;
-                if (globalDifferences != null) amount++;
-                DoAfterAmount doAfterAmount = new DoAfterAmount(amount, server::start);
-                server.setTemplateUpdate(doAfterAmount);
-                try {
-                    if (templateDifferences != null) {
-                        File templateDirectory = new File(TimoCloudCore.getInstance().getFileManager().getServerTemplatesDirectory(), template);
-                        List<File> templateFiles = new ArrayList<>();
-                        for (String fileName : templateDifferences)
-                            templateFiles.add(new File(templateDirectory, fileName));
-                        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-                        TimoCloudCore.getInstance().getTemplateManager().zipFiles(templateFiles, templateDirectory, outputStream);
-                        String content = byteArrayToString(outputStream.toByteArray());
-                        channel.writeAndFlush(Message.create()
-                                .setType("TRANSFER")
-                                .set("transferType", "SERVER_TEMPLATE")
-                                .set("template", template)
-                                .set("file", content)
-                                .setTarget(targetId)
-                                .toString());
-                    }
-                    if (mapDifferences != null) {
-                        File mapDirectory = new File(TimoCloudCore.getInstance().getFileManager().getServerTemplatesDirectory(), server.getGroup().getName() + "_" + map);
-                        List<File> mapFiles = new ArrayList<>();
-                        for (String fileName : mapDifferences) mapFiles.add(new File(mapDirectory, fileName));
-                        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-                        TimoCloudCore.getInstance().getTemplateManager().zipFiles(mapFiles, mapDirectory, outputStream);
-                        String content = byteArrayToString(outputStream.toByteArray());
-                        channel.writeAndFlush(Message.create()
-                                .setType("TRANSFER")
-                                .set("transferType", "SERVER_TEMPLATE")
-                                .set("template", server.getGroup().getName() + "_" + map)
-                                .set("file", content)
-                                .setTarget(targetId)
-                                .toString());
-                    }
-                    if (globalDifferences != null) {
-                        List<File> templateFiles = new ArrayList<>();
-                        File templateDirectory = TimoCloudCore.getInstance().getFileManager().getServerGlobalDirectory();
-                        for (String fileName : globalDifferences)
-                            templateFiles.add(new File(templateDirectory, fileName));
-                        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-                        TimoCloudCore.getInstance().getTemplateManager().zipFiles(templateFiles, templateDirectory, outputStream);
-                        String content = byteArrayToString(outputStream.toByteArray());
-                        channel.writeAndFlush(Message.create()
-                                .setType("TRANSFER")
-                                .set("transferType", "SERVER_GLOBAL_TEMPLATE")
-                                .set("file", content)
-                                .setTarget(targetId)
-                                .toString());
-                    }
-                    doAfterAmount.setAmount(amount);
-                } catch (Exception e) {
-                    TimoCloudCore.getInstance().severe("Error while sending template files: ");
-                    e.printStackTrace();
-                }
-                break;
+
+            @Override
+            public void sendError(String message) {
+                sendMessage("&c" + message);
             }
-            case "PROXY_TEMPLATE_REQUEST": {
-                proxy.getBase().setAvailableRam(proxy.getBase().getAvailableRam() + proxy.getGroup().getRam()); // Start paused, hence ram is free
-                TimoCloudCore.getInstance().info("Base requested template update for proxy " + proxy.getName() + ". Sending update and starting server again...");
-                Map differences = (Map) message.get("differences");
-                List<String> templateDifferences = differences.containsKey("templateDifferences") ? (List<String>) differences.get("templateDifferences") : null;
-                String template = message.containsKey("template") ? (String) message.get("template") : null;
-                List<String> globalDifferences = differences.containsKey("globalDifferences") ? (List<String>) differences.get("globalDifferences") : null;
-                int amount = 0;
-                if (templateDifferences != null) amount++;
-                if (globalDifferences != null) amount++;
-                DoAfterAmount doAfterAmount = new DoAfterAmount(amount, proxy::start);
-                proxy.setTemplateUpdate(doAfterAmount);
-                try {
-                    if (templateDifferences != null) {
-                        File templateDirectory = new File(TimoCloudCore.getInstance().getFileManager().getProxyTemplatesDirectory(), template);
-                        List<File> templateFiles = new ArrayList<>();
-                        for (String fileName : templateDifferences)
-                            templateFiles.add(new File(templateDirectory, fileName));
-                        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-                        TimoCloudCore.getInstance().getTemplateManager().zipFiles(templateFiles, templateDirectory, outputStream);
-                        String content = byteArrayToString(outputStream.toByteArray());
-                        channel.writeAndFlush(Message.create()
-                                .setType("TRANSFER")
-                                .set("transferType", "PROXY_TEMPLATE")
-                                .set("template", template)
-                                .set("file", content)
-                                .setTarget(targetId)
-                                .toString());
-                    }
-                    if (globalDifferences != null) {
-                        List<File> templateFiles = new ArrayList<>();
-                        File templateDirectory = TimoCloudCore.getInstance().getFileManager().getProxyGlobalDirectory();
-                        for (String fileName : globalDifferences)
-                            templateFiles.add(new File(templateDirectory, fileName));
-                        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-                        TimoCloudCore.getInstance().getTemplateManager().zipFiles(templateFiles, templateDirectory, outputStream);
-                        String content = byteArrayToString(outputStream.toByteArray());
-                        channel.writeAndFlush(Message.create()
-                                .setType("TRANSFER")
-                                .set("transferType", "PROXY_GLOBAL_TEMPLATE")
-                                .set("file", content)
-                                .setTarget(targetId)
-                                .toString());
-                    }
-                    doAfterAmount.setAmount(amount);
-                } catch (Exception e) {
-                    TimoCloudCore.getInstance().severe("Error while sending template files: ");
-                    e.printStackTrace();
-                }
-                break;
+        });
+    }
+
+    private void handleCheckIfDeletable(Message message, Channel channel) {
+        Communicatable target = getTarget(message, channel);
+        if (target == null || target instanceof Base) {
+            TimoCloudCore.getInstance().getSocketServerHandler().sendMessage(channel, Message.create().setType("DELETE_DIRECTORY").setData(message.get("data")));
+        }
+    }
+
+    private void handlePluginMessage(Message message, Channel channel) {
+        AddressedPluginMessage addressedPluginMessage = PluginMessageSerializer.deserialize((Map) message.get("data"));
+        TimoCloudCore.getInstance().getPluginMessageManager().onMessage(addressedPluginMessage);
+    }
+
+    private void handleServerTemplateRequest(Message message, Channel channel) {
+        Server server = getServer(message);
+        String targetId = (String) message.get("target");
+        server.getBase().setAvailableRam(server.getBase().getAvailableRam() + server.getGroup().getRam()); // Start paused, hence ram is free
+        TimoCloudCore.getInstance().info("Base requested template update for server " + server.getName() + ". Sending update and starting server again...");
+        Map differences = (Map) message.get("differences");
+        List<String> templateDifferences = differences.containsKey("templateDifferences") ? (List<String>) differences.get("templateDifferences") : null;
+        String template = message.containsKey("template") ? (String) message.get("template") : null;
+        List<String> mapDifferences = differences.containsKey("mapDifferences") ? (List<String>) differences.get("mapDifferences") : null;
+        String map = message.containsKey("map") ? (String) message.get("map") : null;
+        List<String> globalDifferences = differences.containsKey("globalDifferences") ? (List<String>) differences.get("globalDifferences") : null;
+        List<String> withoutPeers = message.containsKey("withoutPeers") ? (List<String>) message.get("withoutPeers") : new ArrayList<>();
+        if (message.containsKey("unreachablePeers")) server.getBase().addUnreachablePeers((List<String>) message.get("unreachablePeers"));
+        int amount = 0;
+        if (templateDifferences != null) amount++;
+        if (mapDifferences != null) amount++;
+        if (globalDifferences != null) amount++;
+        DoAfterAmount doAfterAmount = new DoAfterAmount(amount, server::start);
+        server.setTemplateUpdate(doAfterAmount);
+        try {
+            if (templateDifferences != null)
+                sendTemplate(channel, server.getBase(), withoutPeers, targetId, "SERVER_TEMPLATE", template, new File(TimoCloudCore.getInstance().getFileManager().getServerTemplatesDirectory(), template), templateDifferences);
+            if (mapDifferences != null) {
+                String mapTemplate = server.getGroup().getName() + "_" + map;
+                sendTemplate(channel, server.getBase(), withoutPeers, targetId, "SERVER_TEMPLATE", mapTemplate, new File(TimoCloudCore.getInstance().getFileManager().getServerTemplatesDirectory(), mapTemplate), mapDifferences);
             }
-            default:
-                target.onMessage(message);
+            if (globalDifferences != null)
+                sendTemplate(channel, server.getBase(), withoutPeers, targetId, "SERVER_GLOBAL_TEMPLATE", null, TimoCloudCore.getInstance().getFileManager().getServerGlobalDirectory(), globalDifferences);
+            doAfterAmount.setAmount(amount);
+        } catch (Exception e) {
+            TimoCloudCore.getInstance().severe("Error while sending template files: ");
+            e.printStackTrace();
+        }
+    }
+
+    private void handleProxyTemplateRequest(Message message, Channel channel) {
+        Proxy proxy = getProxy(message);
+        String targetId = (String) message.get("target");
+        proxy.getBase().setAvailableRam(proxy.getBase().getAvailableRam() + proxy.getGroup().getRam()); // Start paused, hence ram is free
+        TimoCloudCore.getInstance().info("Base requested template update for proxy " + proxy.getName() + ". Sending update and starting server again...");
+        Map differences = (Map) message.get("differences");
+        List<String> templateDifferences = differences.containsKey("templateDifferences") ? (List<String>) differences.get("templateDifferences") : null;
+        String template = message.containsKey("template") ? (String) message.get("template") : null;
+        List<String> globalDifferences = differences.containsKey("globalDifferences") ? (List<String>) differences.get("globalDifferences") : null;
+        List<String> withoutPeers = message.containsKey("withoutPeers") ? (List<String>) message.get("withoutPeers") : new ArrayList<>();
+        if (message.containsKey("unreachablePeers")) proxy.getBase().addUnreachablePeers((List<String>) message.get("unreachablePeers"));
+        int amount = 0;
+        if (templateDifferences != null) amount++;
+        if (globalDifferences != null) amount++;
+        DoAfterAmount doAfterAmount = new DoAfterAmount(amount, proxy::start);
+        proxy.setTemplateUpdate(doAfterAmount);
+        try {
+            if (templateDifferences != null)
+                sendTemplate(channel, proxy.getBase(), withoutPeers, targetId, "PROXY_TEMPLATE", template, new File(TimoCloudCore.getInstance().getFileManager().getProxyTemplatesDirectory(), template), templateDifferences);
+            if (globalDifferences != null)
+                sendTemplate(channel, proxy.getBase(), withoutPeers, targetId, "PROXY_GLOBAL_TEMPLATE", null, TimoCloudCore.getInstance().getFileManager().getProxyGlobalDirectory(), globalDifferences);
+            doAfterAmount.setAmount(amount);
+        } catch (Exception e) {
+            TimoCloudCore.getInstance().severe("Error while sending template files: ");
+            e.printStackTrace();
         }
     }
 
-    private String byteArrayToString(byte[] bytes) throws Exception {
-        return Base64.getEncoder().encodeToString(bytes);
+    private void forwardToTarget(Message message, Channel channel) {
+        getTarget(message, channel).onMessage(message);
+    }
+
+    /**
+     * Sends the given template files as soon as they are ready. Files which other bases have are only listed with these bases as
+     * peers, all others are sent as an archive. Identical requests of other bases share the same archive.
+     *
+     * @param withoutPeers Hashes of files the base could not download from peers before
+     */
+    private void sendTemplate(Channel channel, Base base, List<String> withoutPeers, String targetId, String transferType, String template, File directory, List<String> fileNames) {
+        TemplateManager templateManager = TimoCloudCore.getInstance().getTemplateManager();
+        List<File> files = new ArrayList<>();
+        for (String fileName : fileNames) files.add(new File(directory, fileName));
+        CompletableFuture<TemplateManager.TemplateTransfer> transfer;
+        if (TimoCloudCore.getInstance().isPeerDistributionEnabled()) {
+            transfer = templateManager.planTransfer(directory, files, hash -> getPeers(hash, base), withoutPeers);
+        } else {
+            TemplateManager.TemplateTransfer coreTransfer = new TemplateManager.TemplateTransfer();
+            coreTransfer.getCoreFiles().addAll(files);
+            transfer = CompletableFuture.completedFuture(coreTransfer);
+        }
+        transfer.thenCompose(plan -> (plan.getCoreFiles().isEmpty() ? CompletableFuture.<String>completedFuture(null) : templateManager.getEncodedArchive(directory, plan.getCoreFiles()))
+                .thenApply(content -> Message.create()
+                        .setType("TRANSFER")
+                        .set("transferType", transferType)
+                        .setIfCondition("template", template, template != null)
+                        .setIfCondition("file", content, content != null)
+                        .setIfCondition("peerFiles", plan.getPeerFiles(), !plan.getPeerFiles().isEmpty())
+                        .setTarget(targetId))
+        ).whenComplete((message, e) -> {
+            if (e != null) {
+                TimoCloudCore.getInstance().severe("Error while sending template files: ");
+                TimoCloudCore.getInstance().severe(e);
+                return;
+            }
+            TimoCloudCore.getInstance().getSocketServerHandler().sendMessage(channel, message);
+        });
+    }
+
+    /**
+     * @return The connected bases which can serve the given blob to the requesting base, with the address the requesting base reaches them on
+     */
+    private List<Map<String, Object>> getPeers(String hash, Base requester) {
+        List<Map<String, Object>> peers = new ArrayList<>();
+        for (String name : TimoCloudCore.getInstance().getBlobTracker().getBases(hash)) {
+            if (name.equals(requester.getName())) continue;
+            Base peer = TimoCloudCore.getInstance().getInstanceManager().getBase(name);
+            if (peer == null || !peer.isConnected() || peer.getPeerPort() < 0) continue;
+            InetAddress address = peer.getAddress().isLoopbackAddress() && !requester.getAddress().isLoopbackAddress() ? peer.getPublicAddress() : peer.getAddress();
+            if (requester.getUnreachablePeers().contains(address.getHostAddress() + ":" + peer.getPeerPort())) continue;
+            peers.add(Message.create().set("address", address.getHostAddress()).set("port", peer.getPeerPort()).set("token", peer.getPeerToken()));
+        }
+        return peers;
     }
 
     private boolean ipAllowed(InetAddress inetAddress) {
@@ -336,4 +467,21 @@ public class CoreStringHandler extends BasicStringHandler {
         return false;
     }
 
+    /**
+     * Enables compression if the client supports the configured algorithm. Clients on the same machine are never compressed.
+     */
+    private void negotiateCompression(Channel channel, Message message) {
+        if (getAddress(channel).isLoopbackAddress()) return;
+        String algorithm = StreamCompression.negotiate((List<String>) message.get("compression"), TimoCloudCore.getInstance().getCompressionAlgorithm());
+        if (algorithm == null) return;
+        int threshold = TimoCloudCore.getInstance().getCompressionThreshold();
+        TimoCloudCore.getInstance().getSocketServerHandler().sendMessage(channel, Message.create()
+                .setType("COMPRESSION")
+                .set("algorithm", algorithm)
+                .set("threshold", threshold));
+        // Writes from other threads are queued on the event loop, so the encoder is only added after the answer has been written
+        if (channel.eventLoop().inEventLoop()) StreamCompression.enable(channel, algorithm, threshold);
+        else channel.eventLoop().execute(() -> StreamCompression.enable(channel, algorithm, threshold));
+    }
+
 }
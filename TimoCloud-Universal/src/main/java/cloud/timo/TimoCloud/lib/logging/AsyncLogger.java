@@ -0,0 +1,137 @@
+package cloud.timo.TimoCloud.lib.logging;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+
+/**
+ * Logs without doing any I/O on the calling thread. Entries are put into a {@link LogRingBuffer} in constant time and written
+ * in batches by a single daemon thread, so the sinks are flushed once per batch instead of once per line.
+ * If the buffer is full, entries are dropped and the number of dropped entries is logged as soon as there is space again.
+ */
+public class AsyncLogger {
+
+    private static final int DEFAULT_CAPACITY = 8192;
+    private static final int MAX_BATCH_SIZE = 512;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final LogRingBuffer<LogEntry> buffer;
+    private final List<LogSink> sinks;
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread writer;
+    private volatile Level minimumLevel = Level.INFO;
+    private volatile boolean idle = false;
+    private volatile boolean running = true;
+
+    public AsyncLogger(String name, LogSink... sinks) {
+        this(name, DEFAULT_CAPACITY, sinks);
+    }
+
+    public AsyncLogger(String name, int capacity, LogSink... sinks) {
+        this.buffer = new LogRingBuffer<>(capacity);
+        this.sinks = Arrays.asList(sinks);
+        this.writer = new Thread(this::run, name + "-Logger");
+        this.writer.setDaemon(true);
+        this.writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close));
+    }
+
+    public boolean isLoggable(Level level) {
+        return level.intValue() >= minimumLevel.intValue();
+    }
+
+    public void log(Level level, String message) {
+        log(level, message, null);
+    }
+
+    public void log(Level level, String message, Throwable throwable) {
+        if (!isLoggable(level)) return;
+        if (!buffer.offer(new LogEntry(System.currentTimeMillis(), level, message, throwable))) {
+            dropped.incrementAndGet();
+            return;
+        }
+        if (idle) LockSupport.unpark(writer);
+    }
+
+    private void run() {
+        List<LogEntry> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        while (running) {
+            if (drain(batch) == 0) {
+                idle = true;
+                if (drain(batch) == 0) LockSupport.parkNanos(this, IDLE_PARK_NANOS); // Check again, a producer might have missed the idle flag
+                idle = false;
+            }
+        }
+        drain(batch);
+    }
+
+    /**
+     * Writes all buffered entries
+     *
+     * @return The number of written entries
+     */
+    private int drain(List<LogEntry> batch) {
+        int total = 0;
+        while (true) {
+            long droppedEntries = dropped.getAndSet(0);
+            if (droppedEntries > 0) batch.add(new LogEntry(System.currentTimeMillis(), Level.WARNING, droppedEntries + " log messages have been dropped because logging could not keep up", null));
+            LogEntry entry;
+            while (batch.size() < MAX_BATCH_SIZE && (entry = buffer.poll()) != null) batch.add(entry);
+            if (batch.isEmpty()) return total;
+            for (LogSink sink : sinks) {
+                try {
+                    sink.write(batch);
+                } catch (Exception e) {
+                    System.err.println("Error while writing log: " + e);
+                }
+            }
+            total += batch.size();
+            batch.clear();
+        }
+    }
+
+    /**
+     * Writes all remaining entries and closes the sinks
+     */
+    public void close() {
+        if (!running) return;
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (LogSink sink : sinks) {
+            try {
+                sink.close();
+            } catch (IOException e) {
+                System.err.println("Error while closing log: " + e);
+            }
+        }
+    }
+
+    public Level getMinimumLevel() {
+        return minimumLevel;
+    }
+
+    public void setMinimumLevel(Level minimumLevel) {
+        this.minimumLevel = minimumLevel;
+    }
+
+    /**
+     * @return The stack trace of the given throwable, one element per line
+     */
+    public static String[] getStackTraceLines(Throwable throwable) {
+        StringWriter stringWriter = new StringWriter();
+        throwable.printStackTrace(new PrintWriter(stringWriter));
+        return stringWriter.toString().split("\\r?\\n");
+    }
+}
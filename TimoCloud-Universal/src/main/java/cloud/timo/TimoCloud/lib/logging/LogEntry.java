@@ -0,0 +1,37 @@
+package cloud.timo.TimoCloud.lib.logging;
+
+import java.util.logging.Level;
+
+/**
+ * A message which has been logged but not written yet. Stack traces are only rendered by the writing thread.
+ */
+public class LogEntry {
+
+    private final long time;
+    private final Level level;
+    private final String message;
+    private final Throwable throwable;
+
+    public LogEntry(long time, Level level, String message, Throwable throwable) {
+        this.time = time;
+        this.level = level;
+        this.message = message;
+        this.throwable = throwable;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public Throwable getThrowable() {
+        return throwable;
+    }
+}
@@ -0,0 +1,47 @@
+package cloud.timo.TimoCloud.lib.logging;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits how often a frequently hit log statement actually logs, e.g. one line per player connect.
+ * Messages beyond the limit are counted so the next message can mention them.
+ */
+public class LogRateLimit {
+
+    private final int maxPerSecond;
+    private final AtomicLong windowStart = new AtomicLong();
+    private final AtomicInteger count = new AtomicInteger();
+    private final AtomicInteger suppressed = new AtomicInteger();
+
+    public LogRateLimit(int maxPerSecond) {
+        this.maxPerSecond = maxPerSecond;
+    }
+
+    /**
+     * @param now Current time in milliseconds
+     * @return Whether the message should be logged
+     */
+    public boolean tryAcquire(long now) {
+        long start = windowStart.get();
+        if (now - start >= 1000 && windowStart.compareAndSet(start, now)) count.set(0);
+        if (count.incrementAndGet() <= maxPerSecond) return true;
+        suppressed.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * @return The number of suppressed messages since the last call
+     */
+    public int drainSuppressed() {
+        return suppressed.getAndSet(0);
+    }
+
+    /**
+     * Appends the number of suppressed messages, if any
+     */
+    public String withSuppressed(String message) {
+        int suppressed = drainSuppressed();
+        return suppressed == 0 ? message : message + " (" + suppressed + " similar messages suppressed)";
+    }
+}
@@ -0,0 +1,15 @@
+package cloud.timo.TimoCloud.lib.logging;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Destination of log entries. Only called by the writing thread of an {@link AsyncLogger}, always with a whole batch.
+ */
+public interface LogSink {
+
+    void write(List<LogEntry> entries) throws IOException;
+
+    default void close() throws IOException {
+    }
+}
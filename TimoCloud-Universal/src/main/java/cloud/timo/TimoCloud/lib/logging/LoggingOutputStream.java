@@ -1,34 +1,51 @@
 package cloud.timo.TimoCloud.lib.logging;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.charset.Charset;
 import java.util.function.Consumer;
 
 public class LoggingOutputStream extends OutputStream {
 
     private Consumer<String> logger;
-    private StringBuilder stringBuilder;
+    private ByteArrayOutputStream buffer;
 
     public LoggingOutputStream(Consumer<String> logger) {
         this.logger = logger;
-        stringBuilder = new StringBuilder();
+        buffer = new ByteArrayOutputStream();
     }
 
     @Override
     public void write(int b) throws IOException {
-        byte[] bytes = new byte[1];
-        bytes[0] = (byte) (b & 0xff);
-        stringBuilder.append(new String(bytes));
+        if (b == '\n') {
+            emit();
+            return;
+        }
+        buffer.write(b);
+    }
 
-        if (stringBuilder.length() >= 2 && stringBuilder.charAt(stringBuilder.length()-1) == '\n') {
-            logger.accept(stringBuilder.substring(0, stringBuilder.length()-1));
-            stringBuilder = new StringBuilder();
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        int start = off;
+        for (int i = off; i < off + len; i++) {
+            if (b[i] != '\n') continue;
+            buffer.write(b, start, i - start);
+            emit();
+            start = i + 1;
         }
+        buffer.write(b, start, off + len - start);
     }
 
     @Override
     public void flush() throws IOException {
-        logger.accept(stringBuilder.toString());
-        stringBuilder = new StringBuilder();
+        if (buffer.size() > 0) emit();
+    }
+
+    private void emit() {
+        String line = new String(buffer.toByteArray(), Charset.defaultCharset());
+        buffer.reset();
+        if (line.endsWith("\r")) line = line.substring(0, line.length() - 1);
+        logger.accept(line);
     }
 }
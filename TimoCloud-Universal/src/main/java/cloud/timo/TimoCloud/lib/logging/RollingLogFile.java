@@ -0,0 +1,149 @@
+package cloud.timo.TimoCloud.lib.logging;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Writes log entries to files named {@code <prefix>-<date>-<index>.log}. A new file is started when the day changes or the
+ * current file exceeds the maximum size, and only the newest files are kept.
+ * Every entry is a single tab-separated line: time, level and message. Line breaks and tabs in messages and stack traces are
+ * escaped, so the files can be processed line by line.
+ */
+public class RollingLogFile implements LogSink {
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS");
+
+    private final File directory;
+    private final String prefix;
+    private final long maxFileSize;
+    private final int maxFiles;
+    private final Pattern namePattern;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private OutputStream output;
+    private LocalDate date;
+    private long size;
+
+    public RollingLogFile(File directory, String prefix, long maxFileSize, int maxFiles) {
+        this.directory = directory;
+        this.prefix = prefix;
+        this.maxFileSize = maxFileSize;
+        this.maxFiles = maxFiles;
+        this.namePattern = Pattern.compile(Pattern.quote(prefix) + "-(\\d{4}-\\d{2}-\\d{2})-(\\d+)\\.log");
+    }
+
+    @Override
+    public void write(List<LogEntry> entries) throws IOException {
+        StringBuilder line = new StringBuilder();
+        for (LogEntry entry : entries) {
+            line.setLength(0);
+            format(entry, line);
+            LocalDate entryDate = Instant.ofEpochMilli(entry.getTime()).atZone(zone).toLocalDate();
+            if (output == null || !entryDate.equals(date) || size >= maxFileSize) rotate(entryDate);
+            byte[] bytes = line.toString().getBytes(StandardCharsets.UTF_8);
+            output.write(bytes);
+            size += bytes.length;
+        }
+        output.flush();
+    }
+
+    void format(LogEntry entry, StringBuilder line) {
+        TIME_FORMAT.formatTo(Instant.ofEpochMilli(entry.getTime()).atZone(zone), line);
+        line.append('\t').append(entry.getLevel().getName()).append('\t');
+        escape(entry.getMessage(), line);
+        if (entry.getThrowable() != null) {
+            for (String stackTraceLine : AsyncLogger.getStackTraceLines(entry.getThrowable())) {
+                line.append("\\n");
+                escape(stackTraceLine, line);
+            }
+        }
+        line.append('\n');
+    }
+
+    private static void escape(String message, StringBuilder line) {
+        if (message == null) return;
+        for (int i = 0; i < message.length(); i++) {
+            char c = message.charAt(i);
+            switch (c) {
+                case '\\':
+                    line.append("\\\\");
+                    break;
+                case '\n':
+                    line.append("\\n");
+                    break;
+                case '\r':
+                    break;
+                case '\t':
+                    line.append("\\t");
+                    break;
+                default:
+                    line.append(c);
+            }
+        }
+    }
+
+    private void rotate(LocalDate date) throws IOException {
+        close();
+        directory.mkdirs();
+        int index = getLastIndex(date);
+        if (index < 0) index = 0;
+        else if (date.equals(this.date) || getFile(date, index).length() >= maxFileSize) index++;
+        File file = getFile(date, index);
+        this.output = new BufferedOutputStream(new FileOutputStream(file, true));
+        this.date = date;
+        this.size = file.length();
+        deleteOldFiles();
+    }
+
+    private File getFile(LocalDate date, int index) {
+        return new File(directory, prefix + "-" + date + "-" + index + ".log");
+    }
+
+    /**
+     * @return The highest index of the given day's files, -1 if there are none
+     */
+    private int getLastIndex(LocalDate date) {
+        int index = -1;
+        for (Matcher matcher : getFiles()) {
+            if (matcher.group(1).equals(date.toString())) index = Math.max(index, Integer.parseInt(matcher.group(2)));
+        }
+        return index;
+    }
+
+    private List<Matcher> getFiles() {
+        List<Matcher> files = new ArrayList<>();
+        String[] names = directory.list();
+        if (names == null) return files;
+        for (String name : names) {
+            Matcher matcher = namePattern.matcher(name);
+            if (matcher.matches()) files.add(matcher);
+        }
+        return files;
+    }
+
+    /**
+     * Deletes the oldest files by their date and index, modification times are too coarse to tell files apart which have
+     * been written within the same moment
+     */
+    private void deleteOldFiles() {
+        List<Matcher> files = getFiles();
+        if (files.size() <= maxFiles) return;
+        files.sort(Comparator.<Matcher, String>comparing(matcher -> matcher.group(1)).thenComparingInt(matcher -> Integer.parseInt(matcher.group(2))));
+        for (int i = 0; i < files.size() - maxFiles; i++) new File(directory, files.get(i).group()).delete();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (output == null) return;
+        output.close();
+        output = null;
+    }
+}
@@ -0,0 +1,232 @@
+package cloud.timo.TimoCloud.lib.profiling;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The only class which uses the Flight Recorder API. It is accessed through reflection, so TimoCloud compiles against Java 8
+ * and this class simply fails to initialize on JVMs without it. TimoCloud's event types are defined at runtime.
+ */
+class JfrProfiling {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+
+    private static final Class<?> EVENT = load("Event");
+    private static final Class<?> EVENT_FACTORY = load("EventFactory");
+    private static final Class<?> ANNOTATION_ELEMENT = load("AnnotationElement");
+    private static final Class<?> VALUE_DESCRIPTOR = load("ValueDescriptor");
+    private static final Class<?> RECORDING = load("Recording");
+    private static final Class<?> CONFIGURATION = load("Configuration");
+
+    private static final MethodHandle NEW_EVENT = findVirtual(EVENT_FACTORY, "newEvent", EVENT);
+    private static final MethodHandle IS_ENABLED = findVirtual(EVENT, "isEnabled", boolean.class);
+    private static final MethodHandle SHOULD_COMMIT = findVirtual(EVENT, "shouldCommit", boolean.class);
+    private static final MethodHandle BEGIN = findVirtual(EVENT, "begin", void.class);
+    private static final MethodHandle END = findVirtual(EVENT, "end", void.class);
+    private static final MethodHandle COMMIT = findVirtual(EVENT, "commit", void.class);
+    private static final MethodHandle SET = findVirtual(EVENT, "set", void.class, int.class, Object.class);
+
+    private static final Object MESSAGE_DISPATCH = createEventType("MessageDispatch", "Message Dispatch", "Sockets",
+            "Handling of a message received on a TimoCloud socket",
+            field(String.class, "handler", "Handler"),
+            field(String.class, "messageType", "Message Type"),
+            field(long.class, "size", "Size", annotation("DataAmount", "BYTES")));
+    private static final Object INSTANCE_DEMANDS = createEventType("InstanceDemands", "Instance Demands", "Instances",
+            "One tick of deciding which instances to start and stop");
+    private static final Object INSTANCE_START_STAGE = createEventType("InstanceStartStage", "Instance Start Stage", "Instances",
+            "One stage of starting a server or proxy on a base",
+            field(String.class, "instance", "Instance"),
+            field(String.class, "stage", "Stage"));
+    private static final Object TEMPLATE_OPERATION = createEventType("TemplateOperation", "Template Operation", "Templates",
+            "Hashing or archiving template files",
+            field(String.class, "operation", "Operation"),
+            field(String.class, "path", "Path"));
+    private static final Object EVENT_FAN_OUT = createEventType("EventFanOut", "Event Fan-Out", "Events",
+            "Sending an API event to all instances and calling local listeners",
+            field(String.class, "eventType", "Event Type"),
+            field(int.class, "receivers", "Receivers"));
+    private static final Object CONNECT = createEventType("Connect", "Connect", "Cord",
+            "Connecting a player from the cord to a proxy",
+            field(String.class, "proxy", "Proxy"),
+            field(String.class, "hostName", "Host Name"));
+
+    private static Object recording;
+
+    private static Class<?> load(String name) {
+        try {
+            return Class.forName("jdk.jfr." + name);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Java Flight Recorder is not available", e);
+        }
+    }
+
+    private static MethodHandle findVirtual(Class<?> type, String name, Class<?> returnType, Class<?>... parameterTypes) {
+        try {
+            return LOOKUP.findVirtual(type, name, MethodType.methodType(returnType, parameterTypes));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Object annotation(String type, Object value) {
+        try {
+            return ANNOTATION_ELEMENT.getConstructor(Class.class, Object.class).newInstance(load(type), value);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Object field(Class<?> type, String name, String label, Object... annotations) {
+        List<Object> elements = new ArrayList<>(Arrays.asList(annotations));
+        elements.add(annotation("Label", label));
+        try {
+            return VALUE_DESCRIPTOR.getConstructor(Class.class, String.class, List.class).newInstance(type, name, elements);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return An EventFactory for events named "timocloud.&lt;name&gt;", which are configured in {@link Profiling#SETTINGS}
+     */
+    private static Object createEventType(String name, String label, String category, String description, Object... fields) {
+        List<Object> annotations = Arrays.asList(
+                annotation("Name", "timocloud." + name),
+                annotation("Label", label),
+                annotation("Category", new String[]{"TimoCloud", category}),
+                annotation("Description", description),
+                annotation("StackTrace", false));
+        try {
+            return EVENT_FACTORY.getMethod("create", List.class, List.class).invoke(null, annotations, Arrays.asList(fields));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static boolean isAvailable() {
+        try {
+            return (Boolean) load("FlightRecorder").getMethod("isAvailable").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return false;
+        }
+    }
+
+    private static ProfilingSpan begin(Object eventType, Object... values) {
+        try {
+            Object event = NEW_EVENT.invoke(eventType);
+            if (!(boolean) IS_ENABLED.invoke(event)) return ProfilingSpan.NONE;
+            for (int i = 0; i < values.length; i++) SET.invoke(event, i, values[i]);
+            BEGIN.invoke(event);
+            return () -> {
+                try {
+                    END.invoke(event);
+                    if ((boolean) SHOULD_COMMIT.invoke(event)) COMMIT.invoke(event);
+                } catch (Throwable e) {
+                    throw new IllegalStateException(e);
+                }
+            };
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static ProfilingSpan messageDispatch(String handler, String messageType, long size) {
+        return begin(MESSAGE_DISPATCH, handler, messageType, size);
+    }
+
+    static ProfilingSpan instanceDemands() {
+        return begin(INSTANCE_DEMANDS);
+    }
+
+    static ProfilingSpan instanceStartStage(String instance, String stage) {
+        return begin(INSTANCE_START_STAGE, instance, stage);
+    }
+
+    static ProfilingSpan templateOperation(String operation, String path) {
+        return begin(TEMPLATE_OPERATION, operation, path);
+    }
+
+    static ProfilingSpan eventFanOut(String eventType, int receivers) {
+        return begin(EVENT_FAN_OUT, eventType, receivers);
+    }
+
+    static ProfilingSpan connect(String proxy, String hostName) {
+        return begin(CONNECT, proxy, hostName);
+    }
+
+    static synchronized boolean isRecording() {
+        return recording != null;
+    }
+
+    /**
+     * Starts a recording with the JVM's default settings plus TimoCloud's events as configured in {@link Profiling#SETTINGS}
+     */
+    @SuppressWarnings("unchecked")
+    static synchronized void startRecording() throws IOException, ParseException {
+        if (recording != null) throw new IllegalStateException("A recording is already running");
+        try {
+            Map<String, String> settings = new HashMap<>((Map<String, String>) CONFIGURATION.getMethod("getSettings")
+                    .invoke(CONFIGURATION.getMethod("getConfiguration", String.class).invoke(null, "default")));
+            try (Reader reader = new InputStreamReader(JfrProfiling.class.getResourceAsStream(Profiling.SETTINGS), StandardCharsets.UTF_8)) {
+                settings.putAll((Map<String, String>) CONFIGURATION.getMethod("getSettings")
+                        .invoke(CONFIGURATION.getMethod("create", Reader.class).invoke(null, reader)));
+            }
+            Object recording = RECORDING.getConstructor(Map.class).newInstance(settings);
+            RECORDING.getMethod("setName", String.class).invoke(recording, "TimoCloud");
+            RECORDING.getMethod("setToDisk", boolean.class).invoke(recording, true);
+            RECORDING.getMethod("start").invoke(recording);
+            JfrProfiling.recording = recording;
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            if (e.getCause() instanceof ParseException) throw (ParseException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static synchronized void dumpRecording(File file) throws IOException {
+        if (recording == null) throw new IllegalStateException("No recording is running");
+        invokeRecording("dump", file.toPath());
+    }
+
+    static synchronized void stopRecording(File file) throws IOException {
+        if (recording == null) throw new IllegalStateException("No recording is running");
+        try {
+            invokeRecording("stop", null);
+            invokeRecording("dump", file.toPath());
+        } finally {
+            invokeRecording("close", null);
+            recording = null;
+        }
+    }
+
+    /**
+     * Calls a method of the running recording which either takes no arguments or the path to write to
+     */
+    private static void invokeRecording(String method, Path path) throws IOException {
+        try {
+            if (path == null) RECORDING.getMethod(method).invoke(recording);
+            else RECORDING.getMethod(method, Path.class).invoke(recording, path);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
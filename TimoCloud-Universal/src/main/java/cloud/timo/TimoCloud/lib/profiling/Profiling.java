@@ -0,0 +1,104 @@
+package cloud.timo.TimoCloud.lib.profiling;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.ParseException;
+
+/**
+ * Records TimoCloud's critical paths as Java Flight Recorder events. While no recording is running, a span costs one
+ * allocation and a flag check. On JVMs without Flight Recorder, e.g. Java 8 builds before 8u262, every span is a no-op,
+ * so callers never have to check whether profiling is possible.
+ */
+public class Profiling {
+
+    /**
+     * Settings of TimoCloud's events, usable with -XX:StartFlightRecording:settings= when extracted from the jar
+     */
+    public static final String SETTINGS = "/profiling/timocloud.jfc";
+
+    private static final boolean AVAILABLE = isFlightRecorderAvailable();
+
+    private static boolean isFlightRecorderAvailable() {
+        try {
+            Class.forName("jdk.jfr.FlightRecorder");
+            return JfrProfiling.isAvailable();
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+
+    public static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    /**
+     * Handling of a received socket message
+     */
+    public static ProfilingSpan messageDispatch(String handler, String messageType, long size) {
+        return AVAILABLE ? JfrProfiling.messageDispatch(handler, messageType, size) : ProfilingSpan.NONE;
+    }
+
+    /**
+     * One tick of the core deciding which instances to start or stop
+     */
+    public static ProfilingSpan instanceDemands() {
+        return AVAILABLE ? JfrProfiling.instanceDemands() : ProfilingSpan.NONE;
+    }
+
+    /**
+     * A stage of starting an instance on a base, e.g. checking its template or launching its process
+     */
+    public static ProfilingSpan instanceStartStage(String instance, String stage) {
+        return AVAILABLE ? JfrProfiling.instanceStartStage(instance, stage) : ProfilingSpan.NONE;
+    }
+
+    /**
+     * Hashing or archiving template files
+     */
+    public static ProfilingSpan templateOperation(String operation, String path) {
+        return AVAILABLE ? JfrProfiling.templateOperation(operation, path) : ProfilingSpan.NONE;
+    }
+
+    /**
+     * Distributing an API event to its receivers
+     */
+    public static ProfilingSpan eventFanOut(String eventType, int receivers) {
+        return AVAILABLE ? JfrProfiling.eventFanOut(eventType, receivers) : ProfilingSpan.NONE;
+    }
+
+    /**
+     * Connecting a player from the cord to a proxy
+     */
+    public static ProfilingSpan connect(String proxy, String hostName) {
+        return AVAILABLE ? JfrProfiling.connect(proxy, hostName) : ProfilingSpan.NONE;
+    }
+
+    public static boolean isRecording() {
+        return AVAILABLE && JfrProfiling.isRecording();
+    }
+
+    public static void startRecording() throws IOException, ParseException {
+        checkAvailable();
+        JfrProfiling.startRecording();
+    }
+
+    /**
+     * Writes everything recorded so far to the given file while the recording continues
+     */
+    public static void dumpRecording(File file) throws IOException {
+        checkAvailable();
+        JfrProfiling.dumpRecording(file);
+    }
+
+    /**
+     * Stops the recording and writes it to the given file
+     */
+    public static void stopRecording(File file) throws IOException {
+        checkAvailable();
+        JfrProfiling.stopRecording(file);
+    }
+
+    private static void checkAvailable() {
+        if (!AVAILABLE) throw new IllegalStateException("Java Flight Recorder is not available on this JVM");
+    }
+}
@@ -0,0 +1,12 @@
+package cloud.timo.TimoCloud.lib.profiling;
+
+/**
+ * A timed section of code which is recorded as a Flight Recorder event once it is closed
+ */
+public interface ProfilingSpan extends AutoCloseable {
+
+    ProfilingSpan NONE = () -> {};
+
+    @Override
+    void close();
+}
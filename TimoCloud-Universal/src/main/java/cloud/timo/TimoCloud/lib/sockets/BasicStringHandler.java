@@ -1,12 +1,14 @@
 package cloud.timo.TimoCloud.lib.sockets;
 
 import cloud.timo.TimoCloud.lib.messages.Message;
+import cloud.timo.TimoCloud.lib.profiling.Profiling;
+import cloud.timo.TimoCloud.lib.profiling.ProfilingSpan;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public abstract class BasicStringHandler extends SimpleChannelInboundHandler<String> {
 
@@ -15,9 +17,9 @@ public abstract class BasicStringHandler extends SimpleChannelInboundHandler<Str
     private Map<Channel, Boolean> isString;
 
     public BasicStringHandler() {
-        open = new HashMap<>();
-        parsed = new HashMap<>();
-        isString = new HashMap<>();
+        open = new ConcurrentHashMap<>();
+        parsed = new ConcurrentHashMap<>();
+        isString = new ConcurrentHashMap<>();
     }
 
     @Override
@@ -36,7 +38,13 @@ public abstract class BasicStringHandler extends SimpleChannelInboundHandler<Str
                 if (getOpen(channel) == 0) {
                     try {
                         String parsed = getParsed(channel).toString();
-                        handleMessage(Message.createFromJsonString(parsed), parsed, channel);
+                        Message parsedMessage = Message.createFromJsonString(parsed);
+                        ProfilingSpan span = Profiling.messageDispatch(getClass().getSimpleName(), parsedMessage.getType(), parsed.length());
+                        try {
+                            handleMessage(parsedMessage, parsed, channel);
+                        } finally {
+                            span.close();
+                        }
                     } catch (Exception e) {
                         System.err.println("Error while parsing JSON message: " + getParsed(channel));
                         e.printStackTrace();
@@ -47,6 +55,17 @@ public abstract class BasicStringHandler extends SimpleChannelInboundHandler<Str
         }
     }
 
+    /**
+     * Forgets the parser state of a closed channel, clients open a new channel every time they reconnect
+     */
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        open.remove(ctx.channel());
+        parsed.remove(ctx.channel());
+        isString.remove(ctx.channel());
+        super.channelInactive(ctx);
+    }
+
     public abstract void handleMessage(Message message, String originalMessage, Channel channel);
 
     private int getOpen(Channel channel) {
@@ -0,0 +1,111 @@
+package cloud.timo.TimoCloud.lib.sockets;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Decides what a server or proxy does when its connection to the core is lost.
+ * Instead of shutting down right away, it keeps trying to reconnect for as long as the core waits for instances to come back
+ * after a restart (the core sends this timeout with its handshake). Only if that time has passed, if the core has refused the
+ * instance or if the instance has never been connected at all, it gives up.
+ */
+public class CoreReconnector {
+
+    private static final long RECONNECT_INTERVAL_MILLIS = 1000;
+
+    private final Runnable connect;
+    private final Runnable giveUp;
+    private final Consumer<String> log;
+    private final ScheduledExecutorService scheduler;
+    private long timeoutMillis;
+    private long disconnectedSince;
+    private boolean handshakeDone;
+    private boolean refused;
+    private boolean reconnectPending;
+    private boolean gaveUp;
+
+    /**
+     * @param connect Opens a new connection to the core, has to call {@link #onDisconnected()} if it fails
+     * @param giveUp  Shuts the instance down
+     */
+    public CoreReconnector(Runnable connect, Runnable giveUp, Consumer<String> log) {
+        this.connect = connect;
+        this.giveUp = giveUp;
+        this.log = log;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("TimoCloud-Reconnect", true));
+    }
+
+    /**
+     * @param timeoutSeconds How long the core waits for its instances to reconnect after a restart, 0 if it does not
+     */
+    public synchronized void onHandshakeSuccess(long timeoutSeconds) {
+        this.timeoutMillis = TimeUnit.SECONDS.toMillis(Math.max(0, timeoutSeconds));
+        if (disconnectedSince != 0) log.accept("Reconnected to TimoCloudCore after " + (System.currentTimeMillis() - disconnectedSince) / 1000 + " seconds.");
+        this.disconnectedSince = 0;
+        this.handshakeDone = true;
+    }
+
+    /**
+     * @return Whether the current connection is a reconnection, i.e. the instance has been connected to a core before
+     */
+    public synchronized boolean isReconnecting() {
+        return handshakeDone && disconnectedSince != 0;
+    }
+
+    /**
+     * @return Whether a handshake with the core has ever succeeded
+     */
+    public synchronized boolean hasBeenConnected() {
+        return handshakeDone;
+    }
+
+    /**
+     * Called when the core has told the instance that it does not know it anymore
+     */
+    public synchronized void onRefused() {
+        this.refused = true;
+    }
+
+    /**
+     * Called whenever the connection has been closed or could not be established. May be called several times for the same
+     * connection.
+     */
+    public void onDisconnected() {
+        boolean stop;
+        synchronized (this) {
+            if (gaveUp || reconnectPending) return;
+            long now = System.currentTimeMillis();
+            if (disconnectedSince == 0 && handshakeDone && !refused && timeoutMillis > 0) {
+                disconnectedSince = now;
+                log.accept("Disconnected from TimoCloudCore. Buffering messages and trying to reconnect for up to " + timeoutMillis / 1000 + " seconds...");
+            }
+            stop = !handshakeDone || refused || timeoutMillis <= 0 || now - disconnectedSince > timeoutMillis;
+            if (stop) {
+                gaveUp = true;
+            } else {
+                reconnectPending = true;
+            }
+        }
+        if (stop) {
+            log.accept(refused ? "TimoCloudCore refused the connection." : "Disconnected from TimoCloudCore.");
+            giveUp.run();
+            return;
+        }
+        scheduler.schedule(this::reconnect, RECONNECT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private void reconnect() {
+        synchronized (this) {
+            reconnectPending = false;
+        }
+        try {
+            connect.run();
+        } catch (Exception e) {
+            onDisconnected();
+        }
+    }
+}
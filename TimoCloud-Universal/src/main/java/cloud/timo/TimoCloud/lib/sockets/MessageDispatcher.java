@@ -0,0 +1,246 @@
+package cloud.timo.TimoCloud.lib.sockets;
+
+import cloud.timo.TimoCloud.lib.messages.Message;
+import cloud.timo.TimoCloud.lib.profiling.Profiling;
+import cloud.timo.TimoCloud.lib.profiling.ProfilingSpan;
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
+
+/**
+ * Hands received messages to the handler registered for their type.
+ * Non-blocking handlers run directly on the channel's I/O thread. Blocking handlers, e.g. ones which build archives, resolve
+ * host names or call plugin listeners, run on a bounded worker pool, so they cannot stall other channels of the same event loop.
+ * Messages of one channel are always handled in the order they have been received: while a channel has messages waiting for a
+ * worker, all its further messages are queued behind them, even non-blocking ones. If too many messages of one channel are
+ * waiting, reading from it is paused until the workers have caught up.
+ */
+public class MessageDispatcher {
+
+    private static final AttributeKey<SenderQueue> QUEUE = AttributeKey.valueOf("dispatchqueue");
+    private static final int PAUSE_READING_AT = 1024;
+    private static final int RESUME_READING_AT = 256;
+
+    private final String name;
+    private final ExecutorService workers;
+    private final Map<String, Registration> handlers;
+    private final Map<String, MessageTypeStatistics> statistics;
+    private final BiConsumer<Message, Exception> errorHandler;
+    private volatile Registration defaultHandler;
+
+    /**
+     * @param name         Used to name the worker threads and in profiling events
+     * @param threads      Maximum number of blocking handlers running at the same time, at least one
+     * @param errorHandler Reports exceptions thrown by handlers, e.g. to the instance's log
+     */
+    public MessageDispatcher(String name, int threads, BiConsumer<Message, Exception> errorHandler) {
+        this.name = name;
+        this.workers = Executors.newFixedThreadPool(Math.max(1, threads), new DefaultThreadFactory(name, true));
+        this.handlers = new ConcurrentHashMap<>();
+        this.statistics = new ConcurrentHashMap<>();
+        this.errorHandler = errorHandler;
+    }
+
+    /**
+     * @param blocking Whether the handler may block or take long, so it has to run on a worker thread
+     */
+    public void register(String type, boolean blocking, Handler handler) {
+        handlers.put(type, new Registration(blocking, handler));
+    }
+
+    /**
+     * Sets the handler of all types which have no handler registered
+     */
+    public void setDefaultHandler(boolean blocking, Handler handler) {
+        this.defaultHandler = new Registration(blocking, handler);
+    }
+
+    /**
+     * Has to be called on the channel's I/O thread, in the order the messages have been received
+     */
+    public void dispatch(Message message, Channel channel) {
+        Registration registration = handlers.getOrDefault(String.valueOf(message.getType()), defaultHandler);
+        if (registration == null) return;
+        MessageTypeStatistics typeStatistics = getStatistics(message.getType());
+        Task task = new Task(registration, message, channel, typeStatistics);
+        SenderQueue queue = getQueue(channel);
+        synchronized (queue) {
+            if (queue.isIdle() && !registration.isBlocking()) {
+                queue.setInline(true);
+            } else {
+                boolean start = !queue.isRunning();
+                typeStatistics.onQueued();
+                queue.getTasks().add(task);
+                if (queue.getTasks().size() >= PAUSE_READING_AT) channel.config().setAutoRead(false);
+                if (start) {
+                    queue.setRunning(true);
+                    workers.execute(() -> drain(queue, channel));
+                }
+                return;
+            }
+        }
+        try {
+            task.run();
+        } finally {
+            synchronized (queue) {
+                queue.setInline(false);
+            }
+        }
+    }
+
+    /**
+     * Runs the next task of a channel and then hands the channel back to the pool, so a busy channel does not occupy a worker
+     * while others are waiting
+     */
+    private void drain(SenderQueue queue, Channel channel) {
+        Task task;
+        synchronized (queue) {
+            task = queue.getTasks().poll();
+            if (task == null) {
+                queue.setRunning(false);
+                return;
+            }
+            if (queue.getTasks().size() <= RESUME_READING_AT && !channel.config().isAutoRead()) channel.config().setAutoRead(true);
+        }
+        task.getStatistics().onDequeued(System.nanoTime() - task.getCreated());
+        try {
+            task.run();
+        } finally {
+            synchronized (queue) {
+                if (queue.getTasks().isEmpty()) {
+                    queue.setRunning(false);
+                } else {
+                    workers.execute(() -> drain(queue, channel));
+                }
+            }
+        }
+    }
+
+    private SenderQueue getQueue(Channel channel) {
+        SenderQueue queue = channel.attr(QUEUE).get();
+        if (queue == null) {
+            SenderQueue previous = channel.attr(QUEUE).setIfAbsent(queue = new SenderQueue());
+            if (previous != null) queue = previous;
+        }
+        return queue;
+    }
+
+    private MessageTypeStatistics getStatistics(String type) {
+        return statistics.computeIfAbsent(String.valueOf(type), MessageTypeStatistics::new);
+    }
+
+    /**
+     * @return Statistics of all message types which have been received so far, sorted by type
+     */
+    public Map<String, MessageTypeStatistics> getStatistics() {
+        return Collections.unmodifiableMap(new TreeMap<>(statistics));
+    }
+
+    public void shutdown() {
+        workers.shutdown();
+    }
+
+    @FunctionalInterface
+    public interface Handler {
+
+        void handle(Message message, Channel channel) throws Exception;
+    }
+
+    private class Task implements Runnable {
+
+        private final Registration registration;
+        private final Message message;
+        private final Channel channel;
+        private final MessageTypeStatistics statistics;
+        private final long created;
+
+        private Task(Registration registration, Message message, Channel channel, MessageTypeStatistics statistics) {
+            this.registration = registration;
+            this.message = message;
+            this.channel = channel;
+            this.statistics = statistics;
+            this.created = System.nanoTime();
+        }
+
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+            ProfilingSpan span = registration.isBlocking() ? Profiling.messageDispatch(name, message.getType(), 0) : ProfilingSpan.NONE;
+            try {
+                registration.getHandler().handle(message, channel);
+            } catch (Exception e) {
+                errorHandler.accept(message, e);
+            } finally {
+                span.close();
+                statistics.onHandled(System.nanoTime() - start);
+            }
+        }
+
+        private MessageTypeStatistics getStatistics() {
+            return statistics;
+        }
+
+        private long getCreated() {
+            return created;
+        }
+    }
+
+    private static class Registration {
+
+        private final boolean blocking;
+        private final Handler handler;
+
+        private Registration(boolean blocking, Handler handler) {
+            this.blocking = blocking;
+            this.handler = handler;
+        }
+
+        private boolean isBlocking() {
+            return blocking;
+        }
+
+        private Handler getHandler() {
+            return handler;
+        }
+    }
+
+    private static class SenderQueue {
+
+        private final Queue<Task> tasks = new ArrayDeque<>();
+        private boolean running;
+        private boolean inline;
+
+        private Queue<Task> getTasks() {
+            return tasks;
+        }
+
+        /**
+         * @return Whether no message of this channel is being handled or waiting at the moment
+         */
+        private boolean isIdle() {
+            return !running && !inline && tasks.isEmpty();
+        }
+
+        private boolean isRunning() {
+            return running;
+        }
+
+        private void setRunning(boolean running) {
+            this.running = running;
+        }
+
+        private void setInline(boolean inline) {
+            this.inline = inline;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package cloud.timo.TimoCloud.lib.sockets;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts how many messages of one type have been handled, how many are waiting for a worker and how long both took
+ */
+public class MessageTypeStatistics {
+
+    private final String type;
+    private final AtomicLong handled = new AtomicLong();
+    private final AtomicLong handlingNanos = new AtomicLong();
+    private final AtomicLong maxHandlingNanos = new AtomicLong();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger maxQueued = new AtomicInteger();
+    private final AtomicLong dequeued = new AtomicLong();
+    private final AtomicLong waitingNanos = new AtomicLong();
+
+    MessageTypeStatistics(String type) {
+        this.type = type;
+    }
+
+    void onQueued() {
+        int queued = this.queued.incrementAndGet();
+        maxQueued.accumulateAndGet(queued, Math::max);
+    }
+
+    void onDequeued(long waitedNanos) {
+        queued.decrementAndGet();
+        dequeued.incrementAndGet();
+        waitingNanos.addAndGet(waitedNanos);
+    }
+
+    void onHandled(long nanos) {
+        handled.incrementAndGet();
+        handlingNanos.addAndGet(nanos);
+        maxHandlingNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public long getHandled() {
+        return handled.get();
+    }
+
+    /**
+     * @return Messages which are currently waiting for a worker
+     */
+    public int getQueued() {
+        return queued.get();
+    }
+
+    /**
+     * @return The most messages which have been waiting for a worker at the same time
+     */
+    public int getMaxQueued() {
+        return maxQueued.get();
+    }
+
+    /**
+     * @return Average time a message has been waiting for a worker in nanoseconds, 0 for messages which have been handled inline
+     */
+    public long getAverageWaitingNanos() {
+        long dequeued = this.dequeued.get();
+        return dequeued == 0 ? 0 : waitingNanos.get() / dequeued;
+    }
+
+    /**
+     * @return Average time the handler took in nanoseconds
+     */
+    public long getAverageHandlingNanos() {
+        long handled = getHandled();
+        return handled == 0 ? 0 : handlingNanos.get() / handled;
+    }
+
+    public long getMaxHandlingNanos() {
+        return maxHandlingNanos.get();
+    }
+}
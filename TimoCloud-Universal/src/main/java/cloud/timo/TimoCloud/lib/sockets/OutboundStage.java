@@ -0,0 +1,117 @@
+package cloud.timo.TimoCloud.lib.sockets;
+
+import cloud.timo.TimoCloud.lib.messages.Message;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.handler.flush.FlushConsolidationHandler;
+import io.netty.util.AttributeKey;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Outbound part shared by all TimoCloud socket pipelines.
+ * Flushes are consolidated, so a burst of messages costs one syscall instead of one per message. While a channel is not
+ * writable because its write buffer is above the high water mark, low-priority messages are not queued: events are dropped
+ * and API snapshots are coalesced so only the newest one is sent once the channel is writable again. Events clients keep their
+ * player directory up to date with are never dropped, since nothing would correct it afterwards.
+ */
+public class OutboundStage extends ChannelInboundHandlerAdapter {
+
+    public static final String NAME = "outbound";
+    public static final int DEFAULT_LOW_WATER_MARK = 256 * 1024;
+    public static final int DEFAULT_HIGH_WATER_MARK = 1024 * 1024;
+
+    private static final int EXPLICIT_FLUSH_AFTER_FLUSHES = 256;
+    private static final AttributeKey<Map<String, String>> COALESCED = AttributeKey.valueOf("coalescedmessages");
+    private static final Set<String> DROPPABLE_TYPES = new HashSet<>(Arrays.asList("EVENT_FIRED"));
+    private static final Set<String> COALESCED_TYPES = new HashSet<>(Arrays.asList("API_DATA"));
+    private static final Set<String> KEPT_EVENT_TYPES = new HashSet<>(Arrays.asList("PLAYER_CONNECT", "PLAYER_DISCONNECT", "PLAYER_SERVER_CHANGE", "PROXY_UNREGISTER"));
+
+    private static final AtomicLong droppedMessages = new AtomicLong();
+    private static final AtomicLong coalescedMessages = new AtomicLong();
+
+    /**
+     * Adds the outbound stage to a new channel's pipeline
+     */
+    public static void install(ChannelPipeline pipeline) {
+        pipeline.addFirst("flushconsolidation", new FlushConsolidationHandler(EXPLICIT_FLUSH_AFTER_FLUSHES, true));
+        pipeline.addLast(NAME, new OutboundStage());
+    }
+
+    public static WriteBufferWaterMark getDefaultWaterMark() {
+        return new WriteBufferWaterMark(DEFAULT_LOW_WATER_MARK, DEFAULT_HIGH_WATER_MARK);
+    }
+
+    public static void send(Channel channel, Message message) {
+        send(channel, getPriorityType(message), message.toJson());
+    }
+
+    /**
+     * @return The type deciding what happens to the message if the channel is not writable, null if it must always be sent
+     */
+    private static String getPriorityType(Message message) {
+        if ("EVENT_FIRED".equals(message.getType()) && KEPT_EVENT_TYPES.contains(message.get("eventType"))) return null;
+        return message.getType();
+    }
+
+    public static void send(Channel channel, String json) {
+        send(channel, null, json);
+    }
+
+    /**
+     * @param type The message's type, which decides what happens to it if the channel is not writable
+     */
+    public static void send(Channel channel, String type, String json) {
+        if (channel == null || !channel.isActive()) return;
+        if (!channel.isWritable() && type != null) {
+            if (DROPPABLE_TYPES.contains(type)) {
+                droppedMessages.incrementAndGet();
+                return;
+            }
+            if (COALESCED_TYPES.contains(type)) {
+                channel.attr(COALESCED).setIfAbsent(new ConcurrentHashMap<>());
+                if (channel.attr(COALESCED).get().put(type, json) != null) coalescedMessages.incrementAndGet();
+                if (channel.isWritable()) sendCoalesced(channel); // It might have become writable in the meantime
+                return;
+            }
+        }
+        channel.writeAndFlush(json, channel.voidPromise());
+    }
+
+    private static void sendCoalesced(Channel channel) {
+        Map<String, String> pending = channel.attr(COALESCED).get();
+        if (pending == null) return;
+        for (String type : pending.keySet()) {
+            String json = pending.remove(type);
+            if (json != null) channel.writeAndFlush(json, channel.voidPromise());
+        }
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (ctx.channel().isWritable()) sendCoalesced(ctx.channel());
+        super.channelWritabilityChanged(ctx);
+    }
+
+    /**
+     * @return Low-priority messages which have been dropped because their channel was not writable
+     */
+    public static long getDroppedMessages() {
+        return droppedMessages.get();
+    }
+
+    /**
+     * @return Low-priority messages which have been replaced by a newer one while their channel was not writable
+     */
+    public static long getCoalescedMessages() {
+        return coalescedMessages.get();
+    }
+}
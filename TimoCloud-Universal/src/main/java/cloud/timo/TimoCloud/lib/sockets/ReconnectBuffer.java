@@ -0,0 +1,94 @@
+package cloud.timo.TimoCloud.lib.sockets;
+
+import cloud.timo.TimoCloud.lib.messages.Message;
+
+import java.util.*;
+
+/**
+ * Holds the messages an instance sends while it is not connected to the core, e.g. because the core is restarting, so they
+ * can be sent in their original order once it has reconnected.
+ * Messages which only matter in their newest version, like status reports and API data requests, are coalesced. When the
+ * buffer is full, further messages are dropped.
+ */
+public class ReconnectBuffer {
+
+    public static final int DEFAULT_CAPACITY = 4 * 1024 * 1024;
+
+    private static final Set<String> COALESCED_TYPES = new HashSet<>(Arrays.asList(
+            "GET_API_DATA", "GET_PLAYERS", "STATUS", "SET_STATE", "SET_EXTRA", "SET_MOTD", "SET_MAP", "SET_PLAYERS", "SET_PLAYER_COUNT"));
+
+    private final int capacity;
+    private final Map<Object, String> messages;
+    private long sequence;
+    private int size;
+    private long dropped;
+
+    /**
+     * @param capacity Characters of JSON the buffer may hold
+     */
+    public ReconnectBuffer(int capacity) {
+        this.capacity = capacity;
+        this.messages = new LinkedHashMap<>();
+    }
+
+    public ReconnectBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @return Whether the message has been buffered, false if the buffer is full
+     */
+    public boolean add(String json) {
+        String type = null;
+        try {
+            type = Message.createFromJsonString(json).getType();
+        } catch (Exception ignored) {
+        }
+        return add(type, json);
+    }
+
+    /**
+     * @return Whether the message has been buffered, false if the buffer is full
+     */
+    public synchronized boolean add(String type, String json) {
+        // A coalesced message replaces the previous one of its type and moves to the end, so it is still sent after everything it has been sent after
+        Object key = type != null && COALESCED_TYPES.contains(type) ? type : sequence++;
+        String previous = messages.remove(key);
+        if (previous != null) size -= previous.length();
+        if (size + json.length() > capacity) {
+            dropped++;
+            return false;
+        }
+        messages.put(key, json);
+        size += json.length();
+        return true;
+    }
+
+    /**
+     * Removes and returns all buffered messages in the order they have to be sent
+     */
+    public synchronized List<String> drain() {
+        List<String> drained = new ArrayList<>(messages.values());
+        messages.clear();
+        size = 0;
+        return drained;
+    }
+
+    public synchronized boolean isEmpty() {
+        return messages.isEmpty();
+    }
+
+    /**
+     * @return Number of buffered messages
+     */
+    public synchronized int size() {
+        return messages.size();
+    }
+
+    /**
+     * @return Messages which have been dropped because the buffer was full
+     */
+    public synchronized long getDropped() {
+        return dropped;
+    }
+}
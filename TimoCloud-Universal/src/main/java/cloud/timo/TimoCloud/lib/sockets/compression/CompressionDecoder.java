@@ -0,0 +1,110 @@
+package cloud.timo.TimoCloud.lib.sockets.compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.TooLongFrameException;
+
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads what a {@link CompressionEncoder} writes. Until the marker byte is received, data is passed through unchanged. This is
+ * safe because JSON messages never contain a null byte, control characters in strings are always escaped.
+ * Frames are passed on one by one, so a large message split into several frames is reassembled by the string handler like any
+ * message received in several TCP segments.
+ */
+public class CompressionDecoder extends ByteToMessageDecoder {
+
+    // A deflated chunk is hardly ever larger than the chunk itself, the margin covers incompressible data
+    static final int MAX_FRAME_LENGTH = 2 * CompressionEncoder.CHUNK_LENGTH;
+    static final int MAX_INFLATED_LENGTH = CompressionEncoder.CHUNK_LENGTH;
+    private static final int VAR_INT_INCOMPLETE = -1;
+
+    private final Inflater inflater = new Inflater(true);
+    private final byte[] buffer = new byte[8192];
+    private boolean framed = false;
+
+    public CompressionDecoder() {
+        inflater.setDictionary(StreamCompression.DICTIONARY);
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+        if (!framed) {
+            int plain = in.bytesBefore(CompressionEncoder.MARKER);
+            if (plain == -1) {
+                out.add(in.readRetainedSlice(in.readableBytes()));
+                return;
+            }
+            if (plain > 0) out.add(in.readRetainedSlice(plain));
+            in.skipBytes(1);
+            framed = true;
+        }
+        while (in.isReadable()) {
+            int start = in.readerIndex();
+            int length = readVarInt(in);
+            if (length == VAR_INT_INCOMPLETE || in.readableBytes() < length) {
+                in.readerIndex(start);
+                return;
+            }
+            byte flag = in.readByte();
+            ByteBuf payload = in.readSlice(length - 1);
+            if (flag == CompressionEncoder.RAW) out.add(payload.retain());
+            else if (flag == CompressionEncoder.DEFLATED) out.add(inflate(ctx, payload));
+            else throw new CorruptedFrameException("Unknown compression flag: " + flag);
+        }
+    }
+
+    private ByteBuf inflate(ChannelHandlerContext ctx, ByteBuf payload) throws Exception {
+        long start = System.nanoTime();
+        byte[] input = new byte[payload.readableBytes()];
+        payload.readBytes(input);
+        inflater.setInput(input);
+        ByteBuf decompressed = ctx.alloc().heapBuffer(Math.min(input.length * 4, MAX_INFLATED_LENGTH));
+        try {
+            while (true) {
+                int read = inflater.inflate(buffer);
+                if (read > 0) {
+                    decompressed.writeBytes(buffer, 0, read);
+                    if (decompressed.readableBytes() > MAX_INFLATED_LENGTH) throw new TooLongFrameException("Decompressed frame is larger than " + MAX_INFLATED_LENGTH + " bytes");
+                    continue;
+                }
+                if (inflater.needsInput()) break;
+                throw new CorruptedFrameException(inflater.finished() ? "Compressed stream has ended unexpectedly" : "Compressed stream uses an unknown dictionary");
+            }
+        } catch (DataFormatException e) {
+            decompressed.release();
+            throw new CorruptedFrameException(e);
+        } catch (Exception e) {
+            decompressed.release();
+            throw e;
+        }
+        StreamCompression.getStatistics().onDecompressed(decompressed.readableBytes(), System.nanoTime() - start);
+        return decompressed;
+    }
+
+    /**
+     * @return The frame length, or {@link #VAR_INT_INCOMPLETE} if more bytes are needed
+     */
+    private static int readVarInt(ByteBuf in) {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            if (!in.isReadable()) return VAR_INT_INCOMPLETE;
+            byte b = in.readByte();
+            value |= (b & 0x7F) << (i * 7);
+            if ((b & 0x80) == 0) {
+                if (value < 1 || value > MAX_FRAME_LENGTH) throw new CorruptedFrameException("Invalid frame length: " + value);
+                return value;
+            }
+        }
+        throw new CorruptedFrameException("Frame length is too long");
+    }
+
+    @Override
+    protected void handlerRemoved0(ChannelHandlerContext ctx) throws Exception {
+        inflater.end();
+    }
+}
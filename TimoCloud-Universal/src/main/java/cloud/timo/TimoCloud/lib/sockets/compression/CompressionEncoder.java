@@ -0,0 +1,88 @@
+package cloud.timo.TimoCloud.lib.sockets.compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToByteEncoder;
+
+import java.util.zip.Deflater;
+
+/**
+ * Writes a marker byte followed by length-prefixed frames. Every frame consists of a VarInt length, a flag and the payload.
+ * Messages below the threshold are sent as raw frames, all others are deflated. All deflated frames of a channel form one
+ * stream, so repeated parts of earlier messages are compressed as well.
+ * Large messages, like template transfers, are split into chunks of at most {@link #CHUNK_LENGTH} bytes which are deflated
+ * into frames of their own, so the decoder can limit the size of a frame and of its decompressed content without limiting
+ * the size of a message.
+ */
+public class CompressionEncoder extends MessageToByteEncoder<ByteBuf> {
+
+    static final byte MARKER = 0;
+    static final byte RAW = 0;
+    static final byte DEFLATED = 1;
+    static final int CHUNK_LENGTH = 1024 * 1024;
+
+    private final int threshold;
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    private final byte[] buffer = new byte[8192];
+    private boolean started = false;
+
+    public CompressionEncoder(int threshold) {
+        this.threshold = threshold;
+        deflater.setDictionary(StreamCompression.DICTIONARY);
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, ByteBuf msg, ByteBuf out) {
+        if (!started) {
+            out.writeByte(MARKER);
+            started = true;
+        }
+        int length = msg.readableBytes();
+        if (length < threshold && length <= CHUNK_LENGTH) {
+            writeVarInt(out, length + 1);
+            out.writeByte(RAW);
+            out.writeBytes(msg);
+            StreamCompression.getStatistics().onCompressed(length, length, 0);
+            return;
+        }
+        byte[] input = new byte[Math.min(length, CHUNK_LENGTH)];
+        while (msg.isReadable()) {
+            int chunk = Math.min(msg.readableBytes(), CHUNK_LENGTH);
+            msg.readBytes(input, 0, chunk);
+            deflate(ctx, input, chunk, out);
+        }
+    }
+
+    private void deflate(ChannelHandlerContext ctx, byte[] input, int length, ByteBuf out) {
+        long start = System.nanoTime();
+        deflater.setInput(input, 0, length);
+        ByteBuf compressed = ctx.alloc().heapBuffer(length / 2 + 16);
+        try {
+            int written;
+            do {
+                written = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                compressed.writeBytes(buffer, 0, written);
+            } while (written == buffer.length);
+            writeVarInt(out, compressed.readableBytes() + 1);
+            out.writeByte(DEFLATED);
+            out.writeBytes(compressed);
+            StreamCompression.getStatistics().onCompressed(length, compressed.readableBytes(), System.nanoTime() - start);
+        } finally {
+            compressed.release();
+        }
+    }
+
+    static void writeVarInt(ByteBuf out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        deflater.end();
+        super.handlerRemoved(ctx);
+    }
+}
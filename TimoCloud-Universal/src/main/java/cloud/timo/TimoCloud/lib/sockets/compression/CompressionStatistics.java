@@ -0,0 +1,66 @@
+package cloud.timo.TimoCloud.lib.sockets.compression;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the bytes and CPU time spent on compression by all channels of this process
+ */
+public class CompressionStatistics {
+
+    private final AtomicLong uncompressedBytes = new AtomicLong();
+    private final AtomicLong compressedBytes = new AtomicLong();
+    private final AtomicLong compressionNanos = new AtomicLong();
+    private final AtomicLong decompressedBytes = new AtomicLong();
+    private final AtomicLong decompressionNanos = new AtomicLong();
+
+    void onCompressed(int uncompressed, int compressed, long nanos) {
+        uncompressedBytes.addAndGet(uncompressed);
+        compressedBytes.addAndGet(compressed);
+        compressionNanos.addAndGet(nanos);
+    }
+
+    void onDecompressed(int decompressed, long nanos) {
+        decompressedBytes.addAndGet(decompressed);
+        decompressionNanos.addAndGet(nanos);
+    }
+
+    /**
+     * @return Bytes of outgoing messages before compression, including messages sent uncompressed because they were too small
+     */
+    public long getUncompressedBytes() {
+        return uncompressedBytes.get();
+    }
+
+    /**
+     * @return Bytes of outgoing messages after compression
+     */
+    public long getCompressedBytes() {
+        return compressedBytes.get();
+    }
+
+    /**
+     * @return Compressed size divided by uncompressed size of all outgoing messages, 1 if nothing has been sent yet
+     */
+    public double getCompressionRatio() {
+        long uncompressed = getUncompressedBytes();
+        return uncompressed == 0 ? 1 : (double) getCompressedBytes() / uncompressed;
+    }
+
+    /**
+     * @return CPU time spent compressing in nanoseconds
+     */
+    public long getCompressionNanos() {
+        return compressionNanos.get();
+    }
+
+    public long getDecompressedBytes() {
+        return decompressedBytes.get();
+    }
+
+    /**
+     * @return CPU time spent decompressing in nanoseconds
+     */
+    public long getDecompressionNanos() {
+        return decompressionNanos.get();
+    }
+}
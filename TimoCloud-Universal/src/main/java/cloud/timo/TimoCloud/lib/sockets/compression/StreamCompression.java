@@ -0,0 +1,74 @@
+package cloud.timo.TimoCloud.lib.sockets.compression;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelPipeline;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compression of the JSON stream between the core and its clients.
+ * Every client announces the algorithms it supports in its handshake. If the core agrees on one, it answers with a COMPRESSION
+ * message and from then on both sides compress what they send. Receivers always detect compressed data themselves (see
+ * {@link CompressionDecoder}), so it does not matter which messages were still in flight while compression was enabled.
+ */
+public class StreamCompression {
+
+    public static final String DEFLATE = "deflate";
+    public static final String DECODER_NAME = "compressiondecoder";
+    public static final String ENCODER_NAME = "compressionencoder";
+
+    /**
+     * Preset dictionary containing the keys and values which appear in nearly every message, so even the first messages on a
+     * connection compress well. The most frequent strings are at the end, where they can be referenced with the shortest distance.
+     * Changing it breaks compatibility with clients using the old dictionary.
+     */
+    static final byte[] DICTIONARY = ("{\"type\":\"EVENT_FIRED\",\"eventType\":\"{\\\"name\\\":\\\"\\\",\\\"id\\\":\\\"\\\",\\\"group\\\":\\\""
+            + "\\\",\\\"state\\\":\\\"ONLINE\\\",\\\"extra\\\":\\\"\\\",\\\"map\\\":\\\"\\\",\\\"motd\\\":\\\"\\\",\\\"onlinePlayerCount\\\":0,"
+            + "\\\"maxPlayerCount\\\":0,\\\"base\\\":\\\"\\\",\\\"socketAddress\\\":\\\"\\\",\\\"priority\\\":0,\\\"static\\\":false,"
+            + "\\\"ram\\\":1024,\\\"servers\\\":[],\\\"proxies\\\":[],\\\"players\\\":[],\\\"uuid\\\":\\\"\\\"}\""
+            + "\"serverGroups\":[],\"proxyGroups\":[],\"cords\":[],\"templateHash\":{},\"globalHash\":{},\"transferType\":\""
+            + "\"address\":\"\",\"port\":0,\"SERVER_LIST_DELTA\",\"version\":0,\"API_DATA\",\"data\":{},\"target\":\"\","
+            + "\"name\":\"\",\"id\":\"\",\"group\":\"\",\"type\":\"").getBytes(StandardCharsets.UTF_8);
+
+    private static final CompressionStatistics statistics = new CompressionStatistics();
+
+    /**
+     * @return The algorithms this side can use, in order of preference
+     */
+    public static List<String> getSupportedAlgorithms() {
+        return Collections.singletonList(DEFLATE);
+    }
+
+    /**
+     * Adds the decoder for incoming compressed data to a new channel's pipeline. It passes uncompressed data through unchanged.
+     */
+    public static void install(ChannelPipeline pipeline) {
+        pipeline.addBefore("decoder", DECODER_NAME, new CompressionDecoder());
+    }
+
+    /**
+     * @param offered   The algorithms the other side supports, null if it does not support compression at all
+     * @param preferred The algorithm configured on this side, "none" to disable compression
+     * @return The algorithm both sides support, or null if there is none
+     */
+    public static String negotiate(List<String> offered, String preferred) {
+        if (offered == null || preferred == null) return null;
+        return offered.contains(preferred) && getSupportedAlgorithms().contains(preferred) ? preferred : null;
+    }
+
+    /**
+     * Compresses everything written to the channel from now on
+     *
+     * @param threshold Messages smaller than this many bytes are sent uncompressed
+     */
+    public static void enable(Channel channel, String algorithm, int threshold) {
+        if (!DEFLATE.equals(algorithm) || channel.pipeline().get(ENCODER_NAME) != null) return;
+        channel.pipeline().addBefore("encoder", ENCODER_NAME, new CompressionEncoder(threshold));
+    }
+
+    public static CompressionStatistics getStatistics() {
+        return statistics;
+    }
+}
@@ -0,0 +1,97 @@
+package cloud.timo.TimoCloud.lib.templates;
+
+import cloud.timo.TimoCloud.lib.utils.ChatColorUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A text which has been split into literal parts and placeholders once. Color codes (&amp;a) in the literal parts are already translated.
+ */
+public class CompiledTemplate<T> {
+
+    private static final ThreadLocal<StringBuilder> BUILDER = ThreadLocal.withInitial(StringBuilder::new);
+
+    private final PlaceholderRegistry<T> registry;
+    private final String[] literals; // literals[i] comes before placeholders[i], the last literal comes after the last placeholder
+    private final String[] placeholders; // Lower case, as registered
+    private final String[] rawPlaceholders; // As written in the template, used if a placeholder cannot be resolved
+
+    private CompiledTemplate(PlaceholderRegistry<T> registry, String[] literals, String[] rawPlaceholders) {
+        this.registry = registry;
+        this.literals = literals;
+        this.rawPlaceholders = rawPlaceholders;
+        this.placeholders = new String[rawPlaceholders.length];
+        for (int i = 0; i < rawPlaceholders.length; i++) placeholders[i] = rawPlaceholders[i].toLowerCase();
+    }
+
+    static <T> CompiledTemplate<T> compile(String template, PlaceholderRegistry<T> registry) {
+        List<String> literals = new ArrayList<>();
+        List<String> placeholders = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+        while (i < template.length()) {
+            char c = template.charAt(i);
+            if (c == '%') {
+                int end = template.indexOf('%', i + 1);
+                if (end > i + 1 && isPlaceholderName(template, i + 1, end)) {
+                    literals.add(ChatColorUtil.translateAlternateColorCodes(literal.toString()));
+                    literal.setLength(0);
+                    placeholders.add(template.substring(i + 1, end));
+                    i = end + 1;
+                    continue;
+                }
+            }
+            literal.append(c);
+            i++;
+        }
+        literals.add(ChatColorUtil.translateAlternateColorCodes(literal.toString()));
+        return new CompiledTemplate<>(registry, literals.toArray(new String[0]), placeholders.toArray(new String[0]));
+    }
+
+    private static boolean isPlaceholderName(String template, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = template.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '_' && c != '-' && c != '.') return false;
+        }
+        return true;
+    }
+
+    /**
+     * Appends the rendered text. If context is null or a placeholder is unknown, the placeholder is kept as it is.
+     */
+    public void render(StringBuilder builder, T context) {
+        for (int i = 0; i < placeholders.length; i++) {
+            builder.append(literals[i]);
+            Placeholder<T> placeholder = context == null ? null : registry.getPlaceholder(placeholders[i]);
+            if (placeholder == null) {
+                builder.append('%').append(rawPlaceholders[i]).append('%');
+                continue;
+            }
+            int start = builder.length();
+            placeholder.append(builder, context);
+            ChatColorUtil.translateAlternateColorCodes(builder, start);
+        }
+        builder.append(literals[placeholders.length]);
+    }
+
+    public String render(T context) {
+        if (placeholders.length == 0) return literals[0];
+        StringBuilder builder = BUILDER.get();
+        builder.setLength(0);
+        render(builder, context);
+        return builder.toString();
+    }
+
+    public boolean hasPlaceholders() {
+        return placeholders.length > 0;
+    }
+
+    /**
+     * @return Whether the text uses a placeholder whose value may change while the context stays the same, so it has to be rendered again from time to time
+     */
+    public boolean hasVolatilePlaceholders() {
+        for (String placeholder : placeholders) if (registry.isVolatile(placeholder)) return true;
+        return false;
+    }
+}
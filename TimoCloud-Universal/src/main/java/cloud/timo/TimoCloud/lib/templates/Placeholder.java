@@ -0,0 +1,13 @@
+package cloud.timo.TimoCloud.lib.templates;
+
+/**
+ * Resolves a placeholder like %name% by appending its value, so no intermediate strings have to be created
+ *
+ * @param <T> The object the value is taken from, e.g. a ServerObject for signs
+ */
+@FunctionalInterface
+public interface Placeholder<T> {
+
+    void append(StringBuilder builder, T context);
+
+}
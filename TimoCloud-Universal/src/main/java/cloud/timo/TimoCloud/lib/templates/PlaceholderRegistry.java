@@ -0,0 +1,100 @@
+package cloud.timo.TimoCloud.lib.templates;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds the placeholders which can be used in a kind of text (e.g. sign lines or MOTDs) and compiles texts into {@link CompiledTemplate}s.
+ * Placeholders are looked up when rendering, so placeholders registered by plugins also work in templates which have been compiled before.
+ */
+public class PlaceholderRegistry<T> {
+
+    private static final int MAX_CACHED_TEMPLATES = 256;
+
+    private final Map<String, Placeholder<T>> placeholders;
+    private final Set<String> volatilePlaceholders;
+    private final Map<String, CachedTemplate<T>> cache;
+    private final AtomicLong clock;
+
+    public PlaceholderRegistry() {
+        this.placeholders = new ConcurrentHashMap<>();
+        this.volatilePlaceholders = ConcurrentHashMap.newKeySet();
+        this.cache = new ConcurrentHashMap<>();
+        this.clock = new AtomicLong();
+    }
+
+    /**
+     * @param name The name without percent signs, e.g. "name" for %name%
+     */
+    public PlaceholderRegistry<T> register(String name, Placeholder<T> placeholder) {
+        placeholders.put(name.toLowerCase(), placeholder);
+        volatilePlaceholders.remove(name.toLowerCase());
+        return this;
+    }
+
+    /**
+     * Registers a placeholder whose value may change without the context changing, e.g. one provided by a plugin.
+     * Texts using it have to be rendered again from time to time, see {@link CompiledTemplate#hasVolatilePlaceholders()}.
+     */
+    public PlaceholderRegistry<T> registerVolatile(String name, Placeholder<T> placeholder) {
+        placeholders.put(name.toLowerCase(), placeholder);
+        volatilePlaceholders.add(name.toLowerCase());
+        return this;
+    }
+
+    public void unregister(String name) {
+        placeholders.remove(name.toLowerCase());
+        volatilePlaceholders.remove(name.toLowerCase());
+    }
+
+    public boolean isVolatile(String name) {
+        return volatilePlaceholders.contains(name);
+    }
+
+    public Placeholder<T> getPlaceholder(String name) {
+        return placeholders.get(name);
+    }
+
+    public CompiledTemplate<T> compile(String template) {
+        return CompiledTemplate.compile(template, this);
+    }
+
+    /**
+     * Like {@link #compile(String)}, but remembers the result. Use this for texts which are not known in advance, like MOTDs.
+     * Only the {@value #MAX_CACHED_TEMPLATES} most recently used texts are kept. Cached texts are returned without locking,
+     * since MOTDs are rendered on every ping.
+     */
+    public CompiledTemplate<T> getCompiled(String template) {
+        CachedTemplate<T> cached = cache.get(template);
+        if (cached == null) {
+            cached = cache.computeIfAbsent(template, key -> new CachedTemplate<>(compile(key), clock.incrementAndGet()));
+            if (cache.size() > MAX_CACHED_TEMPLATES) evictLeastRecentlyUsed();
+        }
+        cached.lastUsed = clock.incrementAndGet();
+        return cached.template;
+    }
+
+    private synchronized void evictLeastRecentlyUsed() {
+        while (cache.size() > MAX_CACHED_TEMPLATES) {
+            Map.Entry<String, CachedTemplate<T>> eldest = null;
+            for (Map.Entry<String, CachedTemplate<T>> entry : cache.entrySet()) {
+                if (eldest == null || entry.getValue().lastUsed < eldest.getValue().lastUsed) eldest = entry;
+            }
+            if (eldest == null) return;
+            cache.remove(eldest.getKey(), eldest.getValue());
+        }
+    }
+
+    private static class CachedTemplate<T> {
+
+        private final CompiledTemplate<T> template;
+        private volatile long lastUsed;
+
+        private CachedTemplate(CompiledTemplate<T> template, long lastUsed) {
+            this.template = template;
+            this.lastUsed = lastUsed;
+        }
+    }
+}
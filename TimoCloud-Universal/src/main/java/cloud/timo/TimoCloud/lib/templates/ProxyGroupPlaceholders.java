@@ -0,0 +1,18 @@
+package cloud.timo.TimoCloud.lib.templates;
+
+import cloud.timo.TimoCloud.api.objects.ProxyGroupObject;
+
+/**
+ * The placeholders which can be used in proxy group MOTDs, both on BungeeCord and on Cord
+ */
+public class ProxyGroupPlaceholders {
+
+    public static PlaceholderRegistry<ProxyGroupObject> create() {
+        return new PlaceholderRegistry<ProxyGroupObject>()
+                .register("group", (builder, group) -> builder.append(group.getName()))
+                .register("current_players", (builder, group) -> builder.append(group.getOnlinePlayerCount()))
+                .register("max_players", (builder, group) -> builder.append(group.getMaxPlayerCount()))
+                .register("proxies", (builder, group) -> builder.append(group.getProxies().size()));
+    }
+
+}
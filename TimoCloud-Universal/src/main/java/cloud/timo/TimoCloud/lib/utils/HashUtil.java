@@ -1,17 +1,22 @@
 package cloud.timo.TimoCloud.lib.utils;
 
+import cloud.timo.TimoCloud.lib.profiling.Profiling;
+import cloud.timo.TimoCloud.lib.profiling.ProfilingSpan;
 import org.apache.commons.io.FileDeleteStrategy;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
-import java.util.zip.CRC32;
 
 public class HashUtil {
 
+    private static final int BUFFER_SIZE = 64 * 1024;
     private static final Set<String> IGNORE_NAMES = new HashSet<>(Arrays.asList(".DS_Store"));
 
     public static List<String> getDifferentFiles(String prefix, Map<String, Object> a, Map<String, Object> b) {
@@ -62,20 +67,68 @@ public class HashUtil {
     }
 
     public static Map<String, Object> getHashes(File file) throws IOException {
+        ProfilingSpan span = Profiling.templateOperation("hash", file.getPath());
+        try {
+            return collectHashes(file);
+        } finally {
+            span.close();
+        }
+    }
+
+    private static Map<String, Object> collectHashes(File file) throws IOException {
         if (! (file.exists() && file.isDirectory())) return new HashMap<>();
         Map<String, Object> layer = new HashMap<>();
         for (File file1 : file.listFiles()) {
             if (!file1.isDirectory() && IGNORE_NAMES.contains(file1.getName())) continue;
-            layer.put(file1.getName() + (file1.isDirectory() ? "/" : ""), file1.isDirectory() ? getHashes(file1) : getFileHash(file1));
+            layer.put(file1.getName() + (file1.isDirectory() ? "/" : ""), file1.isDirectory() ? collectHashes(file1) : getFileHash(file1));
         }
         return layer;
     }
 
-    private static String getFileHash(File file) throws IOException {
-        CRC32 crc = new CRC32();
-        Path path = file.toPath();
-        crc.update(Files.readAllBytes(path));
-        return crc.getValue() + "";
+    /**
+     * @return The SHA-256 hash of the file's content, which also serves as its key in the base's blob store
+     */
+    public static String getFileHash(File file) throws IOException {
+        MessageDigest digest = createDigest();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream inputStream = new FileInputStream(file)) {
+            int length;
+            while ((length = inputStream.read(buffer)) >= 0) digest.update(buffer, 0, length);
+        }
+        return toHex(digest.digest());
+    }
+
+    public static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+            hex.append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * @param path A path as returned by {@link #getDifferentFiles(String, Map, Map)}
+     * @return The file's hash, a map of hashes if it is a directory, or null if it is not contained in the given hashes
+     */
+    public static Object getHash(Map<String, Object> hashes, String path) {
+        String[] names = path.split("[/\\\\]+");
+        Object current = hashes;
+        for (String name : names) {
+            if (name.isEmpty()) continue;
+            if (!(current instanceof Map)) return null;
+            Map<String, Object> layer = (Map<String, Object>) current;
+            current = layer.containsKey(name) ? layer.get(name) : layer.get(name + "/");
+        }
+        return current;
     }
 
     private static String bytesToString(byte[] b) {
@@ -0,0 +1,46 @@
+package cloud.timo.TimoCloud.lib.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the last n lines of a stream. Older lines are overwritten, so memory usage is bounded no matter how much is written.
+ */
+public class LineRingBuffer {
+
+    private final String[] lines;
+    private long written;
+
+    public LineRingBuffer(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("Capacity has to be at least 1");
+        this.lines = new String[capacity];
+        this.written = 0;
+    }
+
+    public synchronized void add(String line) {
+        lines[(int) (written % lines.length)] = line;
+        written++;
+    }
+
+    /**
+     * @param amount The maximum amount of lines
+     * @return The last lines, oldest first
+     */
+    public synchronized List<String> tail(int amount) {
+        int size = (int) Math.min(Math.min(amount, written), lines.length);
+        List<String> tail = new ArrayList<>(size);
+        for (long i = written - size; i < written; i++) tail.add(lines[(int) (i % lines.length)]);
+        return tail;
+    }
+
+    /**
+     * @return How many lines have been written in total, including overwritten ones
+     */
+    public synchronized long getWritten() {
+        return written;
+    }
+
+    public int getCapacity() {
+        return lines.length;
+    }
+}
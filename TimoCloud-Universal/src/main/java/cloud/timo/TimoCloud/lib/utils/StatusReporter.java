@@ -0,0 +1,59 @@
+package cloud.timo.TimoCloud.lib.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Decides which parts of an instance's status have to be sent to the core.
+ * Only changed values are sent, at most once per minimum interval, and the full status is repeated as a heartbeat.
+ */
+public class StatusReporter {
+
+    private final long minIntervalMillis;
+    private final long heartbeatMillis;
+    private final Map<String, Object> lastSent;
+    private long lastSendTime;
+    private long lastHeartbeatTime;
+
+    public StatusReporter(long minIntervalMillis, long heartbeatMillis) {
+        this.minIntervalMillis = minIntervalMillis;
+        this.heartbeatMillis = heartbeatMillis;
+        this.lastSent = new HashMap<>();
+        reset();
+    }
+
+    /**
+     * @param status The current status
+     * @param now    Current time in milliseconds
+     * @return The values which have to be sent, or null if nothing has to be sent right now
+     */
+    public synchronized Map<String, Object> update(Map<String, Object> status, long now) {
+        if (now - lastHeartbeatTime >= heartbeatMillis) {
+            lastHeartbeatTime = now;
+            return send(new HashMap<>(status), now);
+        }
+        if (now - lastSendTime < minIntervalMillis) return null; // Changes will be picked up by a later update
+        Map<String, Object> delta = new HashMap<>();
+        for (Map.Entry<String, Object> entry : status.entrySet()) {
+            if (!lastSent.containsKey(entry.getKey()) || !Objects.equals(lastSent.get(entry.getKey()), entry.getValue())) delta.put(entry.getKey(), entry.getValue());
+        }
+        if (delta.isEmpty()) return null;
+        return send(delta, now);
+    }
+
+    /**
+     * Makes the next update send the full status, e.g. after reconnecting to the core
+     */
+    public synchronized void reset() {
+        lastSent.clear();
+        lastSendTime = Long.MIN_VALUE / 2;
+        lastHeartbeatTime = Long.MIN_VALUE / 2;
+    }
+
+    private Map<String, Object> send(Map<String, Object> values, long now) {
+        lastSent.putAll(values);
+        lastSendTime = now;
+        return values;
+    }
+}
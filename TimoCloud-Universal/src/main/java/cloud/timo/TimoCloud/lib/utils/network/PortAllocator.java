@@ -0,0 +1,124 @@
+package cloud.timo.TimoCloud.lib.utils.network;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hands out ports of a fixed range without probing them. Every port is leased to an instance id until it is released again.
+ * Ports which are known to be in use by other processes (see {@link #reconcile(Collection)}) are skipped.
+ */
+public class PortAllocator {
+
+    private final int from;
+    private final int to;
+    private final BitSet leased;
+    private BitSet listening;
+    private final Map<String, Integer> leases;
+    private int cursor;
+
+    /**
+     * @param from The first port of the range (inclusive)
+     * @param to   The last port of the range (inclusive)
+     */
+    public PortAllocator(int from, int to) {
+        if (from > to) throw new IllegalArgumentException("Invalid port range " + from + "-" + to);
+        this.from = from;
+        this.to = to;
+        this.leased = new BitSet(size());
+        this.listening = new BitSet(size());
+        this.leases = new HashMap<>();
+        this.cursor = 0;
+    }
+
+    /**
+     * Parses a range in the format 'from-to', e.g. '41000-41999'
+     */
+    public static PortAllocator fromString(String range) {
+        String[] split = range.trim().split("-");
+        if (split.length != 2) throw new IllegalArgumentException("Invalid port range '" + range + "'. Expected format: from-to");
+        return new PortAllocator(Integer.parseInt(split[0].trim()), Integer.parseInt(split[1].trim()));
+    }
+
+    /**
+     * Leases a free port to the given instance. If the instance already holds a lease, the same port is returned.
+     * Ports are handed out round-robin, so that a just released port is not reused immediately.
+     *
+     * @return A free port or null if the whole range is in use
+     */
+    public synchronized Integer allocate(String id) {
+        Integer existing = leases.get(id);
+        if (existing != null) return existing;
+        int size = size();
+        for (int checked = 0; checked < size; ) {
+            int index = leased.nextClearBit(cursor);
+            if (index >= size) { // Wrap around
+                checked += size - cursor;
+                cursor = 0;
+                continue;
+            }
+            checked += index - cursor + 1;
+            cursor = index + 1 >= size ? 0 : index + 1;
+            if (listening.get(index)) continue;
+            leased.set(index);
+            int port = from + index;
+            leases.put(id, port);
+            return port;
+        }
+        return null;
+    }
+
+    /**
+     * Releases the port leased to the given instance
+     *
+     * @return The released port, or null if the instance did not hold a lease
+     */
+    public synchronized Integer release(String id) {
+        Integer port = leases.remove(id);
+        if (port != null) leased.clear(port - from);
+        return port;
+    }
+
+    /**
+     * Replaces the set of ports which are known to be listening on this machine
+     */
+    public synchronized void reconcile(Collection<Integer> listeningPorts) {
+        BitSet listening = new BitSet(size());
+        for (int port : listeningPorts) {
+            if (contains(port)) listening.set(port - from);
+        }
+        this.listening = listening;
+    }
+
+    /**
+     * Marks a single port as in use by another process, e.g. because binding it has failed
+     */
+    public synchronized void markListening(int port) {
+        if (contains(port)) listening.set(port - from);
+    }
+
+    public synchronized Integer getLease(String id) {
+        return leases.get(id);
+    }
+
+    public synchronized int getLeaseCount() {
+        return leases.size();
+    }
+
+    public boolean contains(int port) {
+        return port >= from && port <= to;
+    }
+
+    public int getFrom() {
+        return from;
+    }
+
+    public int getTo() {
+        return to;
+    }
+
+    private int size() {
+        return to - from + 1;
+    }
+}
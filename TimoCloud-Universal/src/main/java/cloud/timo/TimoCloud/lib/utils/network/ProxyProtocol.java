@@ -0,0 +1,94 @@
+package cloud.timo.TimoCloud.lib.utils.network;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.util.AttributeKey;
+
+import java.net.*;
+
+/**
+ * Binary HAProxy PROXY protocol (version 2) header, used by the Cord to pass the client's address to the proxy in-band.
+ * Only the PROXY command over TCP is supported, which is everything the Cord sends.
+ */
+public class ProxyProtocol {
+
+    public static final AttributeKey<InetSocketAddress> SOURCE_ADDRESS = AttributeKey.valueOf("timocloud-proxy-protocol-source");
+
+    static final byte[] SIGNATURE = {0x0D, 0x0A, 0x0D, 0x0A, 0x00, 0x0D, 0x0A, 0x51, 0x55, 0x49, 0x54, 0x0A};
+    static final int HEADER_LENGTH = 16;
+    private static final int VERSION_2_PROXY = 0x21;
+    private static final int TCP_IPV4 = 0x11;
+    private static final int TCP_IPV6 = 0x21;
+
+    public static ByteBuf encode(ByteBufAllocator allocator, InetSocketAddress source, InetSocketAddress destination) {
+        boolean ipv4 = source.getAddress() instanceof Inet4Address && destination.getAddress() instanceof Inet4Address;
+        int addressLength = ipv4 ? 4 : 16;
+        ByteBuf buf = allocator.buffer(HEADER_LENGTH + addressLength * 2 + 4);
+        buf.writeBytes(SIGNATURE);
+        buf.writeByte(VERSION_2_PROXY);
+        buf.writeByte(ipv4 ? TCP_IPV4 : TCP_IPV6);
+        buf.writeShort(addressLength * 2 + 4);
+        buf.writeBytes(toBytes(source.getAddress(), addressLength));
+        buf.writeBytes(toBytes(destination.getAddress(), addressLength));
+        buf.writeShort(source.getPort());
+        buf.writeShort(destination.getPort());
+        return buf;
+    }
+
+    /**
+     * @return 1 if the readable bytes start with a PROXY header, -1 if they do not, or 0 if there are not enough bytes to decide yet
+     */
+    public static int detect(ByteBuf buf) {
+        int readable = Math.min(buf.readableBytes(), SIGNATURE.length);
+        for (int i = 0; i < readable; i++) {
+            if (buf.getByte(buf.readerIndex() + i) != SIGNATURE[i]) return -1;
+        }
+        return readable == SIGNATURE.length ? 1 : 0;
+    }
+
+    /**
+     * @return The total length of the header starting at the reader index, or -1 if it has not been fully received yet
+     */
+    public static int getLength(ByteBuf buf) {
+        if (buf.readableBytes() < HEADER_LENGTH) return -1;
+        int length = HEADER_LENGTH + buf.getUnsignedShort(buf.readerIndex() + 14);
+        return buf.readableBytes() < length ? -1 : length;
+    }
+
+    /**
+     * Reads a complete header, see {@link #getLength(ByteBuf)}
+     *
+     * @return The client's address, or null if the header does not carry one (LOCAL command or unsupported address family)
+     */
+    public static InetSocketAddress decode(ByteBuf buf) throws UnknownHostException {
+        int length = getLength(buf);
+        if (length < 0) throw new IllegalArgumentException("Incomplete PROXY protocol header");
+        buf.skipBytes(SIGNATURE.length);
+        int versionAndCommand = buf.readUnsignedByte();
+        int family = buf.readUnsignedByte();
+        buf.skipBytes(2);
+        if ((versionAndCommand & 0xF0) != 0x20) throw new IllegalArgumentException("Unsupported PROXY protocol version " + (versionAndCommand >> 4));
+        int addressLength = family == TCP_IPV4 ? 4 : family == TCP_IPV6 ? 16 : 0;
+        if (versionAndCommand != VERSION_2_PROXY || addressLength == 0 || length - HEADER_LENGTH < addressLength * 2 + 4) {
+            buf.skipBytes(length - HEADER_LENGTH);
+            return null;
+        }
+        byte[] source = new byte[addressLength];
+        buf.readBytes(source);
+        buf.skipBytes(addressLength); // Destination address
+        int sourcePort = buf.readUnsignedShort();
+        buf.skipBytes(2); // Destination port
+        buf.skipBytes(length - HEADER_LENGTH - addressLength * 2 - 4); // TLVs
+        return new InetSocketAddress(InetAddress.getByAddress(source), sourcePort);
+    }
+
+    private static byte[] toBytes(InetAddress address, int length) {
+        byte[] bytes = address.getAddress();
+        if (bytes.length == length) return bytes;
+        byte[] mapped = new byte[16]; // IPv4-mapped IPv6 address
+        mapped[10] = (byte) 0xFF;
+        mapped[11] = (byte) 0xFF;
+        System.arraycopy(bytes, 0, mapped, 12, 4);
+        return mapped;
+    }
+}
@@ -0,0 +1,44 @@
+package cloud.timo.TimoCloud.lib.utils.network;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Strips a PROXY protocol header from the beginning of a connection and stores the client's address in {@link ProxyProtocol#SOURCE_ADDRESS}.
+ * Connections without a header are passed through unchanged. Headers are only accepted from trusted addresses, others are disconnected.
+ * The decoder removes itself after the first bytes, so it costs nothing for the rest of the connection.
+ */
+public class ProxyProtocolDecoder extends ByteToMessageDecoder {
+
+    private final Predicate<InetAddress> trusted;
+
+    public ProxyProtocolDecoder(Predicate<InetAddress> trusted) {
+        this.trusted = trusted;
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+        int detected = ProxyProtocol.detect(in);
+        if (detected == 0) return;
+        if (detected < 0) {
+            ctx.pipeline().remove(this);
+            return;
+        }
+        if (ProxyProtocol.getLength(in) < 0) return;
+        InetSocketAddress remoteAddress = (InetSocketAddress) ctx.channel().remoteAddress();
+        if (!trusted.test(remoteAddress.getAddress())) {
+            in.skipBytes(in.readableBytes());
+            ctx.close();
+            return;
+        }
+        InetSocketAddress source = ProxyProtocol.decode(in);
+        if (source != null) ctx.channel().attr(ProxyProtocol.SOURCE_ADDRESS).set(source);
+        ctx.pipeline().remove(this);
+    }
+}
@@ -0,0 +1,66 @@
+package cloud.timo.TimoCloud.api.implementations;
+
+import cloud.timo.TimoCloud.api.objects.PlayerObject;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class PlayerDirectoryTest {
+
+    private static PlayerObject player(String name, UUID uuid, String server, String proxy) {
+        return new PlayerObjectBasicImplementation(name, uuid, server, proxy, null, true, 0);
+    }
+
+    @Test
+    public void lookupByUuidAndCaseInsensitiveName() {
+        PlayerDirectory directory = new PlayerDirectory();
+        UUID uuid = UUID.randomUUID();
+        directory.put(player("Notch", uuid, "Lobby-1", "Proxy-1"));
+        assertEquals(uuid, directory.getPlayer("notch").getUuid());
+        assertEquals("Notch", directory.getPlayer(uuid).getName());
+        assertNull(directory.getPlayer("jeb_"));
+    }
+
+    @Test
+    public void serverChangeMovesPlayer() {
+        PlayerDirectory directory = new PlayerDirectory();
+        UUID uuid = UUID.randomUUID();
+        directory.put(player("Notch", uuid, "Lobby-1", "Proxy-1"));
+        directory.put(player("Notch", uuid, "BedWars-1", "Proxy-1"));
+        assertTrue(directory.getPlayersOnServer("Lobby-1").isEmpty());
+        assertEquals(1, directory.getPlayersOnServer("BedWars-1").size());
+        assertEquals(1, directory.size());
+    }
+
+    @Test
+    public void removeProxyRemovesItsPlayers() {
+        PlayerDirectory directory = new PlayerDirectory();
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        directory.setPlayers(Arrays.asList(player("Notch", first, "Lobby-1", "Proxy-1"), player("jeb_", second, "Lobby-1", "Proxy-2")));
+        directory.removeProxy("Proxy-1");
+        assertNull(directory.getPlayer(first));
+        assertNull(directory.getPlayer("notch"));
+        assertEquals(1, directory.getPlayersOnServer("Lobby-1").size());
+        assertEquals(1, directory.getPlayersOnProxy("Proxy-2").size());
+    }
+
+    @Test
+    public void setProxyPlayersOnlyReplacesThatProxy() {
+        PlayerDirectory directory = new PlayerDirectory();
+        UUID left = UUID.randomUUID();
+        UUID stayed = UUID.randomUUID();
+        UUID other = UUID.randomUUID();
+        directory.setPlayers(Arrays.asList(player("Notch", left, "Lobby-1", "Proxy-1"), player("jeb_", other, "Lobby-1", "Proxy-2")));
+        directory.setProxyPlayers("Proxy-1", Collections.singletonList(player("Dinnerbone", stayed, "BedWars-1", "Proxy-1")));
+        assertNull(directory.getPlayer(left));
+        assertEquals("BedWars-1", ((PlayerObjectBasicImplementation) directory.getPlayer("dinnerbone")).getServerName());
+        assertNotNull(directory.getPlayer(other));
+        assertEquals(1, directory.getPlayersOnProxy("Proxy-1").size());
+        assertEquals(2, directory.size());
+    }
+}
@@ -0,0 +1,147 @@
+package cloud.timo.TimoCloud.base.managers;
+
+import cloud.timo.TimoCloud.lib.utils.HashUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class BasePeerManagerTest {
+
+    private static final byte[] JAR = "spigot".getBytes(StandardCharsets.UTF_8);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private List<BasePeerManager> peerManagers = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        for (BasePeerManager peerManager : peerManagers) peerManager.stop();
+    }
+
+    private BasePeerManager createPeer(String name) throws Exception {
+        BasePeerManager peerManager = new BasePeerManager(new BaseBlobStore(folder.newFolder(name)), 2);
+        peerManager.setToken(name + "-token");
+        peerManagers.add(peerManager);
+        return peerManager;
+    }
+
+    private static String seed(BaseBlobStore blobStore, String hash, byte[] content) throws Exception {
+        File blob = blobStore.getBlob(hash);
+        blob.getParentFile().mkdirs();
+        Files.write(blob.toPath(), content);
+        return hash;
+    }
+
+    private static Map<String, Object> peer(int port, String token) {
+        Map<String, Object> peer = new HashMap<>();
+        peer.put("address", "127.0.0.1");
+        peer.put("port", port);
+        peer.put("token", token);
+        return peer;
+    }
+
+    private static Map<String, Object> file(String path, String hash, Map<String, Object>... peers) {
+        Map<String, Object> file = new HashMap<>();
+        file.put("path", path);
+        file.put("hash", hash);
+        file.put("peers", Arrays.asList(peers));
+        return file;
+    }
+
+    @Test
+    public void downloadsFromNextPeerIfOneFails() throws Exception {
+        String hash = HashUtil.toHex(HashUtil.createDigest().digest(JAR));
+        BasePeerManager corrupt = createPeer("corrupt");
+        corrupt.start(0);
+        seed(new BaseBlobStore(new File(folder.getRoot(), "corrupt")), hash, "garbage".getBytes(StandardCharsets.UTF_8));
+        BasePeerManager seeder = createPeer("seeder");
+        seeder.start(0);
+        seed(new BaseBlobStore(new File(folder.getRoot(), "seeder")), hash, JAR);
+        BasePeerManager downloader = createPeer("downloader");
+        File template = folder.newFolder("Lobby");
+
+        downloader.download(template, Collections.singletonList(file("plugins/spigot.jar", hash, peer(corrupt.getPort(), "corrupt-token"), peer(seeder.getPort(), "seeder-token")))).get(30, TimeUnit.SECONDS);
+
+        assertArrayEquals(JAR, Files.readAllBytes(new File(template, "plugins/spigot.jar").toPath()));
+        assertTrue(new BaseBlobStore(new File(folder.getRoot(), "downloader")).contains(hash));
+        assertTrue(downloader.pollFailedHashes().isEmpty());
+    }
+
+    @Test
+    public void remembersBlobsNoPeerCouldServe() throws Exception {
+        String hash = HashUtil.toHex(HashUtil.createDigest().digest(JAR));
+        BasePeerManager empty = createPeer("empty");
+        empty.start(0);
+        BasePeerManager downloader = createPeer("downloader");
+        File template = folder.newFolder("Lobby");
+
+        downloader.download(template, Collections.singletonList(file("spigot.jar", hash, peer(empty.getPort(), "empty-token")))).get(30, TimeUnit.SECONDS);
+
+        assertFalse(new File(template, "spigot.jar").exists());
+        assertEquals(Collections.singletonList(hash), downloader.pollFailedHashes());
+        assertTrue(downloader.pollFailedHashes().isEmpty());
+    }
+
+    @Test
+    public void skipsUnreachablePeersForTheWholeDownload() throws Exception {
+        byte[] other = "other".getBytes(StandardCharsets.UTF_8);
+        String hash = HashUtil.toHex(HashUtil.createDigest().digest(JAR));
+        String otherHash = HashUtil.toHex(HashUtil.createDigest().digest(other));
+        BasePeerManager seeder = createPeer("seeder");
+        seeder.start(0);
+        seed(new BaseBlobStore(new File(folder.getRoot(), "seeder")), hash, JAR);
+        seed(new BaseBlobStore(new File(folder.getRoot(), "seeder")), otherHash, other);
+        int closedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            closedPort = socket.getLocalPort();
+        }
+        BasePeerManager downloader = createPeer("downloader");
+        File template = folder.newFolder("Lobby");
+
+        downloader.download(template, Arrays.asList(
+                file("spigot.jar", hash, peer(closedPort, "closed-token"), peer(seeder.getPort(), "seeder-token")),
+                file("other.jar", otherHash, peer(closedPort, "closed-token"), peer(seeder.getPort(), "seeder-token")))).get(30, TimeUnit.SECONDS);
+
+        assertArrayEquals(JAR, Files.readAllBytes(new File(template, "spigot.jar").toPath()));
+        assertArrayEquals(other, Files.readAllBytes(new File(template, "other.jar").toPath()));
+        assertEquals(Collections.singletonList("127.0.0.1:" + closedPort), downloader.pollUnreachablePeers());
+    }
+
+    @Test
+    public void rejectsPeersWithoutTheToken() throws Exception {
+        String hash = HashUtil.toHex(HashUtil.createDigest().digest(JAR));
+        BasePeerManager seeder = createPeer("seeder");
+        seeder.start(0);
+        seed(new BaseBlobStore(new File(folder.getRoot(), "seeder")), hash, JAR);
+        BasePeerManager downloader = createPeer("downloader");
+        File template = folder.newFolder("Lobby");
+
+        downloader.download(template, Collections.singletonList(file("spigot.jar", hash, peer(seeder.getPort(), "guessed-token")))).get(30, TimeUnit.SECONDS);
+
+        assertFalse(new File(template, "spigot.jar").exists());
+        assertEquals(Collections.singletonList(hash), downloader.pollFailedHashes());
+        assertTrue(downloader.pollUnreachablePeers().isEmpty());
+    }
+
+    @Test
+    public void usesFreePortIfConfiguredPortIsTaken() throws Exception {
+        BasePeerManager first = createPeer("first");
+        first.start(0);
+        BasePeerManager second = createPeer("second");
+        second.start(first.getPort());
+        assertTrue(second.getPort() > 0);
+        assertNotEquals(first.getPort(), second.getPort());
+    }
+}
@@ -0,0 +1,45 @@
+package cloud.timo.TimoCloud.base.managers;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class BaseResourceManagerTest {
+
+    @Test
+    public void parseCpuTicksWithSpacesInCommandName() {
+        String stat = "4242 (java (main) x) S 1 4242 4242 0 -1 4194560 96093 0 12 0 1500 250 0 0 20 0 42 0 1234 5000000 30000 18446744073709551615";
+        assertEquals(1750, BaseResourceManager.parseCpuTicks(stat));
+    }
+
+    @Test
+    public void parseRssPages() {
+        assertEquals(30000, BaseResourceManager.parseRssPages("1250000 30000 4000 1 0 90000 0\n"));
+    }
+
+    @Test
+    public void parseConf() {
+        assertEquals(65536, BaseResourceManager.parseConf("65536\n", 4096));
+        assertEquals(4096, BaseResourceManager.parseConf("undefined\n", 4096));
+        assertEquals(100, BaseResourceManager.parseConf("", 100));
+    }
+
+    @Test
+    public void parseField() {
+        String io = "rchar: 100\nwchar: 200\nread_bytes: 4096\nwrite_bytes: 8192\n";
+        assertEquals(4096, BaseResourceManager.parseField(io, "read_bytes"));
+        assertEquals(8192, BaseResourceManager.parseField(io, "write_bytes"));
+        assertEquals(-1, BaseResourceManager.parseField(io, "cancelled_write_bytes"));
+        assertEquals(1024, BaseResourceManager.parseField("MemFree: 4 kB\nCached:          1024 kB\n", "Cached"));
+    }
+
+    @Test
+    public void parseInstanceIdOnlyMatchesJvm() {
+        byte[] jvm = "/usr/bin/java\0-Xmx1024M\0-Dtimocloud-serverid=abc\0-jar\0spigot.jar\0".getBytes(StandardCharsets.UTF_8);
+        byte[] screen = "SCREEN\0-mdS\0Lobby-1\0java\0-Dtimocloud-serverid=abc\0".getBytes(StandardCharsets.UTF_8);
+        assertEquals("abc", BaseResourceManager.parseInstanceId(jvm));
+        assertNull(BaseResourceManager.parseInstanceId(screen));
+    }
+}
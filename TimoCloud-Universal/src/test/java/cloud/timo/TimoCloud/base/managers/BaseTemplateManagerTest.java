@@ -0,0 +1,101 @@
+package cloud.timo.TimoCloud.base.managers;
+
+import cloud.timo.TimoCloud.lib.utils.HashUtil;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.*;
+
+public class BaseTemplateManagerTest {
+
+    private static final byte[] JAR = "spigot".getBytes(StandardCharsets.UTF_8);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private BaseTemplateManager templateManager;
+
+    @Before
+    public void setUp() throws Exception {
+        templateManager = new BaseTemplateManager(folder.newFolder("blobs"));
+    }
+
+    private static byte[] zip(String name, byte[] content) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(outputStream)) {
+            zipOutputStream.putNextEntry(new ZipEntry(name));
+            zipOutputStream.write(content);
+            zipOutputStream.closeEntry();
+        }
+        return outputStream.toByteArray();
+    }
+
+    @Test
+    public void reusesFilesOfOtherTemplates() throws Exception {
+        File lobby = folder.newFolder("Lobby");
+        templateManager.extractFiles(new ByteArrayInputStream(zip("spigot.jar", JAR)), lobby);
+
+        File bedWars = folder.newFolder("BedWars");
+        Map<String, Object> expected = HashUtil.getHashes(lobby);
+        List<String> differences = HashUtil.getDifferentFiles("", expected, HashUtil.getHashes(bedWars));
+        assertEquals(1, differences.size());
+        assertTrue(templateManager.resolveDifferences(bedWars, expected, differences).isEmpty());
+        assertArrayEquals(JAR, Files.readAllBytes(new File(bedWars, "spigot.jar").toPath()));
+        assertTrue(Files.isSameFile(new File(lobby, "spigot.jar").toPath(), new File(bedWars, "spigot.jar").toPath()));
+    }
+
+    @Test
+    public void requestsEachMissingContentOnlyOnce() throws Exception {
+        File source = folder.newFolder("Source");
+        new File(source, "plugins").mkdirs();
+        Files.write(new File(source, "spigot.jar").toPath(), JAR);
+        Files.write(new File(source, "plugins/copy.jar").toPath(), JAR);
+        Files.write(new File(source, "plugins/other.jar").toPath(), "other".getBytes(StandardCharsets.UTF_8));
+        Map<String, Object> expected = HashUtil.getHashes(source);
+
+        File target = folder.newFolder("Target");
+        List<String> differences = HashUtil.getDifferentFiles("", expected, HashUtil.getHashes(target));
+        List<String> missing = templateManager.resolveDifferences(target, expected, differences);
+        assertEquals(2, missing.size());
+        assertTrue(new File(target, "plugins").isDirectory());
+    }
+
+    @Test
+    public void deletesUnusedBlobs() throws Exception {
+        File lobby = folder.newFolder("Lobby");
+        templateManager.extractFiles(new ByteArrayInputStream(zip("spigot.jar", JAR)), lobby);
+        String hash = (String) HashUtil.getHash(HashUtil.getHashes(lobby), "/spigot.jar");
+        assertEquals(0, templateManager.getBlobStore().collectGarbage(folder.getRoot()));
+        assertTrue(templateManager.getBlobStore().contains(hash));
+
+        Files.delete(new File(lobby, "spigot.jar").toPath());
+        assertEquals(1, templateManager.getBlobStore().collectGarbage(folder.getRoot()));
+        assertFalse(templateManager.getBlobStore().contains(hash));
+    }
+
+    @Test
+    public void keepsBlobsWhenFilesWereCopied() throws Exception {
+        File lobby = folder.newFolder("Lobby");
+        templateManager.extractFiles(new ByteArrayInputStream(zip("spigot.jar", JAR)), lobby);
+        String hash = (String) HashUtil.getHash(HashUtil.getHashes(lobby), "/spigot.jar");
+        // The template still uses the blob, but as a copy its link count does not show that
+        templateManager.getBlobStore().markCopied();
+        Files.delete(new File(lobby, "spigot.jar").toPath());
+        Files.write(new File(lobby, "spigot.jar").toPath(), JAR);
+
+        assertEquals(0, templateManager.getBlobStore().collectGarbage(folder.getRoot()));
+        assertTrue(templateManager.getBlobStore().contains(hash));
+    }
+}
@@ -0,0 +1,46 @@
+package cloud.timo.TimoCloud.bungeecord.objects;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+
+public class LobbyHistoryTest {
+
+    @Test
+    public void remembersTheMostRecentLobbies() {
+        LobbyHistory history = new LobbyHistory(60000, 10, 2);
+        UUID player = UUID.randomUUID();
+        history.add(player, "Lobby-1");
+        history.add(player, "Lobby-2");
+        history.add(player, "Lobby-3");
+        assertEquals(new HashSet<>(Arrays.asList("Lobby-2", "Lobby-3")), history.getVisited(player));
+    }
+
+    @Test
+    public void forgetsLeastRecentlyUsedPlayers() {
+        LobbyHistory history = new LobbyHistory(60000, 2, 2);
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        history.add(first, "Lobby-1");
+        history.add(second, "Lobby-1");
+        history.getVisited(first);
+        history.add(UUID.randomUUID(), "Lobby-1");
+        assertEquals(2, history.size());
+        assertEquals(Collections.singleton("Lobby-1"), history.getVisited(first));
+        assertEquals(Collections.emptySet(), history.getVisited(second));
+    }
+
+    @Test
+    public void expiresUnusedEntries() {
+        LobbyHistory history = new LobbyHistory(0, 10, 2);
+        UUID player = UUID.randomUUID();
+        history.add(player, "Lobby-1");
+        assertEquals(Collections.emptySet(), history.getVisited(player));
+        assertEquals(0, history.size());
+    }
+}
@@ -0,0 +1,63 @@
+package cloud.timo.TimoCloud.bungeecord.objects;
+
+import cloud.timo.TimoCloud.api.objects.ServerObject;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class LobbyIndexTest {
+
+    private static ServerObject server(String name, int players, int maxPlayers) {
+        return (ServerObject) Proxy.newProxyInstance(ServerObject.class.getClassLoader(), new Class[]{ServerObject.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getName":
+                    return name;
+                case "getOnlinePlayerCount":
+                    return players;
+                case "getMaxPlayerCount":
+                    return maxPlayers;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    private static LobbyIndex index() {
+        return new LobbyIndex(Arrays.asList(server("Lobby-1", 5, 10), server("Lobby-2", 2, 10), server("Lobby-3", 10, 10)));
+    }
+
+    @Test
+    public void skipsFullLobbies() {
+        assertEquals(2, index().size());
+    }
+
+    @Test
+    public void balanceChoosesTheEmptiestLobbyAndCountsThePlayer() {
+        LobbyIndex index = index();
+        for (int i = 0; i < 3; i++) assertEquals("Lobby-2", index.select(LobbyChooseStrategy.BALANCE, Collections.emptySet()));
+        // Lobby-2 now has 5 players as well, so the names decide
+        assertEquals("Lobby-1", index.select(LobbyChooseStrategy.BALANCE, Collections.emptySet()));
+    }
+
+    @Test
+    public void fillChoosesTheFullestLobbyUntilItIsFull() {
+        LobbyIndex index = index();
+        for (int i = 0; i < 5; i++) assertEquals("Lobby-1", index.select(LobbyChooseStrategy.FILL, Collections.emptySet()));
+        assertEquals("Lobby-2", index.select(LobbyChooseStrategy.FILL, Collections.emptySet()));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void respectsExcludedLobbies() {
+        LobbyIndex index = index();
+        Set<String> exclude = new HashSet<>(Collections.singletonList("Lobby-2"));
+        for (LobbyChooseStrategy strategy : LobbyChooseStrategy.values()) assertEquals("Lobby-1", index.select(strategy, exclude));
+        assertNull(index.select(LobbyChooseStrategy.RANDOM, new HashSet<>(Arrays.asList("Lobby-1", "Lobby-2"))));
+    }
+}
@@ -0,0 +1,79 @@
+package cloud.timo.TimoCloud.cord.sockets;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static cloud.timo.TimoCloud.cord.utils.PacketUtil.writeString;
+import static cloud.timo.TimoCloud.cord.utils.PacketUtil.writeVarInt;
+import static org.junit.Assert.*;
+
+public class MinecraftDecoderTest {
+
+    private static ByteBuf handshake(String hostName) {
+        ByteBuf packet = Unpooled.buffer();
+        writeVarInt(0, packet);
+        writeVarInt(340, packet);
+        writeString(hostName, packet);
+        packet.writeShort(25565);
+        writeVarInt(2, packet);
+        ByteBuf buf = Unpooled.buffer();
+        writeVarInt(packet.readableBytes(), buf);
+        buf.writeBytes(packet);
+        return buf;
+    }
+
+    @Test
+    public void handshakeSplitAcrossReads() {
+        ByteBuf full = handshake("lobby.example.com");
+        MinecraftDecoder decoder = new MinecraftDecoder();
+        for (int i = 0; i < full.readableBytes(); i++) {
+            assertEquals(MinecraftDecoder.Result.INCOMPLETE, decoder.parse(full.slice(0, i)));
+        }
+        full.writeBytes(new byte[]{3, 0, 1, 'a'}); // Start of the login packet is left untouched
+        assertEquals(MinecraftDecoder.Result.COMPLETE, decoder.parse(full));
+        assertEquals("lobby.example.com", decoder.getHostName());
+        assertEquals(0, full.readerIndex());
+    }
+
+    @Test
+    public void hostNameIsUtf8() {
+        MinecraftDecoder decoder = new MinecraftDecoder();
+        assertEquals(MinecraftDecoder.Result.COMPLETE, decoder.parse(handshake("b\u00fccher.example")));
+        assertEquals("b\u00fccher.example", decoder.getHostName());
+    }
+
+    @Test
+    public void malformedHandshakesAreInvalid() {
+        MinecraftDecoder decoder = new MinecraftDecoder();
+        ByteBuf tooLong = Unpooled.buffer();
+        writeVarInt(MinecraftDecoder.MAX_HANDSHAKE_LENGTH + 1, tooLong);
+        assertEquals(MinecraftDecoder.Result.INVALID, decoder.parse(tooLong));
+        assertEquals(MinecraftDecoder.Result.INVALID, decoder.parse(Unpooled.wrappedBuffer(new byte[]{(byte) 0x80, (byte) 0x80, (byte) 0x80, 1})));
+        // Host name length points beyond the end of the packet
+        assertEquals(MinecraftDecoder.Result.INVALID, decoder.parse(Unpooled.wrappedBuffer(new byte[]{4, 0, 1, 100, 'a'})));
+    }
+
+    @Test
+    public void legacyPings() {
+        MinecraftDecoder decoder = new MinecraftDecoder();
+        assertEquals(MinecraftDecoder.Result.COMPLETE, decoder.parse(Unpooled.wrappedBuffer(new byte[]{(byte) 0xFE, 0x01})));
+        assertEquals("", decoder.getHostName());
+
+        String hostName = "lobby.example.com";
+        ByteBuf ping = Unpooled.buffer();
+        ping.writeBytes(new byte[]{(byte) 0xFE, 0x01, (byte) 0xFA});
+        ping.writeShort(11);
+        ping.writeBytes("MC|PingHost".getBytes(StandardCharsets.UTF_16BE));
+        ping.writeShort(7 + hostName.length() * 2);
+        ping.writeByte(78);
+        ping.writeShort(hostName.length());
+        ping.writeBytes(hostName.getBytes(StandardCharsets.UTF_16BE));
+        ping.writeInt(25565);
+        assertEquals(MinecraftDecoder.Result.INCOMPLETE, decoder.parse(ping.slice(0, ping.readableBytes() - 1)));
+        assertEquals(MinecraftDecoder.Result.COMPLETE, decoder.parse(ping));
+        assertEquals(hostName, decoder.getHostName());
+    }
+}
@@ -0,0 +1,41 @@
+package cloud.timo.TimoCloud.cord.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CircuitBreakerTest {
+
+    @Test
+    public void failureOpensUntilCooldown() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(5000);
+        assertTrue(circuitBreaker.tryAcquire(0));
+        circuitBreaker.onFailure(1000);
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertFalse(circuitBreaker.isCallPermitted(5999));
+        assertFalse(circuitBreaker.tryAcquire(5999));
+        assertTrue(circuitBreaker.isCallPermitted(6000));
+    }
+
+    @Test
+    public void halfOpenLetsOneProbeThrough() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(5000);
+        circuitBreaker.onFailure(0);
+        assertTrue(circuitBreaker.tryAcquire(5000));
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+        assertFalse(circuitBreaker.tryAcquire(5001)); // Only one probe at a time
+        assertFalse(circuitBreaker.isCallPermitted(5002));
+    }
+
+    @Test
+    public void failedProbeReopens() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(5000);
+        circuitBreaker.onFailure(0);
+        circuitBreaker.tryAcquire(5000);
+        circuitBreaker.onFailure(5500);
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertEquals(2, circuitBreaker.getFailures());
+        assertFalse(circuitBreaker.isCallPermitted(10499));
+        assertTrue(circuitBreaker.isCallPermitted(10500));
+    }
+}
@@ -0,0 +1,55 @@
+package cloud.timo.TimoCloud.core.api;
+
+import cloud.timo.TimoCloud.api.objects.ProxyGroupObject;
+import cloud.timo.TimoCloud.core.objects.ProxyGroup;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ProxyGroupObjectCoreViewTest {
+
+    private static ProxyGroup group() {
+        return new ProxyGroup("Proxy", 100, 500, 10, 1, -1, 512, "", false, 1, Collections.emptyList(), null, "BALANCE", Arrays.asList("a.example.com", " b.example.com"));
+    }
+
+    @Test
+    public void doesNotCopyHostNames() {
+        ProxyGroupObject view = group().getView();
+        List<String> hostNames = view.getHostNames();
+        assertSame(hostNames, view.getHostNames());
+        assertEquals(new HashSet<>(Arrays.asList("a.example.com", "b.example.com")), new HashSet<>(hostNames));
+    }
+
+    @Test
+    public void doesNotCopyServerGroups() {
+        ProxyGroupObject view = group().getView();
+        assertSame(view.getServerGroups(), view.getServerGroups());
+        assertTrue(view.getServerGroups().isEmpty());
+    }
+
+    @Test
+    public void doesNotCopyProxies() {
+        ProxyGroupObject view = group().getView();
+        assertSame(view.getProxies(), view.getProxies());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void hostNamesAreUnmodifiable() {
+        group().getView().getHostNames().add("c.example.com");
+    }
+
+    @Test
+    public void seesNewHostNamesAfterReconstruct() {
+        ProxyGroup group = group();
+        ProxyGroupObject view = group.getView();
+        group.construct("Proxy", 100, 500, 10, 1, -1, 512, "", false, 1, Collections.emptyList(), null, "BALANCE", Collections.singletonList("c.example.com"));
+        assertEquals(Collections.singletonList("c.example.com"), view.getHostNames());
+    }
+}
@@ -0,0 +1,25 @@
+package cloud.timo.TimoCloud.core.api;
+
+import cloud.timo.TimoCloud.api.implementations.ServerObjectBasicImplementation;
+import cloud.timo.TimoCloud.api.objects.ServerObject;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+public class ServerObjectCoreViewTest {
+
+    private static ServerObject server(String name) {
+        return new ServerObjectBasicImplementation(name, name, "Lobby", "ONLINE", "", "", "", 0, 0, null, null);
+    }
+
+    @Test
+    public void ordersServersByNumber() {
+        List<ServerObject> servers = Arrays.asList(server("Lobby-10"), server("Lobby-2"), server("Lobby"), server("Lobby-1"));
+        servers.sort(ServerObjectCoreView.ORDER);
+        assertEquals(Arrays.asList("Lobby-1", "Lobby-2", "Lobby-10", "Lobby"), servers.stream().map(ServerObject::getName).collect(Collectors.toList()));
+    }
+}
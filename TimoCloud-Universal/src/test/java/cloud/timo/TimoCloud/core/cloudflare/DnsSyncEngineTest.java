@@ -0,0 +1,170 @@
+package cloud.timo.TimoCloud.core.cloudflare;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class DnsSyncEngineTest {
+
+    private static final DnsZone ZONE = new DnsZone("zone1", "example.com");
+
+    private HttpServer server;
+    private CloudFlareClient client;
+    private final List<JsonObject> records = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final AtomicInteger rateLimitedRequests = new AtomicInteger();
+    private final List<DnsRecord> desired = new ArrayList<>();
+    private DnsSyncEngine engine;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+        client = new CloudFlareClient("http://127.0.0.1:" + server.getAddress().getPort() + "/client/v4", "mail@example.com", "key", 3, 1);
+        engine = new DnsSyncEngine(client, zone -> zone.getName().equals("example.com"), record -> record.getName().contains(".base.") || record.getType().equals("SRV"), zones -> desired, 2, 60000);
+    }
+
+    @After
+    public void tearDown() {
+        engine.shutdown();
+        server.stop(0);
+    }
+
+    private void addExisting(String type, String name, String content) {
+        JsonObject record = new JsonObject();
+        record.addProperty("id", "existing" + nextId.incrementAndGet());
+        record.addProperty("type", type);
+        record.addProperty("name", name);
+        record.addProperty("content", content);
+        record.addProperty("ttl", 1);
+        record.addProperty("zone_id", ZONE.getId());
+        record.addProperty("zone_name", ZONE.getName());
+        records.add(record);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getPath().replace("/client/v4/", "");
+        String query = exchange.getRequestURI().getQuery();
+        if (rateLimitedRequests.get() > 0 && rateLimitedRequests.decrementAndGet() >= 0) {
+            exchange.getResponseHeaders().add("Retry-After", "0");
+            respond(exchange, 429, "{\"success\":false,\"errors\":[{\"code\":10000,\"message\":\"Rate limited\"}]}");
+            return;
+        }
+        JsonObject response = new JsonObject();
+        response.addProperty("success", true);
+        if (method.equals("GET") && path.equals("zones")) {
+            JsonArray zones = new JsonArray();
+            zones.add(ZONE.toJson());
+            zones.add(new DnsZone("zone2", "unrelated.org").toJson());
+            response.add("result", zones);
+        } else if (method.equals("GET") && path.equals("zones/zone1/dns_records")) {
+            // Pages of two records, to make sure the client follows result_info
+            int page = Integer.parseInt(query.replaceAll(".*page=(\\d+).*", "$1"));
+            JsonArray result = new JsonArray();
+            synchronized (records) {
+                for (int i = (page - 1) * 2; i < Math.min(records.size(), page * 2); i++) result.add(records.get(i));
+                JsonObject resultInfo = new JsonObject();
+                resultInfo.addProperty("total_pages", Math.max(1, (records.size() + 1) / 2));
+                response.add("result_info", resultInfo);
+            }
+            response.add("result", result);
+        } else if (method.equals("POST") && path.equals("zones/zone1/dns_records")) {
+            JsonObject record = new JsonParser().parse(read(exchange.getRequestBody())).getAsJsonObject();
+            record.addProperty("id", "created" + nextId.incrementAndGet());
+            if (record.get("type").getAsString().equals("SRV")) record.addProperty("name", SrvRecord.NAME_PREFIX + record.get("name").getAsString());
+            records.add(record);
+            response.add("result", record);
+        } else if (method.equals("DELETE") && path.startsWith("zones/zone1/dns_records/")) {
+            String id = path.substring(path.lastIndexOf('/') + 1);
+            records.removeIf(record -> record.get("id").getAsString().equals(id));
+            JsonObject result = new JsonObject();
+            result.addProperty("id", id);
+            response.add("result", result);
+        } else {
+            respond(exchange, 404, "{\"success\":false,\"errors\":[{\"code\":7003,\"message\":\"Not found\"}]}");
+            return;
+        }
+        respond(exchange, 200, response.toString());
+    }
+
+    private static String read(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int length;
+        while ((length = inputStream.read(buffer)) >= 0) outputStream.write(buffer, 0, length);
+        return new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(bytes);
+        }
+    }
+
+    private Set<String> getRecordNames() {
+        Set<String> names = new HashSet<>();
+        synchronized (records) {
+            for (JsonObject record : records) names.add(record.get("type").getAsString() + " " + record.get("name").getAsString());
+        }
+        return names;
+    }
+
+    @Test
+    public void onlySendsDifferences() throws Exception {
+        addExisting("A", "base-1.base.example.com", "10.0.0.1");
+        addExisting("A", "old.base.example.com", "10.0.0.2");
+        addExisting("A", "www.example.com", "10.0.0.3");
+        desired.add(new DnsRecord(null, "A", "base-1.base.example.com", "10.0.0.1", 1, ZONE));
+        desired.add(new DnsRecord(null, "A", "base-2.base.example.com", "10.0.0.4", 1, ZONE));
+        desired.add(new SrvRecord(null, "SRV", "play.example.com", "10.0.0.4", 1, ZONE, 1, 1, 25565, "base-2.base.example.com"));
+
+        DnsSyncEngine.Changes changes = engine.reconcile();
+
+        assertEquals(2, changes.getCreated());
+        assertEquals(1, changes.getDeleted());
+        assertEquals(new HashSet<>(Arrays.asList("A base-1.base.example.com", "A base-2.base.example.com", "A www.example.com", "SRV _minecraft._tcp.play.example.com")), getRecordNames());
+
+        long requests = client.getRequestCount();
+        assertTrue(engine.reconcile().isEmpty());
+        assertEquals("Unchanged state must be answered from the cache", requests, client.getRequestCount());
+
+        desired.remove(2);
+        changes = engine.reconcile();
+        assertEquals(1, changes.getDeleted());
+        assertEquals(requests + 1, client.getRequestCount());
+        assertFalse(getRecordNames().contains("SRV _minecraft._tcp.play.example.com"));
+    }
+
+    @Test
+    public void retriesRateLimitedRequests() throws Exception {
+        desired.add(new DnsRecord(null, "A", "base-1.base.example.com", "10.0.0.1", 1, ZONE));
+        engine.reconcile();
+        rateLimitedRequests.set(2);
+        desired.add(new DnsRecord(null, "A", "base-2.base.example.com", "10.0.0.2", 1, ZONE));
+
+        DnsSyncEngine.Changes changes = engine.reconcile();
+
+        assertEquals(1, changes.getCreated());
+        assertTrue(getRecordNames().contains("A base-2.base.example.com"));
+    }
+}
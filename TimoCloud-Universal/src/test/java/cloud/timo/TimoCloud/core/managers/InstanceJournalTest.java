@@ -0,0 +1,91 @@
+package cloud.timo.TimoCloud.core.managers;
+
+import cloud.timo.TimoCloud.lib.messages.Message;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class InstanceJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Message server(String id, String state) {
+        return Message.create().set("kind", InstanceJournal.SERVER).set("id", id).set("token", "secret-" + id).set("state", state);
+    }
+
+    @Test
+    public void replaysChangesAfterRestart() throws Exception {
+        File file = new File(folder.getRoot(), "instances.journal");
+        InstanceJournal journal = new InstanceJournal(file);
+        journal.load();
+        journal.put(server("Lobby-1_1", "STARTING"));
+        journal.put(server("Lobby-2_2", "STARTING"));
+        journal.put(server("Lobby-1_1", "ONLINE"));
+        journal.put(Message.create().set("kind", InstanceJournal.BASE).set("id", "BASE-1").set("token", "base-secret"));
+        journal.remove(InstanceJournal.SERVER, "Lobby-2_2");
+        journal.flush();
+
+        // The core is killed without closing the journal
+        InstanceJournal restarted = new InstanceJournal(file);
+        restarted.load();
+        List<Message> servers = restarted.getRecords(InstanceJournal.SERVER);
+        assertEquals(1, servers.size());
+        assertEquals("Lobby-1_1", servers.get(0).get("id"));
+        assertEquals("ONLINE", servers.get(0).get("state"));
+        assertEquals("secret-Lobby-1_1", servers.get(0).get("token"));
+        assertEquals("base-secret", restarted.getRecord(InstanceJournal.BASE, "BASE-1").get("token"));
+        // Loading has replaced the journal by a snapshot of the live records
+        assertEquals(2, Files.readAllLines(file.toPath(), StandardCharsets.UTF_8).size());
+    }
+
+    @Test
+    public void ignoresChangesAfterClose() {
+        File file = new File(folder.getRoot(), "instances.journal");
+        InstanceJournal journal = new InstanceJournal(file);
+        journal.load();
+        journal.put(server("Lobby-1_1", "ONLINE"));
+        journal.close();
+        // Instances disconnecting because the core shuts down must not be forgotten
+        journal.remove(InstanceJournal.SERVER, "Lobby-1_1");
+
+        InstanceJournal restarted = new InstanceJournal(file);
+        restarted.load();
+        assertNotNull(restarted.getRecord(InstanceJournal.SERVER, "Lobby-1_1"));
+    }
+
+    @Test
+    public void writesQueuedChangesOnClose() {
+        File file = new File(folder.getRoot(), "instances.journal");
+        InstanceJournal journal = new InstanceJournal(file);
+        journal.load();
+        for (int i = 0; i < 100; i++) journal.put(server("Lobby-" + i + "_" + i, "ONLINE"));
+        journal.close();
+
+        InstanceJournal restarted = new InstanceJournal(file);
+        restarted.load();
+        assertEquals(100, restarted.getRecords(InstanceJournal.SERVER).size());
+    }
+
+    @Test
+    public void compactsWhenJournalGrows() throws Exception {
+        File file = new File(folder.getRoot(), "instances.journal");
+        InstanceJournal journal = new InstanceJournal(file);
+        journal.load();
+        for (int i = 0; i < 2500; i++) journal.put(server("Lobby-1_1", "STATE-" + i));
+        journal.flush();
+        assertTrue(Files.readAllLines(file.toPath(), StandardCharsets.UTF_8).size() < 1000);
+
+        InstanceJournal restarted = new InstanceJournal(file);
+        restarted.load();
+        assertEquals("STATE-2499", restarted.getRecord(InstanceJournal.SERVER, "Lobby-1_1").get("state"));
+        journal.close();
+    }
+}
@@ -0,0 +1,90 @@
+package cloud.timo.TimoCloud.core.managers;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.Assert.*;
+
+public class TemplateManagerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File createTemplate() throws Exception {
+        File template = folder.newFolder("Lobby");
+        Files.write(new File(template, "server.properties").toPath(), "motd=Lobby".getBytes(StandardCharsets.UTF_8));
+        new File(template, "plugins").mkdirs();
+        Files.write(new File(template, "plugins/Plugin.jar").toPath(), new byte[]{1, 2, 3, 4});
+        return template;
+    }
+
+    private static Set<String> getEntryNames(String archive) throws Exception {
+        Set<String> names = new HashSet<>();
+        try (ZipInputStream zipInputStream = new ZipInputStream(new ByteArrayInputStream(Base64.getDecoder().decode(archive)))) {
+            ZipEntry entry;
+            while ((entry = zipInputStream.getNextEntry()) != null) names.add(entry.getName());
+        }
+        return names;
+    }
+
+    @Test
+    public void buildsIdenticalRequestsOnlyOnce() throws Exception {
+        File template = createTemplate();
+        File cache = folder.newFolder("cache");
+        TemplateManager templateManager = new TemplateManager(cache, Long.MAX_VALUE);
+        List<File> files = Arrays.asList(new File(template, "server.properties"), new File(template, "plugins"));
+
+        List<CompletableFuture<String>> requests = new ArrayList<>();
+        for (int i = 0; i < 10; i++) requests.add(templateManager.getEncodedArchive(template, files));
+        String first = requests.get(0).get();
+        for (CompletableFuture<String> request : requests) assertSame(first, request.get()); // All bases share one copy
+        assertEquals(new HashSet<>(Arrays.asList("server.properties", "plugins/Plugin.jar")), getEntryNames(first));
+        assertEquals(1, cache.listFiles().length);
+
+        // A changed file results in a new archive
+        Files.write(new File(template, "server.properties").toPath(), "motd=New Lobby".getBytes(StandardCharsets.UTF_8));
+        new File(template, "server.properties").setLastModified(System.currentTimeMillis() + 10000);
+        assertNotEquals(first, templateManager.getEncodedArchive(template, files).get());
+        assertEquals(2, cache.listFiles().length);
+        templateManager.shutdown();
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedArchives() throws Exception {
+        File template = createTemplate();
+        File cache = folder.newFolder("cache");
+        TemplateManager templateManager = new TemplateManager(cache, 1);
+        templateManager.getEncodedArchive(template, Collections.singletonList(new File(template, "server.properties"))).get();
+        templateManager.getEncodedArchive(template, Collections.singletonList(new File(template, "plugins"))).get();
+        assertEquals(1, cache.listFiles().length);
+        templateManager.shutdown();
+    }
+
+    @Test(expected = IOException.class)
+    public void failsInsteadOfWritingTruncatedArchives() throws Exception {
+        File template = createTemplate();
+        TemplateManager templateManager = new TemplateManager(folder.newFolder("cache"), Long.MAX_VALUE);
+        try {
+            templateManager.zipFiles(Collections.singletonList(new File(template, "server.properties")), template, new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    throw new IOException("No space left on device");
+                }
+            });
+        } finally {
+            templateManager.shutdown();
+        }
+    }
+}
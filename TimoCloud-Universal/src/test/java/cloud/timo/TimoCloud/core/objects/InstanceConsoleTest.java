@@ -0,0 +1,47 @@
+package cloud.timo.TimoCloud.core.objects;
+
+import cloud.timo.TimoCloud.api.core.commands.CommandSender;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class InstanceConsoleTest {
+
+    private static CommandSender sender(List<String> received) {
+        return new CommandSender() {
+            @Override
+            public void sendMessage(String message) {
+                received.add(message);
+            }
+
+            @Override
+            public void sendError(String message) {
+                received.add(message);
+            }
+        };
+    }
+
+    @Test
+    public void sendsRequestedLinesToTheRequestingSender() {
+        InstanceConsole console = new InstanceConsole("Lobby-1");
+        List<String> requester = new ArrayList<>();
+        List<String> attached = new ArrayList<>();
+        console.request(sender(requester));
+        console.attach(sender(attached));
+
+        console.onOutput(Arrays.asList("first", "second"), true);
+        console.onOutput(Collections.singletonList("third"), false);
+        console.onOutput(Collections.singletonList("unrequested"), true);
+
+        assertEquals(Arrays.asList("&7[Lobby-1] &rfirst", "&7[Lobby-1] &rsecond"), requester);
+        assertEquals(Collections.singletonList("&7[Lobby-1] &rthird"), attached);
+        console.detach();
+        console.onOutput(Collections.singletonList("fourth"), false);
+        assertEquals(1, attached.size());
+    }
+}
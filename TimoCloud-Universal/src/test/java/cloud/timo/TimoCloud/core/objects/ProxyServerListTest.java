@@ -0,0 +1,52 @@
+package cloud.timo.TimoCloud.core.objects;
+
+import cloud.timo.TimoCloud.lib.messages.Message;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ProxyServerListTest {
+
+    @Test
+    public void changesAreBatchedIntoOneDelta() {
+        ProxyServerList serverList = new ProxyServerList();
+        assertTrue(serverList.add("Lobby-1", "10.0.0.1", 40000));
+        assertFalse(serverList.add("Lobby-2", "10.0.0.1", 40001)); // Flush is already scheduled
+        Message delta = serverList.flush();
+        assertEquals("SERVER_LIST_DELTA", delta.getType());
+        assertEquals(1L, delta.get("version"));
+        assertEquals(2, ((List) delta.get("add")).size());
+        assertNull(serverList.flush());
+    }
+
+    @Test
+    public void removingUnsentServerCancelsAdd() {
+        ProxyServerList serverList = new ProxyServerList();
+        serverList.add("Lobby-1", "10.0.0.1", 40000);
+        serverList.flush();
+        serverList.add("Lobby-2", "10.0.0.1", 40001);
+        serverList.remove("Lobby-2");
+        serverList.remove("Lobby-1");
+        Message delta = serverList.flush();
+        assertEquals(Collections.singletonList("Lobby-1"), delta.get("remove"));
+        assertTrue(((List) delta.get("add")).isEmpty());
+        assertEquals(2L, delta.get("version"));
+    }
+
+    @Test
+    public void snapshotIncludesPendingChanges() {
+        ProxyServerList serverList = new ProxyServerList();
+        serverList.add("Lobby-1", "10.0.0.1", 40000);
+        Message snapshot = serverList.snapshot();
+        assertEquals("SERVER_LIST", snapshot.getType());
+        List<Map<String, Object>> servers = (List<Map<String, Object>>) snapshot.get("servers");
+        assertEquals(1, servers.size());
+        assertEquals("Lobby-1", servers.get(0).get("name"));
+        assertFalse(serverList.hasPendingChanges());
+        assertEquals(snapshot.get("version"), serverList.getVersion());
+    }
+}
@@ -76,6 +76,16 @@ public class ServerTest extends CommunicationTest {
 
     }
 
+    @Test
+    public void keepsStateSetBeforeRegistering() {
+        Server server = anyServer();
+        server.resume(Message.create().set("token", server.getToken()).set("registered", true).set("state", "INGAME"));
+        // Sent while the core was restarting, so it arrives before the server registers again
+        server.onMessage(Message.create().setType("SET_STATE").setData("LOBBY"));
+        server.onMessage(Message.create().setType("REGISTER"));
+        assertEquals("LOBBY", server.getState());
+    }
+
     @Test
     public void unregister() {
 
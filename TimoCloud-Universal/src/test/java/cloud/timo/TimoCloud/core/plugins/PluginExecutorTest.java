@@ -0,0 +1,83 @@
+package cloud.timo.TimoCloud.core.plugins;
+
+import cloud.timo.TimoCloud.TimoCloudTest;
+import cloud.timo.TimoCloud.core.TimoCloudCore;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({
+        TimoCloudCore.class
+})
+public class PluginExecutorTest extends TimoCloudTest {
+
+    private PluginExecutor executor;
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    private static void await(PluginExecutor executor) throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        executor.submit("latch", latch::countDown);
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void callsListenersInOrderOnPluginThread() throws Exception {
+        executor = new PluginExecutor("Test", 1000, 100, 10);
+        List<String> calls = Collections.synchronizedList(new ArrayList<>());
+        for (int i = 0; i < 5; i++) {
+            int number = i;
+            executor.submit("listener", () -> calls.add(number + " " + Thread.currentThread().getName()));
+        }
+        await(executor);
+
+        String thread = "TimoCloud-Plugin-Test";
+        assertEquals(5, calls.size());
+        for (int i = 0; i < 5; i++) assertTrue(calls.get(i).startsWith(i + " " + thread));
+        assertTrue(executor.getCalls() >= 5);
+        assertEquals(0, executor.getSlowCalls());
+        assertEquals(0, executor.getQueued());
+    }
+
+    @Test
+    public void quarantinesPluginWhichRepeatedlyExceedsBudget() throws Exception {
+        executor = new PluginExecutor("Slow", 1, 100, 2);
+        List<Integer> calls = Collections.synchronizedList(new ArrayList<>());
+        for (int i = 0; i < 2; i++) {
+            int number = i;
+            executor.submit("slowListener", () -> {
+                calls.add(number);
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException ignored) {
+                }
+            });
+        }
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!executor.isQuarantined() && System.currentTimeMillis() < deadline) Thread.sleep(5);
+
+        assertTrue(executor.isQuarantined());
+        assertEquals(2, executor.getSlowCalls());
+        assertFalse(executor.submit("slowListener", () -> calls.add(2)));
+        assertEquals(Arrays.asList(0, 1), calls);
+
+        executor.release();
+        await(executor);
+        assertFalse(executor.isQuarantined());
+    }
+}
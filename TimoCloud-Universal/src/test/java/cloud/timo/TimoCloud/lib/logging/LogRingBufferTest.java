@@ -0,0 +1,47 @@
+package cloud.timo.TimoCloud.lib.logging;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class LogRingBufferTest {
+
+    @Test
+    public void rejectsWhenFullAndReusesSlots() {
+        LogRingBuffer<Integer> buffer = new LogRingBuffer<>(3);
+        assertEquals(4, buffer.capacity());
+        for (int i = 0; i < 4; i++) assertTrue(buffer.offer(i));
+        assertFalse(buffer.offer(4));
+        assertEquals(Integer.valueOf(0), buffer.poll());
+        assertTrue(buffer.offer(4));
+        for (int i = 1; i <= 4; i++) assertEquals(Integer.valueOf(i), buffer.poll());
+        assertNull(buffer.poll());
+    }
+
+    @Test
+    public void concurrentProducersLoseNothing() throws Exception {
+        LogRingBuffer<Integer> buffer = new LogRingBuffer<>(1024);
+        int producers = 4;
+        int perProducer = 10000;
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            int offset = p * perProducer;
+            threads[p] = new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    while (!buffer.offer(offset + i)) Thread.yield();
+                }
+            });
+            threads[p].start();
+        }
+        Set<Integer> received = new HashSet<>();
+        while (received.size() < producers * perProducer) {
+            Integer element = buffer.poll();
+            if (element != null) assertTrue(received.add(element));
+        }
+        for (Thread thread : threads) thread.join();
+        assertNull(buffer.poll());
+    }
+}
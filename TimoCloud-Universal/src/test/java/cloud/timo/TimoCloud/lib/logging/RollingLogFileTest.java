@@ -0,0 +1,60 @@
+package cloud.timo.TimoCloud.lib.logging;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+
+import static org.junit.Assert.*;
+
+public class RollingLogFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void entriesAreSingleEscapedLines() {
+        RollingLogFile file = new RollingLogFile(folder.getRoot(), "core", 1024, 10);
+        StringBuilder line = new StringBuilder();
+        file.format(new LogEntry(0, Level.WARNING, "first\nsecond\tthird", new IllegalStateException("broken")), line);
+        String[] fields = line.toString().split("\t");
+        assertEquals(3, fields.length);
+        assertEquals("WARNING", fields[1]);
+        assertTrue(fields[2].startsWith("first\\nsecond\\tthird\\njava.lang.IllegalStateException: broken\\n"));
+        assertEquals(line.length() - 1, line.indexOf("\n"));
+    }
+
+    @Test
+    public void rotatesBySize() throws Exception {
+        RollingLogFile file = new RollingLogFile(folder.getRoot(), "core", 100, 2);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 5; i++) {
+            file.write(Collections.singletonList(new LogEntry(now, Level.INFO, String.format("%080d", i), null)));
+        }
+        file.close();
+        File[] files = folder.getRoot().listFiles();
+        assertEquals(2, files.length); // Older files have been deleted
+        Arrays.sort(files);
+        List<String> lines = Files.readAllLines(files[1].toPath(), StandardCharsets.UTF_8);
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0).endsWith(String.format("%080d", 4)));
+    }
+
+    @Test
+    public void countsEncodedBytes() throws Exception {
+        RollingLogFile file = new RollingLogFile(folder.getRoot(), "core", 200, 10);
+        long now = System.currentTimeMillis();
+        String message = String.join("", Collections.nCopies(40, "\u00e4")); // 40 chars, but 80 bytes in UTF-8
+        for (int i = 0; i < 3; i++) file.write(Collections.singletonList(new LogEntry(now, Level.INFO, message, null)));
+        file.close();
+        File[] files = folder.getRoot().listFiles();
+        assertEquals(2, files.length); // Counting chars would have fit all three lines into the first file
+    }
+}
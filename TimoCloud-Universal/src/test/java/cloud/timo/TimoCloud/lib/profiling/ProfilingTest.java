@@ -0,0 +1,53 @@
+package cloud.timo.TimoCloud.lib.profiling;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class ProfilingTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void recordsSpansWithTheirFields() throws Exception {
+        assumeTrue(Profiling.isAvailable());
+        Profiling.startRecording();
+        try (ProfilingSpan span = Profiling.instanceStartStage("Lobby-1", "COPY")) {
+            Thread.sleep(5);
+        }
+        File file = folder.newFile("profile.jfr");
+        Profiling.stopRecording(file);
+
+        // The Flight Recorder API is not part of Java 8, so the recording is read through reflection as well
+        Class<?> recordedEvent = Class.forName("jdk.jfr.consumer.RecordedEvent");
+        Method getEventType = recordedEvent.getMethod("getEventType");
+        Method getName = getEventType.getReturnType().getMethod("getName");
+        Object stage = null;
+        for (Object event : (List<?>) Class.forName("jdk.jfr.consumer.RecordingFile").getMethod("readAllEvents", Path.class).invoke(null, file.toPath())) {
+            if (getName.invoke(getEventType.invoke(event)).equals("timocloud.InstanceStartStage")) stage = event;
+        }
+        assertNotNull(stage);
+        Method getString = recordedEvent.getMethod("getString", String.class);
+        assertEquals("Lobby-1", getString.invoke(stage, "instance"));
+        assertEquals("COPY", getString.invoke(stage, "stage"));
+        assertTrue(((Duration) recordedEvent.getMethod("getDuration").invoke(stage)).toMillis() >= 5);
+        assertFalse(Profiling.isRecording());
+    }
+
+    @Test
+    public void spansAreNoOpsWhileNotRecording() {
+        try (ProfilingSpan span = Profiling.messageDispatch("CoreStringHandler", "RESOURCES", 42)) {
+            assertFalse(Profiling.isRecording());
+        }
+    }
+}
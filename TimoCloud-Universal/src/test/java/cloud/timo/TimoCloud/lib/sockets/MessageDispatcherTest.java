@@ -0,0 +1,89 @@
+package cloud.timo.TimoCloud.lib.sockets;
+
+import cloud.timo.TimoCloud.lib.messages.Message;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class MessageDispatcherTest {
+
+    private MessageDispatcher dispatcher;
+    private List<String> handled;
+    private CountDownLatch release;
+
+    @Before
+    public void setUp() {
+        dispatcher = new MessageDispatcher("TimoCloud-MessageHandlerTest", 2, (message, e) -> handled.add("ERROR " + message.getType() + " " + e.getMessage()));
+        handled = Collections.synchronizedList(new ArrayList<>());
+        release = new CountDownLatch(1);
+        dispatcher.register("SLOW", true, (message, channel) -> {
+            release.await(10, TimeUnit.SECONDS);
+            handled.add("SLOW " + message.get("data"));
+        });
+        dispatcher.register("FAILING", false, (message, channel) -> {
+            throw new IllegalStateException("failed");
+        });
+        dispatcher.setDefaultHandler(false, (message, channel) -> handled.add(message.getType() + " " + message.get("data") + (Thread.currentThread().getName().startsWith("TimoCloud-MessageHandlerTest") ? " on worker" : "")));
+    }
+
+    @After
+    public void tearDown() {
+        dispatcher.shutdown();
+    }
+
+    private static Message message(String type, Object data) {
+        return Message.create().setType(type).setData(data);
+    }
+
+    private void awaitHandled(int amount) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (handled.size() < amount && System.currentTimeMillis() < deadline) Thread.sleep(5);
+    }
+
+    @Test
+    public void handlesNonBlockingMessagesInline() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        dispatcher.dispatch(message("STATUS", 1), channel);
+        assertEquals(Collections.singletonList("STATUS 1"), handled);
+        assertEquals(0, dispatcher.getStatistics().get("STATUS").getMaxQueued());
+    }
+
+    @Test
+    public void keepsOrderOfEachChannel() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        EmbeddedChannel otherChannel = new EmbeddedChannel();
+        dispatcher.dispatch(message("SLOW", 1), channel);
+        dispatcher.dispatch(message("STATUS", 2), channel);
+        dispatcher.dispatch(message("STATUS", 3), otherChannel);
+
+        // The other channel is not held up, while the fast message has to wait for the slow one of its channel
+        assertEquals(Collections.singletonList("STATUS 3"), handled);
+        assertEquals(1, dispatcher.getStatistics().get("STATUS").getQueued());
+        release.countDown();
+        awaitHandled(3);
+
+        assertEquals(Arrays.asList("STATUS 3", "SLOW 1", "STATUS 2 on worker"), handled);
+        MessageTypeStatistics statistics = dispatcher.getStatistics().get("SLOW");
+        assertEquals(1, statistics.getHandled());
+        assertEquals(0, statistics.getQueued());
+        assertEquals(1, statistics.getMaxQueued());
+    }
+
+    @Test
+    public void reportsHandlerErrors() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        dispatcher.dispatch(message("FAILING", 1), channel);
+        dispatcher.dispatch(message("STATUS", 2), channel);
+        assertEquals(Arrays.asList("ERROR FAILING failed", "STATUS 2"), handled);
+    }
+}
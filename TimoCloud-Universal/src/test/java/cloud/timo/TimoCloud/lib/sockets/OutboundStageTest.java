@@ -0,0 +1,62 @@
+package cloud.timo.TimoCloud.lib.sockets;
+
+import cloud.timo.TimoCloud.lib.messages.Message;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class OutboundStageTest {
+
+    private static EmbeddedChannel createChannel() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        OutboundStage.install(channel.pipeline());
+        return channel;
+    }
+
+    @Test
+    public void sendsWhileWritable() {
+        EmbeddedChannel channel = createChannel();
+        OutboundStage.send(channel, "EVENT_FIRED", "event");
+        OutboundStage.send(channel, "API_DATA", "data");
+        channel.runPendingTasks(); // Consolidated flushes are scheduled on the event loop
+        assertEquals("event", channel.readOutbound());
+        assertEquals("data", channel.readOutbound());
+        assertNull(channel.readOutbound());
+    }
+
+    @Test
+    public void shedsLowPriorityMessagesWhileNotWritable() {
+        EmbeddedChannel channel = createChannel();
+        channel.unsafe().outboundBuffer().setUserDefinedWritability(1, false);
+        long dropped = OutboundStage.getDroppedMessages();
+
+        OutboundStage.send(channel, "EVENT_FIRED", "event");
+        OutboundStage.send(channel, "API_DATA", "old data");
+        OutboundStage.send(channel, "API_DATA", "new data");
+        OutboundStage.send(channel, "SERVER_START", "start");
+        assertEquals(dropped + 1, OutboundStage.getDroppedMessages());
+        channel.runPendingTasks();
+        assertEquals("start", channel.readOutbound());
+        assertNull(channel.readOutbound());
+
+        channel.unsafe().outboundBuffer().setUserDefinedWritability(1, true);
+        channel.runPendingTasks();
+        assertEquals("new data", channel.readOutbound());
+        assertNull(channel.readOutbound());
+    }
+
+    @Test
+    public void keepsPlayerEventsWhileNotWritable() {
+        EmbeddedChannel channel = createChannel();
+        channel.unsafe().outboundBuffer().setUserDefinedWritability(1, false);
+        Message playerEvent = Message.create().setType("EVENT_FIRED").set("eventType", "PLAYER_CONNECT").setData("player");
+        Message serverEvent = Message.create().setType("EVENT_FIRED").set("eventType", "SERVER_REGISTER").setData("server");
+
+        OutboundStage.send(channel, serverEvent);
+        OutboundStage.send(channel, playerEvent);
+        channel.runPendingTasks();
+        assertEquals(playerEvent.toJson(), channel.readOutbound());
+        assertNull(channel.readOutbound());
+    }
+}
@@ -0,0 +1,44 @@
+package cloud.timo.TimoCloud.lib.sockets;
+
+import cloud.timo.TimoCloud.lib.messages.Message;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class ReconnectBufferTest {
+
+    private static String message(String type, Object data) {
+        return Message.create().setType(type).setData(data).toJson();
+    }
+
+    @Test
+    public void keepsOrderAndCoalescesStatus() {
+        ReconnectBuffer buffer = new ReconnectBuffer();
+        buffer.add(message("GET_API_DATA", null));
+        buffer.add(message("STATUS", 1));
+        buffer.add(message("PLAYER_CONNECT", "Timo"));
+        buffer.add(message("GET_API_DATA", null));
+        buffer.add(message("STATUS", 2));
+
+        assertEquals(Arrays.asList(
+                message("PLAYER_CONNECT", "Timo"),
+                message("GET_API_DATA", null),
+                message("STATUS", 2)), buffer.drain());
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    public void dropsMessagesWhenFull() {
+        String message = message("PLAYER_CONNECT", "Timo");
+        ReconnectBuffer buffer = new ReconnectBuffer(message.length() * 2);
+        assertTrue(buffer.add(message));
+        assertTrue(buffer.add(message));
+        assertFalse(buffer.add(message));
+        assertEquals(1, buffer.getDropped());
+        assertEquals(2, buffer.drain().size());
+        assertEquals(Collections.emptyList(), buffer.drain());
+    }
+}
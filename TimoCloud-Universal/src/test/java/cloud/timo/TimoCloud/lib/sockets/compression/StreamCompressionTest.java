@@ -0,0 +1,91 @@
+package cloud.timo.TimoCloud.lib.sockets.compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.CharsetUtil;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class StreamCompressionTest {
+
+    private static final String SMALL = "{\"type\":\"PLAYERS\",\"data\":[]}";
+    private static final String LARGE;
+
+    static {
+        StringBuilder builder = new StringBuilder("{\"type\":\"API_DATA\",\"data\":{\"serverGroups\":[");
+        for (int i = 0; i < 50; i++) builder.append("{\"name\":\"Lobby-").append(i).append("\",\"group\":\"Lobby\",\"state\":\"ONLINE\"},");
+        LARGE = builder.append("{}]}}").toString();
+    }
+
+    private static ByteBuf encode(EmbeddedChannel encoder, String message) {
+        assertTrue(encoder.writeOutbound(Unpooled.copiedBuffer(message, CharsetUtil.UTF_8)));
+        return encoder.readOutbound();
+    }
+
+    private static String readAll(EmbeddedChannel decoder) {
+        StringBuilder result = new StringBuilder();
+        ByteBuf buf;
+        while ((buf = decoder.readInbound()) != null) {
+            result.append(buf.toString(CharsetUtil.UTF_8));
+            buf.release();
+        }
+        return result.toString();
+    }
+
+    @Test
+    public void decodesPlainPrefixAndCompressedFrames() {
+        EmbeddedChannel encoder = new EmbeddedChannel(new CompressionEncoder(64));
+        EmbeddedChannel decoder = new EmbeddedChannel(new CompressionDecoder());
+
+        ByteBuf stream = Unpooled.buffer();
+        stream.writeBytes(SMALL.getBytes(CharsetUtil.UTF_8));
+        ByteBuf small = encode(encoder, SMALL);
+        ByteBuf large = encode(encoder, LARGE);
+        ByteBuf repeated = encode(encoder, LARGE);
+        assertTrue(large.readableBytes() < LARGE.length() / 4);
+        assertTrue(repeated.readableBytes() < large.readableBytes());
+        stream.writeBytes(small).writeBytes(large).writeBytes(repeated);
+        small.release();
+        large.release();
+        repeated.release();
+
+        // Deliver the stream in small pieces to make sure frames can be split anywhere
+        while (stream.isReadable()) decoder.writeInbound(stream.readRetainedSlice(Math.min(7, stream.readableBytes())));
+        stream.release();
+        assertEquals(SMALL + SMALL + LARGE + LARGE, readAll(decoder));
+        assertFalse(encoder.finish());
+        assertFalse(decoder.finish());
+    }
+
+    @Test
+    public void splitsMessagesLargerThanTheFrameLimit() {
+        EmbeddedChannel encoder = new EmbeddedChannel(new CompressionEncoder(64));
+        EmbeddedChannel decoder = new EmbeddedChannel(new CompressionDecoder());
+        // A template transfer: incompressible Base64, followed by a part which compresses extremely well
+        byte[] archive = new byte[3 * CompressionDecoder.MAX_FRAME_LENGTH];
+        new Random(42).nextBytes(archive);
+        char[] padding = new char[3 * CompressionDecoder.MAX_INFLATED_LENGTH];
+        Arrays.fill(padding, 'a');
+        String transfer = "{\"type\":\"TRANSFER\",\"file\":\"" + Base64.getEncoder().encodeToString(archive) + new String(padding) + "\"}";
+
+        ByteBuf encoded = encode(encoder, transfer);
+        decoder.writeInbound(encoded);
+        assertEquals(transfer, readAll(decoder));
+        assertFalse(encoder.finish());
+        assertFalse(decoder.finish());
+    }
+
+    @Test
+    public void negotiatesOnlySupportedAlgorithms() {
+        assertEquals(StreamCompression.DEFLATE, StreamCompression.negotiate(Arrays.asList("zstd", "deflate"), "deflate"));
+        assertNull(StreamCompression.negotiate(Collections.singletonList("deflate"), "none"));
+        assertNull(StreamCompression.negotiate(null, "deflate"));
+    }
+}
@@ -0,0 +1,53 @@
+package cloud.timo.TimoCloud.lib.templates;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CompiledTemplateTest {
+
+    private final PlaceholderRegistry<String> registry = new PlaceholderRegistry<String>()
+            .register("name", StringBuilder::append)
+            .register("length", (builder, context) -> builder.append(context.length()));
+
+    @Test
+    public void replacesPlaceholdersAndTranslatesColors() {
+        assertEquals("\u00A7aLobby-1 \u00A77(1)", registry.compile("&aLobby-%name% &7(%length%)").render("1"));
+        assertEquals("\u00A7aLobby-abc", registry.compile("&a%NAME%").render("Lobby-abc"));
+    }
+
+    @Test
+    public void keepsUnknownPlaceholdersAndPercentSigns() {
+        assertEquals("100% of %Unknown%", registry.compile("100% of %Unknown%").render("x"));
+        assertEquals("%name%", registry.compile("%name%").render(null));
+    }
+
+    @Test
+    public void translatesColorsInValues() {
+        assertEquals("\u00A7cRed", registry.compile("%name%").render("&cRed"));
+    }
+
+    @Test
+    public void resolvesPlaceholdersRegisteredAfterCompiling() {
+        CompiledTemplate<String> template = registry.compile("%later%");
+        registry.register("later", (builder, context) -> builder.append("now"));
+        assertEquals("now", template.render("x"));
+    }
+
+    @Test
+    public void marksTemplatesWithVolatilePlaceholders() {
+        CompiledTemplate<String> template = registry.compile("%name% %plugin%");
+        assertFalse(template.hasVolatilePlaceholders());
+        registry.registerVolatile("plugin", (builder, context) -> builder.append(System.nanoTime()));
+        assertTrue(template.hasVolatilePlaceholders());
+    }
+
+    @Test
+    public void keepsRecentlyUsedTemplatesCached() {
+        CompiledTemplate<String> used = registry.getCompiled("%name%");
+        for (int i = 0; i < 1000; i++) {
+            registry.getCompiled("motd " + i);
+            assertSame(used, registry.getCompiled("%name%"));
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package cloud.timo.TimoCloud.lib.utils;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class StatusReporterTest {
+
+    private static Map<String, Object> status(String motd, int players) {
+        Map<String, Object> status = new HashMap<>();
+        status.put("motd", motd);
+        status.put("players", players);
+        return status;
+    }
+
+    @Test
+    public void sendsFullStatusFirstAndOnlyChangesAfterwards() {
+        StatusReporter reporter = new StatusReporter(500, 30000);
+        assertEquals(status("Lobby", 0), reporter.update(status("Lobby", 0), 0));
+        assertNull(reporter.update(status("Lobby", 0), 1000));
+        assertEquals(Collections.singletonMap("players", 1), reporter.update(status("Lobby", 1), 2000));
+    }
+
+    @Test
+    public void coalescesChangesWithinMinimumInterval() {
+        StatusReporter reporter = new StatusReporter(500, 30000);
+        reporter.update(status("Lobby", 0), 0);
+        assertNull(reporter.update(status("Lobby", 1), 100));
+        assertNull(reporter.update(status("Lobby", 2), 200));
+        assertEquals(Collections.singletonMap("players", 3), reporter.update(status("Lobby", 3), 600));
+    }
+
+    @Test
+    public void repeatsFullStatusAsHeartbeat() {
+        StatusReporter reporter = new StatusReporter(500, 30000);
+        reporter.update(status("Lobby", 0), 0);
+        assertNull(reporter.update(status("Lobby", 0), 29999));
+        assertEquals(status("Lobby", 0), reporter.update(status("Lobby", 0), 30000));
+        reporter.reset();
+        assertEquals(status("Lobby", 0), reporter.update(status("Lobby", 0), 30001));
+    }
+}
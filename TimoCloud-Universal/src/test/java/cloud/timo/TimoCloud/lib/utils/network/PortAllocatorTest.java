@@ -0,0 +1,54 @@
+package cloud.timo.TimoCloud.lib.utils.network;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class PortAllocatorTest {
+
+    @Test
+    public void allocateReturnsDistinctPorts() {
+        PortAllocator allocator = new PortAllocator(41000, 41002);
+        assertEquals(Integer.valueOf(41000), allocator.allocate("a"));
+        assertEquals(Integer.valueOf(41001), allocator.allocate("b"));
+        assertEquals(Integer.valueOf(41002), allocator.allocate("c"));
+        assertNull(allocator.allocate("d")); // Range exhausted
+    }
+
+    @Test
+    public void allocateIsIdempotentPerId() {
+        PortAllocator allocator = new PortAllocator(41000, 41010);
+        Integer port = allocator.allocate("a");
+        assertEquals(port, allocator.allocate("a"));
+        assertEquals(1, allocator.getLeaseCount());
+    }
+
+    @Test
+    public void releasedPortIsReusedAfterWrapAround() {
+        PortAllocator allocator = new PortAllocator(41000, 41001);
+        allocator.allocate("a");
+        allocator.allocate("b");
+        assertEquals(Integer.valueOf(41000), allocator.release("a"));
+        assertEquals(Integer.valueOf(41000), allocator.allocate("c"));
+    }
+
+    @Test
+    public void listeningPortsAreSkipped() {
+        PortAllocator allocator = new PortAllocator(41000, 41003);
+        allocator.reconcile(Arrays.asList(41000, 41001, 25565));
+        assertEquals(Integer.valueOf(41002), allocator.allocate("a"));
+        allocator.reconcile(Collections.emptyList());
+        assertEquals(Integer.valueOf(41003), allocator.allocate("b"));
+        assertEquals(Integer.valueOf(41000), allocator.allocate("c"));
+    }
+
+    @Test
+    public void fromString() {
+        PortAllocator allocator = PortAllocator.fromString(" 40000 - 40999 ");
+        assertEquals(40000, allocator.getFrom());
+        assertEquals(40999, allocator.getTo());
+    }
+}
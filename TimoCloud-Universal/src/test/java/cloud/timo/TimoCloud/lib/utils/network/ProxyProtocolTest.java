@@ -0,0 +1,42 @@
+package cloud.timo.TimoCloud.lib.utils.network;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+
+import static org.junit.Assert.*;
+
+public class ProxyProtocolTest {
+
+    @Test
+    public void roundTripIpv4() throws Exception {
+        InetSocketAddress client = new InetSocketAddress("203.0.113.7", 51234);
+        ByteBuf buf = ProxyProtocol.encode(UnpooledByteBufAllocator.DEFAULT, client, new InetSocketAddress("10.0.0.2", 25577));
+        buf.writeByte(0x10); // First byte of the following handshake
+        assertEquals(1, ProxyProtocol.detect(buf));
+        assertEquals(28, ProxyProtocol.getLength(buf));
+        assertEquals(client, ProxyProtocol.decode(buf));
+        assertEquals(0x10, buf.readByte());
+    }
+
+    @Test
+    public void roundTripMixedFamiliesAsIpv6() throws Exception {
+        InetSocketAddress client = new InetSocketAddress("2001:db8::1", 40000);
+        ByteBuf buf = ProxyProtocol.encode(UnpooledByteBufAllocator.DEFAULT, client, new InetSocketAddress("10.0.0.2", 25577));
+        assertEquals(52, ProxyProtocol.getLength(buf));
+        assertEquals(client, ProxyProtocol.decode(buf));
+        assertFalse(buf.isReadable());
+    }
+
+    @Test
+    public void detectsMinecraftHandshakeAndPartialHeaders() {
+        assertEquals(-1, ProxyProtocol.detect(Unpooled.wrappedBuffer(new byte[]{0x10, 0x00, 0x04})));
+        assertEquals(0, ProxyProtocol.detect(Unpooled.wrappedBuffer(new byte[]{0x0D, 0x0A, 0x0D})));
+        ByteBuf partial = Unpooled.wrappedBuffer(ProxyProtocol.SIGNATURE);
+        assertEquals(1, ProxyProtocol.detect(partial));
+        assertEquals(-1, ProxyProtocol.getLength(partial));
+    }
+}